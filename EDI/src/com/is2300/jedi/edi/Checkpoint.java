@@ -0,0 +1,282 @@
+/* {Checkpoint.java}
+ *
+ * Records how far into a transmission file the processing has safely got.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import com.is2300.jedi.edi.audit.AuditWriter;
+import com.is2300.jedi.edi.audit.EnvelopeAudit;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import org.openide.util.Exceptions;
+
+/**
+ * A <code>Checkpoint</code> records how far into a transmission file the
+ * processing has safely got: the offset just past the Interchange Control
+ * Trailer (IEA) of the last interchange whose audit records have been
+ * committed. Should the processing be cut short, the next run on the same file
+ * resumes from that offset instead of starting over and writing the audit
+ * records of the committed interchanges a second time.
+ * <p>
+ * The checkpoint is kept in a small properties file of its own, along with a
+ * fingerprint of the transmission file: its length and a checksum of its first
+ * and last {@link #SAMPLE_SIZE} bytes. A checkpoint whose fingerprint no longer
+ * matches the file is ignored, so a new file by the same name is processed
+ * from the start.
+ * <p>
+ * The checkpoint follows the commits of an {@link AuditWriter} as its
+ * {@link AuditWriter.Listener listener}. It only ever moves forward over
+ * interchanges that were all committed: once an interchange has been rolled
+ * back, or {@link #hold(long) held} back because it could not be parsed, the
+ * checkpoint stays where it is, so that the failed interchange is processed
+ * again by the next run. Once the whole file has been processed without
+ * failure, the checkpoint is {@link #complete() removed}.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class Checkpoint implements AuditWriter.Listener {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The number of bytes at each end of the file taken into its fingerprint.
+     */
+    public static final int SAMPLE_SIZE = 64 * 1024;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The file in which the checkpoint is kept.
+     */
+    private final File store;
+    /**
+     * The transmission file.
+     */
+    private final File file;
+    private final String fingerprint;
+    /**
+     * The offset just past the last committed interchange.
+     */
+    private long offset;
+    /**
+     * The offset beyond which the checkpoint may not move.
+     */
+    private long limit;
+    /**
+     * Set once an interchange has been rolled back.
+     */
+    private boolean frozen;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    private Checkpoint(File store, File file, String fingerprint,
+                       long offset) {
+        this.store = store;
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.offset = offset;
+        this.limit = Long.MAX_VALUE;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Static Methods  ">
+    /**
+     * Opens the checkpoint of a transmission file, kept in the given
+     * directory. If no checkpoint has been kept for the file, or the file has
+     * changed since, the checkpoint starts at the beginning of the file.
+     *
+     * @param dir  the directory in which checkpoints are kept
+     * @param file the transmission file
+     * @return the file's checkpoint
+     * @throws IOException if the file cannot be read
+     */
+    public static Checkpoint open(File dir, File file) throws IOException {
+        File abs = file.getAbsoluteFile();
+        File store = new File(dir, abs.getName() + "."
+                + Integer.toHexString(abs.getPath().hashCode()) + ".ckpt");
+        String fingerprint = fingerprint(abs);
+        long offset = 0L;
+
+        if ( store.isFile() ) {
+            Properties props = new Properties();
+            try (InputStream in = new FileInputStream(store)) {
+                props.load(in);
+                if ( abs.getPath().equals(props.getProperty("file"))
+                        && fingerprint.equals(props.getProperty(
+                                                     "fingerprint")) ) {
+                    offset = Long.parseLong(props.getProperty("offset", "0"));
+                }
+            } catch (IOException | NumberFormatException ex) {
+                // A damaged checkpoint is no checkpoint; start over.
+                Exceptions.printStackTrace(ex);
+                offset = 0L;
+            }
+        }
+
+        return new Checkpoint(store, abs, fingerprint, offset);
+    }
+
+    /**
+     * Computes the fingerprint of a file from its length and a checksum of its
+     * first and last {@link #SAMPLE_SIZE} bytes.
+     *
+     * @param file the file
+     * @return the fingerprint
+     * @throws IOException if the file cannot be read
+     */
+    static String fingerprint(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] sample = new byte[SAMPLE_SIZE];
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            int head = (int) Math.min(length, SAMPLE_SIZE);
+            raf.readFully(sample, 0, head);
+            crc.update(sample, 0, head);
+
+            if ( length > SAMPLE_SIZE ) {
+                int tail = (int) Math.min(length - SAMPLE_SIZE, SAMPLE_SIZE);
+                raf.seek(length - tail);
+                raf.readFully(sample, 0, tail);
+                crc.update(sample, 0, tail);
+            }
+
+            return length + ":" + Long.toHexString(crc.getValue());
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Retrieves the offset from which the processing should resume.
+     *
+     * @return the offset just past the last committed interchange, or zero
+     *         (0) to start at the beginning of the file
+     */
+    public synchronized long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Retrieves the transmission file.
+     *
+     * @return the transmission file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Keeps the checkpoint from moving past the given offset; for instance,
+     * the start of an interchange that could not be parsed.
+     *
+     * @param offset the offset the checkpoint may not move past
+     */
+    public synchronized void hold(long offset) {
+        this.limit = Math.min(this.limit, offset);
+    }
+
+    /**
+     * Moves the checkpoint past a committed interchange, and saves it.
+     *
+     * @param envelope the committed interchange's envelope record
+     */
+    @Override
+    public synchronized void committed(EnvelopeAudit envelope) {
+        long end = envelope.getEndOffset();
+
+        if ( this.frozen || end <= this.offset || end > this.limit ) {
+            return;
+        }
+
+        this.offset = end;
+        try {
+            this.save();
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+    }
+
+    /**
+     * Keeps the checkpoint where it is from now on, so that the interchange
+     * rolled back is processed again by the next run.
+     */
+    @Override
+    public synchronized void rolledBack() {
+        this.frozen = true;
+    }
+
+    /**
+     * Removes the checkpoint once the whole file has been processed, unless
+     * an interchange failed along the way, in which case it is kept so that
+     * the next run resumes at the failed interchange.
+     *
+     * @return <code>true</code> if the checkpoint was removed
+     */
+    public synchronized boolean complete() {
+        if ( this.frozen || this.limit != Long.MAX_VALUE ) {
+            return false;
+        }
+
+        return !this.store.exists() || this.store.delete();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Writes the checkpoint to a temporary file, then moves it into place, so
+     * that a crash part way through never leaves a damaged checkpoint.
+     */
+    private void save() throws IOException {
+        File dir = this.store.getParentFile();
+        if ( dir != null && !dir.isDirectory() && !dir.mkdirs() ) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        Properties props = new Properties();
+        props.setProperty("file", this.file.getPath());
+        props.setProperty("fingerprint", this.fingerprint);
+        props.setProperty("offset", Long.toString(this.offset));
+
+        File temp = new File(dir, this.store.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            props.store(out, "jEDI Master processing checkpoint");
+        }
+
+        try {
+            Files.move(temp.toPath(), this.store.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), this.store.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    //</editor-fold>
+}
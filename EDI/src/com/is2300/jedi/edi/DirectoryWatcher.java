@@ -0,0 +1,412 @@
+/* {DirectoryWatcher.java}
+ *
+ * Watches an incoming directory for completed EDI transmission files.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openide.util.Exceptions;
+
+/**
+ * A <code>DirectoryWatcher</code> watches an incoming directory with a
+ * <code>java.nio.file.WatchService</code> and tells its {@link Listener} about
+ * each file that has been completely written to it, as soon as it has been.
+ * <p>
+ * A file is considered complete once its size and modification time have
+ * stayed the same for the settle time. Files whose names mark them as still
+ * being uploaded (those starting with a dot, or ending in <tt>.tmp</tt>,
+ * <tt>.part</tt> or <tt>.filepart</tt>) are ignored; when the upload is
+ * renamed into place, the new name is picked up like any other file. The files
+ * already in the directory when the watcher starts are picked up too.
+ * <p>
+ * A file is only reported once, unless it is written again afterwards. The
+ * size and modification time of each file reported are kept in the file
+ * {@value #STAMP_FILE} in the directory, so that the files already handled
+ * are not reported again when a watcher is started on the directory anew, as
+ * it is whenever the settings change, or when the application starts again.
+ * The listener is called on the watcher's own thread, so it should hand the
+ * file on rather than process it there.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class DirectoryWatcher implements Closeable {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default time, in milliseconds, a file must stay unchanged before it
+     * is considered complete.
+     */
+    public static final long DEFAULT_SETTLE_TIME = 2000L;
+    /**
+     * The name of the file, in the watched directory, that holds the size and
+     * modification time of each file reported. Its name starts with a dot, so
+     * it is never reported itself.
+     */
+    public static final String STAMP_FILE = ".jedi-watched";
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Interfaces  ">
+    /**
+     * Receives the files found by a <code>DirectoryWatcher</code>.
+     */
+    public interface Listener {
+        /**
+         * Called when a file has been completely written to the directory.
+         *
+         * @param file the completed file
+         */
+        void fileReady(File file);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    private final Path dir;
+    private final long settleTime;
+    private final Listener listener;
+    private final WatchService watcher;
+    private final Thread thread;
+    /**
+     * The file that the stamps of the files reported are kept in.
+     */
+    private final Path stampFile;
+    /**
+     * The files that have been seen, but have not yet settled. Only used on
+     * the watcher's thread.
+     */
+    private final Map<Path, Candidate> candidates;
+    /**
+     * The size and modification time of each file reported, so that it is
+     * not reported again unless it changes. Only used on the watcher's thread.
+     */
+    private final Map<Path, String> reported;
+    private volatile boolean closed;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a watcher on a directory. Nothing is reported until the watcher
+     * is {@link #start() started}.
+     *
+     * @param dir        the directory to watch
+     * @param settleTime the time, in milliseconds, a file must stay unchanged
+     *                   before it is considered complete
+     * @param listener   the listener to tell about completed files
+     * @throws IOException if the directory cannot be watched
+     */
+    public DirectoryWatcher(Path dir, long settleTime, Listener listener)
+            throws IOException {
+        this.dir = dir;
+        this.settleTime = Math.max(1L, settleTime);
+        this.listener = listener;
+        this.candidates = new HashMap<>();
+        this.reported = new HashMap<>();
+        this.stampFile = dir.resolve(STAMP_FILE);
+        this.loadStamps();
+
+        this.watcher = dir.getFileSystem().newWatchService();
+        try {
+            dir.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                         StandardWatchEventKinds.ENTRY_MODIFY,
+                         StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | RuntimeException ex) {
+            this.watcher.close();
+            throw ex;
+        }
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "EDI Watcher " + dir);
+        this.thread.setDaemon(true);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Starts watching the directory.
+     */
+    public void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Retrieves the directory being watched.
+     *
+     * @return the watched directory
+     */
+    public Path getDirectory() {
+        return this.dir;
+    }
+
+    /**
+     * Stops watching the directory.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.watcher.close();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * The watcher's loop. It wakes up at least twice per settle time to see
+     * whether any of the candidates have settled.
+     */
+    private void watch() {
+        this.scan();
+
+        try {
+            while ( !this.closed ) {
+                WatchKey key = this.watcher.poll(this.settleTime / 2 + 1,
+                                                 TimeUnit.MILLISECONDS);
+
+                if ( key != null ) {
+                    for ( WatchEvent<?> event : key.pollEvents() ) {
+                        if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+                            // Some events were lost; look at everything.
+                            this.scan();
+                        } else if ( event.kind()
+                                == StandardWatchEventKinds.ENTRY_DELETE ) {
+                            this.forget(this.dir.resolve(
+                                    (Path) event.context()));
+                        } else {
+                            this.offer(this.dir.resolve(
+                                    (Path) event.context()));
+                        }
+                    }
+
+                    if ( !key.reset() ) {
+                        // The directory is gone, so there is nothing left to
+                        //+ watch.
+                        break;
+                    }
+                }
+
+                this.settle();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            // We have been closed.
+        } finally {
+            try {
+                this.watcher.close();
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+    }
+
+    /**
+     * Makes every file in the directory a candidate.
+     */
+    private void scan() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.dir)) {
+            for ( Path file : files ) {
+                this.offer(file);
+            }
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+    }
+
+    /**
+     * Makes a file a candidate, restarting its settle time, unless its name
+     * shows that it is still being uploaded.
+     */
+    private void offer(Path file) {
+        String name = file.getFileName().toString();
+        String lower = name.toLowerCase(Locale.ENGLISH);
+
+        if ( name.startsWith(".") || lower.endsWith(".tmp")
+                || lower.endsWith(".part") || lower.endsWith(".filepart") ) {
+            return;
+        }
+
+        this.candidates.put(file, new Candidate());
+    }
+
+    /**
+     * Forgets a file that has been removed from the directory, so that a new
+     * file by the same name is reported.
+     */
+    private void forget(Path file) {
+        this.candidates.remove(file);
+        if ( this.reported.remove(file) != null ) {
+            this.saveStamps();
+        }
+    }
+
+    /**
+     * Reports the candidates that have stayed unchanged for the settle time,
+     * and forgets those that have gone away.
+     */
+    private void settle() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Candidate>> it =
+                this.candidates.entrySet().iterator();
+
+        while ( it.hasNext() ) {
+            Map.Entry<Path, Candidate> entry = it.next();
+            Path file = entry.getKey();
+            Candidate candidate = entry.getValue();
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException ex) {
+                // Renamed or removed before it settled.
+                it.remove();
+                if ( this.reported.remove(file) != null ) {
+                    this.saveStamps();
+                }
+                continue;
+            } catch (IOException ex) {
+                continue;
+            }
+
+            if ( !attrs.isRegularFile() ) {
+                it.remove();
+                continue;
+            }
+
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            if ( size != candidate.size || modified != candidate.modified ) {
+                // Still being written, or looked at for the first time.
+                candidate.size = size;
+                candidate.modified = modified;
+                candidate.since = now;
+                continue;
+            }
+
+            if ( size == 0 || now - candidate.since < this.settleTime ) {
+                continue;
+            }
+
+            it.remove();
+            String stamp = size + ":" + modified;
+            if ( stamp.equals(this.reported.put(file, stamp)) ) {
+                // Already reported, and not written to since.
+                continue;
+            }
+            this.saveStamps();
+
+            try {
+                this.listener.fileReady(file.toFile());
+            } catch (RuntimeException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+    }
+
+    /**
+     * Reads the stamps of the files reported by earlier watchers on the
+     * directory, leaving out the files that are no longer there.
+     */
+    private void loadStamps() {
+        if ( !Files.isRegularFile(this.stampFile) ) {
+            return;
+        }
+
+        try ( BufferedReader in = Files.newBufferedReader(this.stampFile,
+                                                StandardCharsets.UTF_8) ) {
+            String line;
+            while ( (line = in.readLine()) != null ) {
+                int tab = line.indexOf('\t');
+                if ( tab <= 0 ) {
+                    continue;
+                }
+
+                Path file = this.dir.resolve(line.substring(tab + 1));
+                if ( this.dir.equals(file.getParent()) 
+                        && Files.exists(file) ) {
+                    this.reported.put(file, line.substring(0, tab));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // The files will be reported again, which the duplicate check
+            //+ turns down at their headers.
+            Exceptions.printStackTrace(ex);
+        }
+    }
+
+    /**
+     * Writes the stamps of the files reported, replacing the stamp file as a
+     * whole, so that a crash leaves either the old file or the new one.
+     */
+    private void saveStamps() {
+        Path temp = this.dir.resolve(STAMP_FILE + ".tmp");
+        try {
+            try ( BufferedWriter out = Files.newBufferedWriter(temp,
+                                                StandardCharsets.UTF_8) ) {
+                for ( Map.Entry<Path, String> entry 
+                        : this.reported.entrySet() ) {
+                    out.write(entry.getValue());
+                    out.write('\t');
+                    out.write(entry.getKey().getFileName().toString());
+                    out.newLine();
+                }
+            }
+            Files.move(temp, this.stampFile, 
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            // The stamps are still kept for as long as this watcher runs.
+            Exceptions.printStackTrace(ex);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Classes  ">
+    /**
+     * What was last seen of a file that has not yet settled.
+     */
+    private static class Candidate {
+        long size = -1L;
+        long modified = -1L;
+        long since;
+    }
+    //</editor-fold>
+}
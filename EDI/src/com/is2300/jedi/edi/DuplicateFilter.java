@@ -0,0 +1,131 @@
+/* {DuplicateFilter.java}
+ *
+ * Rejects the interchanges of a processor run that have already been recorded,
+ * or that are already being processed.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import com.is2300.jedi.edi.audit.AuditWriter;
+import com.is2300.jedi.edi.audit.DuplicateIndex;
+import com.is2300.jedi.edi.audit.EnvelopeAudit;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.openide.util.Exceptions;
+
+/**
+ * A <code>DuplicateFilter</code> stands between the parsers of one processor
+ * run and the module's {@link DuplicateIndex}. The parsers ask it about each
+ * Interchange Control Header they read; it claims the interchange's key in
+ * the index, or turns the interchange down as a duplicate.
+ * <p>
+ * As a listener on the run's audit writer, it records each interchange in the
+ * index once its audit records have been committed. When the run is over,
+ * {@link #release()} gives up the claims on any interchanges that were not,
+ * so that they may be sent again.
+ * <p>
+ * A <code>DuplicateFilter</code> may be used by several parsers at once.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+class DuplicateFilter implements AuditWriter.Listener {
+    /**
+     * The index of the interchanges already recorded.
+     */
+    private final DuplicateIndex index;
+    /**
+     * The keys claimed by this run and not yet recorded.
+     */
+    private final Set<Long> claims;
+
+    /**
+     * Creates a new <code>DuplicateFilter</code> on the supplied index.
+     *
+     * @param index the index of the interchanges already recorded
+     */
+    DuplicateFilter(DuplicateIndex index) {
+        this.index = index;
+        this.claims = new HashSet<>();
+    }
+
+    /**
+     * Claims an interchange for this run.
+     *
+     * @param sender    the Interchange Sender ID (ISA06)
+     * @param receiver  the Interchange Receiver ID (ISA08)
+     * @param ctlNumber the Interchange Control Number (ISA13)
+     * @return <code>true</code> if the interchange should be processed;
+     *         <code>false</code> if it is a duplicate
+     */
+    boolean claim(String sender, String receiver, int ctlNumber) {
+        long key = DuplicateIndex.key(sender, receiver, ctlNumber);
+
+        if ( !this.index.claim(key) ) {
+            return false;
+        }
+
+        synchronized (this.claims) {
+            this.claims.add(key);
+        }
+        return true;
+    }
+
+    /**
+     * Gives up the claims on the interchanges of this run that were not
+     * recorded.
+     */
+    void release() {
+        List<Long> keys;
+        synchronized (this.claims) {
+            keys = new ArrayList<>(this.claims);
+            this.claims.clear();
+        }
+
+        for ( Long key : keys ) {
+            this.index.release(key);
+        }
+    }
+
+    @Override
+    public void committed(EnvelopeAudit envelope) {
+        try {
+            this.index.record(envelope.getSender(), envelope.getReceiver(),
+                              envelope.getControlNumber());
+        } catch (IOException ex) {
+            // The interchange stays known for as long as the module runs,
+            //+ but would not be recognized again after a restart.
+            Exceptions.printStackTrace(ex);
+        }
+
+        synchronized (this.claims) {
+            this.claims.remove(DuplicateIndex.key(envelope.getSender(),
+                    envelope.getReceiver(), envelope.getControlNumber()));
+        }
+    }
+
+    @Override
+    public void rolledBack() {
+        // The claims are kept until the end of the run, so that a copy of
+        //+ the interchange later in the same file is still turned down.
+    }
+}
@@ -19,37 +19,189 @@
  */
 package com.is2300.jedi.edi;
 
-import java.util.Timer;
+import com.is2300.jedi.edi.audit.DuplicateIndex;
+import com.is2300.jedi.edi.db.ConnectionPool;
+import com.is2300.jedi.edi.gui.options.EDISettingsOptionsPanelController;
+import com.is2300.jedi.edi.validators.SegmentDictionaries;
+import java.io.File;
+import java.io.IOException;
 import java.util.prefs.Preferences;
 import org.openide.modules.ModuleInstall;
+import org.openide.util.Exceptions;
+import org.openide.util.NbPreferences;
 
 public class Installer extends ModuleInstall {
+    /**
+     * The user the EDI processor logs in to the database server as.
+     */
+    private static final String DB_USER = "_edi";
+    /**
+     * The password of the {@link #DB_USER}.
+     */
+    private static final String DB_PASSWORD = "3d1_u53r";
+    /*^^^^^^^^^^^^^^^^^^^^******************************************************
+     * This user is a special user that needs to be created on the database    *
+     * server at the client site. This user is only for use in processing      *
+     * the EDI transmissions and for nothing else. _edi user has full          *
+     * access to the is_jedi database for creating and updating the data       *
+     * within the tables. _edi CANNOT delete the data, nor can it drop         *
+     * tables, nor create users/grant privileges. This user only servers       *
+     * the purposes of transferring retainable data from the EDI trans-        *
+     * missions to the appropriate database tables, firing any database        *
+     * triggers that may be present.                                           *
+     *                                                                         *
+     * Furthermore, the _edi user SHOULD NEVER be used as a standard user      *
+     * on the database server within jEDI Master. This user does not have      *
+     * the appropriate rights for such use and can read *ALL* database         *
+     * tables, which is not secure for standard users to be able to do.        *
+     **************************************************************************/
+    
+    /**
+     * The pool of database connections shared by all of the processor runs.
+     * It lives as long as the module does.
+     */
+    private static volatile ConnectionPool pool;
+    
+    /**
+     * The index of the interchanges already processed, shared by all of the
+     * processor runs. It lives as long as the module does.
+     */
+    private static volatile DuplicateIndex duplicates;
+    
+    /**
+     * The scheduler that runs the processing of the trading partners'
+     * directories.
+     */
+    private ProcessScheduler scheduler;
+
+    /**
+     * Retrieves the module's pool of database connections.
+     * 
+     * @return the connection pool, or <code>null</code> if the module has not
+     *         been restored or the database driver could not be loaded
+     */
+    static ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Retrieves the module's index of the interchanges already processed.
+     * 
+     * @return the duplicate index, or <code>null</code> if the module has not
+     *         been restored or the index file could not be opened
+     */
+    static DuplicateIndex getDuplicateIndex() {
+        return duplicates;
+    }
 
     @Override
     public void restored() {
-         
-        // Create a Timer object.
-        Timer process = new Timer(true);
         
-        // Get the processor schedule from the settings.
-        Integer period = Preferences.userRoot().getInt("CheckPeriod", 15);
-        String style = Preferences.userRoot().get("TimePeriod", "minutes");
-        Integer inc = 0;
+        // Create the connection pool once, so that the processor runs do not
+        //+ have to load the driver and log in to the server every time. This 
+        //+ module should be installed on the same machine as the database 
+        //+ server. Have the driver rewrite our batches of audit INSERTs into
+        //+ multi-row INSERTs, so that each batch is a single round trip to the
+        //+ server.
+        Preferences prefs = NbPreferences.forModule(
+                                       EDISettingsOptionsPanelController.class);
+        String url = "jdbc:mysql://" 
+                + prefs.get("SvrPath", "localhost") + ":"
+                + prefs.getInt("SvrPort", 3306) + "/is_jedi"
+                + "?rewriteBatchedStatements=true";
+        // Each processor run holds one connection, so by default there is
+        //+ room for as many connections as there may be runs at once.
+        int runs = prefs.getInt("PartnerThreads", 
+                                ProcessScheduler.DEFAULT_PARTNER_THREADS)
+                + prefs.getInt("ProcessorThreads", 
+                               ProcessingEngine.DEFAULT_CONCURRENCY);
+        int size = prefs.getInt("PoolSize", 
+                           Math.max(ConnectionPool.DEFAULT_MAX_SIZE, runs));
+        try {
+            pool = new ConnectionPool("com.mysql.jdbc.Driver", url, DB_USER, 
+                                      DB_PASSWORD, size);
+        } catch (ClassNotFoundException ex) {
+            Exceptions.printStackTrace(ex);
+        }
         
-        // Determine the period style to use: minutes or hours.
-        if ( style.equalsIgnoreCase("minutes") ) {
-            inc = 60 * 1000; // Our increaser is set to sixty seconds.
-        } else if ( style.equalsIgnoreCase("hours") ) {
-            inc = (60 * 60) * 1000; // Our increaser is set to sixty minutes.
+        // Load the index of the interchanges already processed, kept next to
+        //+ the reports, so that the trading partners' resends are turned
+        //+ down at their headers.
+        try {
+            duplicates = DuplicateIndex.open(new File(prefs.get("OutputPath",
+                    System.getProperty("user.home")), "interchanges.idx"));
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
         }
         
-        // Calculate the milliseconds for our Timer to wait between runs.
-        period = period * inc;  // Multiply the period by the increaser.
+        // Look for the trading partners' segment dictionaries in the 
+        //+ configured directory before using those that ship with the module.
+        String dictionaries = prefs.get("DictionaryPath", null);
+        SegmentDictionaries.setDirectory(( dictionaries == null ) ? null 
+                                                 : new File(dictionaries));
+         
+        // Start checking the trading partners' directories for incoming EDI
+        //+ transmission files. The first runs start immediately, then each
+        //+ directory is checked again the CheckPeriod after its previous run
+        //+ has ended, until the module is uninstalled or the application is
+        //+ terminated.
+        this.scheduler = new ProcessScheduler();
+        this.scheduler.start();
+    }
+
+    @Override
+    public void uninstalled() {
+        this.stopScheduler();
+        this.closePool();
+        this.closeDuplicates();
+    }
+
+    @Override
+    public void close() {
+        this.stopScheduler();
+        this.closePool();
+        this.closeDuplicates();
+    }
+
+    /**
+     * Stops the scheduled processing, if it has been started, and waits for
+     * the runs still going to end, so that the connection pool and the
+     * index of interchanges are not closed under them.
+     */
+    private void stopScheduler() {
+        if ( this.scheduler != null ) {
+            this.scheduler.stop();
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Closes the connection pool, if it is open. Connections still being used
+     * by a processor run are closed as soon as the run gives them back.
+     */
+    private void closePool() {
+        ConnectionPool closing = pool;
+        pool = null;
         
-        // Create our schedule for the Timer to execute our Thread.
-	// Should run immediately, then repeat each `period` until cancelled
-	//+ or the application is terminated.
-        process.schedule(new ProcessTask(), 0, period);
+        if ( closing != null ) {
+            closing.close();
+        }
+    }
+
+    /**
+     * Closes the index of the interchanges already processed, if it is open.
+     */
+    private void closeDuplicates() {
+        DuplicateIndex closing = duplicates;
+        duplicates = null;
+        
+        if ( closing != null ) {
+            try {
+                closing.close();
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
     }
 
 }
@@ -0,0 +1,893 @@
+/* {InterchangeParser.java}
+ *
+ * Parses and validates the interchanges read by a SegmentReader.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import com.is2300.jedi.edi.ack.AcknowledgmentBuilder;
+import com.is2300.jedi.edi.ack.Acknowledgments;
+import com.is2300.jedi.edi.audit.DocumentAudit;
+import com.is2300.jedi.edi.audit.EnvelopeAudit;
+import com.is2300.jedi.edi.audit.GroupAudit;
+import com.is2300.jedi.edi.io.Segment;
+import com.is2300.jedi.edi.io.SegmentBuffer;
+import com.is2300.jedi.edi.io.SegmentReader;
+import com.is2300.jedi.edi.utils.Utils;
+import com.is2300.jedi.edi.validators.EnvelopeValidator;
+import com.is2300.jedi.edi.validators.FGValidator;
+import com.is2300.jedi.edi.validators.ErrorSink;
+import com.is2300.jedi.edi.validators.SegmentDictionaries;
+import com.is2300.jedi.edi.validators.SegmentDictionary;
+import com.is2300.jedi.edi.validators.SegmentStructure;
+import com.is2300.jedi.edi.validators.ValidationErrors;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <code>InterchangeParser</code> pulls the segments from a <code>SegmentReader
+ * </code> and works them through the envelope, functional group and
+ * transaction set validators, recording its findings in an {@link
+ * InterchangeReport}.
+ * <p>
+ * A parser keeps no state outside of itself and its report, so the <code>
+ * Processor</code> can run one parser per interchange on a pool of threads,
+ * each over its own region of the transmission file, and merge the reports
+ * afterwards. Nothing is written to the Output Window or to the database from
+ * here; the messages and audit records are left in the report for the <code>
+ * Processor</code> to deliver in file order.
+ * <p>
+ * If the parser is given an executor for validation, each transaction set is
+ * still followed through its structure as it streams past, as that takes no
+ * more than a step of the cursor per segment; only the checks of the elements
+ * are left to the executor. The segments are copied into a {@link 
+ * SegmentBuffer} for them, and handed off to the executor, with the errors in
+ * the structure, as soon as the SE segment has been read. The parser carries on
+ * reading while the transaction set is validated, and only waits on the
+ * results when it reaches the end of the functional group, where the document
+ * audits, the <code>FGValidator</code> check and the group audit need them.
+ * Without an executor, each segment is validated inline as it is read.
+ * <p>
+ * If the parser is given a {@link DuplicateFilter}, each Interchange Control
+ * Header is checked against it first. An interchange that has already been
+ * processed is reported and skipped up to its trailer, without any of its
+ * segments being split into elements, validated or audited.
+ * <p>
+ * If the parser is given {@link Acknowledgments}, it begins an acknowledgment
+ * at each functional group's header, adds the result of each transaction set
+ * to it as it comes in, and sends it at the group's trailer.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class InterchangeParser implements Callable<InterchangeReport> {
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The reader from which the segments are pulled.
+     */
+    private final SegmentReader reader;
+    /**
+     * The report in which the findings are recorded.
+     */
+    private final InterchangeReport report;
+    /**
+     * The executor on which transaction sets are validated, or <code>null
+     * </code> to validate them inline.
+     */
+    private final ExecutorService validators;
+    /**
+     * The filter that turns down the interchanges already processed, or
+     * <code>null</code> to process every interchange.
+     */
+    private final DuplicateFilter duplicates;
+    /**
+     * The acknowledgments to send for the functional groups, or <code>null
+     * </code> to send none.
+     */
+    private final Acknowledgments acks;
+    /**
+     * The acknowledgment of the current functional group, or <code>null
+     * </code> if none is being sent for it.
+     */
+    private AcknowledgmentBuilder ack;
+    /**
+     * An Interchange Control Header found while skipping a duplicate, to be
+     * handled as the next segment.
+     */
+    private Segment lookahead;
+    /**
+     * The segments of the current transaction set, kept for validation on the
+     * executor.
+     */
+    private SegmentBuffer body;
+    /**
+     * The errors found in the structure of the current transaction set, when
+     * its elements are validated on the executor.
+     */
+    private ValidationErrors structureErrors;
+    /**
+     * The transaction sets of the current functional group that have been
+     * handed to the executor, in file order.
+     */
+    private final List<PendingTransaction> pending;
+    /**
+     * The Interchange Control Header (ISA) of the current envelope.
+     */
+    private String[] header;
+    /**
+     * The Functional Group Header (GS) of the current group.
+     */
+    private String[] groupHeader;
+    /**
+     * The Interchange Control Number (ISA13) of the current envelope.
+     */
+    private Integer txCtlNum;
+    /**
+     * The number of functional groups in the current envelope.
+     */
+    private int g_Count;
+    /**
+     * The number of transaction sets in the current functional group.
+     */
+    private int t_Count;
+    /**
+     * The Transaction Set Identifier Code (ST01) of the current transaction.
+     */
+    private String docType;
+    /**
+     * The Transaction Set Control Number (ST02) of the current transaction.
+     */
+    private String docCtlNumber;
+    /**
+     * The segment dictionary of the current transaction set, or <code>null
+     * </code> if there is none for its type.
+     */
+    private SegmentDictionary dictionary;
+    /**
+     * The cursor following the current transaction set through the structure
+     * in its dictionary as it streams past; <code>null</code> if the
+     * dictionary gives no structure. The cursor is reused for as long as
+     * the transaction sets share a structure.
+     */
+    private SegmentStructure.Cursor cursor;
+    /**
+     * The number of segment errors in the current transaction set.
+     */
+    private int docErrCnt;
+    /**
+     * The errors found in the current transaction set, when it is validated
+     * inline. The collector is cleared and reused for each transaction set.
+     */
+    private final ValidationErrors errors;
+    /**
+     * The position of the current segment within its transaction set, the ST
+     * segment being one (1).
+     */
+    private int position;
+    /**
+     * Error counters for the envelopes and groups. These are not yet counted
+     * by the validators, and so always remain zero (0).
+     */
+    private final int envErrCnt;
+    private final int grpErrCnt;
+    /**
+     * Validation flag for the transaction set segments, defaulted to invalid.
+     */
+    private boolean validSeg;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new <code>InterchangeParser</code> over the supplied reader.
+     * The reader is closed once it has been parsed.
+     *
+     * @param reader the reader from which to pull the segments
+     */
+    public InterchangeParser(SegmentReader reader) {
+        this(reader, null);
+    }
+
+    /**
+     * Creates a new <code>InterchangeParser</code> over the supplied reader,
+     * which validates transaction sets on the given executor. The reader is
+     * closed once it has been parsed.
+     *
+     * @param reader     the reader from which to pull the segments
+     * @param validators the executor on which to validate transaction sets,
+     *                   or <code>null</code> to validate them inline
+     */
+    public InterchangeParser(SegmentReader reader,
+                             ExecutorService validators) {
+        this(reader, validators, null);
+    }
+
+    /**
+     * Creates a new <code>InterchangeParser</code> over the supplied reader,
+     * which validates transaction sets on the given executor and skips the
+     * interchanges that the given filter turns down. The reader is closed
+     * once it has been parsed.
+     *
+     * @param reader     the reader from which to pull the segments
+     * @param validators the executor on which to validate transaction sets,
+     *                   or <code>null</code> to validate them inline
+     * @param duplicates the filter that turns down the interchanges already
+     *                   processed, or <code>null</code> to process them all
+     */
+    InterchangeParser(SegmentReader reader, ExecutorService validators,
+                      DuplicateFilter duplicates) {
+        this(reader, validators, duplicates, null);
+    }
+
+    /**
+     * Creates a new <code>InterchangeParser</code> over the supplied reader,
+     * which validates transaction sets on the given executor, skips the
+     * interchanges that the given filter turns down and acknowledges each
+     * functional group. The reader is closed once it has been parsed.
+     *
+     * @param reader     the reader from which to pull the segments
+     * @param validators the executor on which to validate transaction sets,
+     *                   or <code>null</code> to validate them inline
+     * @param duplicates the filter that turns down the interchanges already
+     *                   processed, or <code>null</code> to process them all
+     * @param acks       the acknowledgments to send for the functional
+     *                   groups, or <code>null</code> to send none
+     */
+    InterchangeParser(SegmentReader reader, ExecutorService validators,
+                      DuplicateFilter duplicates, Acknowledgments acks) {
+        this.reader = reader;
+        this.report = new InterchangeReport();
+        this.validators = validators;
+        this.duplicates = duplicates;
+        this.acks = acks;
+        this.pending = new ArrayList<>();
+        this.errors = new ValidationErrors();
+        this.txCtlNum = 0;
+        this.docType = "";
+        this.envErrCnt = 0;
+        this.grpErrCnt = 0;
+        this.validSeg = false;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Parses every segment from the reader, then closes it.
+     *
+     * @return the report of what was found
+     * @throws IOException if the reader cannot be read
+     */
+    @Override
+    public InterchangeReport call() throws IOException {
+        try {
+            Segment segment;
+
+            while ( (segment = this.nextSegment()) != null ) {
+                // Determine what needs to be done by looking at the segment
+                //+ identifier in the zeroeth (0th) element. The segment is
+                //+ only a view over the reader's buffer, so it is only copied
+                //+ into a String array for the control segments we keep.
+                if ( segment.is("IEA") ) {
+                    this.awaitTransactions();
+                    this.endEnvelope(segment.toArray());
+                } else if ( segment.is("ISA") ) {
+                    this.awaitTransactions();
+                    this.dropAcknowledgment();
+                    this.header = segment.toArray();
+                    this.txCtlNum = new Integer(this.header[13]);
+
+                    if ( this.isDuplicate() ) {
+                        // Do not even look at the body of an interchange we
+                        //+ have already processed.
+                        this.header = null;
+                        this.lookahead = this.reader.skipInterchange();
+                    }
+                } else if ( segment.is("GE") ) {
+                    this.awaitTransactions();
+                    this.endGroup(segment.toArray());
+                } else if ( segment.is("GS") ) {
+                    this.awaitTransactions();
+                    this.groupHeader = segment.toArray();
+                    this.beginAcknowledgment();
+                } else if ( segment.is("SE") ) {
+                    this.endTransaction(segment);
+                } else {
+                    if ( segment.is("ST") ) {
+                        // A new transaction set begins, so remember its type
+                        //+ and reset the segment error count for it.
+                        this.docType = segment.getString(1);
+                        this.docCtlNumber = segment.getString(2);
+                        this.docErrCnt = 0;
+                        this.errors.clear();
+                        this.position = 0;
+                        this.dictionary = SegmentDictionaries.get(
+                                this.version(), this.docType);
+                        this.cursor = cursorFor(this.dictionary, 
+                                                this.cursor);
+
+                        if ( this.validators != null ) {
+                            this.body = new SegmentBuffer();
+                            this.structureErrors = new ValidationErrors();
+                        }
+                    }
+
+                    // All other segments, including the ST, are validated
+                    //+ against the dictionary of the current transaction
+                    //+ set.
+                    this.validateSegment(segment);
+                }
+            }
+
+            // Collect any transaction sets whose group was never closed.
+            this.awaitTransactions();
+        } finally {
+            this.dropAcknowledgment();
+            this.report.setSegmentCount(this.reader.getSegmentCount());
+            this.reader.close();
+        }
+
+        return this.report;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Retrieves the next segment to handle: the header found while skipping
+     * a duplicate, if there is one, or else the next segment from the reader.
+     *
+     * @return the next segment, or <code>null</code> at the end of the file
+     * @throws IOException if the reader cannot be read
+     */
+    private Segment nextSegment() throws IOException {
+        Segment next = this.lookahead;
+
+        if ( next != null ) {
+            this.lookahead = null;
+            return next;
+        }
+
+        return this.reader.nextSegment();
+    }
+
+    /**
+     * Retrieves the version of the X12 standard that the current functional
+     * group follows, from its Version / Release / Industry Identifier Code
+     * (GS08).
+     *
+     * @return the version, or <code>null</code> if there is no group header
+     *         or it does not give one
+     */
+    private String version() {
+        if ( this.groupHeader == null || this.groupHeader.length < 9 ) {
+            return null;
+        }
+        return this.groupHeader[8];
+    }
+
+    /**
+     * Determines whether the interchange whose header was just read has
+     * already been processed, and reports it if so. Only the header is
+     * needed for this, so a duplicate is turned down before any of its
+     * body is parsed.
+     *
+     * @return <code>true</code> if the interchange is a duplicate
+     */
+    private boolean isDuplicate() {
+        if ( this.duplicates == null || this.duplicates.claim(this.header[6],
+                                        this.header[8], this.txCtlNum) ) {
+            return false;
+        }
+
+        this.report.addMessage("Interchange Envelope (" + this.header[13]
+                + ") from " + this.header[6].trim() + " to "
+                + this.header[8].trim() + " was already processed; rejected "
+                + "as a duplicate.");
+        return true;
+    }
+
+    /**
+     * Validates an interchange envelope at its trailer and records its audit.
+     *
+     * @param fields the elements of the IEA segment
+     */
+    private void endEnvelope(String[] fields) {
+        String msg;
+
+        if ( this.header == null ) {
+            this.report.addMessage("Interchange Control Trailer (" + fields[2]
+                    + ") has no header; skipped.");
+            return;
+        }
+
+        // We need to make sure that this envelope is valid.
+        Boolean validEnv = EnvelopeValidator.validate(this.header[13],
+                                                      fields[2],
+                                                      new Integer(fields[1]),
+                                                      this.g_Count);
+
+        // Check our findings.
+        if (!validEnv) {
+            // Report that this envelope is not valid and the control numbers,
+            //+ as well as the reported and actual functional group counts.
+            msg = "Interchange Envelope (";
+            msg += this.header[13];
+            msg += ") is NOT valid.\n\t";
+            msg += "Header Control Number (Trailer):  ";
+            msg += this.header[13];
+            msg += " (" + fields[2] + ")\n\t";
+            msg += "Number of reported functional groups (Actual):";
+            msg += "  " + fields[1] + "(" + this.g_Count;
+            msg += ")";
+        } else {
+            msg = "Interchange Envelope (" + fields[2] + ") ";
+            msg += "transmitted " + this.g_Count;
+            msg += " funtional groups.";
+        }
+        this.report.addMessage(msg);
+
+        // Reset our functional group counter.
+        this.g_Count = 0;
+
+        // We need to create a new Date object based upon the date and time
+        //+ transmitted in the envelope header.
+        this.report.addAudit(new EnvelopeAudit(this.txCtlNum,
+                Utils.string2Date(this.header[9], this.header[10]),
+                this.header[6], this.header[8], new Integer(fields[1]),
+                this.envErrCnt, this.reader.getNextOffset()));
+        this.report.envelopeClosed();
+    }
+
+    /**
+     * Validates a functional group at its trailer and records its audit.
+     *
+     * @param fields the elements of the GE segment
+     */
+    private void endGroup(String[] fields) {
+        String msg;
+
+        if ( this.groupHeader == null || this.header == null ) {
+            this.report.addMessage("Functional Group Trailer (" + fields[2]
+                    + ") has no header; skipped.");
+            this.t_Count = 0;
+            return;
+        }
+
+        // Add the group to the functional group counter.
+        this.g_Count += 1;
+
+        // Grab the total transactions in this functional group, and reset
+        //+ the transaction count for the next one.
+        int gT_Count = this.t_Count;
+        this.t_Count = 0;
+
+        // Validate whether the functional group is valid.
+        Boolean validGrp = FGValidator.validate(this.groupHeader[6], fields[2],
+                                                new Integer(fields[1]),
+                                                gT_Count);
+
+        // Check our findings.
+        if (!validGrp) {
+            // Report that this group is not valid and the control numbers, as
+            //+ well as the reported transaction count and actual count.
+            msg = "Functional Group (" + this.groupHeader[6]
+                    + ") is NOT valid.";
+            msg += "\n\tHeader Control Number (Trailer):  ";
+            msg += this.groupHeader[6] + "(";
+            msg += fields[2] + ")\n\t";
+            msg += "Number Reported Transactions (Actual):  ";
+            msg += fields[1] + "(" + gT_Count + ")";
+        } else {
+            msg = "Funtional Group (" + fields[2] + ") transmitted";
+            msg += " " + gT_Count + " transaction sets.";
+        }
+        this.report.addMessage(msg);
+
+        this.finishAcknowledgment(new Integer(fields[1]), fields[2]);
+
+        // Store the Functional Group information for the group audits table.
+        this.report.addAudit(new GroupAudit(new Integer(this.groupHeader[6]),
+                                            new Integer(this.header[13]),
+                                            this.groupHeader[1],
+                                            new Integer(fields[1]),
+                                            this.grpErrCnt));
+        this.report.groupClosed();
+    }
+
+    /**
+     * Finishes a transaction set at its trailer and records its audit. The
+     * body segments have already been validated as they streamed past; the
+     * trailer is validated here, as it closes the structure of the
+     * transaction set.
+     *
+     * @param segment the SE segment
+     */
+    private void endTransaction(Segment segment) {
+        this.validateSegment(segment);
+
+        // Increment the transaction count.
+        this.t_Count += 1;
+        this.report.transactionClosed();
+
+        SegmentBuffer segments = this.body;
+        ValidationErrors structure = this.structureErrors;
+        this.body = null;
+        this.structureErrors = null;
+
+        if ( this.groupHeader == null || this.header == null ) {
+            return;
+        }
+
+        Integer ctlNumber = segment.getInt(2);
+        Integer txCtlNumber = new Integer(this.header[13]);
+        Integer grpCtlNumber = new Integer(this.groupHeader[6]);
+
+        if ( segments != null ) {
+            // Hand the transaction set off for validation. Its audit is
+            //+ recorded once the result is collected at the end of the group.
+            this.pending.add(new PendingTransaction(ctlNumber, txCtlNumber,
+                    grpCtlNumber, this.docType, this.docCtlNumber,
+                    this.validators.submit(
+                            new TransactionValidation(this.dictionary,
+                                                      segments, structure))));
+            return;
+        }
+
+        this.reportErrors(ctlNumber, this.errors);
+        this.acknowledge(this.docType, this.docCtlNumber, this.errors);
+        this.addDocumentAudit(ctlNumber, txCtlNumber, grpCtlNumber,
+                              this.docType, this.docErrCnt);
+    }
+
+    /**
+     * Validates a segment of the current transaction set as it streams past.
+     * Its place in the structure is always checked right away. Its elements
+     * are checked right away too, unless the transaction set is validated on
+     * the executor, in which case the segment is copied for it.
+     *
+     * @param segment the segment
+     */
+    private void validateSegment(Segment segment) {
+        this.position++;
+        if ( this.body == null ) {
+            this.docErrCnt += validateSegment(this.dictionary, this.cursor,
+                    segment, this.position, this.errors);
+            return;
+        }
+
+        this.body.add(segment);
+        if ( this.cursor != null ) {
+            this.cursor.accept(segment, this.position, this.structureErrors);
+        }
+    }
+
+    /**
+     * Waits for the transaction sets that have been handed to the executor,
+     * and records their audits in file order.
+     *
+     * @throws InterruptedIOException if the wait is interrupted
+     */
+    private void awaitTransactions() throws InterruptedIOException {
+        try {
+            for ( PendingTransaction tx : this.pending ) {
+                try {
+                    ValidationErrors found = tx.errors.get();
+                    this.reportErrors(tx.ctlNumber, found);
+                    this.acknowledge(tx.docType, tx.docCtlNumber, found);
+                    this.addDocumentAudit(tx.ctlNumber, tx.txCtlNumber,
+                                          tx.grpCtlNumber, tx.docType,
+                                          found.size());
+                } catch (ExecutionException ex) {
+                    this.report.addMessage("Transaction Set (" + tx.ctlNumber
+                            + ") could not be validated:\n\t"
+                            + ex.getCause().getLocalizedMessage());
+                    this.acknowledge(tx.docType, tx.docCtlNumber, null);
+                    // It is still recorded, as rejected, so that it does not
+                    //+ go missing from the document audits.
+                    this.addDocumentAudit(tx.ctlNumber, tx.txCtlNumber,
+                                          tx.grpCtlNumber, tx.docType, 1);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for "
+                    + "transaction set validation.");
+        } finally {
+            this.pending.clear();
+        }
+    }
+
+    /**
+     * Begins the acknowledgment of the functional group whose header was
+     * just read, if acknowledgments are sent. A group of acknowledgments
+     * (GS01 "FA") is never itself acknowledged, or two partners that both
+     * acknowledge everything would answer each other forever, and neither
+     * is a group already acknowledged.
+     */
+    private void beginAcknowledgment() {
+        this.dropAcknowledgment();
+        if ( this.acks == null || this.header == null 
+                || "FA".equals(this.groupHeader[1]) ) {
+            return;
+        }
+
+        try {
+            this.ack = this.acks.begin(this.header, this.groupHeader,
+                                       this.reader.getDelimiters());
+            if ( this.ack == null ) {
+                this.report.addMessage("Functional Group ("
+                        + this.groupHeader[6] + ") was already acknowledged;"
+                        + " not acknowledged again.");
+            }
+        } catch (IOException ex) {
+            this.report.addMessage("Functional Group (" + this.groupHeader[6]
+                    + ") cannot be acknowledged:\n\t"
+                    + ex.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Adds the result of a transaction set to the acknowledgment of its
+     * functional group.
+     *
+     * @param docType      Document Type Code from the ST01 field
+     * @param docCtlNumber Transaction Set Control Number from the ST02 field
+     * @param found        the errors found in the transaction set, or <code>
+     *                     null</code> if it could not be validated
+     */
+    private void acknowledge(String docType, String docCtlNumber,
+                             ValidationErrors found) {
+        if ( this.ack == null ) {
+            return;
+        }
+
+        try {
+            this.ack.transaction(docType, docCtlNumber, found);
+        } catch (IOException ex) {
+            this.report.addMessage("Functional Group (" + this.groupHeader[6]
+                    + ") cannot be acknowledged:\n\t"
+                    + ex.getLocalizedMessage());
+            this.dropAcknowledgment();
+        }
+    }
+
+    /**
+     * Sends the acknowledgment of the functional group whose trailer was just
+     * read.
+     *
+     * @param declared      the number of transaction sets from the GE01 field
+     * @param grpCtlNumber  the Functional Group Control Number from the GE02
+     *                      field
+     */
+    private void finishAcknowledgment(int declared, String grpCtlNumber) {
+        if ( this.ack == null ) {
+            return;
+        }
+
+        try {
+            File sent = this.ack.finish(declared, grpCtlNumber);
+            this.report.addMessage("Functional Group (" + grpCtlNumber
+                    + ") acknowledged in " + sent.getName() + ".");
+        } catch (IOException ex) {
+            this.report.addMessage("Functional Group (" + grpCtlNumber
+                    + ") cannot be acknowledged:\n\t"
+                    + ex.getLocalizedMessage());
+        } finally {
+            this.dropAcknowledgment();
+        }
+    }
+
+    /**
+     * Throws away the acknowledgment of a functional group that was never
+     * finished.
+     */
+    private void dropAcknowledgment() {
+        if ( this.ack != null ) {
+            this.ack.close();
+            this.ack = null;
+        }
+    }
+
+    /**
+     * Records the audit for a transaction set.
+     *
+     * @param ctlNumber    Document Control Number from the SE02 field
+     * @param txCtlNumber  Interchange Control Number from the ISA13 field
+     * @param grpCtlNumber Functional Group Control Number from the GS06 field
+     * @param type         Document Type Code from the ST01 field
+     * @param errCount     Number of segment errors found in the document
+     */
+    private void addDocumentAudit(Integer ctlNumber, Integer txCtlNumber,
+                                  Integer grpCtlNumber, String type,
+                                  int errCount) {
+        // See how many, if any, segment errors we have. If there are more than
+        //+ zero, we need to invalidate the transaction.
+        if ( errCount > 0 ) this.validSeg = false;
+
+        // We need to add the document to our document audits table.
+        this.report.addAudit(new DocumentAudit(ctlNumber, txCtlNumber,
+                                               grpCtlNumber, type,
+                                               grpCtlNumber, errCount,
+                                               this.validSeg));
+    }
+
+    /**
+     * Adds the errors found in a transaction set to the report. This is where
+     * their messages are put together; until now, they were only codes and
+     * positions.
+     *
+     * @param ctlNumber Document Control Number from the SE02 field
+     * @param found     the errors found in the transaction set
+     */
+    private void reportErrors(Integer ctlNumber, ValidationErrors found) {
+        if ( found.isEmpty() ) {
+            return;
+        }
+
+        StringBuilder msg = new StringBuilder("Transaction Set (");
+        msg.append(ctlNumber).append(") has ").append(found.size());
+        msg.append(" error(s):");
+        for ( int x = 0; x < found.size(); x++ ) {
+            msg.append("\n\t").append(found.getMessage(x));
+        }
+        this.report.addMessage(msg.toString());
+    }
+
+    /**
+     * Validates a single segment of a transaction set against the segment
+     * dictionary for its transaction set and version, and its place in the
+     * structure of the transaction set.
+     *
+     * @param dictionary The dictionary of the transaction set, or <code>null
+     *                   </code> if there is none.
+     * @param cursor     The cursor following the transaction set through its
+     *                   structure, or <code>null</code> if there is none.
+     * @param segment    The segment to validate.
+     * @param position   The position of the segment within the transaction
+     *                   set, the ST segment being one (1).
+     * @param errors     The sink to hand the errors to.
+     * @return           The number of errors found in the segment.
+     */
+    static int validateSegment(SegmentDictionary dictionary, 
+                               SegmentStructure.Cursor cursor, Segment segment,
+                               int position, ErrorSink errors) {
+        int errCnt = ( dictionary == null ) ? 0 
+                   : dictionary.validate(segment, position, errors);
+
+        if ( cursor != null ) {
+            errCnt += cursor.accept(segment, position, errors);
+        }
+
+        return errCnt;
+    }
+
+    /**
+     * Readies a cursor to follow a new transaction set through the structure
+     * in its dictionary.
+     *
+     * @param dictionary The dictionary of the transaction set, or <code>null
+     *                   </code> if there is none.
+     * @param reuse      A cursor from an earlier transaction set, to reuse if
+     *                   it follows the same structure, or <code>null</code>.
+     * @return           The cursor, at the start of the transaction set, or
+     *                   <code>null</code> if there is no structure to follow.
+     */
+    static SegmentStructure.Cursor cursorFor(SegmentDictionary dictionary,
+                                             SegmentStructure.Cursor reuse) {
+        SegmentStructure structure = ( dictionary == null ) ? null
+                                   : dictionary.getStructure();
+        if ( structure == null ) {
+            return null;
+        }
+
+        if ( reuse != null && reuse.getStructure() == structure ) {
+            reuse.reset();
+            return reuse;
+        }
+        return structure.newCursor();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Nested Classes  ">
+    /**
+     * Validates the elements of one transaction set, from a private copy, on
+     * the validation executor, and merges in the errors found in its
+     * structure while it streamed past.
+     */
+    private static class TransactionValidation 
+            implements Callable<ValidationErrors> {
+        /**
+         * The segment dictionary of the transaction set, if any.
+         */
+        private final SegmentDictionary dictionary;
+        /**
+         * The segments of the transaction set, from the ST to the SE.
+         */
+        private final SegmentBuffer segments;
+        /**
+         * The errors found in the structure of the transaction set.
+         */
+        private final ValidationErrors structure;
+
+        TransactionValidation(SegmentDictionary dictionary,
+                              SegmentBuffer segments, 
+                              ValidationErrors structure) {
+            this.dictionary = dictionary;
+            this.segments = segments;
+            this.structure = structure;
+        }
+
+        @Override
+        public ValidationErrors call() {
+            ValidationErrors errors = new ValidationErrors();
+
+            int s = 0;
+            for ( int x = 0; x < this.segments.size(); x++ ) {
+                int position = x + 1;
+                if ( this.dictionary != null ) {
+                    this.dictionary.validate(this.segments.get(x), position,
+                                             errors);
+                }
+
+                // The errors in the structure of a segment follow those in
+                //+ its elements, just as when it is validated inline.
+                for ( ; s < this.structure.size() 
+                        && this.structure.getPosition(s) <= position; s++ ) {
+                    this.structure.copyTo(s, errors);
+                }
+            }
+            for ( ; s < this.structure.size(); s++ ) {
+                this.structure.copyTo(s, errors);
+            }
+
+            return errors;
+        }
+    }
+
+    /**
+     * A transaction set that has been handed to the validation executor,
+     * along with what is needed to record its audit once it is done.
+     */
+    private static class PendingTransaction {
+        final Integer ctlNumber;
+        final Integer txCtlNumber;
+        final Integer grpCtlNumber;
+        final String docType;
+        final String docCtlNumber;
+        final Future<ValidationErrors> errors;
+
+        PendingTransaction(Integer ctlNumber, Integer txCtlNumber,
+                           Integer grpCtlNumber, String docType,
+                           String docCtlNumber,
+                           Future<ValidationErrors> errors) {
+            this.ctlNumber = ctlNumber;
+            this.txCtlNumber = txCtlNumber;
+            this.grpCtlNumber = grpCtlNumber;
+            this.docType = docType;
+            this.docCtlNumber = docCtlNumber;
+            this.errors = errors;
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,187 @@
+/* {InterchangeReport.java}
+ *
+ * Collects the results of parsing one or more interchanges.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import com.is2300.jedi.edi.audit.AuditRecord;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An <code>InterchangeReport</code> collects everything that the {@link
+ * InterchangeParser} finds while working through its interchanges: the
+ * messages destined for the Output Window and the report file, the audit
+ * records destined for the database, and the running counts of segments,
+ * envelopes, groups and transactions.
+ * <p>
+ * Because a parser only ever writes to its own report, interchanges can be
+ * parsed on separate threads. The <code>Processor</code> then merges the
+ * reports back together in file order.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class InterchangeReport {
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The messages produced, in the order in which they were produced.
+     */
+    private final List<String> messages;
+    /**
+     * The audit records produced, in the order in which they were produced.
+     */
+    private final List<AuditRecord> audits;
+    /**
+     * The number of segments read.
+     */
+    private long segmentCount;
+    /**
+     * The number of interchange envelopes closed by an IEA segment.
+     */
+    private int envelopeCount;
+    /**
+     * The number of functional groups closed by a GE segment.
+     */
+    private int groupCount;
+    /**
+     * The number of transaction sets closed by an SE segment.
+     */
+    private int transactionCount;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new, empty report.
+     */
+    public InterchangeReport() {
+        this.messages = new ArrayList<>();
+        this.audits = new ArrayList<>();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Adds a message for the Output Window and the report file.
+     *
+     * @param msg the message
+     */
+    public void addMessage(String msg) {
+        this.messages.add(msg);
+    }
+
+    /**
+     * Adds a record to be written to the audit tables.
+     *
+     * @param record the audit record
+     */
+    public void addAudit(AuditRecord record) {
+        this.audits.add(record);
+    }
+
+    /**
+     * Retrieves the messages produced, in the order in which they were
+     * produced.
+     *
+     * @return the messages
+     */
+    public List<String> getMessages() {
+        return this.messages;
+    }
+
+    /**
+     * Retrieves the audit records produced, in the order in which they were
+     * produced.
+     *
+     * @return the audit records
+     */
+    public List<AuditRecord> getAudits() {
+        return this.audits;
+    }
+
+    /**
+     * Retrieves the number of segments read.
+     *
+     * @return the segment count
+     */
+    public long getSegmentCount() {
+        return this.segmentCount;
+    }
+
+    /**
+     * Sets the number of segments read.
+     *
+     * @param segmentCount the segment count
+     */
+    public void setSegmentCount(long segmentCount) {
+        this.segmentCount = segmentCount;
+    }
+
+    /**
+     * Retrieves the number of interchange envelopes closed by an IEA segment.
+     *
+     * @return the envelope count
+     */
+    public int getEnvelopeCount() {
+        return this.envelopeCount;
+    }
+
+    /**
+     * Retrieves the number of functional groups closed by a GE segment.
+     *
+     * @return the group count
+     */
+    public int getGroupCount() {
+        return this.groupCount;
+    }
+
+    /**
+     * Retrieves the number of transaction sets closed by an SE segment.
+     *
+     * @return the transaction count
+     */
+    public int getTransactionCount() {
+        return this.transactionCount;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Package Methods  ">
+    /**
+     * Counts an interchange envelope.
+     */
+    void envelopeClosed() {
+        this.envelopeCount++;
+    }
+
+    /**
+     * Counts a functional group.
+     */
+    void groupClosed() {
+        this.groupCount++;
+    }
+
+    /**
+     * Counts a transaction set.
+     */
+    void transactionClosed() {
+        this.transactionCount++;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,410 @@
+/* {ProcessScheduler.java}
+ *
+ * Schedules the processing of the trading partners' directories.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import com.is2300.jedi.edi.gui.options.EDISettingsOptionsPanelController;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
+import java.util.prefs.Preferences;
+import org.openide.util.Exceptions;
+import org.openide.util.NbPreferences;
+
+/**
+ * The <code>ProcessScheduler</code> checks the trading partners' directories
+ * for incoming EDI transmission files on a schedule. Each directory gets a
+ * {@link ProcessTask} of its own, run with a fixed delay between the end of
+ * one run and the start of the next, so that a long run never causes the
+ * following runs to bunch up behind it. The directories are processed at the
+ * same time, on up to <tt>PartnerThreads</tt> threads.
+ * <p>
+ * The schedule is driven by the settings:
+ * <ul>
+ *  <li><tt>CheckPeriod</tt> and <tt>TimePeriod</tt>: the delay between runs,
+ *      as a number of minutes or hours;</li>
+ *  <li><tt>PartnerDirs</tt>: the trading partners' directories, separated by
+ *      the path separator (<tt>:</tt> or <tt>;</tt>). When it is not set, the
+ *      single directory given by <tt>SvrURL</tt> is processed; and</li>
+ *  <li><tt>PartnerThreads</tt>: the number of directories that may be
+ *      processed at once; and</li>
+ *  <li><tt>WatchIncoming</tt>: whether to watch the directories instead.</li>
+ * </ul>
+ * When the directories are watched, each local directory gets a
+ * {@link DirectoryWatcher}, and every completed file that turns up in it is
+ * processed right away, rather than waiting for the next check for the one
+ * file named by <tt>EDIFilename</tt>. How long a file must stay unchanged to
+ * count as completed is given by <tt>SettleTime</tt>, in milliseconds. A
+ * directory that cannot be watched, such as one on a remote server, is
+ * checked on the schedule as before.
+ * <p>
+ * Each file found by a watcher becomes a job for the scheduler's
+ * {@link ProcessingEngine}, which runs up to <tt>ProcessorThreads</tt> of them
+ * at once, on virtual threads when <tt>VirtualThreads</tt> is set and the
+ * runtime supports them.
+ * <p>
+ * Changes to these settings take effect right away: the directories are
+ * scheduled anew, starting one period from the change.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class ProcessScheduler implements PreferenceChangeListener {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default number of directories that may be processed at once.
+     */
+    public static final int DEFAULT_PARTNER_THREADS = 2;
+    /**
+     * The longest time, in seconds, that {@link #stop} waits for the runs it
+     * interrupts to end.
+     */
+    public static final long STOP_TIMEOUT = 30L;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    private final Preferences prefs;
+    private final ScheduledThreadPoolExecutor executor;
+    /**
+     * The directories currently being processed, shared by all of the tasks
+     * so that no directory is ever processed by two runs at once.
+     */
+    private final Set<String> running;
+    /**
+     * The scheduled tasks, one for each directory.
+     */
+    private final List<ScheduledFuture<?>> tasks;
+    /**
+     * The watchers on the watched directories.
+     */
+    private final List<DirectoryWatcher> watchers;
+    /**
+     * The engine that processes the files found by the watchers.
+     */
+    private ProcessingEngine engine;
+    /**
+     * The engines replaced when the settings changed, which may still be
+     * processing the files queued on them.
+     */
+    private final List<ProcessingEngine> retired;
+    private boolean started;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a scheduler driven by the module's settings. Nothing is run
+     * until the scheduler is {@link #start() started}.
+     */
+    public ProcessScheduler() {
+        this.prefs = NbPreferences.forModule(
+                EDISettingsOptionsPanelController.class);
+        this.executor = new ScheduledThreadPoolExecutor(
+                Math.max(1, this.prefs.getInt("PartnerThreads",
+                                              DEFAULT_PARTNER_THREADS)),
+                new WorkerThreadFactory("EDI Scheduler"));
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.running = Collections.newSetFromMap(
+                new ConcurrentHashMap<String, Boolean>());
+        this.tasks = new ArrayList<>();
+        this.watchers = new ArrayList<>();
+        this.retired = new ArrayList<>();
+        this.engine = this.newEngine();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Schedules the directories, the first runs starting right away, and
+     * begins following changes to the settings.
+     */
+    public synchronized void start() {
+        if ( this.started ) {
+            return;
+        }
+        this.started = true;
+
+        this.schedule(0L);
+        this.prefs.addPreferenceChangeListener(this);
+    }
+
+    /**
+     * Cancels the schedule. Runs that are still going are interrupted, and
+     * waited for, for up to the {@link #STOP_TIMEOUT}, so that the connection
+     * pool and the indexes they use can be closed safely afterwards.
+     */
+    public void stop() {
+        List<ProcessingEngine> engines;
+        synchronized (this) {
+            this.prefs.removePreferenceChangeListener(this);
+            this.cancel();
+            this.executor.shutdownNow();
+            engines = new ArrayList<>(this.retired);
+            engines.add(this.engine);
+            this.retired.clear();
+            this.started = false;
+        }
+
+        for ( ProcessingEngine retiring : engines ) {
+            retiring.shutdownNow();
+        }
+
+        // Wait outside of the lock, as the watchers hand their files over
+        //+ through it.
+        long deadline = System.nanoTime() 
+                      + TimeUnit.SECONDS.toNanos(STOP_TIMEOUT);
+        try {
+            boolean ended = this.executor.awaitTermination(
+                    deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            for ( ProcessingEngine retiring : engines ) {
+                ended &= retiring.awaitTermination(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            if ( !ended ) {
+                Exceptions.printStackTrace(new IllegalStateException(
+                        "EDI runs still going after " + STOP_TIMEOUT 
+                        + " seconds."));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reschedules the directories when the period or the directories change.
+     *
+     * @param evt the change to the settings
+     */
+    @Override
+    public void preferenceChange(PreferenceChangeEvent evt) {
+        String key = evt.getKey();
+
+        if ( "CheckPeriod".equals(key) || "TimePeriod".equals(key)
+                || "PartnerDirs".equals(key) || "WatchIncoming".equals(key)
+                || "SettleTime".equals(key) ) {
+            synchronized (this) {
+                if ( this.started ) {
+                    this.cancel();
+                    this.schedule(this.getPeriod());
+                }
+            }
+        } else if ( "PartnerThreads".equals(key) ) {
+            this.executor.setCorePoolSize(Math.max(1, this.prefs.getInt(
+                    "PartnerThreads", DEFAULT_PARTNER_THREADS)));
+        } else if ( "ProcessorThreads".equals(key) 
+                || "VirtualThreads".equals(key) ) {
+            // Files already queued are processed by the old engine; new ones
+            //+ go to the new engine.
+            synchronized (this) {
+                if ( this.started ) {
+                    this.engine.shutdown();
+                    this.retire(this.engine);
+                    this.engine = this.newEngine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the delay, in milliseconds, between the end of one run on a
+     * directory and the start of the next.
+     *
+     * @return the delay between runs
+     */
+    public long getPeriod() {
+        int period = Math.max(1, this.prefs.getInt("CheckPeriod", 15));
+        String style = this.prefs.get("TimePeriod", "minutes");
+
+        // Determine the period style to use: minutes or hours.
+        if ( style.equalsIgnoreCase("hours") ) {
+            return period * 60L * 60L * 1000L;
+        }
+        return period * 60L * 1000L;
+    }
+
+    /**
+     * Retrieves the trading partners' directories to process.
+     *
+     * @return the directories, in the order they were listed
+     */
+    public List<String> getDirectories() {
+        List<String> dirs = new ArrayList<>();
+
+        for ( String dir : this.prefs.get("PartnerDirs", "")
+                                     .split(File.pathSeparator) ) {
+            dir = dir.trim();
+            if ( !dir.isEmpty() && !dirs.contains(dir) ) {
+                dirs.add(dir);
+            }
+        }
+
+        if ( dirs.isEmpty() ) {
+            dirs.add(this.prefs.get("SvrURL", 
+                                    "/home/sean/Public/edi/incoming"));
+        }
+
+        return dirs;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Schedules a task for each directory, or watches it when the settings
+     * ask for that and it can be watched.
+     *
+     * @param initialDelay the time, in milliseconds, before the first runs
+     */
+    private void schedule(long initialDelay) {
+        long period = this.getPeriod();
+        boolean watch = this.prefs.getBoolean("WatchIncoming", false);
+
+        for ( String dir : this.getDirectories() ) {
+            if ( watch && this.watch(dir) ) {
+                continue;
+            }
+
+            this.tasks.add(this.executor.scheduleWithFixedDelay(
+                    new ProcessTask(dir, this.running), initialDelay, period,
+                    TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Starts a watcher on a directory, which hands each completed file to the
+     * executor to be processed.
+     *
+     * @param dir the directory to watch
+     * @return <code>true</code> if the directory is being watched
+     */
+    private boolean watch(String dir) {
+        Path path = toPath(dir);
+        if ( path == null || !Files.isDirectory(path) ) {
+            return false;
+        }
+
+        try {
+            DirectoryWatcher watcher = new DirectoryWatcher(path, 
+                    this.prefs.getLong("SettleTime",
+                                       DirectoryWatcher.DEFAULT_SETTLE_TIME),
+                    new DirectoryWatcher.Listener() {
+                @Override
+                public void fileReady(File file) {
+                    submit(new ProcessTask(file.getParent(), file.getName(),
+                                           running));
+                }
+            });
+            watcher.start();
+            this.watchers.add(watcher);
+            return true;
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+            return false;
+        }
+    }
+
+    /**
+     * Keeps an engine that has been replaced until its jobs have ended, so
+     * that {@link #stop} can wait for them.
+     *
+     * @param replaced the engine replaced
+     */
+    private void retire(ProcessingEngine replaced) {
+        for ( int x = this.retired.size() - 1; x >= 0; x-- ) {
+            if ( this.retired.get(x).isTerminated() ) {
+                this.retired.remove(x);
+            }
+        }
+        this.retired.add(replaced);
+    }
+
+    /**
+     * Hands a job to the current engine.
+     */
+    private synchronized void submit(ProcessTask job) {
+        this.engine.submit(job);
+    }
+
+    /**
+     * Creates an engine as the settings describe it.
+     */
+    private ProcessingEngine newEngine() {
+        return new ProcessingEngine(
+                this.prefs.getInt("ProcessorThreads", 
+                                  ProcessingEngine.DEFAULT_CONCURRENCY),
+                this.prefs.getBoolean("VirtualThreads", false)
+                        ? ProcessingEngine.Threads.VIRTUAL
+                        : ProcessingEngine.Threads.PLATFORM);
+    }
+
+    /**
+     * Turns a directory setting into a local path.
+     *
+     * @param dir the directory, as a path or a <tt>file:</tt> URL
+     * @return the path, or <code>null</code> if the directory is not local
+     */
+    private static Path toPath(String dir) {
+        try {
+            if ( dir.regionMatches(true, 0, "file:", 0, 5) ) {
+                return Paths.get(URI.create(dir));
+            } else if ( dir.contains("://") ) {
+                return null;
+            }
+            return Paths.get(dir);
+        } catch (IllegalArgumentException | FileSystemNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the scheduled tasks and closes the watchers, letting any run
+     * that is still going finish.
+     */
+    private void cancel() {
+        for ( ScheduledFuture<?> task : this.tasks ) {
+            task.cancel(false);
+        }
+        this.tasks.clear();
+        this.executor.purge();
+
+        for ( DirectoryWatcher watcher : this.watchers ) {
+            try {
+                watcher.close();
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+        this.watchers.clear();
+    }
+    //</editor-fold>
+}
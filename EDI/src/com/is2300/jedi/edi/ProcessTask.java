@@ -1,6 +1,6 @@
 /* {ProcessTask.java}
  * 
- * A class to spawn a new thread for processing the EDI transmissions.
+ * A class to run the processing of the EDI transmissions on a schedule.
  * 
  * Copyright (C) 2017 Integrity Solutions
  *
@@ -20,42 +20,119 @@
 
 package com.is2300.jedi.edi;
 
-import java.util.TimerTask;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Set;
 import org.netbeans.api.io.IOProvider;
 import org.netbeans.api.io.InputOutput;
+import org.openide.util.Exceptions;
 
 /**
+ * A <code>ProcessTask</code> is run by the {@link ProcessScheduler} each time
+ * a trading partner's directory is due to be checked for an incoming EDI
+ * transmission file, and hands the directory to a new {@link Processor}. It
+ * is also run for each file a {@link DirectoryWatcher} finds in a watched
+ * directory, and then hands the file to the <code>Processor</code>.
+ * <p>
+ * A directory, or a file, is only ever processed by one run at a time: should
+ * the previous run on it still be going, the task skips its turn. Any
+ * exception thrown by the run is caught and reported here, so that it cannot
+ * stop the directory from being checked again.
  *
  * @author Sean Carrick
  * @version 0.5.0
  * @since 0.5.0
  */
-public class ProcessTask extends TimerTask {
-    // Private member field.
-    ProcessThread proc;
+public class ProcessTask implements Runnable {
+    // Private member fields.
+    /**
+     * The trading partner's directory to process.
+     */
+    private final String directory;
+    /**
+     * The name of the file to process, or <code>null</code> to process the
+     * file named by the <tt>EDIFilename</tt> setting.
+     */
+    private final String fileName;
+    /**
+     * What this task processes, as it is entered in {@link #running}.
+     */
+    private final String target;
+    /**
+     * The directories and files currently being processed, shared by all of
+     * the tasks.
+     */
+    private final Set<String> running;
     
-    public ProcessTask() {
-        proc = new ProcessThread("Processing");
+    /**
+     * Creates a task for processing a trading partner's directory.
+     * 
+     * @param directory the directory from which to fetch the incoming EDI
+     *                  transmission file
+     * @param running   the directories and files currently being processed,
+     *                  shared by all of the tasks; must be thread-safe
+     */
+    public ProcessTask(String directory, Set<String> running) {
+        this(directory, null, running);
+    }
+    
+    /**
+     * Creates a task for processing a file in a trading partner's directory.
+     * 
+     * @param directory the directory holding the incoming EDI transmission
+     *                  file
+     * @param fileName  the name of the file, or <code>null</code> to process
+     *                  the file named by the <tt>EDIFilename</tt> setting
+     * @param running   the directories and files currently being processed,
+     *                  shared by all of the tasks; must be thread-safe
+     */
+    public ProcessTask(String directory, String fileName, Set<String> running) {
+        this.directory = directory;
+        this.fileName = fileName;
+        this.target = fileName == null ? directory 
+                                       : new File(directory, fileName).getPath();
+        this.running = running;
     }
 
-           
     @Override
     public void run() {
-//        if ( proc.isDaemon() && proc.isAlive() ) {
-//            try {
-//                proc.join();
-//            } catch (InterruptedException ex) {
-//                InputOutput io = IOProvider.getDefault().getIO(
-//                                                         "Thread Errors", true);
-//                io.getOut().println("Processing file...");
-//                io.getOut().println(new String(new char[80]).replace(
-//                                                                    "\0", "-"));
-//            }
-//        } else {
-//            proc.start();
-//        }
-        // Create our Processor object to process the EDI transmissions.
-        Processor shepherd = new Processor();
+        // Make sure that nobody else is processing this directory or file. 
+        //+ If the previous run is still going, skip this turn: the next one 
+        //+ will pick up whatever this one would have.
+        if ( !this.running.add(this.target) ) {
+            this.report("Skipped " + this.target + ": the previous run is "
+                    + "still going.", null);
+            return;
+        }
+        
+        try {
+            // Create our Processor object to process the EDI transmissions.
+            Processor shepherd = new Processor(this.directory, this.fileName);
+        } catch (Throwable ex) {
+            // Whatever went wrong, it must not keep the directory from being
+            //+ checked again.
+            Exceptions.printStackTrace(ex);
+            this.report("The run on " + this.target + " failed:", ex);
+        } finally {
+            this.running.remove(this.target);
+        }
+    }
+    
+    /**
+     * Writes a message, and the exception if there is one, to the Output
+     * Window.
+     */
+    private void report(String msg, Throwable ex) {
+        SimpleDateFormat fmt = new SimpleDateFormat(
+                "EEE: MM/dd/yyyy - HH:mm:ss", Locale.getDefault());
+        InputOutput io = IOProvider.getDefault().getIO("EDI Processing", false);
+        io.getOut().println(fmt.format(Calendar.getInstance().getTime()) 
+                + ":  " + msg);
+        if ( ex != null ) {
+            ex.printStackTrace(io.getErr());
+        }
     }
 
 }
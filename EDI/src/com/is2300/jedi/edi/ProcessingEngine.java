@@ -0,0 +1,284 @@
+/* {ProcessingEngine.java}
+ *
+ * Runs the processing of the incoming EDI transmission files as jobs.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>ProcessingEngine</code> runs the processing of the incoming EDI
+ * transmission files. Each file found is {@link #submit(Runnable) submitted}
+ * as a job to the engine's work queue, and the jobs are run at the same time,
+ * up to the engine's concurrency limit, so that a backlog of files drains in
+ * parallel rather than one <code>Processor</code> at a time.
+ * <p>
+ * The jobs run on one of two kinds of threads:
+ * <ul>
+ *  <li>{@link Threads#PLATFORM PLATFORM}: a pool of daemon threads, as many
+ *      as the concurrency limit, that take the jobs off the queue; or</li>
+ *  <li>{@link Threads#VIRTUAL VIRTUAL}: a virtual thread for each job, of
+ *      which only as many as the concurrency limit run at once while the
+ *      rest wait their turn. Virtual threads need a Java 21 or later
+ *      runtime; on an earlier one, the engine falls back to platform
+ *      threads.</li>
+ * </ul>
+ * The module is built for Java 7, so the virtual thread executor is looked up
+ * by reflection.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class ProcessingEngine {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default number of jobs that may run at once.
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Enumerations  ">
+    /**
+     * The kind of threads on which the jobs run.
+     */
+    public enum Threads {
+        /**
+         * A pool of ordinary threads.
+         */
+        PLATFORM,
+        /**
+         * A virtual thread for each job, on Java 21 or later.
+         */
+        VIRTUAL
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    private final ExecutorService executor;
+    private final Threads threads;
+    private final int concurrency;
+    /**
+     * Limits the number of jobs running at once on virtual threads; unused
+     * with platform threads, where the pool size is the limit.
+     */
+    private final Semaphore permits;
+    /**
+     * The number of jobs submitted but not yet started.
+     */
+    private final AtomicInteger queued;
+    /**
+     * The number of jobs running.
+     */
+    private final AtomicInteger active;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates an engine.
+     *
+     * @param concurrency the number of jobs that may run at once
+     * @param threads     the kind of threads on which to run the jobs
+     */
+    public ProcessingEngine(int concurrency, Threads threads) {
+        this.concurrency = Math.max(1, concurrency);
+        this.queued = new AtomicInteger();
+        this.active = new AtomicInteger();
+
+        ExecutorService virtual = threads == Threads.VIRTUAL
+                                  ? newVirtualThreadExecutor() : null;
+        if ( virtual != null ) {
+            this.executor = virtual;
+            this.threads = Threads.VIRTUAL;
+            this.permits = new Semaphore(this.concurrency, true);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    this.concurrency, this.concurrency, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new WorkerThreadFactory("EDI Processor"));
+            // Let the pool shrink away between bursts of files.
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.threads = Threads.PLATFORM;
+            this.permits = null;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Adds a job to the work queue. Jobs submitted after the engine has been
+     * shut down are dropped.
+     *
+     * @param job the job to run
+     * @return <code>true</code> if the job was queued
+     */
+    public boolean submit(Runnable job) {
+        this.queued.incrementAndGet();
+        try {
+            this.executor.execute(new Job(job));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            this.queued.decrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves the kind of threads the jobs run on, which is
+     * {@link Threads#PLATFORM PLATFORM} if virtual threads were asked for but
+     * are not available.
+     *
+     * @return the kind of threads in use
+     */
+    public Threads getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Retrieves the number of jobs that may run at once.
+     *
+     * @return the concurrency limit
+     */
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Retrieves the number of jobs waiting to start.
+     *
+     * @return the number of queued jobs
+     */
+    public int getQueuedCount() {
+        return this.queued.get();
+    }
+
+    /**
+     * Retrieves the number of jobs running.
+     *
+     * @return the number of active jobs
+     */
+    public int getActiveCount() {
+        return this.active.get();
+    }
+
+    /**
+     * Stops taking new jobs, letting those already queued run.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Stops taking new jobs, drops those still queued and interrupts those
+     * that are running.
+     */
+    public void shutdownNow() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Waits for the jobs to end after the engine has been shut down.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     * @return <code>true</code> if every job has ended, or <code>false</code>
+     *         if the time ran out first
+     * @throws InterruptedException if the wait is interrupted
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Determines whether every job has ended after the engine has been shut
+     * down.
+     *
+     * @return <code>true</code> if the engine has terminated
+     */
+    public boolean isTerminated() {
+        return this.executor.isTerminated();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Creates an executor that starts a virtual thread for each task, if the
+     * runtime supports them.
+     *
+     * @return the executor, or <code>null</code> before Java 21
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Classes  ">
+    /**
+     * Wraps a job to keep count of it and, on virtual threads, to hold it
+     * back until a permit is free.
+     */
+    private class Job implements Runnable {
+        private final Runnable job;
+
+        Job(Runnable job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            if ( permits != null ) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException ex) {
+                    // The engine is being shut down.
+                    queued.decrementAndGet();
+                    return;
+                }
+            }
+
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                this.job.run();
+            } finally {
+                active.decrementAndGet();
+                if ( permits != null ) {
+                    permits.release();
+                }
+            }
+        }
+    }
+    //</editor-fold>
+}
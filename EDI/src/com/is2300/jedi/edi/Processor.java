@@ -23,9 +23,7 @@
 package com.is2300.jedi.edi;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -38,18 +36,34 @@ import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.util.NbPreferences;
 import com.is2300.jedi.edi.gui.options.EDISettingsOptionsPanelController;
-import com.is2300.jedi.edi.validators.FGValidator;
-import com.is2300.jedi.edi.utils.Utils;
-import com.is2300.jedi.edi.validators.EnvelopeValidator;
-import com.is2300.jedi.edi.validators.Validate810Segments;
-import com.is2300.jedi.edi.validators.Validate824Segments;
+import com.is2300.jedi.edi.ack.AcknowledgmentType;
+import com.is2300.jedi.edi.ack.Acknowledgments;
+import com.is2300.jedi.edi.audit.AuditPipeline;
+import com.is2300.jedi.edi.audit.AuditRecord;
+import com.is2300.jedi.edi.audit.AuditWriter;
+import com.is2300.jedi.edi.audit.DuplicateIndex;
+import com.is2300.jedi.edi.db.ConnectionPool;
+import com.is2300.jedi.edi.io.InterchangeBounds;
+import com.is2300.jedi.edi.io.InterchangeLocator;
+import com.is2300.jedi.edi.io.SegmentReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Date;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.util.Exceptions;
@@ -74,113 +88,83 @@ public class Processor {
      */
     private static final String MSG_TITLE = "EDI Processing";
     
+    /**
+     * Numbers the runs started since the module was loaded, so that runs
+     * starting in the same second never share a report or journal file.
+     */
+    private static final AtomicInteger RUNS = new AtomicInteger();
+    
     private final Preferences PREFS = NbPreferences.forModule(
                                        EDISettingsOptionsPanelController.class);
     //</editor-fold>
     
     //<editor-fold desc="  Private Member Fields  ">
     /**
-     * A <code>java.util.List</code> of <code>java.lang.String</code> elements
-     * that holds <strong>all</strong> lines of the incoming EDI transmission
-     * file.
+     * A <code>com.is2300.jedi.edi.io.SegmentReader</code> that streams the
+     * segments of the incoming EDI transmission file to the parser one at a
+     * time, so that the whole file never needs to be held in memory.
      */
-    private List<String> asLines;
+    private SegmentReader reader;
     /**
-     * A <code>java.util.List</code> of <code>java.lang.String</code> elements
-     * that holds the Interchange Control Header and Trailer information for a
-     * single EDI envelope.
-     * <p>
-     * An Interchange Control envelope begins with the ISA EDI Segment and ends
-     * with the IEA EDI Segment. This list will hold both so that validation of
-     * the envelope can be checked.
+     * The incoming EDI transmission file on local disk, or <code>null</code>
+     * if the file could only be opened as a stream.
      */
-    private List<String[]> envelope;
+    private File local;
     /**
-     * A <code>java.util.List</code> of <code>java.lang.String</code> elements
-     * that holds the Functional Group Header and Trailer information for a
-     * single EDI functional group.
-     * <p>
-     * A Functional Group begins with the GS EDI Segment and ends with the GE
-     * EDI Segment. This list will contain both so that validation of the
-     * Functional Group can be checked.
-     */
-    private List<String[]> group;
-    /**
-     * A <code>java.util.List</code> of <code>java.lang.String</code> elements
-     * that holds the Transaction Set information for a single EDI transaction.
-     * <p>
-     * A Transaction Set begins with the ST EDI Segment and ends with the SE
-     * EDI Segment. This list will contain both of those segments, as well as
-     * all of the segments between them. A Transaction Set describes a document
-     * and contains all of the data that document holds.
-     * <p>
-     * Validation on a Transaction Set needs to be handled at multiple levels
-     * and there will be multiple validators used.
+     * A <code>java.lang.Long</code> to keep a running count of how many
+     * segments are contained in a single transmission.
      */
-    private List<String[]> transaction;
+    private Long total_S_Count;
     /**
-     * A <code>java.lang.Integer</code> to keep count of how many transactions
-     * are contained in a functional group. This counter gets reset after each
-     * functional group ends.
+     * A <code>java.lang.Integer</code> to keep a running count of how many
+     * interchange envelopes are contained in a single transmission.
      */
-    private Integer t_Count;
+    private Integer total_E_Count;
     /**
-     * A <code>java.lang.Integer</code> to keep count of how many functional
-     * groups are in an interchange envelope. This counter gets reset after each
-     * envelope ends.
+     * A <code>java.lang.Integer</code> to keep a running count of how many
+     * functional groups are contained in a single transmission.
      */
-    private Integer g_Count;
+    private Integer total_G_Count;
     /**
      * A <code>java.lang.Integer</code> to keep a running count of how many
      * transactions are contained in a single transmission.
      */
     private Integer total_T_Count;
-    /**
-     * A <code>java.lang.Integer</code> to keep count of how many transactions
-     * are contained in a functional group.
-     */
-    private Integer gT_Count;
     /**
      * A <code>java.sql.Connection</code> object for connecting to the MySQL
      * database server.
      */
     private Connection conn;
     /**
-     * A <code>java.sql.Statement</code> object for manipulating the database
-     * once the connection is made.
+     * A <code>com.is2300.jedi.edi.audit.AuditPipeline</code> object that hands
+     * the audit records to a writer thread, which writes them to the database
+     * in batches, once the connection is made.
      */
-    private Statement stmt;
+    private AuditPipeline audits;
     /**
-     * A <code>java.lang.String</code> object for storing the current user's
-     * database server username.
-     */
-    private String uname;
-    /**
-     * A <code>java.lang.String</code> object for storing the current user's
-     * database server password.
-     */
-    private String pwd;
-    /**
-     * A <code>java.lang.String</code> object for storing the name of the 
-     * database on the server.
+     * A <code>java.lang.String</code> object to hold the proper path to the 
+     * remote SFTP or FTPS server from which we need to fetch the incoming EDI
+     * transmission file.
      */
-    private String dbName;
+    private String url;
     /**
-     * A <code>java.lang.String</code> object for storing the name of the
-     * database server.
+     * A <code>java.lang.String</code> object to hold the name of the incoming
+     * EDI transmission file, when it was given to us rather than taken from
+     * the <tt>EDIFilename</tt> setting.
      */
-    private String dbSvr;
+    private String fileName;
     /**
-     * A <code>java.lang.Integer</code> object to hold the port for the database
-     * server.
+     * A <code>com.is2300.jedi.edi.Checkpoint</code> object that records how
+     * far into a local transmission file the audit records have been 
+     * committed, so that an interrupted run can be resumed.
      */
-    private Integer port;
+    private Checkpoint checkpoint;
     /**
-     * A <code>java.lang.String</code> object to hold the proper path to the 
-     * remote SFTP or FTPS server from which we need to fetch the incoming EDI
-     * transmission file.
+     * A <code>com.is2300.jedi.edi.DuplicateFilter</code> object that turns
+     * down the interchanges that have already been processed, and records
+     * the ones that this run commits.
      */
-    private String url;
+    private DuplicateFilter duplicates;
     /**
      * <code>java.util.Calendar</code> object for getting the system date and
      * time for various output messages.
@@ -215,16 +199,62 @@ public class Processor {
      * messages being writen to the Output Window.
      */
     private StringBuilder outBldr;
+    /**
+     * The executor on which the transaction sets are validated while the
+     * parsers carry on reading the file.
+     */
+    private ExecutorService validators;
+    /**
+     * The acknowledgments sent for the functional groups of the file, or
+     * <code>null</code> if none are sent.
+     */
+    private Acknowledgments acks;
+    /**
+     * The name that the report and journal files of this run are given: the
+     * start time, the name of the incoming file and the number of the run.
+     */
+    private String runName;
     //</editor-fold>
     
-    //<editor-fold desc="  Default Constructor  ">
+    //<editor-fold desc="  Constructors  ">
     /**
-     * Constructor for the <code>Processor</code> class. This constructor
-     * initializes the member fields to new <code>java.util.List</code>s of
-     * <code>java.lang.String</code> objects. Once the class has been 
-     * initialized, the the methods may be used to store data to the lists.
+     * Constructor for the <code>Processor</code> class, which processes the
+     * incoming EDI transmission file named by the <tt>EDIFilename</tt>
+     * setting, fetched from the directory given by the <tt>SvrURL</tt>
+     * setting. The whole run happens within the constructor: the file is
+     * parsed and validated, its audit records are written and the report is
+     * saved before it returns.
      */
     public Processor() {
+        this(NbPreferences.forModule(EDISettingsOptionsPanelController.class)
+                .get("SvrURL", "/home/sean/Public/edi/incoming"));
+    }
+    
+    /**
+     * Constructor for the <code>Processor</code> class, which fetches the
+     * incoming EDI transmission file from a trading partner's directory. This
+     * allows the directories of several trading partners to be processed at
+     * the same time, each by a <code>Processor</code> of its own.
+     * 
+     * @param directory the directory from which to fetch the incoming EDI
+     *                  transmission file
+     */
+    public Processor(String directory) {
+        this(directory, null);
+    }
+    
+    /**
+     * Constructor for the <code>Processor</code> class, which processes a
+     * particular incoming EDI transmission file in a trading partner's
+     * directory, such as one found by a <code>DirectoryWatcher</code>.
+     * 
+     * @param directory the directory from which to fetch the incoming EDI
+     *                  transmission file
+     * @param fileName  the name of the incoming EDI transmission file, or
+     *                  <code>null</code> to use the <tt>EDIFilename</tt>
+     *                  setting
+     */
+    public Processor(String directory, String fileName) {
         
         // First thing to do is to initialize our output builder object.
         this.outBldr = new StringBuilder(); // Now it is ready to use.
@@ -241,52 +271,26 @@ public class Processor {
         this.outBldr.append(this.fmt.format(this.cal.getTime()));
         this.outBldr.append(": Initializing EDI processor...\n");
         
-        // Initialize the various lists in this class.
-        this.envelope = new ArrayList();
-        this.group = new ArrayList();
-        this.transaction = new ArrayList();
-        
-        // Initialize the various Integers in this class.
-        this.t_Count = 0;
-        this.g_Count = 0;
+        // Initialize the various counters in this class.
+        this.total_S_Count = 0L;
+        this.total_E_Count = 0;
+        this.total_G_Count = 0;
         this.total_T_Count = 0;
-        this.gT_Count = 0;
-        
-        // Initialize the database user information.
-        this.uname = "_edi";
-        this.pwd = "3d1_u53r";
-        /*^^^^^^^^^^^^^^^^^^^^**************************************************
-         * This user is a special user that needs to be created on the database*
-         * server at the client site. This user is only for use in processing  *
-         * the EDI transmissions and for nothing else. _edi user has full      *
-         * access to the is_jedi database for creating and updating the data   *
-         * within the tables. _edi CANNOT delete the data, nor can it drop     *
-         * tables, nor create users/grant privileges. This user only servers   *
-         * the purposes of transferring retainable data from the EDI trans-    *
-         * missions to the appropriate database tables, firing any database    *
-         * triggers that may be present.                                       *
-         *                                                                     *
-         * Furthermore, the _edi user SHOULD NEVER be used as a standard user  *
-         * on the database server within jEDI Master. This user does not have  *
-         * the appropriate rights for such use and can read *ALL* database     *
-         * tables, which is not secure for standard users to be able to do.    *
-         **********************************************************************/
-        
-        // Initialize our database server information. This module should be 
-        //+ installed on the same machine as the database server.
-        this.dbSvr = Preferences.userRoot().get("SvrPath", "localhost");
-        // Retrieve the port number for the database server from the settings
-        //+ file for the user.
-        this.port = Preferences.userRoot().getInt("SvrPort", 3306);
-        // This is the name of the database on the database server that stores
-        //+ all data forjEDI Master.
-        this.dbName = "is_jedi";    
         
         // Last thing before shepherding the process is to store the path to the
         //+ SFTP or FTPS server from which to fetch the incoming EDI trans-
         //+ mission file.
-        this.url = Preferences.userRoot().get("SvrURL", 
-                                              "/home/sean/Public/edi/incoming");
+        this.url = directory;
+        this.fileName = fileName;
+        
+        // Several runs may start in the same second, such as those of the 
+        //+ trading partners' directories, so each run's files are named for
+        //+ its incoming file and its number as well as its start time.
+        SimpleDateFormat dt = new SimpleDateFormat("yyyy-MM-dd.HH-mm-ss");
+        this.runName = dt.format(this.start.getTime()) + "."
+                + (fileName != null ? fileName 
+                        : this.PREFS.get("EDIFilename", "incoming.edi"))
+                + "." + RUNS.incrementAndGet();
         
         // Begin shepherding the EDI transmission file through the parsing
         //+ process.
@@ -314,103 +318,75 @@ public class Processor {
         // We need to set everything to null, so that we can be garbage col-
         //+ lected.
         this.conn = null;
-        this.dbName = null;
-        this.dbSvr = null;
-        this.envelope = null;
-        this.group = null;
-        this.port = null;
-        this.pwd = null;
-        this.stmt = null;
-        this.transaction = null;
-        this.uname = null;
+        this.audits = null;
         this.url = null;
-        this.asLines = null;
+        this.fileName = null;
+        this.runName = null;
+        this.checkpoint = null;
+        this.reader = null;
+        this.local = null;
         this.cal = null;
         this.end = null;
         this.fmt = null;
         this.io = null;
         this.start = null;
-        this.t_Count = null;
+        this.total_S_Count = null;
+        this.total_E_Count = null;
+        this.total_G_Count = null;
         this.total_T_Count = null;
-        this.gT_Count = null;
         this.time = null;
     }
     //</editor-fold>
     
-    //<editor-fold desc="  Property Adding Methods  ">
-    /**
-     * Adds a <code>java.lang.String</code> array to the <code>java.util.List
-     * </code>.
-     * <p>
-     * Typically, this value will be the <code>java.lang.String</code> array
-     * from the split line of the incoming EDI transmission file. The only times
-     * that a value should be added to this field is when element zero (0) of 
-     * the array contains either "ISA" or "IEA".
-     * 
-     * @param value the split line of the Interchange Control Header or Footer
-     *              from the incoming EDI transmission file.
-     */
-    public void addEnvelope(String[] value) {
-        this.envelope.add(value);
-    }
-    /**
-     * Adds a <code>java.lang.String</code> array to the <code>java.util.List
-     * </code>.
-     * <p>
-     * Typically, this value will be the <code>java.lang.String</code> array
-     * from the split line of the incoming EDI transmission file. The only times
-     * that a value should be added to this field is when element zero (0) of
-     * the array contains either "GS" or "GE".
-     * 
-     * @param value the split line of the Functional Group Header or Footer from
-     *              the incoming EDI transmission file.
-     */
-    public void addGroup(String[] value) {
-        this.group.add(value);
-    }
-    /**
-     * Adds a <code>java.lang.String</code> array to the <code>java.util.List
-     * </code>.
-     * <p>
-     * Typically, this value will be the <code>java.lang.String</code> array 
-     * from the split line of the incoming EDI transmission file. The first line
-     * that is added to this field is when element zero (0) of the array 
-     * contains "ST". Every segment after the "ST" segment, up to and including
-     * the segment "SE", should also be added to this field.
-     * 
-     * @param value the split line of the Transaction Set Header, and all 
-     *              segments up to and including the Transaction Set Trailer.
-     */
-    public void addTransaction(String[] value) {
-        this.transaction.add(value);
-    }
-    //</editor-fold>
-    
     //<editor-fold desc="  Database Access Functions  ">
     /**
      * A <code>private</code> method for setting up the database connection to
      * the server. This method should be the first method called from the 
      * shepherding function.
+     * <p>
+     * The connection is borrowed from the module's connection pool, and must
+     * be given back by {@link #dbRelease()} once the run is over.
      */
     private void dbSetup() {
         
-        // Build the connection string.
-        String connection = "jdbc:mysql://" + this.dbSvr + ":3306/";
-        connection += this.dbName;
-        
         try {
             
-            // Load the MySQL database driver.
-            Class.forName("com.mysql.jdbc.Driver");
+            // Borrow a connection to the database server from the pool, which
+            //+ was set up when the module was restored.
+            ConnectionPool pool = Installer.getConnectionPool();
+            if ( pool == null ) {
+                throw new SQLException("The database connection pool is not "
+                        + "available.");
+            }
+            this.conn = pool.getConnection();
             
-            // Create a connection to the database server.
-            this.conn = DriverManager.getConnection(
-                        connection, this.uname, this.pwd);
+            // Prepare our audit pipeline for use. The parsers only publish
+            //+ the audit records; a writer thread of its own sends them to the
+            //+ database. Should the database fall a whole queue behind, the
+            //+ settings decide whether the parsers wait or the records are
+            //+ spilled to a journal file next to the report.
+            int capacity = this.PREFS.getInt("AuditQueueSize", 
+                                             AuditPipeline.DEFAULT_CAPACITY);
+            AuditPipeline.Overflow overflow = 
+                    "spill".equalsIgnoreCase(this.PREFS.get("AuditOverflow", 
+                                                            "block"))
+                    ? AuditPipeline.Overflow.SPILL 
+                    : AuditPipeline.Overflow.BLOCK;
+            File journal = new File(this.PREFS.get("OutputPath", 
+                                    System.getProperty("user.home")), 
+                                    this.runName + ".journal");
+            this.audits = new AuditPipeline(new AuditWriter(this.conn), 
+                                            capacity, overflow, journal);
             
-            // Prepare our Statement object for use.
-            this.stmt = this.conn.createStatement();
+            // Have each interchange recorded once its audit records are
+            //+ committed, so that it is turned down if it is ever sent again.
+            DuplicateIndex index = Installer.getDuplicateIndex();
+            if ( index != null ) {
+                this.duplicates = new DuplicateFilter(index);
+                this.audits.addListener(this.duplicates);
+            }
             
-        } catch (ClassNotFoundException | SQLException ex) {
+        } catch (SQLException ex) {
             
             // Handle the Exception.
             // We'll use the NotifyDescriptor API to display the error to the
@@ -430,297 +406,126 @@ public class Processor {
     }
     
     /**
-     * This method adds an EDI transmission envelope to the database audits
-     * table. The transmissions should be maintained for a period after the
-     * transmission arrives, in case there are any issues with the transmission
-     * that are not discovered until later.
-     * <p>
-     * The EDI transmission audits are broken into three (3) tables on the
-     * database:
-     * <ul>
-     *  <li>is_edi_audits: This table stores audit information about the EDI
-     *      transmission envelopes. The data collected are:
-     *      <ul>
-     *          <li>Interchange Control Number (ISA13)</li>
-     *          <li>Interchange Date (ISA09) and Interchange Time (ISA10)</li>
-     *          <li>Interchange Sender ID (ISA06)</li>
-     *          <li>Interchange Receiver ID (ISA08)</li>
-     *          <li>Functional Group Count (counted internally)</li>
-     *          <li>Error Count (determined via validation algorithms)</li>
-     *      </ul></li>
-     *  <li>is_edi_audit_grp_details: This table stores audit information about
-     *      each Functional Group within an envelope.</li>
-     *  <li>is_edi_audit_doc_details: This table stores audit information about
-     *      each transaction within a functional group.</li>
-     * </ul>
-     * @see com.is2300.jedi.edi.Processor.auditGroup for more details about the
-     * Functional Group auditing data collected.
-     * @see com.is2300.jedi.edi.Processor.auditTransaction for more details 
-     * about the Transaction auditing data collected.
-     * 
-     * @param ctlNumber Interchange Control Number from the ISA13 field
-     * @param date  Interchange Date from the ISA09 field, along with the 
-     *              Interchange Time from the ISA10 field.
-     * @param sender    Interchange Sender ID from the ISA06 field
-     * @param rcvr  Interchange Receiver ID from the ISA08 field
-     * @param grpCount  Total number of Functional Groups contained in the 
-     *                  envelope.
-     * @param errCount  Total number of errors discovered through validation in
-     *                  the envelope. This only counts interchange envelope
-     *                  errors...Group and Transaction errors are tracked in 
-     *                  those tables.
+     * Gives the database connection back to the pool. This needs to be called
+     * once the audit records have been drained.
      */
-    private void auditEnvelope(Integer ctlNumber, 
-                               Date date, 
-                               String sender,
-                               String rcvr, 
-                               Integer grpCount, 
-                               Integer errCount) {
-        // Create a StringBuilder object in which to build the SQl statement to
-        //+ use for storing the data to the is_edi_audits table.
-        StringBuilder sql = new StringBuilder();
-        
-        // Convert our date to a SQL date.
-        java.sql.Date sqlDate = new java.sql.Date(date.getTime());
-        
-        // Start the SQL string with the INSERT statement, because we will be
-        //+ adding a new record to the data table.
-        sql.append("INSERT INTO `is_jedi`.`is_edi_audits` VALUES(0,\n");
-        
-        // Now, add in the various values that we will need to store.
-//        sql.append("`TxCtlNum`='");
-        sql.append(ctlNumber);
-        sql.append(",\n");
-//        sql.append("`TxDate`='");
-        sql.append("'");
-        
-        // We need to pause here to build the date. The date should be stored
-        //+ as a string in the format YYMMDD HHMMSS. To accomplish this, we need
-        //+ to use our SimpleDateFormat to create the properly formatted string.
-        SimpleDateFormat df = new SimpleDateFormat("yy-MM-dd");
-        
-        // Now that we've created the proper format for our date to be stored in
-        //+ the database, we need to add it to our INSERT statement.
-        sql.append(df.format(date.getTime()));
-        sql.append("',\n");
+    private void dbRelease() {
+        // The interchanges that were not recorded may be sent again.
+        if ( this.duplicates != null ) {
+            this.duplicates.release();
+            this.duplicates = null;
+        }
         
-        // Next, continue adding the data to the table.
-//        sql.append("`TxSenderID`='");
-        sql.append("'");
-        sql.append(sender);
-        sql.append("',\n");
-//        sql.append("`TxRcvrID`='");
-        sql.append("'");
-        sql.append(rcvr);
-        sql.append("',\n");
-//        sql.append("`GrpCnt`=");
-        sql.append(grpCount);
-        sql.append(",\n");
-//        sql.append("`ErrCnt`=");
-        sql.append(errCount);
-        sql.append(");");
+        if ( this.conn == null ) {
+            return;
+        }
         
         try {
-            // Now that we've got our statement built, we need to execute it on the
-            //+ database server.
-            this.stmt.execute(sql.toString());
+            this.conn.close();
         } catch (SQLException ex) {
-            Exceptions.printStackTrace(ex);
-            this.cal = Calendar.getInstance();
-            this.time = this.fmt.format(this.cal.getTime());
-            this.io.getOut().println(time + ":  The following SQL Exception "
-                    + "was caught:");
-            ex.printStackTrace(this.io.getErr());
-            this.outBldr.append(this.time);
-            this.outBldr.append(":  The following SQL Exception was caught:\n\t");
-            this.outBldr.append(ex.getLocalizedMessage());
-            this.outBldr.append("\n");
+            this.reportException(ex);
         }
+        this.conn = null;
     }
-
+    
     /**
-     * This method adds an EDI transmission envelope to the database audits
-     * table. The transmissions should be maintained for a period after the
-     * transmission arrives, in case there are any issues with the transmission
-     * that are not discovered until later.
-     * <p>
-     * The EDI transmission audits are broken into three (3) tables on the
-     * database:
-     * <ul>
-     *  <li>is_edi_audits: This table stores audit information about the EDI
-     *      transmission envelopes. The data collected are:
-     *  <li>is_edi_audit_grp_details: This table stores audit information about
-     *      each Functional Group within an envelope.</li>
-     *      <ul>
-     *          <li>Functional Group Control Number (GS06)</li>
-     *          <li>Interchange Control Number (ISA13)</li>
-     *          <li>Functional Group Code (GS01)</li>
-     *          <li>Transaction Count (GE01)</li>
-     *          <li>Error Count (determined via validation algorithms)</li>
-     *      </ul></li>
-     *  <li>is_edi_audit_doc_details: This table stores audit information about
-     *      each transaction within a functional group.</li>
-     * </ul>
-     * @see com.is2300.jedi.edi.Processor.auditEnvelope for more details about 
-     * the transaction envelope auditing data collected.
-     * @see com.is2300.jedi.edi.Processor.auditTransaction for more details 
-     * about the Transaction auditing data collected.
+     * Publishes an audit record, gathered by an <code>InterchangeParser</code>,
+     * for writing to the appropriate audits table. The record is written to the
+     * database by the audit pipeline's writer thread, so this method only waits
+     * when the pipeline's queue is full and its overflow policy is to block.
      * 
-     * @param ctlNumber Functional Group Control Number from the GS06 field
-     * @param txCtlNumber  Interchange Control Number from the ISA13 field
-     * @param grpCode   Functional Group Code from the GS01 field
-     * @param docCount  Count of documents in the Functional Group from the GE01
-     *                  field
-     * @param errCount  Total number of errors discovered through validation in
-     *                  the Functional Group. This only counts Functional Group
-     *                  errors...Envelope and Transaction errors are tracked in 
-     *                  those tables.
+     * @param record the envelope, group or document audit record
      */
-    private void auditGroup(Integer ctlNumber, 
-                            Integer txCtlNumber, 
-                            String grpCode,
-                            Integer docCount, 
-                            Integer errCount) {
-        // Create a StringBuilder object in which to build the SQl statement to
-        //+ use for storing the data to the is_edi_audits table.
-        StringBuilder sql = new StringBuilder();
-        
-        // Start the SQL string with the INSERT statement, because we will be
-        //+ adding a new record to the data table.
-        sql.append("INSERT INTO `is_jedi`.`is_edi_audit_grp_details`");
-        sql.append(" VALUES(0,\n");
-        
-        // Now, add in the various values that we will need to store.
-//        sql.append("`GrpCtlNum`='");
-        sql.append(ctlNumber);
-        sql.append(",\n");
-//        sql.append("`TxCtlNum`='");
-        sql.append(txCtlNumber);
-        sql.append(",\n'");
-//        sql.append("`GrpCode`='");
-        sql.append(grpCode);
-        sql.append("',\n");
-//        sql.append("`DocCnt`='");
-        sql.append(docCount);
-        sql.append(",\n");
-//        sql.append("`ErrCnt`=");
-        sql.append(errCount);
-        sql.append(");");
+    private void audit(AuditRecord record) {
+        // If the database could not be reached, there is nowhere to write.
+        if ( this.audits == null ) {
+            return;
+        }
         
         try {
-            // Now that we've got our statement built, we need to execute it on the
-            //+ database server.
-            this.stmt.execute(sql.toString());
-        } catch (SQLException ex) {
-            Exceptions.printStackTrace(ex);
-            this.cal = Calendar.getInstance();
-            this.time = this.fmt.format(this.cal.getTime());
-            this.io.getOut().println(time + ":  The following SQL Exception "
-                    + "was caught:");
-            ex.printStackTrace(this.io.getErr());
-            this.outBldr.append(this.time);
-            this.outBldr.append(":  The following SQL Exception was caught:\n\t");
-            this.outBldr.append(ex.getLocalizedMessage());
-            this.outBldr.append("\n");
+            this.audits.publish(record);
+        } catch (IOException ex) {
+            this.reportException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
-
+    
     /**
-     * This method adds an EDI transmission envelope to the database audits
-     * table. The transmissions should be maintained for a period after the
-     * transmission arrives, in case there are any issues with the transmission
-     * that are not discovered until later.
-     * <p>
-     * The EDI transmission audits are broken into three (3) tables on the
-     * database:
-     * <ul>
-     *  <li>is_edi_audits: This table stores audit information about the EDI
-     *      transmission envelopes. The data collected are:
-     *  <li>is_edi_audit_grp_details: This table stores audit information about
-     *      each Functional Group within an envelope.</li>
-     *  <li>is_edi_audit_doc_details: This table stores audit information about
-     *      each transaction within a functional group.</li>
-     *      <ul>
-     *          <li>Document Control Number (ST02)</li>
-     *          <li>Interchange Control Number (ISA13)</li>
-     *          <li>Functional Group Control Number (GS06)</li>
-     *          <li>Document Type (ST01)</li>
-     *          <li>Document Count (GE01)</li>
-     *          <li>Error Count (determined via validation algorithms)</li>
-     *          <li>Accepted (boolean whether accepted or rejected)</li>
-     *      </ul></li>
-     * </ul>
-     * @see com.is2300.jedi.edi.Processor.auditGroup for more details about the
-     * Functional Group auditing data collected.
-     * @see com.is2300.jedi.edi.Processor.auditEnvelope for more details 
-     * about the transaction Envelope auditing data collected.
-     * 
-     * @param ctlNumber Document Control Number from the ST02 field
-     * @param txCtlNumber  Interchange Control Number from the ISA13 field.
-     * @param grpCtlNumber Functional Group Control Number from the GS06 field
-     * @param docType   Document Type Code from the ST01 field
-     * @param docCount  Total number of documents contained in the transaction.
-     * @param errCount  Total number of errors discovered through validation in
-     *                  the envelope. This only counts interchange envelope
-     *                  errors...Group and Transaction errors are tracked in 
-     *                  those tables.
-     * @param accepted  True if the document was accepted, false if rejected.
+     * Waits for the audit pipeline to write every audit record it was given,
+     * including any that were spilled to the journal file, and reports the
+     * outcome. This needs to be called once all of the records for the 
+     * transmission have been published, and before the report is saved.
+     * Once drained, the pipeline is let go of, so calling this again does
+     * nothing.
      */
-    private void auditTransaction(Integer ctlNumber, 
-                            Integer txCtlNumber, 
-                            Integer grpCtlNumber,
-                            String docType, 
-                            Integer docCount,
-                            Integer errCount,
-                            Boolean accepted) {
-        // Create a StringBuilder object in which to build the SQl statement to
-        //+ use for storing the data to the is_edi_audits table.
-        StringBuilder sql = new StringBuilder();
+    private void drainAudits() {
+        if ( this.audits == null ) {
+            return;
+        }
+        
+        try {
+            for ( Exception ex : this.audits.drain() ) {
+                this.reportException(ex);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         
-        // Start the SQL string with the INSERT statement, because we will be
-        //+ adding a new record to the data table.
-        sql.append("INSERT INTO `is_jedi`.`is_edi_audit_doc_details`");
-        sql.append(" VALUES(0,\n");
+        this.cal = Calendar.getInstance();
+        this.time = this.fmt.format(this.cal.getTime());
+        this.io.getOut().println(time + ":  Audit records written:  " 
+                                         + this.audits.getWrittenCount());
+        this.outBldr.append(this.time);
+        this.outBldr.append(":  Audit records written:  ");
+        this.outBldr.append(this.audits.getWrittenCount());
+        this.outBldr.append("\n");
         
-        // Now, add in the various values that we will need to store.
-//        sql.append("`DocCtlNum`='");
-        sql.append(ctlNumber);
-        sql.append(",\n");
-//        sql.append("`TxCtlNum`='");
-        sql.append(txCtlNumber);
-        sql.append(",\n");
-//        sql.append("`GrpCtlNum`='");
-        sql.append(grpCtlNumber);
-        sql.append(",\n'");
-//        sql.append("`DocType`='");
-        sql.append(docType);
-        sql.append("',\n");
-//        sql.append("`DocCnt`='");
-        sql.append(docCount);
-        sql.append(",\n");
-//        sql.append("`ErrCnt`=");
-        sql.append(errCount);
-        sql.append(",\n");
-//        sql.append("`Accepted`=");
-        sql.append(accepted);
-        sql.append(");");
+        if ( this.audits.getRolledBackCount() > 0 ) {
+            this.io.getOut().println(time + ":  Audit records rolled back:  " 
+                                         + this.audits.getRolledBackCount());
+            this.outBldr.append(this.time);
+            this.outBldr.append(":  Audit records rolled back:  ");
+            this.outBldr.append(this.audits.getRolledBackCount());
+            this.outBldr.append("\n");
+        }
         
-        try {
-            // Now that we've got our statement built, we need to execute it on the
-            //+ database server.
-            this.stmt.execute(sql.toString());
-        } catch (SQLException ex) {
-            Exceptions.printStackTrace(ex);
-            this.cal = Calendar.getInstance();
-            this.time = this.fmt.format(this.cal.getTime());
-            this.io.getOut().println(time + ":  The following SQL Exception "
-                    + "was caught:");
-            ex.printStackTrace(this.io.getErr());
+        if ( this.audits.getSpilledCount() > 0 ) {
+            this.io.getOut().println(time + ":  Audit records spilled to "
+                    + this.audits.getJournalFile() + ":  " 
+                    + this.audits.getSpilledCount());
             this.outBldr.append(this.time);
-            this.outBldr.append(":  The following SQL Exception was caught:\n\t");
-            this.outBldr.append(ex.getLocalizedMessage());
+            this.outBldr.append(":  Audit records spilled to ");
+            this.outBldr.append(this.audits.getJournalFile());
+            this.outBldr.append(":  ");
+            this.outBldr.append(this.audits.getSpilledCount());
             this.outBldr.append("\n");
         }
+        
+        this.audits = null;
+    }
+    
+    /**
+     * Reports an exception met while writing the audit records to the Output
+     * Window and the report file.
+     * 
+     * @param ex the exception caught
+     */
+    private void reportException(Exception ex) {
+        String kind = ex instanceof SQLException ? "SQL Exception" 
+                                                 : "Exception";
+        Exceptions.printStackTrace(ex);
+        this.cal = Calendar.getInstance();
+        this.time = this.fmt.format(this.cal.getTime());
+        this.io.getOut().println(time + ":  The following " + kind
+                + " was caught:");
+        ex.printStackTrace(this.io.getErr());
+        this.outBldr.append(this.time);
+        this.outBldr.append(":  The following ");
+        this.outBldr.append(kind);
+        this.outBldr.append(" was caught:\n\t");
+        this.outBldr.append(ex.getLocalizedMessage());
+        this.outBldr.append("\n");
     }
     //</editor-fold>
 
@@ -746,22 +551,139 @@ public class Processor {
         // The first thing that we need to do is to setup the database access.
         this.dbSetup();
         
-        // Handle the file. This includes retrieving the file from the SFTP or
-        //+ FTPS server and storing it on a local disk for easier access. Once
-        //+ the file is local, this method will handle the processing of the 
-        //+ file, either internally or by outsourcing to other methods.
-        this.handleFile();
+        try {
+            // Handle the file. This includes retrieving the file from the SFTP
+            //+ or FTPS server and storing it on a local disk for easier access.
+            //+ Once the file is local, this method will handle the processing
+            //+ of the file, either internally or by outsourcing to other 
+            //+ methods.
+            this.handleFile();
+
+            // Now that the file has been opened for streaming, we need to 
+            //+ process the file appropriately. To do this, we are going to pass
+            //+ control to the parser() method, which pulls the segments as it
+            //+ goes.
+            this.parser();
+
+            // The parsers are done, but the audit writer may still be catching
+            //+ up. Wait for it, so that the report tells the whole story.
+            this.drainAudits();
+
+            // With every audit record committed or rolled back, the checkpoint
+            //+ is either no longer needed, or tells the next run where to 
+            //+ resume.
+            this.completeCheckpoint();
+        } finally {
+            // Stop the audit writer thread, if the run ended before it could
+            //+ be drained above; otherwise it would poll its queue forever.
+            this.drainAudits();
+            
+            // Give the database connection back for the next run, however the
+            //+ run ended. A run that fails without giving it back would leave
+            //+ the pool one connection short for good.
+            this.dbRelease();
+
+            ////////////////////////////////////////////////////////////////////
+            //           K E E P   A S   T H E   L A S T   L I N E            //
+            ////////////////////////////////////////////////////////////////////
+            // Destroy ourself.
+            this.selfDestruct();
+        }
+    }
+    
+    /**
+     * Opens the checkpoint of the local transmission file, and determines
+     * where in the file to start. If an earlier run on the same file was cut
+     * short, this is just past the last interchange whose audit records it
+     * committed; otherwise, it is the start of the file.
+     * <p>
+     * Without a database there is nothing to resume, so the file is then 
+     * always read from the start.
+     * 
+     * @return the offset within the file at which to start reading
+     */
+    private long resumeOffset() {
+        if ( this.audits == null ) {
+            return 0L;
+        }
+        
+        try {
+            File dir = new File(this.PREFS.get("OutputPath", 
+                               System.getProperty("user.home")), "checkpoints");
+            this.checkpoint = Checkpoint.open(dir, this.local);
+        } catch (IOException ex) {
+            this.reportException(ex);
+            return 0L;
+        }
+        
+        // Let the checkpoint follow the commits of the audit records.
+        this.audits.addListener(this.checkpoint);
+        
+        long offset = this.checkpoint.getOffset();
+        if ( offset > 0 ) {
+            this.cal = Calendar.getInstance();
+            this.time = this.fmt.format(cal.getTime());
+            this.io.getOut().println(time + ":  Resuming at byte " + offset 
+                    + "; the interchanges before it were already recorded.");
+            this.outBldr.append(this.time);
+            this.outBldr.append(":  Resuming at byte ");
+            this.outBldr.append(offset);
+            this.outBldr.append("; the interchanges before it were already "
+                                                              + "recorded.\n");
+        }
+        return offset;
+    }
+    
+    /**
+     * Readies the acknowledgments to send for the functional groups of the
+     * file, if the settings turn them on. They are off until then, as an
+     * acknowledgment goes straight back to the trading partner, and no
+     * rejection should go out before the partner's documents have been seen
+     * to pass validation. They are written into the "outbound" directory 
+     * under the output path, unless the settings name another one.
+     * 
+     * @return the acknowledgments to send, or <code>null</code> if none are
+     *         sent
+     */
+    private Acknowledgments acknowledgments() {
+        if ( !this.PREFS.getBoolean("SendAcks", false) ) {
+            return null;
+        }
         
-        // Now that the file has been opened and is read into our List variable,
-        //+ we need to process the file appropriately. To do this, we are going 
-        //+ to pass control to the parser() method.
-        this.parser();
+        File dir = new File(this.PREFS.get("AckPath", new File(
+                this.PREFS.get("OutputPath", System.getProperty("user.home")),
+                "outbound").getPath()));
+        AcknowledgmentType type = "999".equals(this.PREFS.get("AckType", "997"))
+                                        ? AcknowledgmentType.IMPLEMENTATION
+                                        : AcknowledgmentType.FUNCTIONAL;
         
-        ////////////////////////////////////////////////////////////////////////
-        //             K E E P   A S   T H E   L A S T   L I N E              //
-        ////////////////////////////////////////////////////////////////////////
-        // Destroy ourself.
-        this.selfDestruct();
+        try {
+            return new Acknowledgments(dir, type);
+        } catch (IOException ex) {
+            this.reportException(ex);
+            return null;
+        }
+    }
+    
+    /**
+     * Removes the checkpoint once the audit records of the whole file have
+     * been committed. If an interchange failed, the checkpoint is kept and 
+     * the next run on the file resumes at the failed interchange.
+     */
+    private void completeCheckpoint() {
+        if ( this.checkpoint == null || this.checkpoint.complete() ) {
+            return;
+        }
+        
+        this.cal = Calendar.getInstance();
+        this.time = this.fmt.format(cal.getTime());
+        this.io.getOut().println(time + ":  Checkpoint kept at byte " 
+                + this.checkpoint.getOffset() + "; the next run on this file "
+                + "resumes there.");
+        this.outBldr.append(this.time);
+        this.outBldr.append(":  Checkpoint kept at byte ");
+        this.outBldr.append(this.checkpoint.getOffset());
+        this.outBldr.append("; the next run on this file resumes there.\n");
     }
     
     /**
@@ -778,9 +700,11 @@ public class Processor {
         this.outBldr.append(this.time);
         this.outBldr.append(":  Retrieving file(s)...\n");
         
-        // Retrieve the path to the incoming EDI file from the settings.
-        String path = this.PREFS.get("SvrURL", "/");
-        String fileName = this.PREFS.get("EDIFilename", "incoming.edi");
+        // The directory this run processes, which is the SvrURL setting only
+        //+ for the default run; a trading partner's run has its own.
+        String path = this.url;
+        String fileName = this.fileName != null ? this.fileName 
+                        : this.PREFS.get("EDIFilename", "incoming.edi");
         
         try {
             URL url = new URL(path);
@@ -805,10 +729,12 @@ public class Processor {
         this.outBldr.append("\n");
         
         // Create a FileObject object for the file.
-        FileObject file = FileUtil.toFileObject(new File(url + "/" + fileName));
+        FileObject file = FileUtil.toFileObject(new File(path + "/" + fileName));
         
-        // Verify that the file exists.
-        if ( file.isValid() ) {
+        // Verify that the file exists. There is no FileObject at all for a
+        //+ file that is not there, which is the usual case for a scheduled
+        //+ run that finds nothing waiting.
+        if ( file != null && file.isValid() ) {
             // Handle all processing here... \\
             this.cal = Calendar.getInstance();
             this.time = this.fmt.format(cal.getTime());
@@ -817,11 +743,31 @@ public class Processor {
             this.outBldr.append(":  Incoming file is valid...\n");
             
             try {
-                this.asLines = file.asLines();
-                this.io.getOut().println("\tLines: " + asLines.size());
-                this.outBldr.append("\tLines: ");
-                this.outBldr.append(asLines.size());
-                this.outBldr.append("\n");
+                // Open a streaming reader on the file. The segments are pulled
+                //+ from the file by the parser() method as it needs them, so
+                //+ that we never have to hold the whole file in memory. If the
+                //+ file is on local disk, large files may be mapped into memory
+                //+ instead, when the settings ask for it.
+                this.local = FileUtil.toFile(file);
+                
+                if ( this.local != null ) {
+                    this.reader = SegmentReader.open(this.local, 
+                            this.resumeOffset(), 
+                            this.PREFS.getBoolean("MappedInput", false));
+                } else {
+                    this.reader = new SegmentReader(Channels.newChannel(
+                                                       file.getInputStream()));
+                }
+                
+                if ( this.reader.isMapped() ) {
+                    this.cal = Calendar.getInstance();
+                    this.time = this.fmt.format(cal.getTime());
+                    this.io.getOut().println(time + ":  Incoming file is "
+                                                  + "mapped into memory...");
+                    this.outBldr.append(this.time);
+                    this.outBldr.append(":  Incoming file is mapped into "
+                                                              + "memory...\n");
+                }
             } catch (IOException ex) {
                 Exceptions.printStackTrace(ex);
                 this.cal = Calendar.getInstance();
@@ -833,261 +779,260 @@ public class Processor {
                 this.outBldr.append("\n\t");
                 this.outBldr.append(ex.getLocalizedMessage());
                 ex.printStackTrace(this.io.getErr());
-            } finally {
-                // Now, we need to parse out the data that we just brought into
-                //+ the list "asLines". To do this, return to the shepherding
-                //+ method.
-                return;
             }
             
+        } else {
+            this.cal = Calendar.getInstance();
+            this.time = this.fmt.format(cal.getTime());
+            this.io.getOut().println(time + ":  No incoming file found...");
+            this.outBldr.append(this.time);
+            this.outBldr.append(":  No incoming file found...\n");
         }
     }
     
     /**
-     * This method handles all file parsing. In this method, the 
-     * <code>java.util.List&lt;T&gt;</code> created in the <code>handleFile()
-     * </code> method will get parsed into its derivative fields, then stored
-     * into the appropriate List. Finally, this method will call the correct
-     * document algorithm for the document type currently being processed.
+     * This method handles all file parsing. In this method, the segments 
+     * streamed by the <code>SegmentReader</code> opened in the <code>
+     * handleFile()</code> method are handed to an <code>InterchangeParser
+     * </code>, which validates the envelopes, groups and transaction sets and
+     * gathers the audit records for them.
+     * <p>
+     * When the file is on local disk, it is first pre-scanned for the bounds
+     * of its interchanges. The interchanges are independent of one another,
+     * so each one is then parsed on a pool of worker threads, and the reports
+     * are merged back together in file order. Otherwise, the stream is parsed
+     * from start to finish on this thread.
+     * <p>
+     * Either way, the transaction sets are validated on a separate, bounded
+     * pool of threads, so that validation overlaps with reading the file. When
+     * that pool falls behind, the parser validates the next transaction set
+     * itself rather than queuing up more work.
      */
     private void parser() {
         
-        // Declare an array of type String in which to store our fields.
-        String[] fields;
-        
-        // Declare a variable to hold a message text for validation messages.
-        String msg;
-        
-        // Declare some validation flags and default them to invalid.
-        Boolean validEnv = false;
-        Boolean validGrp = false;
-        Boolean validTSet = false;
-        Boolean validSeg = false;
-        
-        // Declare two variables: one (1) for transaction control number and one
-        //+ (1) for group control number.
-        Integer txCtlNum = 0;
-        Integer grpCtlNum = 0;
-        
-        // Declare counters for error for the envelopes, groups and docs.
-        Integer envErrCnt = 0;
-        Integer grpErrCnt = 0;
-        Integer docErrCnt = 0;
-        
-        // We need to loop through the list of lines from the file and split 
-        //+ them into their individual fields. Once they are split into the
-        //+ fields, we need to determine what the line represents and store the
-        //+ fields in the appropriate place. Once they are stored, we need to
-        //+ move on to the next line.
+        // We need to loop through the segments from the file, determine what
+        //+ each one represents and validate it appropriately.
         this.cal = Calendar.getInstance();
         this.time = this.fmt.format(cal.getTime());
         this.io.getOut().println(this.time + ":  Commencing parsing...");
         this.outBldr.append(this.time);
         this.outBldr.append(": Commencing parsing...\n");
-        for ( String line : asLines ) {
-            fields = line.split("\\*");
+        
+        // If the file could not be opened, there is nothing to parse.
+        if ( this.reader == null ) {
+            return;
+        }
+        
+        // The validation queue is kept short: there is no point in reading
+        //+ far ahead of the validators, only in keeping them busy.
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.validators = new ThreadPoolExecutor(threads, threads, 0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 4),
+                new WorkerThreadFactory("EDI Validator"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.acks = this.acknowledgments();
+        
+        try {
+            if ( this.local != null ) {
+                this.parseInterchanges();
+            } else {
+                this.merge(new InterchangeParser(this.reader, this.validators,
+                                          this.duplicates, this.acks).call());
+            }
+        } catch (IOException ex) {
+            // We do not know how far we got, so keep the checkpoint where it
+            //+ is.
+            if ( this.checkpoint != null ) {
+                this.checkpoint.hold(this.checkpoint.getOffset());
+            }
+            Exceptions.printStackTrace(ex);
+            this.cal = Calendar.getInstance();
+            this.time = this.fmt.format(cal.getTime());
+            this.io.getOut().println(time + ":  The following Exception was "
+                                                                   + "caught:");
+            this.outBldr.append(this.time);
+            this.outBldr.append(":  The following Exception was caught:\n\t");
+            this.outBldr.append(ex.getLocalizedMessage());
+            this.outBldr.append("\n");
+            ex.printStackTrace(this.io.getErr());
+        } finally {
+            this.validators.shutdownNow();
+            this.validators = null;
+            this.acks = null;
             
-            // Now, determine what needs to be done. This is accomplished by 
-            //+ looking at the value of the zeroeth (0th) element of the array.
-            switch ( fields[0].toLowerCase() ) {
-                case "iea":
-                    // We need to make sure that this envelope is valid.
-                    validEnv = EnvelopeValidator.validate(
-                                this.envelope.get(this.envelope.size() - 1)[13],
-                                fields[2], new Integer(fields[1]), 
-                                this.g_Count);
-                    
-                    // Check our findings.
-                    if (!validEnv) {
-                        // Report to the Output Window that this group is not
-                        //+ valid and the control numbers, as well as the
-                        //+ reported and actual functional group counts.
-                        msg = "Interchange Envelope (";
-                        msg += this.envelope.get(this.envelope.size() - 1)[13];
-                        msg += ") is NOT valid.\n\t";
-                        msg += "Header Control Number (Trailer):  ";
-                        msg += this.envelope.get(this.envelope.size() - 1)[13];
-                        msg += " (" + fields[2] + ")\n\t";
-                        msg += "Number of reported functional groups (Actual):";
-                        msg += "  " + fields[1] + "(" + this.group.size() / 2;
-                        msg += ")";
-                    } else {
-                        msg = "Interchange Envelope (" + fields[2] + ") ";
-                        msg += "transmitted " + this.g_Count;
-                        msg += " funtional groups.";
-                    }
-                    
-                    // Reset our functional group counter.
-                    this.g_Count = 0;
- 
-                    // Provide report to Output Window.
-                    this.cal = Calendar.getInstance();
-                    this.time = this.fmt.format(cal.getTime());
-                    this.io.getOut().println(time + ":  " + msg);
-                    this.outBldr.append(time);
-                    this.outBldr.append(":  ");
-                    this.outBldr.append(msg);
-                    this.outBldr.append("\n");
-                    
-                    // We need to create a new Date object based upon the date
-                    //+ and time transmitted in the envelope header.
-                    
-                    this.auditEnvelope(txCtlNum, 
-                                       Utils.string2Date(
-                                           this.envelope.get(
-                                                   this.envelope.size() - 1)[9],
-                                           this.envelope.get(
-                                                   this.envelope.size() - 1)[10]
-                                       ), this.envelope.get(
-                                           this.envelope.size() - 1)[6], 
-                                       this.envelope.get(
-                                           this.envelope.size() - 1)[8], 
-                                       new Integer(fields[1]), envErrCnt);
-                case "isa":
-                    this.envelope.add(fields);
-                    if ( fields[0].equalsIgnoreCase("isa") ) txCtlNum = new 
-                                                            Integer(fields[13]);
-                    
-                    break;
-                case "ge":
-                    // Add the group to the functional group counter.
-                    this.g_Count += 1;
-                    
-                    // Grab the total transactions in this functional group.
-                    this.gT_Count = this.t_Count;
-                    
-                    // Add the functional group transaction count to the total
-                    //+ transaction count.
-                    this.total_T_Count += this.t_Count;
-                    
-                    // Reset the transaction count for the processor.
-                    this.t_Count = 0;
-                    
-                    // Validate whether the functional group is valid.
-                    validGrp = FGValidator.validate(
-                            this.group.get(this.group.size() - 1)[6], fields[2], 
-                            new Integer(fields[1]), this.gT_Count);
-                    
-                    // Check our findings.
-                    if (!validGrp) {
-                        // Report to the Output Window that this group is not
-                        //+ valid and the control numbers, as well as the
-                        //+ reported transaction count and actual count.
-                        msg = "Functional Group (" + this.group.get(
-                                this.group.size() - 1)[6] + ") is NOT valid.";
-                        msg += "\n\tHeader Control Number (Trailer):  ";
-                        msg += this.group.get(this.group.size() - 1)[6] + "(";
-                        msg += fields[2] + ")\n\t";
-                        msg += "Number Reported Transactions (Actual):  ";
-                        msg += fields[1] + "(" + this.gT_Count + ")";
-                    } else {
-                        msg = "Funtional Group (" + fields[2] + ") transmitted";
-                        msg += " " + this.gT_Count + " transaction sets.";
-                    }
-
-                    // Provide report to Output Window.
-                    this.cal = Calendar.getInstance();
-                    this.time = this.fmt.format(cal.getTime());
-                    this.io.getOut().println(time + ":  " + msg);
-                    this.outBldr.append(time);
-                    this.outBldr.append(":  ");
-                    this.outBldr.append(msg);
-                    this.outBldr.append("\n");
-                    
-                    // Store the Functional Group information to the group
-                    //+ audits table in the database.
-                    this.auditGroup(new Integer(this.group.get(
-                                    this.group.size() - 1)[6]), 
-                                    new Integer(this.envelope.get(
-                                            this.envelope.size() - 1)[13]), 
-                                    this.group.get(this.group.size() - 1)[1], 
-                                    new Integer(fields[1]), 
-                                    grpErrCnt);
-                case "gs":
-                    this.group.add(fields);
-                    
-                    if ( fields[0].equalsIgnoreCase("gs") ) grpCtlNum = new 
-                                                             Integer(fields[6]);
-                    break;
-                case "se":
-                    // Increment the transaction count.
-                    this.t_Count += 1;
-                    
-                    // Add the SE segment to the transaction.
-                    this.transaction.add(fields);
-                    
-                    // The first thing to do is to check for the document type.
-                    switch (this.transaction.get(0)[1]) {
-                        case "810": // Invoice
-                            // We need to validate the segments
-                            docErrCnt = Validate810Segments.validate(
-                                                              this.transaction);
-                            
-                            // See how many, if any, segment errors we have. If
-                            //+ there are more than zero, we need to invalidate
-                            //+ the transaction.
-                            if ( docErrCnt > 0 ) validSeg = false;
-                            
-                            // Break out of the switch case block.
-                            break;
-                        case "824": // Application Advice
-                            // We need to validate the segments
-                            docErrCnt = Validate824Segments.validate(
-                                                              this.transaction);
-                            
-                            // See how many, if any, segment errors we have. If
-                            //+ there are more than zero, we need to invalidate
-                            //+ the transaction.
-                            if ( docErrCnt > 0 ) validSeg = false;
-                            
-                            // Break out of the switch case block.
-                            break;
-                    }
-                    
-                    // We need to add the document to our document audits table.
-                    this.auditTransaction(new Integer(fields[2]), 
-                            new Integer(this.envelope.get(
-                                    this.envelope.size() - 1)[13]), 
-                            new Integer(this.group.get(
-                                    this.group.size() - 1)[6]), 
-                            this.transaction.get(0)[1], 
-                            new Integer(this.group.get(
-                                    this.group.size() - 1)[6]), 
-                            docErrCnt, validSeg);
-                    
-                    // Lastly, break out of the switch so we don't add the
-                    //+ segment a second time. This is just good practice, even
-                    //+ though we will clear the transaction list on the next
-                    //+ ST segment we encounter.
-                    break;
-                case "st":
-                    // We need to reset the transaction list for this tran-
-                    //+ saction set.
-                    this.transaction.clear();
-                    // Then fall through.
-                default:        // All other segments
-                    this.transaction.add(fields);
+            // We are done with the file, so release it.
+            try {
+                this.reader.close();
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
             }
         }
         
         this.cal = Calendar.getInstance();
         this.time = this.fmt.format(cal.getTime());
         this.io.getOut().println("Parsing complete.");
-        this.io.getOut().println("\t   Envelopes:  " + this.envelope.size() / 2);
-        this.io.getOut().println("\t      Groups:  " + this.group.size() / 2);
+        this.io.getOut().println("\t    Segments:  " + this.total_S_Count);
+        this.io.getOut().println("\t   Envelopes:  " + this.total_E_Count);
+        this.io.getOut().println("\t      Groups:  " + this.total_G_Count);
         this.io.getOut().println("\tTransactions:  " + this.total_T_Count);
         this.outBldr.append(this.time);
         this.outBldr.append(":  Parsing Complete.\n");
+        this.outBldr.append("\t    Segments:  ");
+        this.outBldr.append(this.total_S_Count);
+        this.outBldr.append("\n");
         this.outBldr.append("\t   Envelopes:  ");
-        this.outBldr.append(this.envelope.size() / 2);  // Contains ISA & IEA
+        this.outBldr.append(this.total_E_Count);
         this.outBldr.append("\n\t      Groups:  ");
-        this.outBldr.append(this.group.size() / 2);     // Contains GS & GE
+        this.outBldr.append(this.total_G_Count);
         this.outBldr.append("\n\tTransactions:  ");
         this.outBldr.append(this.total_T_Count);
         this.outBldr.append("\n");
         
     }
     
+    /**
+     * Pre-scans the local file for the bounds of its interchanges, then parses
+     * each interchange on a pool of worker threads. The reports are merged in
+     * file order as they become available, so the output reads just as if the
+     * file had been parsed from start to finish. Only a few interchanges per
+     * thread are handed to the pool ahead of the one being merged, so that a
+     * file of many interchanges does not hold all of their reports at once.
+     * 
+     * @throws IOException if the file cannot be pre-scanned or opened
+     */
+    private void parseInterchanges() throws IOException {
+        // The pre-scan only looks for the ISA and IEA segments, so it is
+        //+ cheap compared to the parsing itself.
+        List<InterchangeBounds> bounds = InterchangeLocator.locate(this.reader);
+        this.reader.close();
+        
+        if ( bounds.isEmpty() ) {
+            return;
+        }
+        
+        // Use no more threads than there are processors, nor more than there
+        //+ are interchanges to parse.
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+                               bounds.size());
+        
+        this.cal = Calendar.getInstance();
+        this.time = this.fmt.format(cal.getTime());
+        this.io.getOut().println(time + ":  Parsing " + bounds.size()
+                + " interchange(s) on " + threads + " thread(s)...");
+        this.outBldr.append(this.time);
+        this.outBldr.append(":  Parsing ");
+        this.outBldr.append(bounds.size());
+        this.outBldr.append(" interchange(s) on ");
+        this.outBldr.append(threads);
+        this.outBldr.append(" thread(s)...\n");
+        
+        final boolean map = this.PREFS.getBoolean("MappedInput", false);
+        
+        // All of the workers share one channel on the file; they only make
+        //+ positional reads on it, so they do not get in each other's way.
+        try ( FileChannel file = new RandomAccessFile(this.local, "r")
+                                                              .getChannel() ) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, 
+                                          new WorkerThreadFactory("EDI Parser"));
+            
+            // Two interchanges per thread keep the workers busy while one
+            //+ is merged, without queueing up the whole file.
+            int window = threads * 2;
+            int next = 0;
+            int x = 0;
+            try {
+                List<Future<InterchangeReport>> results = new ArrayList<>();
+                
+                // Merge the reports in file order. Each get() only waits for
+                //+ the interchange being merged; the later ones in the window
+                //+ carry on parsing in the meantime.
+                for ( ; x < bounds.size(); x++ ) {
+                    for ( ; next < bounds.size() && next < x + window; 
+                            next++ ) {
+                        results.add(pool.submit(new RegionTask(file, 
+                                bounds.get(next), map, this.validators, 
+                                this.duplicates, this.acks)));
+                    }
+                    
+                    try {
+                        this.merge(results.get(x).get());
+                        
+                        // Let go of the merged report.
+                        results.set(x, null);
+                    } catch (ExecutionException ex) {
+                        // One bad interchange must not stop the others from
+                        //+ being reported and audited. It must, however, 
+                        //+ keep the checkpoint from moving past it.
+                        this.hold(bounds.get(x));
+                        Throwable cause = ex.getCause();
+                        Exceptions.printStackTrace(cause);
+                        this.cal = Calendar.getInstance();
+                        this.time = this.fmt.format(cal.getTime());
+                        this.io.getOut().println(time + ":  Interchange "
+                                + (x + 1) + " could not be parsed:");
+                        this.outBldr.append(this.time);
+                        this.outBldr.append(":  Interchange ");
+                        this.outBldr.append(x + 1);
+                        this.outBldr.append(" could not be parsed:\n\t");
+                        this.outBldr.append(cause.getLocalizedMessage());
+                        this.outBldr.append("\n");
+                        cause.printStackTrace(this.io.getErr());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // We have been asked to stop, so leave the rest unmerged, to
+                //+ be picked up by the next run.
+                this.hold(bounds.get(x));
+                Thread.currentThread().interrupt();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+     * Keeps the checkpoint, if there is one, from moving past an interchange
+     * that was not recorded.
+     * 
+     * @param bounds the interchange's place in the file
+     */
+    private void hold(InterchangeBounds bounds) {
+        if ( this.checkpoint != null ) {
+            this.checkpoint.hold(bounds.getStart());
+        }
+    }
+    
+    /**
+     * Merges the report of an <code>InterchangeParser</code> into the output
+     * of this processor: the messages go to the Output Window and the report
+     * file, the audit records go to the database and the counts are added to
+     * the running totals.
+     * 
+     * @param report the report to merge
+     */
+    private void merge(InterchangeReport report) {
+        for ( String msg : report.getMessages() ) {
+            // Provide report to Output Window.
+            this.cal = Calendar.getInstance();
+            this.time = this.fmt.format(cal.getTime());
+            this.io.getOut().println(time + ":  " + msg);
+            this.outBldr.append(time);
+            this.outBldr.append(":  ");
+            this.outBldr.append(msg);
+            this.outBldr.append("\n");
+        }
+        
+        for ( AuditRecord record : report.getAudits() ) {
+            this.audit(record);
+        }
+        
+        this.total_S_Count += report.getSegmentCount();
+        this.total_E_Count += report.getEnvelopeCount();
+        this.total_G_Count += report.getGroupCount();
+        this.total_T_Count += report.getTransactionCount();
+    }
+    
     void saveReport() {
         
         // Create File object to which to write the data.
@@ -1097,17 +1042,13 @@ public class Processor {
         //+ writing functionality.
         FileWriter fw = null;
         
-        // Create a SimpleDateFormat object to set up the date/time for the
-        //+ file name for our report file.
-        SimpleDateFormat dt = new SimpleDateFormat("yyyy-MM-dd.HH-mm-ss");
-        
         // Get the report storage path from the settings.
         String rptPath = this.PREFS.get("OutputPath", 
                                                System.getProperty("user.home"));
         
-        // Create our file name from the SimpleDateFormat of the start time and
-        //+ add the ".rpt" extension.
-        String fname = dt.format(this.start.getTime()) + ".rpt";
+        // Create our file name from the name of this run and add the ".rpt"
+        //+ extension.
+        String fname = this.runName + ".rpt";
         
         // Create our File object and point it to the file we wish to create.
         file = new File(rptPath + System.getProperty("file.separator") + fname);
@@ -1147,4 +1088,56 @@ public class Processor {
         }
     }
     //</editor-fold>
+    
+    //<editor-fold desc="  Nested Classes  ">
+    /**
+     * Parses one interchange of a local transmission file. The reader for the
+     * region is only opened once a worker thread picks the task up, so that
+     * queued interchanges do not hold on to read buffers.
+     */
+    private static class RegionTask implements Callable<InterchangeReport> {
+        /**
+         * The channel on the transmission file, shared by all of the tasks.
+         */
+        private final FileChannel file;
+        /**
+         * The bounds of the interchange to parse.
+         */
+        private final InterchangeBounds bounds;
+        /**
+         * Whether a large interchange should be mapped into memory.
+         */
+        private final boolean map;
+        /**
+         * The executor on which the transaction sets are validated.
+         */
+        private final ExecutorService validators;
+        /**
+         * The filter that turns down the interchanges already processed.
+         */
+        private final DuplicateFilter duplicates;
+        /**
+         * The acknowledgments to send for the functional groups.
+         */
+        private final Acknowledgments acks;
+        
+        RegionTask(FileChannel file, InterchangeBounds bounds, boolean map,
+                   ExecutorService validators, DuplicateFilter duplicates,
+                   Acknowledgments acks) {
+            this.file = file;
+            this.bounds = bounds;
+            this.map = map;
+            this.validators = validators;
+            this.duplicates = duplicates;
+            this.acks = acks;
+        }
+        
+        @Override
+        public InterchangeReport call() throws IOException {
+            return new InterchangeParser(SegmentReader.open(this.file,
+                    this.bounds.getStart(), this.bounds.getEnd(), this.map),
+                    this.validators, this.duplicates, this.acks).call();
+        }
+    }
+    //</editor-fold>
 }
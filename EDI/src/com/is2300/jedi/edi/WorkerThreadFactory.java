@@ -0,0 +1,61 @@
+/* {WorkerThreadFactory.java}
+ *
+ * Creates the named daemon threads used by the EDI processing.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon worker threads on which the EDI processing is done, such
+ * as the scheduled processor runs and the parsing and validation of the
+ * interchanges of a transmission file, so that a stuck run can never keep the
+ * application from exiting. The threads are numbered after the name given.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+class WorkerThreadFactory implements ThreadFactory {
+    /**
+     * The name given to the threads, followed by their number.
+     */
+    private final String name;
+    /**
+     * The number of threads created so far, used to name them.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Creates a factory for threads with the given name.
+     *
+     * @param name the name given to the threads, followed by their number
+     */
+    WorkerThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, this.name + " " + this.count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,349 @@
+/* {AcknowledgmentBuilder.java}
+ *
+ * Builds the acknowledgment of one functional group as its transaction sets  *
+ * are validated, and sends it at the group's trailer.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.ack;
+
+import com.is2300.jedi.edi.enums.DESyntaxErrorCodes;
+import com.is2300.jedi.edi.enums.FGAcknowledgmentCodes;
+import com.is2300.jedi.edi.enums.FGSyntaxErrorCodes;
+import com.is2300.jedi.edi.enums.SegmentSyntaxErrorCodes;
+import com.is2300.jedi.edi.enums.TSSyntaxErrorCodes;
+import com.is2300.jedi.edi.io.Delimiters;
+import com.is2300.jedi.edi.io.Segment;
+import com.is2300.jedi.edi.io.SegmentWriter;
+import com.is2300.jedi.edi.validators.ValidationErrors;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.openide.util.Exceptions;
+
+/**
+ * An <code>AcknowledgmentBuilder</code> writes the acknowledgment of one
+ * functional group while the group is still being read. The envelope and the
+ * AK1 are written when the builder is created, at the group's header; an AK2
+ * and AK5 (with an AK3 and AK4 for each error) are written as the result of
+ * each transaction set comes in; and the AK9 and the trailers are written at
+ * the group's trailer, when the counts are known. Nothing is kept of a
+ * transaction set once it has been written, so a group of any size is
+ * acknowledged in a fixed amount of memory, and without reading the inbound
+ * file again.
+ * <p>
+ * The acknowledgment is built in a hidden file in the outbound directory,
+ * and only given its real name once it is {@link #finish finished}, so that
+ * nothing picking files up from the directory ever sees half of one. If the
+ * builder is closed before it is finished, the file is thrown away.
+ * <p>
+ * The acknowledgment is addressed back to the sender of the group, and is
+ * written by a {@link SegmentWriter} with the delimiters of the interchange
+ * it acknowledges. A builder
+ * is used by one parser thread, and is not thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class AcknowledgmentBuilder implements Closeable {
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The acknowledgments this one is sent for.
+     */
+    private final Acknowledgments owner;
+    /**
+     * The kind of acknowledgment.
+     */
+    private final AcknowledgmentType type;
+    /**
+     * The file the acknowledgment is built in.
+     */
+    private final File temp;
+    /**
+     * The file the acknowledgment is sent as.
+     */
+    private final File target;
+    /**
+     * The writer of the file.
+     */
+    private final SegmentWriter out;
+    /**
+     * The Interchange Control Number of the acknowledgment, as nine (9)
+     * digits.
+     */
+    private final String controlNumber;
+    /**
+     * The Group Control Number (GS06) of the group acknowledged.
+     */
+    private final String groupControlNumber;
+    /**
+     * The Interchange Sender ID (ISA06) of the group acknowledged.
+     */
+    private final String sender;
+    /**
+     * The receiver key under which the group acknowledged is recorded.
+     */
+    private final String receiver;
+    /**
+     * The Interchange Control Number (ISA13) of the group acknowledged.
+     */
+    private final int interchangeNumber;
+    /**
+     * The number of transaction sets acknowledged.
+     */
+    private int received;
+    /**
+     * The number of transaction sets accepted.
+     */
+    private int accepted;
+    /**
+     * Whether the acknowledgment has been sent.
+     */
+    private boolean finished;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Begins an acknowledgment, writing its envelope and its AK1.
+     *
+     * @param owner             the acknowledgments this one is sent for
+     * @param controlNumber     the Interchange Control Number of the
+     *                          acknowledgment
+     * @param interchange       the elements of the ISA of the group
+     *                          acknowledged
+     * @param group             the elements of the GS of the group
+     *                          acknowledged
+     * @param receiver          the receiver key under which the group is
+     *                          recorded
+     * @param interchangeNumber the Interchange Control Number (ISA13) of the
+     *                          group acknowledged
+     * @param delimiters        the delimiters to write with
+     * @throws IOException if the acknowledgment cannot be written, or the
+     *                     headers cannot be answered
+     */
+    AcknowledgmentBuilder(Acknowledgments owner, int controlNumber,
+                          String[] interchange, String[] group, 
+                          String receiver, int interchangeNumber,
+                          Delimiters delimiters) throws IOException {
+        AcknowledgmentType type = owner.getType();
+        File directory = owner.getDirectory();
+        this.owner = owner;
+        this.type = type;
+        this.controlNumber = String.format("%09d", controlNumber);
+        this.groupControlNumber = group[6];
+        this.sender = interchange[6];
+        this.receiver = receiver;
+        this.interchangeNumber = interchangeNumber;
+
+        String name = type.getTransactionSet() + "_" + this.controlNumber
+                    + ".x12";
+        this.target = new File(directory, name);
+        this.temp = new File(directory, "." + name + ".tmp");
+        this.out = SegmentWriter.open(this.temp, delimiters);
+
+        try {
+            String version = type.getVersion(group[8]);
+
+            // The acknowledgment goes back the way the group came, so the
+            //+ sender and receiver swap places. Its one functional group
+            //+ takes the same control number as its interchange.
+            this.out.beginInterchange(interchange[7], interchange[8],
+                    interchange[5], interchange[6], interchange[11],
+                    interchange[12], controlNumber, interchange[15].charAt(0));
+            this.out.beginGroup("FA", group[3], group[2], controlNumber,
+                                version);
+
+            if ( type.isVersioned() ) {
+                this.out.beginTransaction(type.getTransactionSet(), version);
+                this.out.segment("AK1").element(group[1]).element(group[6])
+                        .element(group[8]).end();
+            } else {
+                this.out.beginTransaction(type.getTransactionSet());
+                this.out.segment("AK1").element(group[1]).element(group[6])
+                        .end();
+            }
+        } catch (IllegalArgumentException ex) {
+            // The header of the group acknowledged holds something that
+            //+ cannot be sent back, such as an overlong sender ID.
+            this.close();
+            throw new IOException(ex.getLocalizedMessage(), ex);
+        } catch (IOException | RuntimeException ex) {
+            this.close();
+            throw ex;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Acknowledges a transaction set. It is accepted if no errors were found
+     * in it, and rejected otherwise.
+     *
+     * @param transactionSet the Transaction Set Identifier Code (ST01)
+     * @param controlNumber  the Transaction Set Control Number (ST02)
+     * @param errors         the errors found in the transaction set, or
+     *                       <code>null</code> if it could not be validated
+     * @throws IOException if the acknowledgment cannot be written
+     */
+    public void transaction(String transactionSet, String controlNumber,
+                            ValidationErrors errors) throws IOException {
+        this.received++;
+        this.out.segment("AK2").element(transactionSet).element(controlNumber)
+                .end();
+
+        if ( errors != null && errors.isEmpty() ) {
+            this.accepted++;
+            this.out.segment(this.type.getSetResponse()).element('A').end();
+            return;
+        }
+
+        if ( errors != null ) {
+            this.notes(errors);
+        }
+        this.out.segment(this.type.getSetResponse()).element('R')
+                .element(TSSyntaxErrorCodes.SEGMENTS_IN_ERROR.toInteger())
+                .end();
+    }
+
+    /**
+     * Finishes the acknowledgment at the group's trailer, and sends it by
+     * giving it its real name in the outbound directory.
+     *
+     * @param declared      the number of transaction sets the trailer (GE01)
+     *                      declares
+     * @param controlNumber the Group Control Number in the trailer (GE02)
+     * @return the file the acknowledgment was sent as
+     * @throws IOException if the acknowledgment cannot be written or sent
+     */
+    public File finish(int declared, String controlNumber) 
+            throws IOException {
+        FGSyntaxErrorCodes error = null;
+        if ( !this.groupControlNumber.equals(controlNumber) ) {
+            error = FGSyntaxErrorCodes.UNMATCHED_CONTROL_NUMBER;
+        } else if ( declared != this.received ) {
+            error = FGSyntaxErrorCodes.UNMATCHED_TRANSACTION_SET_COUNT;
+        }
+
+        FGAcknowledgmentCodes code;
+        if ( error != null || this.accepted == 0 ) {
+            code = FGAcknowledgmentCodes.REJECTED;
+        } else if ( this.accepted < this.received ) {
+            code = FGAcknowledgmentCodes.PARTIALLY_ACCEPTED;
+        } else {
+            code = FGAcknowledgmentCodes.ACCEPTED;
+        }
+
+        this.out.segment("AK9").element(code.toChar()).element(declared)
+                .element(this.received).element(this.accepted);
+        if ( error != null ) {
+            this.out.element(error.toInteger());
+        }
+        this.out.end();
+        this.out.endTransaction();
+        this.out.endGroup();
+        this.out.endInterchange();
+
+        this.out.close();
+        Files.move(this.temp.toPath(), this.target.toPath(),
+                   StandardCopyOption.ATOMIC_MOVE);
+        this.finished = true;
+        
+        // Only once it has been sent is the group recorded, so a crash
+        //+ before this point sends it again rather than never.
+        try {
+            this.owner.acknowledged(this.sender, this.receiver, 
+                                    this.interchangeNumber);
+        } catch (IOException ex) {
+            // The acknowledgment is out already; it is only at risk of
+            //+ being sent twice.
+            Exceptions.printStackTrace(ex);
+        }
+        return this.target;
+    }
+
+    /**
+     * Retrieves the Interchange Control Number of the acknowledgment.
+     *
+     * @return the control number, as nine (9) digits
+     */
+    public String getControlNumber() {
+        return this.controlNumber;
+    }
+
+    /**
+     * Throws the acknowledgment away, unless it has been finished.
+     */
+    @Override
+    public void close() {
+        if ( this.finished ) {
+            return;
+        }
+
+        try {
+            this.out.close();
+        } catch (IOException ex) {
+            // It is being thrown away anyway.
+        }
+        this.temp.delete();
+        this.finished = true;
+        this.owner.release(this.sender, this.receiver, this.interchangeNumber);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Writes an AK3 for each segment in error and an AK4 for each element in
+     * error. The element errors of a segment share a single AK3.
+     *
+     * @param errors the errors found in the transaction set
+     */
+    private void notes(ValidationErrors errors) throws IOException {
+        int notedPosition = -1;
+        int notedId = -1;
+
+        for ( int x = 0; x < errors.size(); x++ ) {
+            int position = errors.getPosition(x);
+            int segmentId = errors.getSegmentId(x);
+            SegmentSyntaxErrorCodes segmentCode = errors.getSegmentCode(x);
+
+            if ( segmentCode != null ) {
+                this.out.segment(this.type.getSegmentNote())
+                        .element(Segment.idOf(segmentId)).element(position)
+                        .element("").element(segmentCode.toInteger()).end();
+                notedPosition = -1;
+                continue;
+            }
+
+            if ( position != notedPosition || segmentId != notedId ) {
+                this.out.segment(this.type.getSegmentNote())
+                        .element(Segment.idOf(segmentId)).element(position)
+                        .end();
+                notedPosition = position;
+                notedId = segmentId;
+            }
+
+            DESyntaxErrorCodes elementCode = errors.getElementCode(x);
+            this.out.segment(this.type.getElementNote())
+                    .element(errors.getElement(x)).element("")
+                    .element(elementCode.toInteger()).end();
+        }
+    }
+    //</editor-fold>
+}
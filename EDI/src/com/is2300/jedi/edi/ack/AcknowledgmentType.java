@@ -0,0 +1,148 @@
+/* {AcknowledgmentType.java}
+ *
+ * The kinds of acknowledgment that can be sent back for a functional group.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.ack;
+
+/**
+ * The kinds of acknowledgment that can be sent back for each functional group
+ * received:
+ * <ul>
+ *  <li><strong>997</strong>: the Functional Acknowledgment, reporting the
+ *      syntax errors found in AK3 and AK4 segments; and</li>
+ *  <li><strong>999</strong>: the Implementation Acknowledgment of version
+ *      005010, which reports the same errors in IK3 and IK4 segments.</li>
+ * </ul>
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public enum AcknowledgmentType {
+    FUNCTIONAL("997", null, "AK3", "AK4", "AK5"),
+    IMPLEMENTATION("999", "005010X231A1", "IK3", "IK4", "IK5");
+
+    /**
+     * The Transaction Set Identifier Code of the acknowledgment.
+     */
+    private final String transactionSet;
+    /**
+     * The version of the acknowledgment, or <code>null</code> to use that of
+     * the group acknowledged.
+     */
+    private final String version;
+    /**
+     * The identifier of the segment reporting a segment in error.
+     */
+    private final String segmentNote;
+    /**
+     * The identifier of the segment reporting an element in error.
+     */
+    private final String elementNote;
+    /**
+     * The identifier of the segment closing the response to a transaction
+     * set.
+     */
+    private final String setResponse;
+
+    private AcknowledgmentType(String transactionSet, String version,
+                               String segmentNote, String elementNote,
+                               String setResponse) {
+        this.transactionSet = transactionSet;
+        this.version = version;
+        this.segmentNote = segmentNote;
+        this.elementNote = elementNote;
+        this.setResponse = setResponse;
+    }
+
+    /**
+     * Retrieves the kind of acknowledgment for its Transaction Set Identifier
+     * Code.
+     *
+     * @param transactionSet "997" or "999"
+     * @return the kind of acknowledgment, or <code>null</code> if it is
+     *         neither
+     */
+    public static AcknowledgmentType of(String transactionSet) {
+        for ( AcknowledgmentType type : values() ) {
+            if ( type.transactionSet.equals(transactionSet) ) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the Transaction Set Identifier Code of the acknowledgment.
+     *
+     * @return "997" or "999"
+     */
+    public String getTransactionSet() {
+        return this.transactionSet;
+    }
+
+    /**
+     * Retrieves the version of the acknowledgment.
+     *
+     * @param acknowledged the version of the functional group acknowledged,
+     *                     from its GS08
+     * @return the version to give in the acknowledgment's GS08
+     */
+    public String getVersion(String acknowledged) {
+        return ( this.version == null ) ? acknowledged : this.version;
+    }
+
+    /**
+     * Determines whether the acknowledgment gives its version in its ST03,
+     * and that of the group acknowledged in its AK103.
+     *
+     * @return <code>true</code> for a 999
+     */
+    public boolean isVersioned() {
+        return this.version != null;
+    }
+
+    /**
+     * Retrieves the identifier of the segment reporting a segment in error.
+     *
+     * @return "AK3" or "IK3"
+     */
+    public String getSegmentNote() {
+        return this.segmentNote;
+    }
+
+    /**
+     * Retrieves the identifier of the segment reporting an element in error.
+     *
+     * @return "AK4" or "IK4"
+     */
+    public String getElementNote() {
+        return this.elementNote;
+    }
+
+    /**
+     * Retrieves the identifier of the segment closing the response to a
+     * transaction set.
+     *
+     * @return "AK5" or "IK5"
+     */
+    public String getSetResponse() {
+        return this.setResponse;
+    }
+}
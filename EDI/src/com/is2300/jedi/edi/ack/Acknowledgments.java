@@ -0,0 +1,236 @@
+/* {Acknowledgments.java}
+ *
+ * Sends an acknowledgment back for each functional group received, into the  *
+ * outbound directory.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.ack;
+
+import com.is2300.jedi.edi.audit.DuplicateIndex;
+import com.is2300.jedi.edi.io.ControlNumbers;
+import com.is2300.jedi.edi.io.Delimiters;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <code>Acknowledgments</code> sends back an acknowledgment, a 997 or 999,
+ * for each functional group received. Each acknowledgment is an interchange
+ * of its own, written as a file into the outbound directory, from where it
+ * is picked up and sent to the trading partner.
+ * <p>
+ * The parsers each {@link #begin} an {@link AcknowledgmentBuilder} at a
+ * functional group's header, which is then fed the result of each transaction
+ * set as it is validated and finished at the group's trailer. The outbound
+ * directory also holds the file of the {@link ControlNumbers} of the
+ * acknowledgments, so that they carry on from one run to the next.
+ * <p>
+ * Each functional group is acknowledged only once, however many times it is
+ * read: when a run fails and the file is read again, when a run resumes
+ * from its checkpoint, or when the database is down and duplicates cannot be
+ * turned down. The groups acknowledged are recorded in a {@link
+ * DuplicateIndex} of their own in the outbound directory, which does not
+ * depend on the database, and a group found in it is not acknowledged
+ * again.
+ * <p>
+ * All of the methods are thread-safe, so one <code>Acknowledgments</code> is
+ * shared by all of the parsers of a run.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class Acknowledgments {
+    /**
+     * The name of the file in the outbound directory that holds the last
+     * control number used.
+     */
+    public static final String CONTROL_FILE = "control.num";
+    /**
+     * The name of the file in the outbound directory that records the
+     * functional groups acknowledged.
+     */
+    public static final String ACKNOWLEDGED_FILE = "acknowledged.idx";
+
+    /**
+     * The records of the groups acknowledged, by the absolute path of their
+     * file, so that every run writing into a directory shares one.
+     */
+    private static final Map<String, DuplicateIndex> LEDGERS
+            = new HashMap<>();
+
+    /**
+     * The directory into which the acknowledgments are written.
+     */
+    private final File directory;
+    /**
+     * The kind of acknowledgment sent.
+     */
+    private final AcknowledgmentType type;
+    /**
+     * The control numbers of the acknowledgments.
+     */
+    private final ControlNumbers numbers;
+    /**
+     * The record of the groups acknowledged.
+     */
+    private final DuplicateIndex ledger;
+
+    /**
+     * Readies the acknowledgments, creating the outbound directory if need
+     * be.
+     *
+     * @param directory the outbound directory
+     * @param type      the kind of acknowledgment to send
+     * @throws IOException if the directory cannot be created, or its control
+     *                     number or acknowledged group files cannot be read
+     */
+    public Acknowledgments(File directory, AcknowledgmentType type)
+            throws IOException {
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException("Cannot create the outbound directory "
+                    + directory);
+        }
+
+        this.directory = directory;
+        this.type = type;
+        this.numbers = ControlNumbers.forFile(new File(directory,
+                                                       CONTROL_FILE));
+        this.ledger = ledger(new File(directory, ACKNOWLEDGED_FILE));
+    }
+
+    /**
+     * Begins the acknowledgment of a functional group.
+     *
+     * @param interchange the elements of the Interchange Control Header (ISA)
+     *                    of the group
+     * @param group       the elements of the Functional Group Header (GS)
+     * @param delimiters  the delimiters to write the acknowledgment with
+     * @return the builder of the acknowledgment, or <code>null</code> if
+     *         the group has already been acknowledged, or is being
+     *         acknowledged by another parser
+     * @throws IOException if the acknowledgment cannot be started
+     */
+    public AcknowledgmentBuilder begin(String[] interchange, String[] group,
+                                       Delimiters delimiters)
+            throws IOException {
+        int interchangeNumber;
+        try {
+            interchangeNumber = Integer.parseInt(interchange[13].trim());
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid Interchange Control Number: "
+                                  + interchange[13], ex);
+        }
+
+        String receiver = receiver(interchange, group);
+        if ( !this.ledger.claim(DuplicateIndex.key(interchange[6], receiver,
+                                                   interchangeNumber)) ) {
+            return null;
+        }
+
+        try {
+            return new AcknowledgmentBuilder(this, this.numbers.next(),
+                    interchange, group, receiver, interchangeNumber,
+                    delimiters);
+        } catch (IOException | RuntimeException ex) {
+            this.release(interchange[6], receiver, interchangeNumber);
+            throw ex;
+        }
+    }
+
+    /**
+     * Retrieves the outbound directory.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Retrieves the kind of acknowledgment sent.
+     *
+     * @return the kind of acknowledgment
+     */
+    public AcknowledgmentType getType() {
+        return this.type;
+    }
+
+    /**
+     * Records a functional group as acknowledged, once its acknowledgment
+     * has been sent.
+     *
+     * @param sender            the Interchange Sender ID (ISA06) of the group
+     * @param receiver          the receiver key of the group
+     * @param interchangeNumber the Interchange Control Number (ISA13) of the
+     *                          group
+     * @throws IOException if the record cannot be written
+     */
+    void acknowledged(String sender, String receiver, int interchangeNumber)
+            throws IOException {
+        this.ledger.record(sender, receiver, interchangeNumber);
+    }
+
+    /**
+     * Gives up the claim on a functional group whose acknowledgment was
+     * thrown away, so that it may be acknowledged when it is read again.
+     *
+     * @param sender            the Interchange Sender ID (ISA06) of the group
+     * @param receiver          the receiver key of the group
+     * @param interchangeNumber the Interchange Control Number (ISA13) of the
+     *                          group
+     */
+    void release(String sender, String receiver, int interchangeNumber) {
+        this.ledger.release(DuplicateIndex.key(sender, receiver, 
+                                               interchangeNumber));
+    }
+
+    /**
+     * Builds the receiver key under which a functional group is recorded:
+     * the Interchange Receiver ID (ISA08) with the Group Control Number
+     * (GS06), since an interchange may hold several groups.
+     *
+     * @param interchange the elements of the ISA of the group
+     * @param group       the elements of the GS of the group
+     * @return the receiver key
+     */
+    private static String receiver(String[] interchange, String[] group) {
+        return interchange[8].trim() + "/" + group[6].trim();
+    }
+
+    /**
+     * Opens the record of the groups acknowledged into a directory, or
+     * returns the one already open.
+     *
+     * @param file the file of the record
+     * @return the record
+     * @throws IOException if the file cannot be read or opened
+     */
+    private static DuplicateIndex ledger(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        synchronized (LEDGERS) {
+            DuplicateIndex ledger = LEDGERS.get(path);
+            if ( ledger == null ) {
+                ledger = DuplicateIndex.open(file);
+                LEDGERS.put(path, ledger);
+            }
+            return ledger;
+        }
+    }
+}
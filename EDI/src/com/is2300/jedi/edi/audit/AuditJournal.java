@@ -0,0 +1,235 @@
+/* {AuditJournal.java}
+ *
+ * A local file to which audit records are spilled when the database lags.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * An <code>AuditJournal</code> is a plain text file holding audit records that
+ * could not be queued for the database right away. Each record is written on
+ * a line of its own, as tab separated fields, with the first field naming the
+ * kind of record:
+ * <pre>
+ *  E  ctlNumber  date  sender  rcvr  grpCount  errCount  endOffset
+ *  G  ctlNumber  txCtlNumber  grpCode  docCount  errCount
+ *  D  ctlNumber  txCtlNumber  grpCtlNumber  docType  docCount  errCount  accepted
+ * </pre>
+ * The date is stored in milliseconds. Tabs, line breaks and backslashes in the
+ * values are escaped with a backslash, and a missing value is written as
+ * <tt>\N</tt>. {@link #parse(String)} turns a line back into a record.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+final class AuditJournal implements Closeable {
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * The token written in place of a missing value.
+     */
+    private static final String NULL = "\\N";
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The writer appending to the journal file.
+     */
+    private final BufferedWriter out;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Opens the journal file for appending, creating it if necessary.
+     *
+     * @param file the journal file
+     * @throws IOException if the file cannot be opened
+     */
+    AuditJournal(File file) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Package Methods  ">
+    /**
+     * Appends a record to the journal.
+     *
+     * @param record the record to append
+     * @throws IOException if the record cannot be written
+     */
+    void append(AuditRecord record) throws IOException {
+        StringBuilder line = new StringBuilder();
+
+        if ( record instanceof EnvelopeAudit ) {
+            EnvelopeAudit env = (EnvelopeAudit) record;
+            line.append('E');
+            field(line, env.getControlNumber());
+            field(line, env.getDate() == null ? null : env.getDate().getTime());
+            field(line, env.getSender());
+            field(line, env.getReceiver());
+            field(line, env.getGroupCount());
+        } else if ( record instanceof GroupAudit ) {
+            GroupAudit grp = (GroupAudit) record;
+            line.append('G');
+            field(line, grp.getControlNumber());
+            field(line, grp.getInterchangeControlNumber());
+            field(line, grp.getGroupCode());
+            field(line, grp.getDocumentCount());
+        } else if ( record instanceof DocumentAudit ) {
+            DocumentAudit doc = (DocumentAudit) record;
+            line.append('D');
+            field(line, doc.getControlNumber());
+            field(line, doc.getInterchangeControlNumber());
+            field(line, doc.getGroupControlNumber());
+            field(line, doc.getDocumentType());
+            field(line, doc.getDocumentCount());
+        } else {
+            throw new IllegalArgumentException("Unknown audit record: "
+                    + record);
+        }
+        field(line, record.getErrorCount());
+        if ( record instanceof EnvelopeAudit ) {
+            field(line, ((EnvelopeAudit) record).getEndOffset());
+        } else if ( record instanceof DocumentAudit ) {
+            field(line, ((DocumentAudit) record).isAccepted());
+        }
+
+        this.out.write(line.toString());
+        this.out.newLine();
+    }
+
+    /**
+     * Turns a line of the journal back into an audit record.
+     *
+     * @param line a line written by {@link #append(AuditRecord)}
+     * @return the audit record
+     * @throws IOException if the line is not a valid journal entry
+     */
+    static AuditRecord parse(String line) throws IOException {
+        String[] f = line.split("\t", -1);
+
+        try {
+            switch (f[0]) {
+                case "E":
+                    String millis = unescape(f[2]);
+                    return new EnvelopeAudit(toInteger(f[1]),
+                            millis == null ? null
+                                           : new Date(Long.parseLong(millis)),
+                            unescape(f[3]), unescape(f[4]), toInteger(f[5]),
+                            toInteger(f[6]), Long.parseLong(f[7]));
+                case "G":
+                    return new GroupAudit(toInteger(f[1]), toInteger(f[2]),
+                                          unescape(f[3]), toInteger(f[4]),
+                                          toInteger(f[5]));
+                case "D":
+                    String accepted = unescape(f[7]);
+                    return new DocumentAudit(toInteger(f[1]), toInteger(f[2]),
+                            toInteger(f[3]), unescape(f[4]), toInteger(f[5]),
+                            toInteger(f[6]), accepted == null ? null
+                                               : Boolean.valueOf(accepted));
+                default:
+                    throw new IOException("Unknown journal entry: " + line);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            throw new IOException("Malformed journal entry: " + line, ex);
+        }
+    }
+
+    /**
+     * Flushes and closes the journal file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Appends a tab and an escaped value to a journal line.
+     */
+    private static void field(StringBuilder line, Object value) {
+        line.append('\t');
+
+        if ( value == null ) {
+            line.append(NULL);
+            return;
+        }
+
+        String text = value.toString();
+        for ( int x = 0; x < text.length(); x++ ) {
+            char c = text.charAt(x);
+            switch (c) {
+                case '\\': line.append("\\\\"); break;
+                case '\t': line.append("\\t"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                default:   line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Reverses the escaping of a journal field.
+     */
+    private static String unescape(String field) {
+        if ( field.equals(NULL) ) {
+            return null;
+        }
+        if ( field.indexOf('\\') < 0 ) {
+            return field;
+        }
+
+        StringBuilder text = new StringBuilder(field.length());
+        for ( int x = 0; x < field.length(); x++ ) {
+            char c = field.charAt(x);
+            if ( c == '\\' && x + 1 < field.length() ) {
+                c = field.charAt(++x);
+                switch (c) {
+                    case 't': c = '\t'; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    default:  break;
+                }
+            }
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Converts a journal field to an <code>java.lang.Integer</code>.
+     */
+    private static Integer toInteger(String field) {
+        String text = unescape(field);
+        return text == null ? null : Integer.valueOf(text);
+    }
+    //</editor-fold>
+}
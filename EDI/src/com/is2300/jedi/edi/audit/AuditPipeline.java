@@ -0,0 +1,355 @@
+/* {AuditPipeline.java}
+ *
+ * Writes audit records to the database behind the parser's back.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>AuditPipeline</code> decouples the writing of audit records from
+ * the parsing that produces them. Records are {@link #publish(AuditRecord)
+ * published} to a bounded queue, and a dedicated writer thread takes them off
+ * the queue and hands them to an {@link AuditWriter}. The parser therefore only
+ * waits on the database when the writer thread has fallen a whole queue behind,
+ * and what happens then is decided by the pipeline's {@link Overflow} policy:
+ * <ul>
+ *  <li>{@link Overflow#BLOCK BLOCK}: the publishing thread waits for room on
+ *      the queue; or</li>
+ *  <li>{@link Overflow#SPILL SPILL}: the record is appended to a local
+ *      journal file instead, and the parser carries on. Every record that
+ *      follows is spilled as well, so that the writer still sees the records
+ *      in the order they were published, and the records of an interchange
+ *      stay together in its transaction.</li>
+ * </ul>
+ * <p>
+ * {@link #drain()} must be called once all records have been published. It
+ * waits for the writer thread to empty the queue, replays the journal (if any
+ * records were spilled) through the same writer, and closes the writer. The
+ * journal file is deleted once its records have been written without error,
+ * and kept otherwise so that nothing is lost.
+ * <p>
+ * Database errors met by the writer thread do not stop it: they are collected
+ * and returned by {@link #drain()}, so they can be reported along with the
+ * rest of the run.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class AuditPipeline {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default number of records the queue may hold.
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Enumerations  ">
+    /**
+     * What to do with a record when the queue is full.
+     */
+    public enum Overflow {
+        /**
+         * Wait for the writer thread to make room on the queue.
+         */
+        BLOCK,
+        /**
+         * Append the record to the journal file and carry on.
+         */
+        SPILL
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * Placed on the queue by {@link #drain()} to tell the writer thread that
+     * no more records are coming.
+     */
+    private static final AuditRecord END = new AuditRecord(null, null) { };
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    private final AuditWriter writer;
+    private final BlockingQueue<AuditRecord> queue;
+    private final Overflow overflow;
+    private final File journalFile;
+    private final Thread thread;
+    /**
+     * The errors met while writing, in the order they occurred.
+     */
+    private final List<Exception> errors;
+    /**
+     * The journal, opened when the first record is spilled.
+     */
+    private AuditJournal journal;
+    private long spilled;
+    private boolean drained;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a pipeline in front of an <code>AuditWriter</code> and starts
+     * its writer thread. From here on, the writer belongs to the pipeline and
+     * must not be used by anyone else.
+     *
+     * @param writer      the writer to send the records to
+     * @param capacity    the number of records the queue may hold
+     * @param overflow    what to do with a record when the queue is full
+     * @param journalFile the file to spill records to; only needed for
+     *                    {@link Overflow#SPILL SPILL}
+     */
+    public AuditPipeline(AuditWriter writer, int capacity, Overflow overflow,
+                         File journalFile) {
+        if ( overflow == Overflow.SPILL && journalFile == null ) {
+            throw new IllegalArgumentException("A journal file is needed to "
+                    + "spill audit records.");
+        }
+
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflow = overflow;
+        this.journalFile = journalFile;
+        this.errors = Collections.synchronizedList(new ArrayList<Exception>());
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "EDI Audit Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Publishes a record for writing. Depending upon the {@link Overflow}
+     * policy, this either waits for room on the queue or spills the record to
+     * the journal when the queue is full, or once spilling has begun.
+     *
+     * @param record the record to write
+     * @throws InterruptedException if interrupted while waiting for room on
+     *                              the queue
+     * @throws IOException          if the record cannot be spilled to the
+     *                              journal
+     */
+    public void publish(AuditRecord record) throws InterruptedException,
+                                                   IOException {
+        if ( this.overflow == Overflow.BLOCK ) {
+            this.queue.put(record);
+        } else {
+            synchronized (this) {
+                if ( this.spilled > 0 || !this.queue.offer(record) ) {
+                    spill(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for every published record to be written, replays any records
+     * spilled to the journal and closes the writer. The pipeline cannot be
+     * used afterwards.
+     *
+     * @return the errors met while writing; empty if there were none
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              writer thread
+     */
+    public List<Exception> drain() throws InterruptedException {
+        synchronized (this) {
+            if ( this.drained ) {
+                return snapshot();
+            }
+            this.drained = true;
+        }
+
+        this.queue.put(END);
+        this.thread.join();
+
+        // The writer thread is gone, so the writer may now be used here: the
+        //+ journal is replayed and the last partial batches are sent.
+        int before = this.errors.size();
+        replay();
+        try {
+            this.writer.close();
+        } catch (Exception ex) {
+            this.errors.add(ex);
+        }
+
+        if ( this.spilled > 0 && this.errors.size() == before ) {
+            if ( !this.journalFile.delete() ) {
+                this.errors.add(new IOException("Could not delete the audit "
+                        + "journal " + this.journalFile));
+            }
+        }
+
+        return snapshot();
+    }
+
+    /**
+     * Adds a listener for the writer to tell about each commit and rollback.
+     * It should be added before the first record is published.
+     *
+     * @param listener the listener
+     */
+    public void addListener(AuditWriter.Listener listener) {
+        this.writer.addListener(listener);
+    }
+
+    /**
+     * Retrieves the number of records spilled to the journal.
+     *
+     * @return the number of spilled records
+     */
+    public synchronized long getSpilledCount() {
+        return this.spilled;
+    }
+
+    /**
+     * Retrieves the number of records committed to the database so far. This
+     * is only exact once the pipeline has been drained.
+     *
+     * @return the number of records written
+     */
+    public long getWrittenCount() {
+        return this.writer.getWrittenCount();
+    }
+
+    /**
+     * Retrieves the number of records rolled back with their interchange's
+     * transaction. This is only exact once the pipeline has been drained.
+     *
+     * @return the number of records rolled back
+     */
+    public long getRolledBackCount() {
+        return this.writer.getRolledBackCount();
+    }
+
+    /**
+     * Retrieves the journal file records are spilled to.
+     *
+     * @return the journal file, or <code>null</code> if there is none
+     */
+    public File getJournalFile() {
+        return this.journalFile;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * The writer thread's loop. It waits no longer than the writer's flush
+     * interval for each record, so that a partial batch is still sent in time
+     * when records stop arriving.
+     */
+    private void consume() {
+        long wait = this.writer.getFlushInterval();
+
+        while ( true ) {
+            AuditRecord record;
+            try {
+                record = this.queue.poll(wait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                // Only drain() stops the writer thread; records must not be
+                //+ left behind on the queue.
+                continue;
+            }
+
+            if ( record == END ) {
+                return;
+            }
+
+            try {
+                if ( record != null ) {
+                    this.writer.write(record);
+                } else if ( this.writer.isOverdue() ) {
+                    this.writer.flush();
+                }
+            } catch (Exception ex) {
+                this.errors.add(ex);
+            }
+        }
+    }
+
+    /**
+     * Appends a record to the journal, opening it first if need be.
+     */
+    private synchronized void spill(AuditRecord record) throws IOException {
+        if ( this.journal == null ) {
+            this.journal = new AuditJournal(this.journalFile);
+        }
+
+        this.journal.append(record);
+        this.spilled++;
+    }
+
+    /**
+     * Writes the records spilled to the journal.
+     */
+    private void replay() {
+        synchronized (this) {
+            if ( this.journal == null ) {
+                return;
+            }
+
+            try {
+                this.journal.close();
+            } catch (IOException ex) {
+                this.errors.add(ex);
+                return;
+            }
+            this.journal = null;
+        }
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(this.journalFile),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ( (line = in.readLine()) != null ) {
+                if ( !line.isEmpty() ) {
+                    this.writer.write(AuditJournal.parse(line));
+                }
+            }
+        } catch (Exception ex) {
+            this.errors.add(ex);
+        }
+    }
+
+    /**
+     * Copies the errors met so far.
+     */
+    private List<Exception> snapshot() {
+        synchronized (this.errors) {
+            return new ArrayList<>(this.errors);
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,79 @@
+/* {AuditRecord.java}
+ *
+ * Base class for the rows written to the EDI audit tables.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+/**
+ * An <code>AuditRecord</code> holds the values for one row of the EDI audit
+ * tables on the database:
+ * <ul>
+ *  <li>{@link EnvelopeAudit}: a row of <tt>is_edi_audits</tt>;</li>
+ *  <li>{@link GroupAudit}: a row of <tt>is_edi_audit_grp_details</tt>; and</li>
+ *  <li>{@link DocumentAudit}: a row of <tt>is_edi_audit_doc_details</tt>.</li>
+ * </ul>
+ * <p>
+ * Records are gathered by the parser while it works through an interchange,
+ * and written to the database afterwards, so that parsing does not have to
+ * wait on the database server. Records are immutable.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public abstract class AuditRecord {
+    /**
+     * The control number of the envelope, group or document being audited.
+     */
+    private final Integer ctlNumber;
+    /**
+     * The number of errors found in it through validation.
+     */
+    private final Integer errCount;
+
+    /**
+     * Initializes the values common to all audit records.
+     *
+     * @param ctlNumber the control number of the item being audited
+     * @param errCount  the number of errors found in the item
+     */
+    protected AuditRecord(Integer ctlNumber, Integer errCount) {
+        this.ctlNumber = ctlNumber;
+        this.errCount = errCount;
+    }
+
+    /**
+     * Retrieves the control number of the envelope, group or document being
+     * audited.
+     *
+     * @return the control number
+     */
+    public Integer getControlNumber() {
+        return this.ctlNumber;
+    }
+
+    /**
+     * Retrieves the number of errors found through validation.
+     *
+     * @return the error count
+     */
+    public Integer getErrorCount() {
+        return this.errCount;
+    }
+}
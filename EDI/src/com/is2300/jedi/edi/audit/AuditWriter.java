@@ -0,0 +1,457 @@
+/* {AuditWriter.java}
+ *
+ * Writes audit records to the EDI audit tables in batches.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The <code>AuditWriter</code> writes {@link AuditRecord}s to the EDI audit
+ * tables on the database:
+ * <ul>
+ *  <li>is_edi_audits: audit information about the EDI transmission
+ *      envelopes ({@link EnvelopeAudit});</li>
+ *  <li>is_edi_audit_grp_details: audit information about each Functional
+ *      Group within an envelope ({@link GroupAudit}); and</li>
+ *  <li>is_edi_audit_doc_details: audit information about each transaction
+ *      within a functional group ({@link DocumentAudit}).</li>
+ * </ul>
+ * <p>
+ * Rather than sending one INSERT statement per record, the writer binds each
+ * record to a <code>java.sql.PreparedStatement</code> for its table and adds
+ * it to that statement's batch. The batches are sent to the server once
+ * {@link #DEFAULT_BATCH_SIZE batch size} records are pending, or once the
+ * oldest pending record has waited for the {@link #DEFAULT_FLUSH_INTERVAL flush
+ * interval}, whichever comes first. With the MySQL driver's <code>
+ * rewriteBatchedStatements</code> option turned on, each batch then goes to the
+ * server as a single multi-row INSERT.
+ * <p>
+ * The records of each interchange are written in a single database
+ * transaction. The writer turns auto-commit off on its connection, and
+ * commits once it has been given an interchange's {@link EnvelopeAudit}, which
+ * the parser produces at the Interchange Control Trailer (IEA) after the
+ * interchange's group and document records. Should a batch or the commit fail,
+ * the transaction is rolled back and the remaining records of that interchange
+ * are dropped, so that an interchange is either recorded in full or not at
+ * all, and may safely be processed again. Records left over when the writer
+ * is closed belong to an interchange that never reached its IEA, and are
+ * rolled back as well. {@link Listener}s may be told about each commit and
+ * rollback, for instance to keep track of how far the processing has safely
+ * got.
+ * <p>
+ * An <code>AuditWriter</code> is not thread-safe. It does not own the
+ * connection, and leaves it open, back in auto-commit mode, when closed.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class AuditWriter implements AutoCloseable {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default number of pending records at which the batches are sent.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /**
+     * The default time, in milliseconds, that a record may wait in a batch
+     * before the batches are sent.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Interfaces  ">
+    /**
+     * Told about the transactions of an <code>AuditWriter</code>, on the
+     * thread writing the records.
+     */
+    public interface Listener {
+        /**
+         * Called once an interchange's records have been committed.
+         *
+         * @param envelope the interchange's envelope record
+         */
+        void committed(EnvelopeAudit envelope);
+
+        /**
+         * Called once an interchange's records have been rolled back.
+         */
+        void rolledBack();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Constant Declarations  ">
+    private static final String ENVELOPE_SQL = "INSERT INTO "
+            + "`is_jedi`.`is_edi_audits` VALUES(0, ?, ?, ?, ?, ?, ?)";
+    private static final String GROUP_SQL = "INSERT INTO "
+            + "`is_jedi`.`is_edi_audit_grp_details` VALUES(0, ?, ?, ?, ?, ?)";
+    private static final String DOCUMENT_SQL = "INSERT INTO "
+            + "`is_jedi`.`is_edi_audit_doc_details` "
+            + "VALUES(0, ?, ?, ?, ?, ?, ?, ?)";
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The connection the records are written on.
+     */
+    private final Connection conn;
+    /**
+     * The prepared INSERT statements for each of the audit tables.
+     */
+    private final PreparedStatement envelopes;
+    private final PreparedStatement groups;
+    private final PreparedStatement documents;
+    /**
+     * The number of pending records at which the batches are sent.
+     */
+    private final int batchSize;
+    /**
+     * The time, in milliseconds, that a record may wait before the batches
+     * are sent.
+     */
+    private final long flushInterval;
+    /**
+     * The format in which the envelope date is stored, as YY-MM-DD.
+     */
+    private final SimpleDateFormat df;
+    /**
+     * The number of records added to the batches but not yet sent.
+     */
+    private int pending;
+    /**
+     * The time, in milliseconds, at which the oldest pending record was added.
+     */
+    private long oldest;
+    /**
+     * The number of records sent to the server in the open transaction.
+     */
+    private int uncommitted;
+    /**
+     * Set when the open interchange's transaction has been rolled back, until
+     * the rest of its records have been dropped.
+     */
+    private boolean failed;
+    /**
+     * The number of records committed so far.
+     */
+    private long written;
+    /**
+     * The number of records rolled back or dropped so far.
+     */
+    private long rolledBack;
+    /**
+     * Told about each commit and rollback.
+     */
+    private final List<Listener> listeners;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new <code>AuditWriter</code> on the supplied connection, using
+     * the default batch size and flush interval.
+     *
+     * @param conn the connection to the <tt>is_jedi</tt> database
+     * @throws SQLException if auto-commit cannot be turned off, or the
+     *                      statements cannot be prepared
+     */
+    public AuditWriter(Connection conn) throws SQLException {
+        this(conn, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Creates a new <code>AuditWriter</code> on the supplied connection.
+     *
+     * @param conn          the connection to the <tt>is_jedi</tt> database
+     * @param batchSize     the number of pending records at which the batches
+     *                      are sent
+     * @param flushInterval the time, in milliseconds, that a record may wait
+     *                      before the batches are sent
+     * @throws SQLException if auto-commit cannot be turned off, or the
+     *                      statements cannot be prepared
+     */
+    public AuditWriter(Connection conn, int batchSize, long flushInterval)
+            throws SQLException {
+        if ( batchSize <= 0 ) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.df = new SimpleDateFormat("yy-MM-dd");
+        this.conn = conn;
+        this.conn.setAutoCommit(false);
+        this.envelopes = conn.prepareStatement(ENVELOPE_SQL);
+        this.groups = conn.prepareStatement(GROUP_SQL);
+        this.documents = conn.prepareStatement(DOCUMENT_SQL);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Adds an audit record to the batch for its table, and sends the batches
+     * if the batch size or the flush interval has been reached. An
+     * {@link EnvelopeAudit} completes its interchange: the batches are sent
+     * and the interchange's transaction is committed.
+     *
+     * @param record the record to write
+     * @throws SQLException if the record cannot be bound, or the batches
+     *                      cannot be sent or committed; the interchange's
+     *                      transaction has then been rolled back
+     */
+    public void write(AuditRecord record) throws SQLException {
+        if ( this.failed ) {
+            // The interchange has already been rolled back; drop the rest of
+            //+ it, up to and including its envelope.
+            this.rolledBack++;
+            this.failed = !(record instanceof EnvelopeAudit);
+            return;
+        }
+
+        if ( record instanceof EnvelopeAudit ) {
+            EnvelopeAudit env = (EnvelopeAudit) record;
+            this.envelopes.setInt(1, env.getControlNumber());
+            this.envelopes.setString(2, this.df.format(env.getDate()));
+            this.envelopes.setString(3, env.getSender());
+            this.envelopes.setString(4, env.getReceiver());
+            this.envelopes.setInt(5, env.getGroupCount());
+            this.envelopes.setInt(6, env.getErrorCount());
+            this.envelopes.addBatch();
+        } else if ( record instanceof GroupAudit ) {
+            GroupAudit grp = (GroupAudit) record;
+            this.groups.setInt(1, grp.getControlNumber());
+            this.groups.setInt(2, grp.getInterchangeControlNumber());
+            this.groups.setString(3, grp.getGroupCode());
+            this.groups.setInt(4, grp.getDocumentCount());
+            this.groups.setInt(5, grp.getErrorCount());
+            this.groups.addBatch();
+        } else if ( record instanceof DocumentAudit ) {
+            DocumentAudit doc = (DocumentAudit) record;
+            this.documents.setInt(1, doc.getControlNumber());
+            this.documents.setInt(2, doc.getInterchangeControlNumber());
+            this.documents.setInt(3, doc.getGroupControlNumber());
+            this.documents.setString(4, doc.getDocumentType());
+            this.documents.setInt(5, doc.getDocumentCount());
+            this.documents.setInt(6, doc.getErrorCount());
+            this.documents.setBoolean(7, doc.isAccepted());
+            this.documents.addBatch();
+        } else {
+            throw new IllegalArgumentException("Unknown audit record: "
+                    + record);
+        }
+
+        if ( this.pending++ == 0 ) {
+            this.oldest = System.currentTimeMillis();
+        }
+
+        if ( record instanceof EnvelopeAudit ) {
+            this.commit((EnvelopeAudit) record);
+        } else if ( this.pending >= this.batchSize || this.isOverdue() ) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Determines whether the oldest pending record has waited for longer than
+     * the flush interval.
+     *
+     * @return <code>true</code> if the batches should be sent now
+     */
+    public boolean isOverdue() {
+        return this.pending > 0 && System.currentTimeMillis() - this.oldest
+                >= this.flushInterval;
+    }
+
+    /**
+     * Sends any pending batches to the server, within the open interchange's
+     * transaction. The envelopes are sent first, then the groups and then the
+     * documents.
+     *
+     * @throws SQLException if the batches cannot be sent; the interchange's
+     *                      transaction has then been rolled back
+     */
+    public void flush() throws SQLException {
+        if ( this.pending == 0 ) {
+            return;
+        }
+
+        try {
+            this.envelopes.executeBatch();
+            this.groups.executeBatch();
+            this.documents.executeBatch();
+        } catch (SQLException ex) {
+            // A failed interchange is not retried, so that one bad record
+            //+ cannot hold up all of the interchanges that follow it.
+            this.rollback(ex);
+            this.failed = true;
+            throw ex;
+        }
+
+        this.clearBatches();
+        this.uncommitted += this.pending;
+        this.pending = 0;
+    }
+
+    /**
+     * Adds a listener to tell about each commit and rollback. It should be
+     * added before the first record is written.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added by {@link #addListener(Listener)}.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Retrieves the time, in milliseconds, that a record may wait in a batch
+     * before the batches are sent.
+     *
+     * @return the flush interval
+     */
+    public long getFlushInterval() {
+        return this.flushInterval;
+    }
+
+    /**
+     * Retrieves the number of records waiting to be sent.
+     *
+     * @return the pending record count
+     */
+    public int getPendingCount() {
+        return this.pending;
+    }
+
+    /**
+     * Retrieves the number of records committed so far.
+     *
+     * @return the written record count
+     */
+    public long getWrittenCount() {
+        return this.written;
+    }
+
+    /**
+     * Retrieves the number of records rolled back, or dropped because their
+     * interchange had already been rolled back.
+     *
+     * @return the rolled back record count
+     */
+    public long getRolledBackCount() {
+        return this.rolledBack;
+    }
+
+    /**
+     * Rolls back the records of an interchange that never reached its IEA,
+     * puts the connection back into auto-commit mode and closes the prepared
+     * statements. The connection is left open.
+     *
+     * @throws SQLException if the transaction cannot be rolled back, or the
+     *                      statements cannot be closed
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            if ( this.pending > 0 || this.uncommitted > 0 ) {
+                this.rollback(null);
+            }
+            this.conn.setAutoCommit(true);
+        } finally {
+            this.envelopes.close();
+            this.groups.close();
+            this.documents.close();
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Sends the pending batches and commits the interchange's transaction.
+     */
+    private void commit(EnvelopeAudit envelope) throws SQLException {
+        try {
+            this.flush();
+            this.conn.commit();
+        } catch (SQLException ex) {
+            if ( !this.failed ) {
+                this.rollback(ex);
+            }
+            // The envelope ends the interchange, so there is nothing left of
+            //+ it to drop.
+            this.failed = false;
+            throw ex;
+        }
+
+        this.written += this.uncommitted;
+        this.uncommitted = 0;
+
+        for ( Listener l : this.listeners ) {
+            l.committed(envelope);
+        }
+    }
+
+    /**
+     * Rolls back the open transaction and discards the pending batches.
+     *
+     * @param cause the failure that led to the rollback, to which a failure
+     *              to roll back is added; or <code>null</code>
+     */
+    private void rollback(SQLException cause) throws SQLException {
+        this.rolledBack += this.pending + this.uncommitted;
+        this.pending = 0;
+        this.uncommitted = 0;
+        this.clearBatches();
+
+        try {
+            this.conn.rollback();
+        } catch (SQLException ex) {
+            if ( cause == null ) {
+                throw ex;
+            }
+            cause.addSuppressed(ex);
+        } finally {
+            for ( Listener l : this.listeners ) {
+                l.rolledBack();
+            }
+        }
+    }
+
+    /**
+     * Discards the statements' batches.
+     */
+    private void clearBatches() throws SQLException {
+        this.envelopes.clearBatch();
+        this.groups.clearBatch();
+        this.documents.clearBatch();
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,133 @@
+/* {DocumentAudit.java}
+ *
+ * An audit row for a Transaction Set.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+/**
+ * A <code>DocumentAudit</code> holds one row of the <tt>
+ * is_edi_audit_doc_details</tt> table, which stores audit information about
+ * each transaction within a functional group:
+ * <ul>
+ *  <li>Document Control Number (ST02)</li>
+ *  <li>Interchange Control Number (ISA13)</li>
+ *  <li>Functional Group Control Number (GS06)</li>
+ *  <li>Document Type (ST01)</li>
+ *  <li>Document Count (GE01)</li>
+ *  <li>Error Count (determined via validation algorithms)</li>
+ *  <li>Accepted (boolean whether accepted or rejected)</li>
+ * </ul>
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class DocumentAudit extends AuditRecord {
+    /**
+     * Interchange Control Number from the ISA13 field.
+     */
+    private final Integer txCtlNumber;
+    /**
+     * Functional Group Control Number from the GS06 field.
+     */
+    private final Integer grpCtlNumber;
+    /**
+     * Document Type Code from the ST01 field.
+     */
+    private final String docType;
+    /**
+     * Total number of documents contained in the transaction.
+     */
+    private final Integer docCount;
+    /**
+     * True if the document was accepted, false if rejected.
+     */
+    private final Boolean accepted;
+
+    /**
+     * Creates a new document audit record.
+     *
+     * @param ctlNumber    Document Control Number from the ST02 field
+     * @param txCtlNumber  Interchange Control Number from the ISA13 field.
+     * @param grpCtlNumber Functional Group Control Number from the GS06 field
+     * @param docType      Document Type Code from the ST01 field
+     * @param docCount     Total number of documents contained in the
+     *                     transaction.
+     * @param errCount     Total number of segment errors discovered through
+     *                     validation in the transaction set.
+     * @param accepted     True if the document was accepted, false if
+     *                     rejected.
+     */
+    public DocumentAudit(Integer ctlNumber, Integer txCtlNumber,
+                         Integer grpCtlNumber, String docType,
+                         Integer docCount, Integer errCount,
+                         Boolean accepted) {
+        super(ctlNumber, errCount);
+        this.txCtlNumber = txCtlNumber;
+        this.grpCtlNumber = grpCtlNumber;
+        this.docType = docType;
+        this.docCount = docCount;
+        this.accepted = accepted;
+    }
+
+    /**
+     * Retrieves the Interchange Control Number (ISA13).
+     *
+     * @return the Interchange Control Number (ISA13)
+     */
+    public Integer getInterchangeControlNumber() {
+        return this.txCtlNumber;
+    }
+
+    /**
+     * Retrieves the Functional Group Control Number (GS06).
+     *
+     * @return the Functional Group Control Number (GS06)
+     */
+    public Integer getGroupControlNumber() {
+        return this.grpCtlNumber;
+    }
+
+    /**
+     * Retrieves the Document Type Code (ST01).
+     *
+     * @return the Document Type Code (ST01)
+     */
+    public String getDocumentType() {
+        return this.docType;
+    }
+
+    /**
+     * Retrieves the document count.
+     *
+     * @return the document count
+     */
+    public Integer getDocumentCount() {
+        return this.docCount;
+    }
+
+    /**
+     * Determines whether the document was accepted.
+     *
+     * @return <code>true</code> if the document was accepted
+     */
+    public Boolean isAccepted() {
+        return this.accepted;
+    }
+}
@@ -0,0 +1,413 @@
+/* {DuplicateIndex.java}
+ *
+ * Remembers every interchange that has been recorded, by sender, receiver and
+ * control number, so that one sent again can be rejected at its header.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+import com.is2300.jedi.edi.utils.BloomFilter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A <code>DuplicateIndex</code> holds the key of every interchange whose audit
+ * records have been committed: its Interchange Sender ID (ISA06), Interchange
+ * Receiver ID (ISA08) and Interchange Control Number (ISA13). A trading
+ * partner that sends an interchange a second time sends the same key, so the
+ * parser can reject it as soon as it has read the Interchange Control Header,
+ * without ever looking at its body.
+ * <p>
+ * Each key is kept as a 64-bit hash, both in a {@link BloomFilter}, which
+ * answers for nearly every new interchange in a few bit probes, and in a hash
+ * table, which confirms the few that the filter lets through. Either way, the
+ * check takes the same time however many interchanges have been recorded.
+ * <p>
+ * The index is persisted to a local file, one key per line, to which each
+ * recorded interchange is appended; the file is read back into memory when the
+ * index is opened. A line torn by a crash is skipped.
+ * <p>
+ * Keys may also be <em>claimed</em> while their interchange is being
+ * processed, so that a copy of it arriving at the same time, in the same file
+ * or another one, is rejected as well. A claim ends when the interchange is
+ * {@link #record recorded} or the claim is {@link #release released}.
+ * <p>
+ * A <code>DuplicateIndex</code> is thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class DuplicateIndex implements Closeable {
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * The fewest keys the Bloom filter is sized for.
+     */
+    private static final int MIN_CAPACITY = 1 << 16;
+    /**
+     * Marks an empty slot of the hash table. No key hashes to it.
+     */
+    private static final long EMPTY = 0L;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The file to which the keys are persisted.
+     */
+    private final File file;
+    /**
+     * Appends the recorded keys to the file.
+     */
+    private final Writer out;
+    /**
+     * Answers quickly for the keys that have never been recorded.
+     */
+    private BloomFilter filter;
+    /**
+     * The recorded keys, in an open-addressed hash table.
+     */
+    private long[] table;
+    /**
+     * The number of keys in the table.
+     */
+    private int size;
+    /**
+     * The keys of the interchanges being processed.
+     */
+    private final Set<Long> claimed;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new <code>DuplicateIndex</code> over the supplied file, which
+     * is then open for appending.
+     *
+     * @param file the file to which the keys are persisted
+     * @param out  the writer appending to the file
+     */
+    private DuplicateIndex(File file, Writer out) {
+        this.file = file;
+        this.out = out;
+        this.table = new long[MIN_CAPACITY * 2];
+        this.filter = new BloomFilter(MIN_CAPACITY);
+        this.claimed = new HashSet<>();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Static Methods  ">
+    /**
+     * Opens the index persisted to the supplied file, creating the file if it
+     * does not yet exist.
+     *
+     * @param file the file to which the keys are persisted
+     * @return the index
+     * @throws IOException if the file cannot be read or opened for appending
+     */
+    public static DuplicateIndex open(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if ( dir != null && !dir.isDirectory() && !dir.mkdirs() ) {
+            throw new IOException("Could not create the directory " + dir);
+        }
+
+        // Make sure that a line torn by a crash does not swallow the first
+        //+ key appended after it.
+        boolean torn = false;
+        if ( file.length() > 0 ) {
+            try ( RandomAccessFile raf = new RandomAccessFile(file, "r") ) {
+                raf.seek(raf.length() - 1);
+                torn = raf.read() != '\n';
+            }
+        }
+
+        DuplicateIndex index = new DuplicateIndex(file, 
+                Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.APPEND));
+        try {
+            if ( torn ) {
+                index.out.write('\n');
+                index.out.flush();
+            }
+            index.load();
+        } catch (IOException ex) {
+            index.close();
+            throw ex;
+        }
+
+        return index;
+    }
+
+    /**
+     * Computes the key of an interchange. The sender and receiver IDs are
+     * padded out with spaces in the header, so they are trimmed first.
+     *
+     * @param sender    the Interchange Sender ID (ISA06)
+     * @param receiver  the Interchange Receiver ID (ISA08)
+     * @param ctlNumber the Interchange Control Number (ISA13)
+     * @return the 64-bit key
+     */
+    public static long key(String sender, String receiver, int ctlNumber) {
+        // FNV-1a over the IDs and the control number, then a final mix, so
+        //+ that both halves of the key are well spread for the Bloom filter.
+        long h = 0xCBF29CE484222325L;
+        h = hash(h, sender.trim());
+        h = (h ^ '\t') * 0x100000001B3L;
+        h = hash(h, receiver.trim());
+        h = (h ^ '\t') * 0x100000001B3L;
+        h = (h ^ ctlNumber) * 0x100000001B3L;
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+
+        return (h == EMPTY) ? 1L : h;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Determines whether the interchange with the supplied key has been
+     * recorded.
+     *
+     * @param key the interchange's key
+     * @return <code>true</code> if it has been recorded
+     */
+    public synchronized boolean contains(long key) {
+        return this.filter.mightContain(key) && this.find(key) >= 0;
+    }
+
+    /**
+     * Claims the supplied key for an interchange about to be processed.
+     *
+     * @param key the interchange's key
+     * @return <code>true</code> if the key is now claimed; <code>false</code>
+     *         if the interchange has already been recorded, or is being
+     *         processed already
+     */
+    public synchronized boolean claim(long key) {
+        return !this.contains(key) && this.claimed.add(key);
+    }
+
+    /**
+     * Releases the claim on the supplied key, if there is one, without
+     * recording the interchange, so that it may be processed again.
+     *
+     * @param key the interchange's key
+     */
+    public synchronized void release(long key) {
+        this.claimed.remove(key);
+    }
+
+    /**
+     * Records an interchange, ending the claim on its key, and persists its
+     * key to the file.
+     *
+     * @param sender    the Interchange Sender ID (ISA06)
+     * @param receiver  the Interchange Receiver ID (ISA08)
+     * @param ctlNumber the Interchange Control Number (ISA13)
+     * @throws IOException if the key cannot be written to the file
+     */
+    public synchronized void record(String sender, String receiver,
+                                    int ctlNumber) throws IOException {
+        long key = key(sender, receiver, ctlNumber);
+        this.claimed.remove(key);
+
+        if ( this.add(key) ) {
+            this.out.write(sender.trim() + "\t" + receiver.trim() + "\t"
+                           + ctlNumber + "\n");
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Retrieves the number of interchanges recorded.
+     *
+     * @return the key count
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the file to which the keys are persisted.
+     *
+     * @return the index file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Closes the file. The index must not be used afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.out.close();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Reads the keys persisted to the file into memory.
+     */
+    private void load() throws IOException {
+        try ( BufferedReader in = Files.newBufferedReader(this.file.toPath(),
+                                                   StandardCharsets.UTF_8) ) {
+            String line;
+            while ( (line = in.readLine()) != null ) {
+                String[] fields = line.split("\t", -1);
+
+                if ( fields.length != 3 ) {
+                    continue;
+                }
+
+                try {
+                    this.add(key(fields[0], fields[1],
+                                 Integer.parseInt(fields[2])));
+                } catch (NumberFormatException ex) {
+                    // A torn line; it was never fully recorded.
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a key to the Bloom filter and the hash table, growing them as
+     * needed.
+     *
+     * @param key the key
+     * @return <code>true</code> if the key was not yet in the table
+     */
+    private boolean add(long key) {
+        if ( this.find(key) >= 0 ) {
+            return false;
+        }
+
+        // Keep the table at most half full, so that the probes stay short.
+        if ( (this.size + 1) * 2 > this.table.length ) {
+            this.rehash(this.table.length * 2);
+        }
+        this.insert(key);
+        this.size++;
+
+        // A Bloom filter cannot grow, so once it holds more keys than it was
+        //+ sized for, build a bigger one from the table.
+        if ( this.size > this.filter.getCapacity() ) {
+            BloomFilter bigger = new BloomFilter(this.filter.getCapacity() * 2);
+            for ( long k : this.table ) {
+                if ( k != EMPTY ) {
+                    bigger.add(k);
+                }
+            }
+            this.filter = bigger;
+        } else {
+            this.filter.add(key);
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the slot of a key in the hash table.
+     *
+     * @param key the key
+     * @return the slot, or <code>-1</code> if the key is not in the table
+     */
+    private int find(long key) {
+        int mask = this.table.length - 1;
+
+        for ( int x = slot(key, mask); ; x = (x + 1) & mask ) {
+            if ( this.table[x] == key ) {
+                return x;
+            } else if ( this.table[x] == EMPTY ) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Puts a key that is not yet in the hash table into its first free slot.
+     *
+     * @param key the key
+     */
+    private void insert(long key) {
+        int mask = this.table.length - 1;
+        int x = slot(key, mask);
+
+        while ( this.table[x] != EMPTY ) {
+            x = (x + 1) & mask;
+        }
+        this.table[x] = key;
+    }
+
+    /**
+     * Moves the keys into a new hash table of the supplied length.
+     *
+     * @param length the new length, a power of two (2)
+     */
+    private void rehash(int length) {
+        long[] old = this.table;
+        this.table = new long[length];
+
+        for ( long k : old ) {
+            if ( k != EMPTY ) {
+                this.insert(k);
+            }
+        }
+    }
+
+    /**
+     * Determines the slot at which to start looking for a key.
+     *
+     * @param key  the key
+     * @param mask the length of the hash table, less one (1)
+     * @return the first slot to probe
+     */
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * Adds the characters of a string to an FNV-1a hash.
+     *
+     * @param h the hash so far
+     * @param s the string
+     * @return the new hash
+     */
+    private static long hash(long h, String s) {
+        for ( int x = 0; x < s.length(); x++ ) {
+            h = (h ^ s.charAt(x)) * 0x100000001B3L;
+        }
+        return h;
+    }
+    //</editor-fold>
+}
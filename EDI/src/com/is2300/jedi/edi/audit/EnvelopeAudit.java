@@ -0,0 +1,157 @@
+/* {EnvelopeAudit.java}
+ *
+ * An audit row for an Interchange Control envelope.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+import java.util.Date;
+
+/**
+ * An <code>EnvelopeAudit</code> holds one row of the <tt>is_edi_audits</tt>
+ * table, which stores audit information about each EDI transmission envelope:
+ * <ul>
+ *  <li>Interchange Control Number (ISA13)</li>
+ *  <li>Interchange Date (ISA09) and Interchange Time (ISA10)</li>
+ *  <li>Interchange Sender ID (ISA06)</li>
+ *  <li>Interchange Receiver ID (ISA08)</li>
+ *  <li>Functional Group Count (IEA01)</li>
+ *  <li>Error Count (determined via validation algorithms)</li>
+ * </ul>
+ * It also carries where the envelope ends within the transmission file, which
+ * is not stored in the table, but tells how far into the file the processing
+ * has safely got once the record has been committed.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class EnvelopeAudit extends AuditRecord {
+    /**
+     * Interchange Date and Time from the ISA09 and ISA10 fields.
+     */
+    private final Date date;
+    /**
+     * Interchange Sender ID from the ISA06 field.
+     */
+    private final String sender;
+    /**
+     * Interchange Receiver ID from the ISA08 field.
+     */
+    private final String rcvr;
+    /**
+     * Total number of Functional Groups contained in the envelope.
+     */
+    private final Integer grpCount;
+    /**
+     * The offset within the transmission file just past the Interchange
+     * Control Trailer (IEA), or -1 if it is not known.
+     */
+    private final long endOffset;
+
+    /**
+     * Creates a new envelope audit record.
+     *
+     * @param ctlNumber Interchange Control Number from the ISA13 field
+     * @param date      Interchange Date from the ISA09 field, along with the
+     *                  Interchange Time from the ISA10 field.
+     * @param sender    Interchange Sender ID from the ISA06 field
+     * @param rcvr      Interchange Receiver ID from the ISA08 field
+     * @param grpCount  Total number of Functional Groups contained in the
+     *                  envelope.
+     * @param errCount  Total number of interchange envelope errors discovered
+     *                  through validation.
+     */
+    public EnvelopeAudit(Integer ctlNumber, Date date, String sender,
+                         String rcvr, Integer grpCount, Integer errCount) {
+        this(ctlNumber, date, sender, rcvr, grpCount, errCount, -1L);
+    }
+
+    /**
+     * Creates a new envelope audit record for an envelope at a known place in
+     * the transmission file.
+     *
+     * @param ctlNumber Interchange Control Number from the ISA13 field
+     * @param date      Interchange Date from the ISA09 field, along with the
+     *                  Interchange Time from the ISA10 field.
+     * @param sender    Interchange Sender ID from the ISA06 field
+     * @param rcvr      Interchange Receiver ID from the ISA08 field
+     * @param grpCount  Total number of Functional Groups contained in the
+     *                  envelope.
+     * @param errCount  Total number of interchange envelope errors discovered
+     *                  through validation.
+     * @param endOffset the offset within the transmission file just past the
+     *                  Interchange Control Trailer (IEA)
+     */
+    public EnvelopeAudit(Integer ctlNumber, Date date, String sender,
+                         String rcvr, Integer grpCount, Integer errCount,
+                         long endOffset) {
+        super(ctlNumber, errCount);
+        this.date = date;
+        this.sender = sender;
+        this.rcvr = rcvr;
+        this.grpCount = grpCount;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Retrieves the Interchange Date and Time (ISA09, ISA10).
+     *
+     * @return the Interchange Date and Time (ISA09, ISA10)
+     */
+    public Date getDate() {
+        return this.date;
+    }
+
+    /**
+     * Retrieves the Interchange Sender ID (ISA06).
+     *
+     * @return the Interchange Sender ID (ISA06)
+     */
+    public String getSender() {
+        return this.sender;
+    }
+
+    /**
+     * Retrieves the Interchange Receiver ID (ISA08).
+     *
+     * @return the Interchange Receiver ID (ISA08)
+     */
+    public String getReceiver() {
+        return this.rcvr;
+    }
+
+    /**
+     * Retrieves the number of Functional Groups in the envelope.
+     *
+     * @return the number of Functional Groups in the envelope
+     */
+    public Integer getGroupCount() {
+        return this.grpCount;
+    }
+
+    /**
+     * Retrieves the offset within the transmission file just past the
+     * Interchange Control Trailer (IEA).
+     *
+     * @return the offset following the envelope, or -1 if it is not known
+     */
+    public long getEndOffset() {
+        return this.endOffset;
+    }
+}
@@ -0,0 +1,98 @@
+/* {GroupAudit.java}
+ *
+ * An audit row for a Functional Group.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.audit;
+
+/**
+ * A <code>GroupAudit</code> holds one row of the <tt>is_edi_audit_grp_details
+ * </tt> table, which stores audit information about each Functional Group
+ * within an envelope:
+ * <ul>
+ *  <li>Functional Group Control Number (GS06)</li>
+ *  <li>Interchange Control Number (ISA13)</li>
+ *  <li>Functional Group Code (GS01)</li>
+ *  <li>Transaction Count (GE01)</li>
+ *  <li>Error Count (determined via validation algorithms)</li>
+ * </ul>
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class GroupAudit extends AuditRecord {
+    /**
+     * Interchange Control Number from the ISA13 field.
+     */
+    private final Integer txCtlNumber;
+    /**
+     * Functional Group Code from the GS01 field.
+     */
+    private final String grpCode;
+    /**
+     * Count of documents in the Functional Group from the GE01 field.
+     */
+    private final Integer docCount;
+
+    /**
+     * Creates a new functional group audit record.
+     *
+     * @param ctlNumber   Functional Group Control Number from the GS06 field
+     * @param txCtlNumber Interchange Control Number from the ISA13 field
+     * @param grpCode     Functional Group Code from the GS01 field
+     * @param docCount    Count of documents in the Functional Group from the
+     *                    GE01 field
+     * @param errCount    Total number of Functional Group errors discovered
+     *                    through validation.
+     */
+    public GroupAudit(Integer ctlNumber, Integer txCtlNumber, String grpCode,
+                      Integer docCount, Integer errCount) {
+        super(ctlNumber, errCount);
+        this.txCtlNumber = txCtlNumber;
+        this.grpCode = grpCode;
+        this.docCount = docCount;
+    }
+
+    /**
+     * Retrieves the Interchange Control Number (ISA13).
+     *
+     * @return the Interchange Control Number (ISA13)
+     */
+    public Integer getInterchangeControlNumber() {
+        return this.txCtlNumber;
+    }
+
+    /**
+     * Retrieves the Functional Group Code (GS01).
+     *
+     * @return the Functional Group Code (GS01)
+     */
+    public String getGroupCode() {
+        return this.grpCode;
+    }
+
+    /**
+     * Retrieves the document count.
+     *
+     * @return the document count
+     */
+    public Integer getDocumentCount() {
+        return this.docCount;
+    }
+}
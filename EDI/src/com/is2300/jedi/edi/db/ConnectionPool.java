@@ -0,0 +1,420 @@
+/* {ConnectionPool.java}
+ *
+ * A small pool of database connections shared by the EDI processor runs.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.db;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * The <code>ConnectionPool</code> is a small <code>javax.sql.DataSource</code>
+ * that keeps the physical connections to the database server open between
+ * runs of the EDI processor, so that a run does not have to pay for loading
+ * the driver and logging in to the server.
+ * <p>
+ * At most {@link #getMaxSize() max size} connections are lent out at any one
+ * time; a borrower that finds them all in use waits up to the borrow timeout
+ * before an <code>java.sql.SQLException</code> is thrown. An idle connection
+ * is validated before it is lent out again, and is replaced if the server has
+ * dropped it in the meantime.
+ * <p>
+ * The connections handed out are wrappers around the physical ones. Closing a
+ * wrapper returns its connection to the pool, after rolling back any work
+ * left uncommitted and putting the connection back into auto-commit mode.
+ * Closing the pool closes the idle connections at once, and those still lent
+ * out as they come back.
+ * <p>
+ * The pool is thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default number of connections that may be lent out at once.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4;
+    /**
+     * The default time, in seconds, a borrower waits for a connection.
+     */
+    public static final int DEFAULT_BORROW_TIMEOUT = 30;
+    /**
+     * The time, in seconds, the server has to answer when an idle connection
+     * is validated.
+     */
+    public static final int VALIDATION_TIMEOUT = 5;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    /**
+     * One permit for each connection that may be lent out.
+     */
+    private final Semaphore permits;
+    /**
+     * The physical connections waiting to be lent out, most recently returned
+     * first.
+     */
+    private final Deque<Connection> idle;
+    private int borrowTimeout;
+    private PrintWriter logWriter;
+    private boolean closed;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a pool of connections to a database. No connection is made until
+     * the first one is borrowed.
+     *
+     * @param driver   the class name of the JDBC driver to load
+     * @param url      the JDBC URL of the database
+     * @param user     the user to log in as
+     * @param password the user's password
+     * @param maxSize  the number of connections that may be lent out at once
+     * @throws ClassNotFoundException if the driver cannot be loaded
+     */
+    public ConnectionPool(String driver, String url, String user,
+                          String password, int maxSize)
+            throws ClassNotFoundException {
+        if ( maxSize < 1 ) {
+            throw new IllegalArgumentException("The pool needs room for at "
+                    + "least one connection: " + maxSize);
+        }
+
+        Class.forName(driver);
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new ArrayDeque<>(maxSize);
+        this.borrowTimeout = DEFAULT_BORROW_TIMEOUT;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Borrows a connection from the pool. The connection must be closed once
+     * it is no longer needed, which returns it to the pool.
+     *
+     * @return a valid connection
+     * @throws SQLException if the pool is closed, no connection became free
+     *                      within the borrow timeout, or a new connection
+     *                      could not be made
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        try {
+            if ( !this.permits.tryAcquire(this.borrowTimeout,
+                                          TimeUnit.SECONDS) ) {
+                throw new SQLException("No database connection became free "
+                        + "within " + this.borrowTimeout + " seconds.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database "
+                    + "connection.", ex);
+        }
+
+        try {
+            Connection physical = this.borrowIdle();
+            if ( physical == null ) {
+                physical = DriverManager.getConnection(this.url, this.user,
+                                                       this.password);
+            }
+            return this.wrap(physical);
+        } catch (SQLException | RuntimeException ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Not supported: the pool always logs in as the user it was created for.
+     *
+     * @throws SQLFeatureNotSupportedException always
+     */
+    @Override
+    public Connection getConnection(String username, String password)
+            throws SQLException {
+        throw new SQLFeatureNotSupportedException("The connection pool only "
+                + "lends out connections for its own user.");
+    }
+
+    /**
+     * Closes the idle connections and stops lending out new ones. Connections
+     * still lent out are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        Connection[] toClose;
+        synchronized (this.idle) {
+            this.closed = true;
+            toClose = this.idle.toArray(new Connection[this.idle.size()]);
+            this.idle.clear();
+        }
+
+        for ( Connection physical : toClose ) {
+            closeQuietly(physical);
+        }
+    }
+
+    /**
+     * Determines whether the pool has been closed.
+     *
+     * @return <code>true</code> once {@link #close()} has been called
+     */
+    public boolean isClosed() {
+        synchronized (this.idle) {
+            return this.closed;
+        }
+    }
+
+    /**
+     * Retrieves the number of connections that may be lent out at once.
+     *
+     * @return the maximum pool size
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Retrieves the number of connections currently lent out.
+     *
+     * @return the number of borrowed connections
+     */
+    public int getActiveCount() {
+        return this.maxSize - this.permits.availablePermits();
+    }
+
+    /**
+     * Retrieves the number of connections waiting in the pool.
+     *
+     * @return the number of idle connections
+     */
+    public int getIdleCount() {
+        synchronized (this.idle) {
+            return this.idle.size();
+        }
+    }
+
+    @Override
+    public synchronized PrintWriter getLogWriter() {
+        return this.logWriter;
+    }
+
+    @Override
+    public synchronized void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    /**
+     * Sets the time, in seconds, a borrower waits for a connection.
+     *
+     * @param seconds the borrow timeout
+     */
+    @Override
+    public synchronized void setLoginTimeout(int seconds) {
+        this.borrowTimeout = seconds;
+    }
+
+    @Override
+    public synchronized int getLoginTimeout() {
+        return this.borrowTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if ( iface.isInstance(this) ) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Takes the most recently returned idle connection that is still valid,
+     * closing any that are not.
+     *
+     * @return a valid idle connection, or <code>null</code> if there is none
+     */
+    private Connection borrowIdle() throws SQLException {
+        while ( true ) {
+            Connection physical;
+            synchronized (this.idle) {
+                if ( this.closed ) {
+                    throw new SQLException("The connection pool is closed.");
+                }
+                physical = this.idle.pollFirst();
+            }
+
+            if ( physical == null ) {
+                return null;
+            }
+
+            // Validate outside of the lock, as this is a round trip to the
+            //+ server.
+            boolean valid;
+            try {
+                valid = physical.isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException ex) {
+                valid = false;
+            }
+
+            if ( valid ) {
+                return physical;
+            }
+            closeQuietly(physical);
+        }
+    }
+
+    /**
+     * Puts a connection back into the pool once its borrower closes it.
+     */
+    private void giveBack(Connection physical) {
+        boolean keep;
+        try {
+            if ( !physical.getAutoCommit() ) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            keep = !physical.isClosed();
+        } catch (SQLException ex) {
+            keep = false;
+        }
+
+        synchronized (this.idle) {
+            if ( keep && !this.closed ) {
+                this.idle.offerFirst(physical);
+                physical = null;
+            }
+        }
+
+        if ( physical != null ) {
+            closeQuietly(physical);
+        }
+        this.permits.release();
+    }
+
+    /**
+     * Wraps a physical connection so that closing it returns it to the pool.
+     */
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new PooledConnection(physical));
+    }
+
+    /**
+     * Closes a physical connection, ignoring any error.
+     */
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException ex) {
+            // The connection is being thrown away anyway.
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Classes  ">
+    /**
+     * Passes every call through to the physical connection, except for
+     * <code>close</code>, which returns it to the pool. Once closed, the
+     * wrapper refuses any further use.
+     */
+    private class PooledConnection implements InvocationHandler {
+        private Connection physical;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+            Connection target;
+
+            synchronized (this) {
+                if ( name.equals("close") ) {
+                    if ( this.physical != null ) {
+                        Connection returned = this.physical;
+                        this.physical = null;
+                        giveBack(returned);
+                    }
+                    return null;
+                } else if ( name.equals("isClosed") ) {
+                    return this.physical == null;
+                } else if ( name.equals("equals") ) {
+                    return proxy == args[0];
+                } else if ( name.equals("hashCode") ) {
+                    return System.identityHashCode(proxy);
+                } else if ( name.equals("toString") ) {
+                    return "PooledConnection[" + this.physical + "]";
+                } else if ( this.physical == null ) {
+                    throw new SQLException("The connection has been returned "
+                            + "to the pool.");
+                }
+                target = this.physical;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+    //</editor-fold>
+}
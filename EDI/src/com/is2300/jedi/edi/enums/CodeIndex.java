@@ -0,0 +1,243 @@
+/* {CodeIndex.java}
+ *
+ * Finds the constant of a code-list enumeration for a code, without scanning
+ * * the constants or allocating.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.enums;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A <code>CodeIndex</code> finds the constant of a code-list enumeration for
+ * a code read from an element. The codes are kept in an open-addressed hash
+ * table, built once when the enumeration is loaded and never changed, so
+ * a look-up costs a hash of the code and, as a rule, a single comparison.
+ * <p>
+ * Codes are looked up as <code>java.lang.CharSequence</code>s, so that an
+ * element can be checked in place, as the segment reader holds it, without
+ * first being copied into a <code>java.lang.String</code>. A look-up does not
+ * allocate anything. Codes are compared exactly, as X12 codes are case
+ * sensitive.
+ * <p>
+ * <code>CodeIndex</code> objects are immutable, so they may be shared freely
+ * between threads.
+ *
+ * @param <E> the enumeration indexed
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class CodeIndex<E extends Enum<E> & Coded> {
+    /**
+     * The enumeration indexed.
+     */
+    private final Class<E> type;
+    /**
+     * The codes, by slot in the table; <code>null</code> for an empty slot.
+     */
+    private final String[] codes;
+    /**
+     * The constants, in the same slots as their codes.
+     */
+    private final E[] constants;
+    /**
+     * The constants in the order in which they are declared.
+     */
+    private final List<E> values;
+    /**
+     * The number of slots, less one, to mask a hash with.
+     */
+    private final int mask;
+
+    /**
+     * Indexes the constants of an enumeration by their codes.
+     *
+     * @param type the enumeration
+     * @throws IllegalArgumentException if two of the constants have the same
+     *                                  code
+     */
+    public CodeIndex(Class<E> type) {
+        this.type = type;
+
+        E[] declared = type.getEnumConstants();
+        this.values = new ConstantList<>(declared);
+
+        // Keep the table at most half full, so that the probe sequences stay
+        //+ short.
+        int slots = Integer.highestOneBit(Math.max(declared.length, 1)) << 2;
+        this.mask = slots - 1;
+        this.codes = new String[slots];
+        this.constants = Arrays.copyOf(declared, slots);
+        Arrays.fill(this.constants, null);
+
+        for ( E constant : declared ) {
+            String code = constant.getCode();
+            int slot = hash(code) & this.mask;
+            while ( this.codes[slot] != null ) {
+                if ( this.codes[slot].equals(code) ) {
+                    throw new IllegalArgumentException(type.getSimpleName()
+                            + "." + constant.name() + " has the same code ("
+                            + code + ") as " + this.constants[slot].name());
+                }
+                slot = (slot + 1) & this.mask;
+            }
+
+            this.codes[slot] = code;
+            this.constants[slot] = constant;
+        }
+    }
+
+    /**
+     * Retrieves the constant for a code.
+     *
+     * @param code the code
+     * @return the constant, or <code>null</code> if the code is not in the
+     *         code list
+     */
+    public E get(CharSequence code) {
+        if ( code == null ) {
+            return null;
+        }
+
+        int slot = hash(code) & this.mask;
+        String candidate;
+        while ( (candidate = this.codes[slot]) != null ) {
+            if ( matches(candidate, code) ) {
+                return this.constants[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Determines whether a code is in the code list.
+     *
+     * @param code the code
+     * @return <code>true</code> if the code is in the code list
+     */
+    public boolean contains(CharSequence code) {
+        return this.get(code) != null;
+    }
+
+    /**
+     * Retrieves the enumeration indexed.
+     *
+     * @return the enumeration
+     */
+    public Class<E> getType() {
+        return this.type;
+    }
+
+    /**
+     * Retrieves the constants of the enumeration, in the order in which they
+     * are declared.
+     *
+     * @return an unmodifiable list of the constants
+     */
+    public List<E> values() {
+        return this.values;
+    }
+
+    /**
+     * Retrieves the number of codes in the code list.
+     *
+     * @return the number of codes
+     */
+    public int size() {
+        return this.values.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CodeIndex[" + this.type.getSimpleName() + ", " + this.size()
+                + " codes]";
+    }
+
+    /**
+     * Hashes a code. This is the hash of <code>java.lang.String</code>, so
+     * that a code hashes the same whatever holds it, with its high bits
+     * spread into the low ones used to pick a slot.
+     *
+     * @param code the code
+     * @return the hash
+     */
+    private static int hash(CharSequence code) {
+        int h = 0;
+        for ( int x = 0; x < code.length(); x++ ) {
+            h = 31 * h + code.charAt(x);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compares a code in the table with one being looked up.
+     *
+     * @param code      the code in the table
+     * @param candidate the code being looked up
+     * @return <code>true</code> if they are the same characters
+     */
+    private static boolean matches(String code, CharSequence candidate) {
+        int length = code.length();
+        if ( candidate.length() != length ) {
+            return false;
+        }
+
+        for ( int x = 0; x < length; x++ ) {
+            if ( code.charAt(x) != candidate.charAt(x) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An unmodifiable view of the declared constants, which does not need to
+     * copy them as <code>values()</code> does.
+     */
+    private static final class ConstantList<E> extends AbstractList<E> {
+        /**
+         * The constants.
+         */
+        private final E[] constants;
+
+        /**
+         * Creates a view of the constants.
+         *
+         * @param constants the constants
+         */
+        ConstantList(E[] constants) {
+            this.constants = constants;
+        }
+
+        @Override
+        public E get(int index) {
+            return this.constants[index];
+        }
+
+        @Override
+        public int size() {
+            return this.constants.length;
+        }
+    }
+}
@@ -1,10 +1,8 @@
-/* {ProcessThread.java}
- * 
- * An extension of the Thread interface to have the processing of EDI trans-
- * missions run in a separate thread from the rest of the application and as a
- * daemon, so that it can complete before it ends, even if the application is
- * terminated during a run for some reason.
- * 
+/* {Coded.java}
+ *
+ * Implemented by the enumerations whose constants stand for the values of an
+ * * X12 code list.
+ *
  * Copyright (C) 2017 Integrity Solutions
  *
  *    This program is free software: you can redistribute it and/or modify
@@ -21,21 +19,24 @@
  *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package com.is2300.jedi.edi;
+package com.is2300.jedi.edi.enums;
 
 /**
+ * A <code>Coded</code> constant stands for a value of an X12 code list, such
+ * as a Currency Code or an Entity Identifier Code, as it is written in an
+ * element of a segment. The enumerations of code lists index their constants
+ * by these codes in a {@link CodeIndex}, so that the constant for a code can
+ * be found without scanning them all.
  *
- * @author Sean Carrick
+ * @author Integrity Solutions
  * @version 0.5.0
  * @since 0.5.0
  */
-public class ProcessThread extends Thread {
-    public ProcessThread(String str) {
-        super(str);
-    }
-
-    public void run() {
-        // Create our Processor object to process the EDI transmissions.
-        Processor shepherd = new Processor();
-    }
+public interface Coded {
+    /**
+     * Retrieves the code, as it is written in an element.
+     *
+     * @return the code
+     */
+    String getCode();
 }
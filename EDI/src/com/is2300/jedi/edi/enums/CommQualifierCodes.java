@@ -28,7 +28,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum CommQualifierCodes {
+public enum CommQualifierCodes implements Coded {
     EMAIL("EM"),
     FAX("FX"),
     TELEPHONE("TE"),
@@ -48,6 +48,41 @@ public enum CommQualifierCodes {
         this.value = value;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<CommQualifierCodes> CODES
+            = new CodeIndex<>(CommQualifierCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static CommQualifierCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<CommQualifierCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Returns the <code>java.lang.String</code> representation of the current
      * value.
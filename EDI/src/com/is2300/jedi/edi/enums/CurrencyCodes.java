@@ -29,7 +29,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum CurrencyCodes {
+public enum CurrencyCodes implements Coded {
     UAE_DIRHAM("AED"),
     AFGHANISTAN_AFGHANI("AFN"),
     ALBANIAN_LEK("ALL"),
@@ -173,7 +173,7 @@ public enum CurrencyCodes {
     TRINIDAD_AND_TOBAGO_DOLLAR("TTD"),
     TUVALU_DOLLAR("TVD"),
     TAIWAN_NEW_DOLLAR("TWD"),
-    TANZANIA_SHILLING("UGX"),
+    TANZANIA_SHILLING("TZS"),
     UKRAINE_HRYVNIA("UAH"),
     UGANDA_SHILLING("UGX"),
     UNITED_STATES_DOLLAR("USD"),
@@ -200,6 +200,41 @@ public enum CurrencyCodes {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<CurrencyCodes> CODES
+            = new CodeIndex<>(CurrencyCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static CurrencyCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<CurrencyCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Gets the current Currency Code as a <tt>java.lang.String</tt>.
      * 
@@ -28,7 +28,23 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum EntityIdentifierCodes {
+public enum EntityIdentifierCodes implements Coded {
+    /**
+     * Party that receives the submission (Receiver).
+     */
+    SUBMISSION_RECEIVER("40"),
+    /**
+     * Party that sent the submission (Submitter).
+     */
+    SUBMITTER("41"),
+    /**
+     * Broker or sales office through which the goods were sold.
+     */
+    BROKER("BO"),
+    /**
+     * Party to be billed, to whom the goods are also shipped.
+     */
+    BILL_AND_SHIP_TO("BS"),
     /**
      * Party to be billed for other than the freight (Bill To).
      */
@@ -41,16 +57,36 @@ public enum EntityIdentifierCodes {
      * Identifies the carrier commissioned for the shipment.
      */
     CARRIER("CA"),
+    /**
+     * Party to whom the goods are consigned.
+     */
+    CONSIGNEE("CN"),
+    /**
+     * Address to which the goods are to be delivered.
+     */
+    DELIVERY_ADDRESS("DA"),
     /**
      * Suppliers should use "II" if the Issuer of Invoice is different from 
      * their corporate office. Either "II" or "SU" must be used. They can both
      * be used.
      */
     INVOICE_ISSUER("II"),
+    /**
+     * Manufacturer of the goods.
+     */
+    MANUFACTURER("MF"),
+    /**
+     * Party that placed the order (Ordered By).
+     */
+    ORDERED_BY("OB"),
     /**
      * Party to receive payment on the Invoice.
      */
     PAYEE("PE"),
+    /**
+     * Party to receive the bill for the freight.
+     */
+    FREIGHT_BILL_PARTY("PF"),
     /**
      * Party to receive all correspondence in conjuction with this invoice.
      */
@@ -59,6 +95,14 @@ public enum EntityIdentifierCodes {
      * Party to receive the Advanced Ship Notice (ASN) for this invoice.
      */
     ASN_PARTY("PN"),
+    /**
+     * Party to receive the invoice for the goods or services.
+     */
+    INVOICE_PARTY("PO"),
+    /**
+     * Party that pays the invoice (Payer).
+     */
+    PAYER("PR"),
     /**
      * Party to receive the Invoice.
      */
@@ -95,7 +139,11 @@ public enum EntityIdentifierCodes {
     /**
      * The vendor of the goods sold.
      */
-    VENDOR("VN");
+    VENDOR("VN"),
+    /**
+     * An entity whose meaning is agreed upon by the trading partners.
+     */
+    MUTUALLY_DEFINED("ZZ");
     
     /**
      * Member field which contains the value of the <tt>java.lang.Enum</tt>
@@ -116,6 +164,41 @@ public enum EntityIdentifierCodes {
         this.setup();
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<EntityIdentifierCodes> CODES
+            = new CodeIndex<>(EntityIdentifierCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static EntityIdentifierCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<EntityIdentifierCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Returns the current enumeration value as a <tt>java.lang.String</tt>.
      * 
@@ -141,6 +224,18 @@ public enum EntityIdentifierCodes {
      */
     public void setup() {
         switch (this.value) {
+            case "40":
+                this.definition = "Receiver";
+                break;
+            case "41":
+                this.definition = "Submitter";
+                break;
+            case "BO":
+                this.definition = "Broker or Sales Office";
+                break;
+            case "BS":
+                this.definition = "Bill and Ship To";
+                break;
             case "BY":
                 this.definition = "Buying Party";
                 break;
@@ -150,18 +245,40 @@ public enum EntityIdentifierCodes {
             case "CA":
                 this.definition = "Carrier";
                 break;
+            case "CN":
+                this.definition = "Consignee";
+                break;
+            case "DA":
+                this.definition = "Delivery Address";
+                break;
             case "II":
                 this.definition = "Issuer of Invoice";
                 break;
+            case "MF":
+                this.definition = "Manufacturer of Goods";
+                break;
+            case "OB":
+                this.definition = "Ordered By";
+                break;
             case "PE":
                 this.definition = "Payee";
                 break;
+            case "PF":
+                this.definition = "Party to Receive Freight Bill";
+                break;
             case "PJ":
                 this.definition = "Party to Receive Correspondence";
                 break;
             case "PN":
                 this.definition = "Party to Receive Shipping Notice";
                 break;
+            case "PO":
+                this.definition = "Party to Receive Invoice for Goods or "
+                                + "Services";
+                break;
+            case "PR":
+                this.definition = "Payer";
+                break;
             case "RE":
                 this.definition = "Party to receive commercial invoice remittance";
                 break;
@@ -189,6 +306,9 @@ public enum EntityIdentifierCodes {
             case "VN":
                 this.definition = "Vendor";
                 break;
+            case "ZZ":
+                this.definition = "Mutually Defined";
+                break;
             default:
                 this.definition = "Undefined Entity Identifier Code";
                 break;
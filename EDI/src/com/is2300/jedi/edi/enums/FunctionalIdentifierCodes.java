@@ -27,7 +27,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum FunctionalIdentifierCodes {
+public enum FunctionalIdentifierCodes implements Coded {
     INVOICE("IN");
     
     /**
@@ -44,6 +44,41 @@ public enum FunctionalIdentifierCodes {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<FunctionalIdentifierCodes> CODES
+            = new CodeIndex<>(FunctionalIdentifierCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static FunctionalIdentifierCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<FunctionalIdentifierCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Function to get the full name of the Functional Identifier Code for the
      * current value.
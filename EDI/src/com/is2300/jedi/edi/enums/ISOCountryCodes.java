@@ -33,7 +33,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum ISOCountryCodes {
+public enum ISOCountryCodes implements Coded {
     //<editor-fold desc="   Country Constants   ">
     AFGHANISTAN("AF"),
     ALAND_ISLANDS("AX"),
@@ -319,6 +319,41 @@ public enum ISOCountryCodes {
         this.setup();
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<ISOCountryCodes> CODES
+            = new CodeIndex<>(ISOCountryCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static ISOCountryCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<ISOCountryCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Returns the <tt><a
      * href="http://docs.oracle.com/javase/8/docs/api/java/lang/String.html">
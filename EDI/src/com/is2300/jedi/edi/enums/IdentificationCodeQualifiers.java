@@ -29,7 +29,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum IdentificationCodeQualifiers {
+public enum IdentificationCodeQualifiers implements Coded {
     /**
      * Dun & Bradstreet
      */
@@ -210,6 +210,41 @@ public enum IdentificationCodeQualifiers {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<IdentificationCodeQualifiers> CODES
+            = new CodeIndex<>(IdentificationCodeQualifiers.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static IdentificationCodeQualifiers fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<IdentificationCodeQualifiers> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     @Override
     public String toString() {
         return this.value;
@@ -28,7 +28,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum ReferenceIDQualifiers {
+public enum ReferenceIDQualifiers implements Coded {
     /**
      * <strong>Billing Account</strong>
      * <p>
@@ -214,6 +214,41 @@ public enum ReferenceIDQualifiers {
         this.setup();
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<ReferenceIDQualifiers> CODES
+            = new CodeIndex<>(ReferenceIDQualifiers.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static ReferenceIDQualifiers fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<ReferenceIDQualifiers> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Private method to initialize this enumeration's definition based upon the
      * value.
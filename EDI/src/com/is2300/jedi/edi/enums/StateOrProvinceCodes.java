@@ -30,7 +30,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum StateOrProvinceCodes {
+public enum StateOrProvinceCodes implements Coded {
     ALBERTA("AB"),
     ALASKA("AK"),
     ALABAMA("AL"),
@@ -110,6 +110,41 @@ public enum StateOrProvinceCodes {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<StateOrProvinceCodes> CODES
+            = new CodeIndex<>(StateOrProvinceCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static StateOrProvinceCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<StateOrProvinceCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     
     @Override
     public String toString() {
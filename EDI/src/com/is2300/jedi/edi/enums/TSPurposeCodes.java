@@ -27,7 +27,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum TSPurposeCodes {
+public enum TSPurposeCodes implements Coded {
     ORIGINAL("01"),
     DELETE("03");
     
@@ -37,6 +37,41 @@ public enum TSPurposeCodes {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<TSPurposeCodes> CODES
+            = new CodeIndex<>(TSPurposeCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static TSPurposeCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<TSPurposeCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     
     @Override
     public String toString() {
@@ -28,7 +28,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum TransactionTypeCodes {
+public enum TransactionTypeCodes implements Coded {
     CREDIT_MEMO("CR"),
     DEBIT_INVOICE("DI"),
     DEBIT_MEMO("DR");
@@ -39,6 +39,41 @@ public enum TransactionTypeCodes {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<TransactionTypeCodes> CODES
+            = new CodeIndex<>(TransactionTypeCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static TransactionTypeCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<TransactionTypeCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return this.value;
+    }
+    
     /**
      * Gets the definition of the <tt>TransactionTypeCodes</tt> value.
      * 
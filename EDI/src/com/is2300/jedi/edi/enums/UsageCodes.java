@@ -27,7 +27,7 @@ package com.is2300.jedi.edi.enums;
  * @version 0.5.0
  * @since 0.5.0
  */
-public enum UsageCodes {
+public enum UsageCodes implements Coded {
     /**
      * The EDI transmission contains production data.
      */
@@ -50,6 +50,41 @@ public enum UsageCodes {
         this.value = val;
     }
     
+    /**
+     * The constants, indexed by their codes.
+     */
+    private static final CodeIndex<UsageCodes> CODES
+            = new CodeIndex<>(UsageCodes.class);
+    
+    /**
+     * Retrieves the constant for a code.
+     * 
+     * @param code the code, as it is written in an element
+     * @return the constant, or <tt>null</tt> if the code is not valid
+     */
+    public static UsageCodes fromCode(CharSequence code) {
+        return CODES.get(code);
+    }
+    
+    /**
+     * Retrieves the index of the constants by their codes.
+     * 
+     * @return the index
+     */
+    public static CodeIndex<UsageCodes> codes() {
+        return CODES;
+    }
+    
+    /**
+     * Retrieves the code of this constant, as it is written in an element.
+     * 
+     * @return the code
+     */
+    @Override
+    public String getCode() {
+        return String.valueOf(this.value);
+    }
+    
     /**
      * Returns the complete <tt>java.lang.String</tt> value of whether the EDI
      * transmission contains <em>Production</em> or <em>Test</em> data.
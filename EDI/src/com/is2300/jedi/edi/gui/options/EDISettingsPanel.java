@@ -49,6 +49,8 @@ final class EDISettingsPanel extends javax.swing.JPanel {
         optSeconds = new javax.swing.JRadioButton();
         optMinutes = new javax.swing.JRadioButton();
         optHours = new javax.swing.JRadioButton();
+        chkMapped = new javax.swing.JCheckBox();
+        chkWatch = new javax.swing.JCheckBox();
         pnlProcessing = new javax.swing.JPanel();
         chkDatabase = new javax.swing.JCheckBox();
         pnlDbServer = new javax.swing.JPanel();
@@ -87,6 +89,10 @@ final class EDISettingsPanel extends javax.swing.JPanel {
         btngrpServer.add(optHours);
         org.openide.awt.Mnemonics.setLocalizedText(optHours, org.openide.util.NbBundle.getMessage(EDISettingsPanel.class, "EDISettingsPanel.optHours.text")); // NOI18N
 
+        org.openide.awt.Mnemonics.setLocalizedText(chkMapped, org.openide.util.NbBundle.getMessage(EDISettingsPanel.class, "EDISettingsPanel.chkMapped.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(chkWatch, org.openide.util.NbBundle.getMessage(EDISettingsPanel.class, "EDISettingsPanel.chkWatch.text")); // NOI18N
+
         javax.swing.GroupLayout pnlServerLayout = new javax.swing.GroupLayout(pnlServer);
         pnlServer.setLayout(pnlServerLayout);
         pnlServerLayout.setHorizontalGroup(
@@ -108,7 +114,9 @@ final class EDISettingsPanel extends javax.swing.JPanel {
                         .addGap(35, 35, 35)
                         .addComponent(optMinutes)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
-                        .addComponent(optHours)))
+                        .addComponent(optHours))
+                    .addComponent(chkMapped)
+                    .addComponent(chkWatch))
                 .addContainerGap())
         );
         pnlServerLayout.setVerticalGroup(
@@ -129,6 +137,10 @@ final class EDISettingsPanel extends javax.swing.JPanel {
                     .addComponent(optSeconds)
                     .addComponent(optMinutes)
                     .addComponent(optHours))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(chkMapped)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(chkWatch)
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
@@ -315,6 +327,10 @@ final class EDISettingsPanel extends javax.swing.JPanel {
         }
         spinPeriod.setValue(NbPreferences.forModule(EDISettingsPanel.class)
                                                     .getInt("CheckPeriod", 15));
+        chkMapped.setSelected(NbPreferences.forModule(EDISettingsPanel.class)
+                                             .getBoolean("MappedInput", false));
+        chkWatch.setSelected(NbPreferences.forModule(EDISettingsPanel.class)
+                                           .getBoolean("WatchIncoming", false));
         chkDatabase.setSelected(NbPreferences.forModule(EDISettingsPanel.class)
                                                  .getBoolean("Database", true));
         txtSvrPath.setText(NbPreferences.forModule(EDISettingsPanel.class).get(
@@ -354,6 +370,10 @@ final class EDISettingsPanel extends javax.swing.JPanel {
         
         NbPreferences.forModule(EDISettingsPanel.class).put("TimePeriod", 
                                                                         period);
+        NbPreferences.forModule(EDISettingsPanel.class).putBoolean(
+                                     "MappedInput", chkMapped.isSelected());
+        NbPreferences.forModule(EDISettingsPanel.class).putBoolean(
+                                    "WatchIncoming", chkWatch.isSelected());
         NbPreferences.forModule(EDISettingsPanel.class).putBoolean("Database", 
                                                       chkDatabase.isSelected());
         NbPreferences.forModule(EDISettingsPanel.class).put("SvrPath", 
@@ -378,6 +398,8 @@ final class EDISettingsPanel extends javax.swing.JPanel {
     private javax.swing.JCheckBox chkDatabase;
     private javax.swing.JCheckBox chkFileNames;
     private javax.swing.JCheckBox chkFiles;
+    private javax.swing.JCheckBox chkMapped;
+    private javax.swing.JCheckBox chkWatch;
     private javax.swing.JLabel lblFilename;
     private javax.swing.JLabel lblOutputPath;
     private javax.swing.JLabel lblPeriod;
@@ -0,0 +1,156 @@
+/* {ControlNumbers.java}
+ *
+ * Hands out the interchange control numbers of the documents we send, and  *
+ * remembers the last one across runs.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <code>ControlNumbers</code> hands out the Interchange Control Numbers
+ * (ISA13) of the interchanges that we send, one after the other, from 1 up to
+ * 999,999,999 and then round again. The last number handed out is kept in a
+ * small file, so that the numbers carry on from one run to the next rather
+ * than starting over, which a trading partner would take for duplicates.
+ * <p>
+ * There is one <code>ControlNumbers</code> for each file, shared by every
+ * thread that sends documents, so all of the methods are thread-safe. The
+ * file is replaced as a whole each time a number is handed out, so a crash
+ * can never leave it half-written.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class ControlNumbers {
+    /**
+     * The largest control number; the one after it is 1.
+     */
+    public static final int MAX = 999999999;
+
+    /**
+     * The control numbers of each file, by its absolute path.
+     */
+    private static final ConcurrentMap<String, ControlNumbers> OPEN
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The file holding the last control number handed out.
+     */
+    private final File file;
+    /**
+     * The last control number handed out, or zero (0) if there has been
+     * none.
+     */
+    private int last;
+
+    /**
+     * Reads the last control number from its file.
+     *
+     * @param file the file
+     * @throws IOException if the file exists but cannot be read
+     */
+    private ControlNumbers(File file) throws IOException {
+        this.file = file;
+
+        if ( file.isFile() ) {
+            String text = new String(Files.readAllBytes(file.toPath()),
+                                     StandardCharsets.US_ASCII).trim();
+            try {
+                this.last = text.isEmpty() ? 0 : Integer.parseInt(text);
+            } catch (NumberFormatException ex) {
+                throw new IOException(file + " does not hold a control "
+                        + "number: " + text, ex);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the control numbers kept in a file, reading it the first time
+     * it is asked for.
+     *
+     * @param file the file; it is created with the first number handed out
+     * @return the control numbers
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static ControlNumbers forFile(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        ControlNumbers numbers = OPEN.get(key);
+
+        if ( numbers == null ) {
+            numbers = new ControlNumbers(file.getAbsoluteFile());
+            ControlNumbers raced = OPEN.putIfAbsent(key, numbers);
+            if ( raced != null ) {
+                numbers = raced;
+            }
+        }
+
+        return numbers;
+    }
+
+    /**
+     * Hands out the next control number, and records it.
+     *
+     * @return the control number
+     * @throws IOException if the control number cannot be recorded; it is
+     *                     then not handed out
+     */
+    public synchronized int next() throws IOException {
+        int next = ( this.last >= MAX ) ? 1 : this.last + 1;
+
+        File dir = this.file.getParentFile();
+        if ( dir != null ) {
+            dir.mkdirs();
+        }
+        File temp = new File(dir, this.file.getName() + ".tmp");
+        Files.write(temp.toPath(), 
+                    Integer.toString(next).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp.toPath(), this.file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+
+        this.last = next;
+        return next;
+    }
+
+    /**
+     * Retrieves the last control number handed out.
+     *
+     * @return the control number, or zero (0) if none has been handed out
+     */
+    public synchronized int getLast() {
+        return this.last;
+    }
+
+    /**
+     * Retrieves the file holding the control numbers.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return this.file;
+    }
+}
@@ -0,0 +1,130 @@
+/* {Delimiters.java}
+ *
+ * Holds the delimiters that an Interchange Control Header (ISA) declares for
+ * the rest of its interchange.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+/**
+ * An X12 interchange does not use fixed delimiters. Instead, the Interchange
+ * Control Header (ISA) declares them:
+ * <ul>
+ *  <li>the <strong>element separator</strong> is the character immediately
+ *      following the "ISA" segment identifier (position 4);</li>
+ *  <li>the <strong>sub-element separator</strong> is the value of the
+ *      Component Element Separator (ISA16); and</li>
+ *  <li>the <strong>segment terminator</strong> is the character immediately
+ *      following ISA16.</li>
+ * </ul>
+ * <p>
+ * <code>Delimiters</code> objects are immutable, so one may be shared freely
+ * between the reader and anything that needs to write segments back out using
+ * the same conventions.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class Delimiters {
+    /**
+     * The delimiters assumed before any Interchange Control Header has been
+     * read: an asterisk between elements, a colon between sub-elements and one
+     * segment per line.
+     */
+    public static final Delimiters DEFAULT = new Delimiters('*', ':', '\n');
+
+    /**
+     * The element separator.
+     */
+    private final char elementSeparator;
+    /**
+     * The sub-element (component element) separator.
+     */
+    private final char subElementSeparator;
+    /**
+     * The segment terminator.
+     */
+    private final char segmentTerminator;
+
+    /**
+     * Creates a new set of delimiters.
+     *
+     * @param elementSeparator    the character separating elements
+     * @param subElementSeparator the character separating sub-elements
+     * @param segmentTerminator   the character ending each segment
+     */
+    public Delimiters(char elementSeparator, char subElementSeparator,
+                      char segmentTerminator) {
+        this.elementSeparator = elementSeparator;
+        this.subElementSeparator = subElementSeparator;
+        this.segmentTerminator = segmentTerminator;
+    }
+
+    /**
+     * Retrieves the element separator.
+     *
+     * @return the element separator
+     */
+    public char getElementSeparator() {
+        return this.elementSeparator;
+    }
+
+    /**
+     * Retrieves the sub-element (component element) separator.
+     *
+     * @return the sub-element separator
+     */
+    public char getSubElementSeparator() {
+        return this.subElementSeparator;
+    }
+
+    /**
+     * Retrieves the segment terminator.
+     *
+     * @return the segment terminator
+     */
+    public char getSegmentTerminator() {
+        return this.segmentTerminator;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( !(obj instanceof Delimiters) ) {
+            return false;
+        }
+
+        Delimiters other = (Delimiters) obj;
+        return this.elementSeparator == other.elementSeparator
+                && this.subElementSeparator == other.subElementSeparator
+                && this.segmentTerminator == other.segmentTerminator;
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.elementSeparator << 16) ^ (this.subElementSeparator << 8)
+                ^ this.segmentTerminator;
+    }
+
+    @Override
+    public String toString() {
+        return "Delimiters[element=" + this.elementSeparator
+                + ", sub-element=" + this.subElementSeparator
+                + ", terminator=" + (int) this.segmentTerminator + "]";
+    }
+}
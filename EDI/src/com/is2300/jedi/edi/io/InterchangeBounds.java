@@ -0,0 +1,89 @@
+/* {InterchangeBounds.java}
+ *
+ * Records where a single interchange lies within a transmission file.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+/**
+ * An <code>InterchangeBounds</code> object records the region of a transmission
+ * file occupied by one interchange: from the first byte of its Interchange
+ * Control Header (ISA) to the byte just past the terminator of its Interchange
+ * Control Trailer (IEA).
+ * <p>
+ * Bounds are found by the {@link InterchangeLocator}, and each one may then be
+ * read on its own with {@link SegmentReader#open(java.nio.channels.FileChannel,
+ * long, long, boolean)}.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class InterchangeBounds {
+    /**
+     * The offset within the file at which the interchange starts.
+     */
+    private final long start;
+    /**
+     * The offset within the file at which the interchange ends.
+     */
+    private final long end;
+
+    /**
+     * Creates a new set of interchange bounds.
+     *
+     * @param start the offset of the first byte of the ISA segment
+     * @param end   the offset just past the terminator of the IEA segment
+     */
+    public InterchangeBounds(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Retrieves the offset within the file at which the interchange starts.
+     *
+     * @return the offset of the first byte of the ISA segment
+     */
+    public long getStart() {
+        return this.start;
+    }
+
+    /**
+     * Retrieves the offset within the file at which the interchange ends.
+     *
+     * @return the offset just past the terminator of the IEA segment
+     */
+    public long getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Retrieves the length of the interchange, in bytes.
+     *
+     * @return the length of the interchange
+     */
+    public long getLength() {
+        return this.end - this.start;
+    }
+
+    @Override
+    public String toString() {
+        return "InterchangeBounds[" + this.start + ", " + this.end + ")";
+    }
+}
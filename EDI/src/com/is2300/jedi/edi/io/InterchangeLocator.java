@@ -0,0 +1,91 @@
+/* {InterchangeLocator.java}
+ *
+ * Pre-scans a transmission file for the boundaries of its interchanges.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>InterchangeLocator</code> makes a quick pass over a transmission
+ * file to find where each interchange (ISA through IEA) lies, so that the
+ * interchanges can then be parsed independently of one another.
+ * <p>
+ * The pass only looks for segment terminators and compares the first bytes of
+ * each segment against "ISA" and "IEA"; segments are never split into elements
+ * and nothing is validated. The delimiters declared by each ISA segment are
+ * honored, just as they are by the {@link SegmentReader}.
+ * <p>
+ * An interchange that is missing its trailer is taken to run up to the next
+ * ISA segment, or to the end of the file, so that the parser still sees, and
+ * reports on, its contents. Anything outside of an interchange is skipped.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class InterchangeLocator {
+
+    /**
+     * <code>InterchangeLocator</code> only has static methods.
+     */
+    private InterchangeLocator() {
+    }
+
+    /**
+     * Reads the rest of the file from the supplied reader and returns the
+     * bounds of each interchange found in it, in file order. The reader is
+     * left at the end of the file.
+     *
+     * @param reader the reader positioned at the start of the file
+     * @return the bounds of the interchanges in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static List<InterchangeBounds> locate(SegmentReader reader)
+            throws IOException {
+        List<InterchangeBounds> found = new ArrayList<>();
+        long start = -1;
+        long end = -1;
+
+        while ( reader.advance() ) {
+            end = reader.getNextOffset();
+
+            if ( reader.segmentIs("ISA") ) {
+                // A header while still inside an interchange means that the
+                //+ previous one was never closed.
+                if ( start >= 0 ) {
+                    found.add(new InterchangeBounds(start,
+                                                    reader.getSegmentOffset()));
+                }
+                start = reader.getSegmentOffset();
+            } else if ( start >= 0 && reader.segmentIs("IEA") ) {
+                found.add(new InterchangeBounds(start, end));
+                start = -1;
+            }
+        }
+
+        if ( start >= 0 ) {
+            found.add(new InterchangeBounds(start, end));
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,519 @@
+/* {Segment.java}
+ *
+ * A reusable, zero-copy view of a single EDI segment as it sits in the read
+ * buffer.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A <code>Segment</code> is a view of one EDI segment backed directly by the
+ * buffer it was read into, plus a table of element offsets. Reading an element
+ * through the view does not copy it or create any <code>java.lang.String
+ * </code> objects: {@link #element(int)} hands out a <code>java.lang.
+ * CharSequence</code> that reads straight from the buffer, and the other
+ * accessors compare, measure and convert elements in place.
+ * <p>
+ * <strong>A <code>Segment</code> is only valid until the next segment is read
+ * from the same {@link SegmentReader}</strong>, because the reader reuses both
+ * the view and the buffer beneath it. Any value that must outlive the segment
+ * has to be materialized explicitly with {@link #getString(int)} or {@link
+ * #toArray()}.
+ * <p>
+ * Element zero (0) is the segment identifier. As with the arrays produced by
+ * <code>String.split()</code>, trailing empty elements are not counted.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class Segment {
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The buffer holding the segment's bytes.
+     */
+    private ByteBuffer data;
+    /**
+     * The buffer offset of the first byte of each element.
+     */
+    private int[] starts;
+    /**
+     * The buffer offset just past the last byte of each element.
+     */
+    private int[] ends;
+    /**
+     * The number of elements, including the segment identifier.
+     */
+    private int count;
+    /**
+     * The buffer offset of the first byte of the segment.
+     */
+    private int segmentStart;
+    /**
+     * The buffer offset just past the last byte of the segment, excluding its
+     * terminator.
+     */
+    private int segmentEnd;
+    /**
+     * The element separator in effect for the segment.
+     */
+    private byte separator;
+    /**
+     * One reusable <code>CharSequence</code> view per element position.
+     */
+    private ElementView[] views;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates an empty <code>Segment</code>, ready to be {@link #reset reset}
+     * onto a buffer by a reader.
+     */
+    Segment() {
+        this.starts = new int[32];
+        this.ends = new int[32];
+        this.views = new ElementView[0];
+        this.count = 0;
+    }
+
+    /**
+     * Creates a stand-alone <code>Segment</code> holding a copy of the supplied
+     * elements. This is intended for code that still works with the split
+     * <code>java.lang.String</code> arrays of earlier versions.
+     *
+     * @param fields the elements of the segment, with the segment identifier
+     *               in element zero (0)
+     * @param elementSeparator the element separator to place between elements
+     * @return a new <code>Segment</code> over a private copy of the elements
+     */
+    public static Segment of(String[] fields, char elementSeparator) {
+        StringBuilder sb = new StringBuilder();
+        for ( int x = 0; x < fields.length; x++ ) {
+            if ( x > 0 ) {
+                sb.append(elementSeparator);
+            }
+            if ( fields[x] != null ) {
+                sb.append(fields[x]);
+            }
+        }
+
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        Segment segment = new Segment();
+        segment.reset(ByteBuffer.wrap(bytes), 0, bytes.length,
+                      (byte) elementSeparator);
+        return segment;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Element Accessors  ">
+    /**
+     * Retrieves the number of elements in the segment, including the segment
+     * identifier in element zero (0).
+     *
+     * @return the element count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Retrieves a view of an element. The view reads straight from the
+     * buffer, so it is only valid as long as this segment is.
+     *
+     * @param index the element position, zero (0) being the segment ID
+     * @return the element as a <code>java.lang.CharSequence</code>
+     */
+    public CharSequence element(int index) {
+        this.checkIndex(index);
+
+        if ( index >= this.views.length ) {
+            int old = this.views.length;
+            this.views = Arrays.copyOf(this.views,
+                                       Math.max(index + 1, this.count));
+            for ( int x = old; x < this.views.length; x++ ) {
+                this.views[x] = new ElementView(this, x);
+            }
+        }
+
+        return this.views[index];
+    }
+
+    /**
+     * Retrieves the length of an element. Positions past the end of the
+     * segment are treated as empty elements.
+     *
+     * @param index the element position
+     * @return the number of characters in the element
+     */
+    public int length(int index) {
+        if ( index < 0 || index >= this.count ) {
+            return 0;
+        }
+        return this.ends[index] - this.starts[index];
+    }
+
+    /**
+     * Determines whether an element is empty or absent.
+     *
+     * @param index the element position
+     * @return <code>true</code> if there is no data in the element
+     */
+    public boolean isEmpty(int index) {
+        return this.length(index) == 0;
+    }
+
+    /**
+     * Retrieves a single character of an element.
+     *
+     * @param index    the element position
+     * @param position the character position within the element
+     * @return the character
+     */
+    public char charAt(int index, int position) {
+        this.checkIndex(index);
+        if ( position < 0 || position >= this.length(index) ) {
+            throw new IndexOutOfBoundsException("position: " + position);
+        }
+        return (char) (this.data.get(this.starts[index] + position) & 0xff);
+    }
+
+    /**
+     * Compares an element to a value without materializing the element.
+     *
+     * @param index the element position
+     * @param value the value to compare against
+     * @return <code>true</code> if the element holds exactly the value
+     */
+    public boolean elementEquals(int index, CharSequence value) {
+        int length = this.length(index);
+        if ( length != value.length() ) {
+            return false;
+        }
+
+        int start = (index < this.count) ? this.starts[index] : 0;
+        for ( int x = 0; x < length; x++ ) {
+            if ( (this.data.get(start + x) & 0xff) != value.charAt(x) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether this segment has the supplied identifier.
+     *
+     * @param id the segment identifier, such as "ST" or "BIG"
+     * @return <code>true</code> if element zero (0) matches the identifier
+     */
+    public boolean is(CharSequence id) {
+        return this.elementEquals(0, id);
+    }
+
+    /**
+     * Retrieves the segment identifier packed into a single <code>int</code>
+     * key, one character per byte. Segment identifiers are two or three
+     * characters long, so every identifier has its own key, which lets callers
+     * look segments up in tables without creating a <code>java.lang.String
+     * </code> for the identifier.
+     *
+     * @return the packed segment identifier
+     * @see #idKey(CharSequence)
+     */
+    public int getIdKey() {
+        int length = this.length(0);
+        if ( length > 3 ) {
+            return -1;
+        }
+
+        int key = 0;
+        for ( int x = 0; x < length; x++ ) {
+            key = (key << 8) | (this.data.get(this.starts[0] + x) & 0xff);
+        }
+        return key;
+    }
+
+    /**
+     * Packs a segment identifier into the same <code>int</code> key returned
+     * by {@link #getIdKey()}.
+     *
+     * @param id the segment identifier, such as "ST" or "BIG"
+     * @return the packed segment identifier, or -1 if the identifier is longer
+     *         than three (3) characters
+     */
+    public static int idKey(CharSequence id) {
+        if ( id.length() > 3 ) {
+            return -1;
+        }
+
+        int key = 0;
+        for ( int x = 0; x < id.length(); x++ ) {
+            key = (key << 8) | (id.charAt(x) & 0xff);
+        }
+        return key;
+    }
+
+    /**
+     * Unpacks a segment identifier packed by {@link #idKey(CharSequence)}.
+     *
+     * @param key the packed segment identifier
+     * @return the segment identifier, such as "ST" or "BIG"
+     */
+    public static String idOf(int key) {
+        StringBuilder id = new StringBuilder(3);
+        for ( int shift = 16; shift >= 0; shift -= 8 ) {
+            int c = (key >>> shift) & 0xff;
+            if ( c != 0 ) {
+                id.append((char) c);
+            }
+        }
+        return id.toString();
+    }
+
+    /**
+     * Parses an element as a non-negative whole number, in place.
+     *
+     * @param index the element position
+     * @return the value of the element
+     * @throws NumberFormatException if the element is empty, is not made up
+     *                               solely of digits, or is too large
+     */
+    public int getInt(int index) {
+        int length = this.length(index);
+        if ( length == 0 ) {
+            throw new NumberFormatException("Element " + index
+                                            + " is empty.");
+        }
+
+        int start = this.starts[index];
+        long value = 0;
+        for ( int x = 0; x < length; x++ ) {
+            int digit = (this.data.get(start + x) & 0xff) - '0';
+            if ( digit < 0 || digit > 9 ) {
+                throw new NumberFormatException("For input string: \""
+                        + this.getString(index) + "\"");
+            }
+            value = value * 10 + digit;
+            if ( value > Integer.MAX_VALUE ) {
+                throw new NumberFormatException("For input string: \""
+                        + this.getString(index) + "\"");
+            }
+        }
+        return (int) value;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Materialization  ">
+    /**
+     * Copies an element out of the buffer into a new <code>java.lang.String
+     * </code> so that it can be kept after the segment is gone. Positions past
+     * the end of the segment yield an empty string.
+     *
+     * @param index the element position
+     * @return the element's value
+     */
+    public String getString(int index) {
+        int length = this.length(index);
+        if ( length == 0 ) {
+            return "";
+        }
+
+        char[] chars = new char[length];
+        int start = this.starts[index];
+        for ( int x = 0; x < length; x++ ) {
+            chars[x] = (char) (this.data.get(start + x) & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Copies every element of the segment out of the buffer, in the same form
+     * returned by {@link SegmentReader#next()}.
+     *
+     * @return the elements of the segment
+     */
+    public String[] toArray() {
+        String[] fields = new String[this.count];
+        for ( int x = 0; x < this.count; x++ ) {
+            fields[x] = this.getString(x);
+        }
+        return fields;
+    }
+
+    /**
+     * Retrieves the buffer offset of the first byte of this segment.
+     *
+     * @return the start offset within the backing buffer
+     */
+    int getSegmentStart() {
+        return this.segmentStart;
+    }
+
+    /**
+     * Retrieves the buffer offset just past the last byte of this segment,
+     * excluding its terminator.
+     *
+     * @return the end offset within the backing buffer
+     */
+    int getSegmentEnd() {
+        return this.segmentEnd;
+    }
+
+    /**
+     * Retrieves the buffer holding this segment.
+     *
+     * @return the backing buffer
+     */
+    ByteBuffer getData() {
+        return this.data;
+    }
+
+    /**
+     * Retrieves the element separator in effect for this segment.
+     *
+     * @return the element separator
+     */
+    byte getSeparator() {
+        return this.separator;
+    }
+
+    /**
+     * Returns the segment as it appeared in the file, without its terminator.
+     *
+     * @return the raw text of the segment
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[this.segmentEnd - this.segmentStart];
+        for ( int x = 0; x < chars.length; x++ ) {
+            chars[x] = (char) (this.data.get(this.segmentStart + x) & 0xff);
+        }
+        return new String(chars);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Package Methods  ">
+    /**
+     * Points this view at a new segment and rebuilds the element offset table.
+     * Trailing whitespace and trailing empty elements are not included.
+     *
+     * @param buffer    the buffer holding the segment
+     * @param start     the offset of the first byte of the segment
+     * @param end       the offset just past the last byte of the segment,
+     *                  excluding the terminator
+     * @param separator the element separator
+     * @return <code>true</code> if the segment holds any data;
+     *         <code>false</code> if it is blank
+     */
+    boolean reset(ByteBuffer buffer, int start, int end, byte separator) {
+        // Ignore the carriage return of a CR/LF pair, as well as any other
+        //+ trailing whitespace before the terminator.
+        while ( end > start ) {
+            int b = buffer.get(end - 1);
+            if ( b > ' ' || b < 0 ) {
+                break;
+            }
+            end--;
+        }
+
+        this.data = buffer;
+        this.segmentStart = start;
+        this.segmentEnd = end;
+        this.separator = separator;
+        this.count = 0;
+
+        if ( end == start ) {
+            return false;
+        }
+
+        int from = start;
+        for ( int x = start; x <= end; x++ ) {
+            if ( x == end || buffer.get(x) == separator ) {
+                if ( this.count == this.starts.length ) {
+                    this.starts = Arrays.copyOf(this.starts, this.count * 2);
+                    this.ends = Arrays.copyOf(this.ends, this.count * 2);
+                }
+                this.starts[this.count] = from;
+                this.ends[this.count] = x;
+                this.count++;
+                from = x + 1;
+            }
+        }
+
+        // Drop any trailing empty elements.
+        while ( this.count > 1
+                && this.ends[this.count - 1] == this.starts[this.count - 1] ) {
+            this.count--;
+        }
+
+        return true;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Verifies that an element position is within this segment.
+     *
+     * @param index the element position
+     */
+    private void checkIndex(int index) {
+        if ( index < 0 || index >= this.count ) {
+            throw new IndexOutOfBoundsException("Element " + index
+                    + " of a segment with " + this.count + " elements.");
+        }
+    }
+    //</editor-fold>
+
+    /**
+     * A <code>java.lang.CharSequence</code> over one element position of the
+     * enclosing segment. One view exists per position and is reused for every
+     * segment read into the same <code>Segment</code>.
+     */
+    private static final class ElementView implements CharSequence {
+        private final Segment segment;
+        private final int index;
+
+        ElementView(Segment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return this.segment.length(this.index);
+        }
+
+        @Override
+        public char charAt(int position) {
+            return this.segment.charAt(this.index, position);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return this.segment.getString(this.index);
+        }
+    }
+}
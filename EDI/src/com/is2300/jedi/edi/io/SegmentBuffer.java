@@ -0,0 +1,150 @@
+/* {SegmentBuffer.java}
+ *
+ * Holds private copies of a run of segments, such as one transaction set.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A <code>SegmentBuffer</code> keeps private copies of a run of segments, so
+ * that they can be worked on after the {@link SegmentReader} has moved on; for
+ * example, to validate a whole transaction set on another thread while the
+ * reader carries on with the rest of the file.
+ * <p>
+ * Only the raw bytes of each segment are copied, one after the other, into a
+ * single growable buffer; no <code>java.lang.String</code> objects are made.
+ * The segments are read back through a reusable {@link Segment} view, just as
+ * they are from the reader.
+ * <p>
+ * A <code>SegmentBuffer</code> is not thread-safe. It may be filled on one
+ * thread and then handed off to another, but not used by both at once.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class SegmentBuffer {
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * The default initial size, in bytes, of the buffer.
+     */
+    private static final int DEFAULT_CAPACITY = 4096;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The copied bytes of the segments, back to back.
+     */
+    private ByteBuffer data;
+    /**
+     * The start and end offsets within the buffer of each segment, in pairs.
+     */
+    private int[] bounds;
+    /**
+     * The element separator of each segment.
+     */
+    private byte[] separators;
+    /**
+     * The number of segments held.
+     */
+    private int count;
+    /**
+     * The reusable view handed out by {@link #get(int)}.
+     */
+    private final Segment view;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new, empty <code>SegmentBuffer</code>.
+     */
+    public SegmentBuffer() {
+        this.data = ByteBuffer.allocate(DEFAULT_CAPACITY);
+        this.bounds = new int[32];
+        this.separators = new byte[16];
+        this.count = 0;
+        this.view = new Segment();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Copies a segment into the buffer.
+     *
+     * @param segment the segment to copy
+     */
+    public void add(Segment segment) {
+        ByteBuffer src = segment.getData();
+        int start = segment.getSegmentStart();
+        int length = segment.getSegmentEnd() - start;
+
+        if ( this.data.remaining() < length ) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(
+                    this.data.capacity() * 2, this.data.position() + length));
+            this.data.flip();
+            larger.put(this.data);
+            this.data = larger;
+        }
+        if ( this.count == this.separators.length ) {
+            this.bounds = Arrays.copyOf(this.bounds, this.count * 4);
+            this.separators = Arrays.copyOf(this.separators, this.count * 2);
+        }
+
+        int offset = this.data.position();
+        for ( int x = 0; x < length; x++ ) {
+            this.data.put(offset + x, src.get(start + x));
+        }
+        this.data.position(offset + length);
+
+        this.bounds[this.count * 2] = offset;
+        this.bounds[this.count * 2 + 1] = offset + length;
+        this.separators[this.count] = segment.getSeparator();
+        this.count++;
+    }
+
+    /**
+     * Retrieves the number of segments held.
+     *
+     * @return the segment count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Retrieves a view of one of the segments held. The same view is reused
+     * by every call, so it is only valid until the next call.
+     *
+     * @param index the position of the segment, in the order it was added
+     * @return the segment
+     */
+    public Segment get(int index) {
+        if ( index < 0 || index >= this.count ) {
+            throw new IndexOutOfBoundsException("Segment " + index
+                    + " of " + this.count);
+        }
+
+        this.view.reset(this.data, this.bounds[index * 2],
+                        this.bounds[index * 2 + 1], this.separators[index]);
+        return this.view;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,839 @@
+/* {SegmentReader.java}
+ *
+ * A pull-based tokenizer that reads an incoming EDI transmission file through
+ * a bounded buffer and hands the segments out one at a time.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The <code>SegmentReader</code> class is a streaming tokenizer for EDI
+ * transmission files. Instead of loading every line of the file into memory
+ * before parsing begins, the reader pulls bytes from a <code>java.nio.channels
+ * .ReadableByteChannel</code> into a bounded buffer and returns a single
+ * segment from each call to {@link #next()}.
+ * <p>
+ * Memory use therefore stays flat regardless of the size of the transmission
+ * file: only the buffer and the segment currently being handed out are ever
+ * held by the reader, and parsing can start as soon as the first segment has
+ * arrived.
+ * <p>
+ * The reader honors the delimiters declared by each Interchange Control Header
+ * (ISA): the element separator, the sub-element separator (ISA16) and the
+ * segment terminator that immediately follows ISA16. This allows both
+ * "wrapped" files, with one segment per line, and "unwrapped" files, where the
+ * whole interchange is a single line of "~" terminated segments, to be read.
+ * Any whitespace between a segment terminator and the next segment, such as
+ * the line breaks some partners add after each "~", is ignored. Until the first
+ * ISA segment is seen, the {@link Delimiters#DEFAULT default delimiters} are
+ * assumed.
+ * <p>
+ * Segments are found with a simple byte-by-byte scan for the current
+ * terminator and separator; no regular expressions are involved.
+ * <p>
+ * Segments are handed out by {@link #nextSegment()} as a reusable, zero-copy
+ * {@link Segment} view over the read buffer, so reading a file does not
+ * allocate a <code>java.lang.String</code> per element. The view is only valid
+ * until the next call to the reader. For callers that need to keep the whole
+ * segment, {@link #next()} returns it as an array of <code>java.lang.String
+ * </code> objects instead, split on the element separator, with the segment
+ * identifier in the zeroeth (0th) element. As with <code>String.split()</code>,
+ * trailing empty elements are not returned in either form.
+ * <p>
+ * For very large transmission files, {@link #open(File, boolean)} can instead
+ * map the file into memory with <code>FileChannel.map()</code>. The scan then
+ * runs directly over the mapped pages, one {@link #MAP_WINDOW_SIZE window} at a
+ * time, without copying anything into a heap buffer. Files smaller than {@link
+ * #MAP_THRESHOLD} are always read through the ordinary buffer, as setting up a
+ * mapping costs more than it saves for them.
+ * <p>
+ * {@link #open(FileChannel, long, long, boolean)} reads just one region of a
+ * file, such as a single interchange found by the {@link InterchangeLocator}.
+ * Any number of region readers may share the same <code>FileChannel</code>,
+ * each from its own thread.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class SegmentReader implements Closeable {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default size, in bytes, of the read buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The largest single segment, in bytes, that the reader will accept. The
+     * buffer is allowed to grow up to this size to hold a long segment, but no
+     * further, so that a corrupt file without any terminators cannot exhaust
+     * the heap.
+     */
+    public static final int MAX_SEGMENT_LENGTH = 1024 * 1024;
+    /**
+     * The smallest file, in bytes, that {@link #open(File, boolean)} will map
+     * into memory. Smaller files are read through the ordinary buffer.
+     */
+    public static final long MAP_THRESHOLD = 8L * 1024 * 1024;
+    /**
+     * The size, in bytes, of each region of the file that is mapped at once.
+     * Mapping the file a window at a time keeps the address space used by the
+     * reader bounded, and allows files larger than two (2) gigabytes to be
+     * read.
+     */
+    public static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * The length of a standard, fixed-width Interchange Control Header,
+     * including its segment terminator.
+     */
+    private static final int ISA_LENGTH = 106;
+    /**
+     * The number of elements in an Interchange Control Header.
+     */
+    private static final int ISA_ELEMENTS = 16;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The channel from which the transmission file is read.
+     */
+    private final ReadableByteChannel channel;
+    /**
+     * The file being mapped into memory, or <code>null</code> if the file is
+     * being read through the ordinary buffer.
+     */
+    private final FileChannel mapped;
+    /**
+     * The offset within the mapped file at which the mapped region ends.
+     */
+    private final long mappedEnd;
+    /**
+     * The offset within the file of the first byte in the buffer. For a
+     * mapped file, this is where the current window starts.
+     */
+    private long bufferOffset;
+    /**
+     * The bounded read buffer, or the current window of the mapped file.
+     * Between calls the buffer is in "read" mode: the bytes between <code>
+     * position</code> and <code>limit</code> have been read from the channel
+     * but not yet handed out.
+     */
+    private ByteBuffer buffer;
+    /**
+     * Offset within the buffer from which the search for the next terminator
+     * resumes, so that a refill does not rescan bytes already examined.
+     */
+    private int scanFrom;
+    /**
+     * The delimiters declared by the most recent Interchange Control Header.
+     */
+    private Delimiters delimiters;
+    /**
+     * The current element separator, kept as a byte for the scan.
+     */
+    private byte elementSeparator;
+    /**
+     * The current segment terminator, kept as a byte for the scan.
+     */
+    private byte segmentTerminator;
+    /**
+     * The reusable view handed out for each segment.
+     */
+    private final Segment segment;
+    /**
+     * Buffer offsets of the start and end (excluding the terminator) of the
+     * segment most recently found.
+     */
+    private int segmentStart;
+    private int segmentEnd;
+    /**
+     * File offsets of the start of the segment most recently found, and of
+     * the byte just past its terminator.
+     */
+    private long segmentOffset;
+    private long nextOffset;
+    /**
+     * Set once the channel has reported end-of-stream.
+     */
+    private boolean eof;
+    /**
+     * Running count of the segments handed out by this reader.
+     */
+    private long segmentCount;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new <code>SegmentReader</code> over the supplied channel using
+     * the {@link #DEFAULT_BUFFER_SIZE default buffer size}.
+     *
+     * @param channel the channel from which to read the transmission file
+     */
+    public SegmentReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new <code>SegmentReader</code> over the supplied channel using
+     * a read buffer of the given size.
+     *
+     * @param channel    the channel from which to read the transmission file
+     * @param bufferSize the initial size, in bytes, of the read buffer
+     */
+    public SegmentReader(ReadableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, 0);
+    }
+
+    /**
+     * Creates a new <code>SegmentReader</code> over the supplied channel, the
+     * first byte of which lies at the given offset within the file.
+     *
+     * @param channel    the channel from which to read the transmission file
+     * @param bufferSize the initial size, in bytes, of the read buffer
+     * @param offset     the offset within the file at which the channel starts
+     */
+    private SegmentReader(ReadableByteChannel channel, int bufferSize,
+                          long offset) {
+        if ( channel == null ) {
+            throw new IllegalArgumentException("channel cannot be null");
+        }
+        if ( bufferSize <= 0 ) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+
+        this.channel = channel;
+        this.mapped = null;
+        this.mappedEnd = 0;
+        this.bufferOffset = offset;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.segment = new Segment();
+
+        // Start out with an empty buffer in "read" mode.
+        this.buffer.flip();
+        this.scanFrom = 0;
+        this.eof = false;
+        this.segmentCount = 0;
+        this.setDelimiters(Delimiters.DEFAULT);
+    }
+
+    /**
+     * Creates a new <code>SegmentReader</code> that maps a region of the
+     * supplied file into memory, one window at a time.
+     *
+     * @param channel the channel to close when the reader is closed
+     * @param file    the channel of the file to map
+     * @param start   the offset within the file at which the region starts
+     * @param end     the offset within the file at which the region ends
+     * @throws IOException if the first window cannot be mapped
+     */
+    private SegmentReader(ReadableByteChannel channel, FileChannel file,
+                          long start, long end) throws IOException {
+        this.channel = channel;
+        this.mapped = file;
+        this.mappedEnd = end;
+        this.segment = new Segment();
+
+        this.scanFrom = 0;
+        this.segmentCount = 0;
+        this.setDelimiters(Delimiters.DEFAULT);
+        this.map(start);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Static Methods  ">
+    /**
+     * Opens a <code>SegmentReader</code> on the supplied file. If <code>map
+     * </code> is <code>true</code> and the file is at least {@link
+     * #MAP_THRESHOLD} bytes long, the file is mapped into memory and scanned in
+     * place; otherwise, it is read through the ordinary buffer.
+     *
+     * @param file the transmission file to read
+     * @param map  whether large files should be mapped into memory
+     * @return a reader positioned at the start of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static SegmentReader open(File file, boolean map)
+            throws IOException {
+        return open(file, 0, map);
+    }
+
+    /**
+     * Opens a <code>SegmentReader</code> on the supplied file, starting at the
+     * given offset rather than at the start of the file; for instance, to
+     * resume reading just past the last interchange that was processed. The
+     * offset should fall on a segment boundary. The rest of the file is mapped
+     * into memory under the same rules as {@link #open(File, boolean)}.
+     *
+     * @param file  the transmission file to read
+     * @param start the offset within the file at which to start reading
+     * @param map   whether a large file should be mapped into memory
+     * @return a reader positioned at the given offset
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static SegmentReader open(File file, long start, boolean map)
+            throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+
+        try {
+            long size = channel.size();
+            start = Math.min(Math.max(start, 0), size);
+
+            if ( map && size - start >= MAP_THRESHOLD ) {
+                return new SegmentReader(channel, channel, start, size);
+            }
+
+            channel.position(start);
+            return new SegmentReader(channel, DEFAULT_BUFFER_SIZE, start);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens a <code>SegmentReader</code> on the region of the supplied file
+     * between <code>start</code> and <code>end</code>. The region is mapped
+     * into memory under the same rules as {@link #open(File, boolean)}.
+     * <p>
+     * The file is read with positional reads only, so several region readers
+     * may share the same channel concurrently. Closing the reader does not
+     * close the channel.
+     *
+     * @param file  the transmission file to read
+     * @param start the offset within the file at which the region starts
+     * @param end   the offset within the file at which the region ends
+     * @param map   whether a large region should be mapped into memory
+     * @return a reader positioned at the start of the region
+     * @throws IOException if the region cannot be mapped
+     */
+    public static SegmentReader open(FileChannel file, long start, long end,
+                                     boolean map) throws IOException {
+        ReadableByteChannel region = new RegionChannel(file, start, end);
+
+        if ( map && end - start >= MAP_THRESHOLD ) {
+            return new SegmentReader(region, file, start, end);
+        }
+
+        return new SegmentReader(region, DEFAULT_BUFFER_SIZE, start);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Retrieves the next segment from the transmission file as an array of
+     * <code>java.lang.String</code> objects. Every element is copied out of
+     * the read buffer, so the array may be kept as long as necessary.
+     *
+     * @return the elements of the next segment, with the segment identifier in
+     *         element zero (0); or <code>null</code> once the end of the file
+     *         has been reached
+     * @throws IOException if the channel cannot be read, or if a segment is
+     *                     longer than {@link #MAX_SEGMENT_LENGTH}
+     */
+    public String[] next() throws IOException {
+        Segment next = this.nextSegment();
+        return (next == null) ? null : next.toArray();
+    }
+
+    /**
+     * Retrieves the next segment from the transmission file as a view over
+     * the read buffer. Nothing is copied; the returned view, and any element
+     * views obtained from it, are only valid until the next call to this
+     * reader.
+     *
+     * @return the next segment; or <code>null</code> once the end of the file
+     *         has been reached
+     * @throws IOException if the channel cannot be read, or if a segment is
+     *                     longer than {@link #MAX_SEGMENT_LENGTH}
+     */
+    public Segment nextSegment() throws IOException {
+        while ( this.advance() ) {
+            // Empty segments are simply skipped.
+            if ( this.segment.reset(this.buffer, this.segmentStart,
+                                    this.segmentEnd, this.elementSeparator) ) {
+                this.segmentCount++;
+                return this.segment;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Skips the rest of the current interchange, up to and including its
+     * Interchange Control Trailer (IEA). The skipped segments are only looked
+     * for, the same way the {@link InterchangeLocator} does; they are never
+     * split into elements. They are still counted, though.
+     * <p>
+     * If an Interchange Control Header (ISA) is found first, the current
+     * interchange was never closed. The header is then returned, just as
+     * {@link #nextSegment()} would have returned it, so that the caller can
+     * carry on with the next interchange.
+     *
+     * @return the next interchange's header, if it came before the trailer;
+     *         otherwise <code>null</code>
+     * @throws IOException if the channel cannot be read, or if a segment is
+     *                     longer than {@link #MAX_SEGMENT_LENGTH}
+     */
+    public Segment skipInterchange() throws IOException {
+        while ( this.advance() ) {
+            if ( this.segmentIs("ISA") ) {
+                this.segment.reset(this.buffer, this.segmentStart,
+                                   this.segmentEnd, this.elementSeparator);
+                this.segmentCount++;
+                return this.segment;
+            }
+
+            if ( this.segmentEnd > this.segmentStart ) {
+                this.segmentCount++;
+            }
+
+            if ( this.segmentIs("IEA") ) {
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves the delimiters currently in effect, that is, those declared
+     * by the most recent Interchange Control Header read, or the {@link
+     * Delimiters#DEFAULT default delimiters} if no header has been read yet.
+     *
+     * @return the current delimiters
+     */
+    public Delimiters getDelimiters() {
+        return this.delimiters;
+    }
+
+    /**
+     * Retrieves the number of segments that have been handed out by this
+     * reader so far.
+     *
+     * @return the segment count
+     */
+    public long getSegmentCount() {
+        return this.segmentCount;
+    }
+
+    /**
+     * Retrieves the offset within the file at which the segment most recently
+     * read starts.
+     *
+     * @return the offset of the current segment
+     */
+    public long getSegmentOffset() {
+        return this.segmentOffset;
+    }
+
+    /**
+     * Retrieves the offset within the file just past the terminator of the
+     * segment most recently read; that is, where reading will resume.
+     *
+     * @return the offset following the current segment
+     */
+    public long getNextOffset() {
+        return this.nextOffset;
+    }
+
+    /**
+     * Determines whether this reader is scanning a memory-mapped file, rather
+     * than reading through the ordinary buffer.
+     *
+     * @return <code>true</code> if the file is mapped into memory
+     */
+    public boolean isMapped() {
+        return this.mapped != null;
+    }
+
+    /**
+     * Closes the underlying channel.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Package Methods  ">
+    /**
+     * Finds the next segment in the file without splitting it into elements.
+     * On success the bounds of the segment are recorded and the buffer is
+     * positioned just past its terminator.
+     *
+     * @return <code>true</code> if a segment was found; <code>false</code> at
+     *         the end of the file
+     * @throws IOException if the channel cannot be read, or if a segment is
+     *                     longer than {@link #MAX_SEGMENT_LENGTH}
+     */
+    boolean advance() throws IOException {
+        while ( true ) {
+            // Skip any whitespace left between the previous segment's
+            //+ terminator and the start of this one.
+            if ( !this.skipWhitespace() ) {
+                return false;
+            }
+
+            // A new Interchange Control Header declares the delimiters for
+            //+ everything up to its trailer.
+            if ( this.atInterchangeHeader() ) {
+                this.readDelimiters();
+            }
+
+            int start = this.buffer.position();
+            int limit = this.buffer.limit();
+            ByteBuffer data = this.buffer;
+            byte terminator = this.segmentTerminator;
+
+            // Look for the end of the current segment. The absolute get()
+            //+ works the same whether the buffer is on the heap or mapped.
+            int end = -1;
+            for ( int x = Math.max(start, this.scanFrom); x < limit; x++ ) {
+                if ( data.get(x) == terminator ) {
+                    end = x;
+                    break;
+                }
+            }
+
+            if ( end >= 0 ) {
+                // We have a complete segment, so move past its terminator.
+                this.buffer.position(end + 1);
+                this.scanFrom = end + 1;
+                this.setSegmentBounds(start, end, end + 1);
+                return true;
+            } else if ( this.eof ) {
+                // Whatever is left over is the last segment, which was not
+                //+ terminated.
+                this.buffer.position(limit);
+                this.scanFrom = limit;
+                this.setSegmentBounds(start, limit, limit);
+                return true;
+            } else {
+                // Remember how far we have already scanned, then pull more
+                //+ data in from the channel.
+                this.scanFrom = limit;
+                this.fill();
+            }
+        }
+    }
+
+    /**
+     * Determines whether the segment most recently found by {@link
+     * #advance()} has the given segment identifier, by comparing the raw
+     * bytes in the buffer.
+     *
+     * @param id the segment identifier
+     * @return <code>true</code> if the segment has the given identifier
+     */
+    boolean segmentIs(String id) {
+        int length = id.length();
+
+        if ( this.segmentEnd - this.segmentStart < length ) {
+            return false;
+        }
+
+        for ( int x = 0; x < length; x++ ) {
+            if ( this.buffer.get(this.segmentStart + x) != id.charAt(x) ) {
+                return false;
+            }
+        }
+
+        return this.segmentEnd - this.segmentStart == length
+                || this.buffer.get(this.segmentStart + length)
+                        == this.elementSeparator;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Records the bounds of the segment just found.
+     *
+     * @param start the buffer offset of the first byte of the segment
+     * @param end   the buffer offset of its terminator
+     * @param next  the buffer offset just past its terminator
+     */
+    private void setSegmentBounds(int start, int end, int next) {
+        this.segmentStart = start;
+        this.segmentEnd = end;
+        this.segmentOffset = this.bufferOffset + start;
+        this.nextOffset = this.bufferOffset + next;
+    }
+
+    /**
+     * Advances past any whitespace at the current position, reading more data
+     * from the channel as needed.
+     *
+     * @return <code>true</code> if there is data left to read;
+     *         <code>false</code> at the end of the file
+     * @throws IOException if the channel cannot be read
+     */
+    private boolean skipWhitespace() throws IOException {
+        while ( true ) {
+            ByteBuffer data = this.buffer;
+            int x = this.buffer.position();
+            int limit = this.buffer.limit();
+
+            while ( x < limit && data.get(x) <= ' ' && data.get(x) >= 0 ) {
+                x++;
+            }
+            this.buffer.position(x);
+
+            if ( x < limit ) {
+                return true;
+            } else if ( this.eof ) {
+                return false;
+            }
+
+            this.fill();
+        }
+    }
+
+    /**
+     * Determines whether the segment at the current position is an Interchange
+     * Control Header, reading more data from the channel if necessary.
+     *
+     * @return <code>true</code> if the next segment is an ISA segment
+     * @throws IOException if the channel cannot be read
+     */
+    private boolean atInterchangeHeader() throws IOException {
+        // Most segments can be ruled out by their first character alone.
+        if ( this.buffer.get(this.buffer.position()) != 'I' ) {
+            return false;
+        }
+
+        // Make sure that the whole fixed-width header is in the buffer before
+        //+ we go looking at it.
+        while ( this.buffer.remaining() < ISA_LENGTH && !this.eof ) {
+            this.fill();
+        }
+
+        int x = this.buffer.position();
+
+        return this.buffer.remaining() > 3
+                && this.buffer.get(x + 1) == 'S'
+                && this.buffer.get(x + 2) == 'A';
+    }
+
+    /**
+     * Reads the delimiters declared by the Interchange Control Header at the
+     * current position. The element separator immediately follows the "ISA"
+     * identifier; the sub-element separator is the single character of ISA16
+     * and the segment terminator is the character after that.
+     *
+     * @throws IOException if the header is malformed
+     */
+    private void readDelimiters() throws IOException {
+        ByteBuffer data = this.buffer;
+        int start = this.buffer.position();
+        int limit = this.buffer.limit();
+        byte separator = data.get(start + 3);
+
+        // Count our way to the sixteenth element. For a standard header this
+        //+ lands on the fixed positions, but counting lets us read headers
+        //+ whose fixed-width elements were not padded correctly.
+        int found = 0;
+        int x = start + 3;
+        while ( x < limit && found < ISA_ELEMENTS ) {
+            if ( data.get(x) == separator ) {
+                found++;
+            }
+            x++;
+        }
+
+        // x is now the position of ISA16; the terminator follows it.
+        if ( found < ISA_ELEMENTS || x + 1 >= limit ) {
+            throw new IOException("Malformed Interchange Control Header at "
+                    + "segment " + (this.segmentCount + 1) + ".");
+        }
+
+        this.setDelimiters(new Delimiters((char) (separator & 0xff),
+                                          (char) (data.get(x) & 0xff),
+                                          (char) (data.get(x + 1) & 0xff)));
+    }
+
+    /**
+     * Makes the supplied delimiters the current delimiters.
+     *
+     * @param value the delimiters to use from here on
+     */
+    private void setDelimiters(Delimiters value) {
+        this.delimiters = value;
+        this.elementSeparator = (byte) value.getElementSeparator();
+        this.segmentTerminator = (byte) value.getSegmentTerminator();
+    }
+
+    /**
+     * Reads more data from the channel into the buffer, preserving any bytes
+     * of a partial segment that have not yet been handed out. If the partial
+     * segment already fills the buffer, the buffer is grown, up to a maximum
+     * of {@link #MAX_SEGMENT_LENGTH} bytes.
+     *
+     * @throws IOException if the channel cannot be read, or the segment is too
+     *                     long
+     */
+    private void fill() throws IOException {
+        int offset = this.buffer.position();
+        int pending = this.buffer.remaining();
+
+        if ( this.mapped != null ) {
+            // There is nothing to copy for a mapped file: simply map the next
+            //+ window, starting with the partial segment.
+            if ( pending >= MAX_SEGMENT_LENGTH ) {
+                throw new IOException("Segment " + (this.segmentCount + 1)
+                        + " exceeds the maximum segment length of "
+                        + MAX_SEGMENT_LENGTH + " bytes.");
+            }
+
+            this.map(this.bufferOffset + offset);
+            this.scanFrom = Math.max(this.scanFrom - offset, 0);
+            return;
+        }
+
+        if ( pending == this.buffer.capacity() ) {
+            // The partial segment occupies the whole buffer.
+            if ( this.buffer.capacity() >= MAX_SEGMENT_LENGTH ) {
+                throw new IOException("Segment " + (this.segmentCount + 1)
+                        + " exceeds the maximum segment length of "
+                        + MAX_SEGMENT_LENGTH + " bytes.");
+            }
+
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(
+                    this.buffer.capacity() * 2, MAX_SEGMENT_LENGTH));
+            larger.put(this.buffer);
+            this.buffer = larger;
+        } else {
+            // Slide the partial segment to the front of the buffer.
+            this.buffer.compact();
+        }
+
+        // The partial segment now starts at offset zero, so the scan position
+        //+ moves down with it.
+        this.scanFrom = Math.max(this.scanFrom - offset, 0);
+        this.bufferOffset += offset;
+
+        int read = 0;
+        while ( read == 0 ) {
+            read = this.channel.read(this.buffer);
+        }
+        if ( read < 0 ) {
+            this.eof = true;
+        }
+
+        this.buffer.flip();
+    }
+
+    /**
+     * Maps the window of the file that starts at the given offset, and makes
+     * it the current buffer. The end-of-file flag is set once the window
+     * reaches the end of the file.
+     *
+     * @param offset the offset within the file at which the window starts
+     * @throws IOException if the window cannot be mapped
+     */
+    private void map(long offset) throws IOException {
+        long length = Math.min(MAP_WINDOW_SIZE, this.mappedEnd - offset);
+
+        this.buffer = this.mapped.map(FileChannel.MapMode.READ_ONLY, offset,
+                                      length);
+        this.bufferOffset = offset;
+        this.eof = offset + length >= this.mappedEnd;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Nested Classes  ">
+    /**
+     * A channel over one region of a file. Only positional reads are made on
+     * the file, so its position is never disturbed and several regions of the
+     * same file can be read at once. Closing a region leaves the file open.
+     */
+    private static final class RegionChannel implements ReadableByteChannel {
+        /**
+         * The file being read.
+         */
+        private final FileChannel file;
+        /**
+         * The offset within the file of the next byte to read.
+         */
+        private long position;
+        /**
+         * The offset within the file at which the region ends.
+         */
+        private final long end;
+        /**
+         * Whether this region is still open.
+         */
+        private boolean open;
+
+        RegionChannel(FileChannel file, long start, long end) {
+            this.file = file;
+            this.position = start;
+            this.end = end;
+            this.open = true;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if ( !this.open ) {
+                throw new ClosedChannelException();
+            }
+            if ( this.position >= this.end ) {
+                return -1;
+            }
+
+            // Do not let the read run past the end of the region.
+            int limit = dst.limit();
+            dst.limit(dst.position() + (int) Math.min(dst.remaining(),
+                                                      this.end - this.position));
+
+            try {
+                int read = this.file.read(dst, this.position);
+                if ( read > 0 ) {
+                    this.position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+    }
+    //</editor-fold>
+}
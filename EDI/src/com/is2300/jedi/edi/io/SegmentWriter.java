@@ -0,0 +1,866 @@
+/* {SegmentWriter.java}
+ *
+ * Streams outbound X12 segments, with their ISA/GS/ST envelopes, through a
+ * reusable buffer into a channel.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+
+/**
+ * <code>SegmentWriter</code> is the outbound counterpart of the {@link
+ * SegmentReader}: it writes the documents that we send, such as the
+ * acknowledgments, application advices and invoices, as X12 interchanges.
+ * <p>
+ * The writer builds the envelopes itself. {@link #beginInterchange} writes the
+ * Interchange Control Header (ISA), with its fixed-width fields padded out and
+ * the delimiters declared in their proper places; {@link #beginGroup} and
+ * {@link #beginTransaction} write the GS and ST; and the matching <code>
+ * end</code> methods write the SE, GE and IEA trailers with the counts and
+ * control numbers they must carry. Transaction Set Control Numbers (ST02) are
+ * numbered from "0001" within each group, while the caller supplies the
+ * Interchange and Group Control Numbers, usually from {@link ControlNumbers}.
+ * <p>
+ * The segments in between are written one element at a time:
+ * <pre>
+ *     writer.segment("BIG").element("20170101").element(invoice).end();
+ * </pre>
+ * Every element is copied straight into a reusable byte buffer, with numbers
+ * turned into digits in place, so no <code>java.lang.String</code> is built
+ * for a segment. When the buffer fills it is written out to the channel and
+ * reused, so memory use stays flat however many documents a batch holds.
+ * Buffers of the {@link #DEFAULT_BUFFER_SIZE default size} are also kept in a
+ * small pool when their writer is closed, and handed to the next writer
+ * opened, as a writer is opened for every acknowledgment sent.
+ * Empty elements at the end of a segment are left off, as X12 requires.
+ * <p>
+ * Values are written in ISO-8859-1. A value that contains one of the
+ * delimiters, or a character outside that set, is turned down with an
+ * <code>IllegalArgumentException</code>, as are calls made out of order, with
+ * an <code>IllegalStateException</code>. Either way the segment has been left
+ * half-written, so the output should be thrown away.
+ * <p>
+ * A writer may not be used once it has been closed. It is used by one
+ * thread, and is not thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public class SegmentWriter implements Closeable {
+    //<editor-fold desc="  Public Constant Declarations  ">
+    /**
+     * The default size, in bytes, of the write buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * The levels of envelope that the writer can be in.
+     */
+    private static final int OUTSIDE = 0;
+    private static final int INTERCHANGE = 1;
+    private static final int GROUP = 2;
+    private static final int TRANSACTION = 3;
+    /**
+     * The packed identifiers of the envelope segments, which may only be
+     * written by the envelope methods.
+     */
+    private static final int[] ENVELOPE = {
+        Segment.idKey("ISA"), Segment.idKey("GS"), Segment.idKey("ST"),
+        Segment.idKey("SE"), Segment.idKey("GE"), Segment.idKey("IEA")
+    };
+    /**
+     * The most buffers that are kept in the pool.
+     */
+    private static final int POOL_SIZE = 
+            Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * The buffers of the default size given back by closed writers, to be
+     * reused by the next ones.
+     */
+    private static final ArrayDeque<ByteBuffer> POOL = new ArrayDeque<>();
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The channel to which the interchanges are written.
+     */
+    private final WritableByteChannel channel;
+    /**
+     * The reusable write buffer. Between calls the buffer is in "write"
+     * mode: the bytes before <code>position</code> have not yet been written
+     * out to the channel. Once the writer is closed the buffer has gone back
+     * to the pool, and this is <code>null</code>.
+     */
+    private ByteBuffer buffer;
+    /**
+     * The delimiters the interchanges are written with.
+     */
+    private final Delimiters delimiters;
+    /**
+     * The delimiters, kept as bytes for writing.
+     */
+    private final byte elementSeparator;
+    private final byte subElementSeparator;
+    private final byte segmentTerminator;
+    /**
+     * Scratch space in which numbers are turned into digits.
+     */
+    private final byte[] digits = new byte[20];
+    /**
+     * The calendar that the envelopes are dated from.
+     */
+    private final Calendar calendar = Calendar.getInstance();
+    /**
+     * The level of envelope currently open.
+     */
+    private int level;
+    /**
+     * Whether a segment has been started but not yet ended.
+     */
+    private boolean inSegment;
+    /**
+     * The number of empty elements, and of empty components of the current
+     * element, that have not been written yet. They are only written once a
+     * value follows them, so that empty elements at the end of a segment are
+     * left off.
+     */
+    private int pendingElements;
+    private int pendingComponents;
+    /**
+     * The Interchange Control Number of the open interchange.
+     */
+    private int interchangeNumber;
+    /**
+     * The Group Control Number of the open functional group.
+     */
+    private int groupNumber;
+    /**
+     * The Transaction Set Control Number of the open transaction set.
+     */
+    private int transactionNumber;
+    /**
+     * The number of functional groups written in the open interchange.
+     */
+    private int groups;
+    /**
+     * The number of transaction sets written in the open functional group.
+     */
+    private int transactions;
+    /**
+     * The number of segments written in the open transaction set, including
+     * its ST.
+     */
+    private int segments;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new <code>SegmentWriter</code> over the supplied channel using
+     * the {@link #DEFAULT_BUFFER_SIZE default buffer size}.
+     *
+     * @param channel    the channel to which to write the interchanges
+     * @param delimiters the delimiters to write the interchanges with
+     */
+    public SegmentWriter(WritableByteChannel channel, Delimiters delimiters) {
+        this(channel, delimiters, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new <code>SegmentWriter</code> over the supplied channel using
+     * a write buffer of the given size.
+     *
+     * @param channel    the channel to which to write the interchanges
+     * @param delimiters the delimiters to write the interchanges with
+     * @param bufferSize the size, in bytes, of the write buffer
+     */
+    public SegmentWriter(WritableByteChannel channel, Delimiters delimiters,
+                         int bufferSize) {
+        if ( channel == null ) {
+            throw new IllegalArgumentException("channel cannot be null");
+        }
+        if ( bufferSize <= 0 ) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+
+        char element = delimiters.getElementSeparator();
+        char subElement = delimiters.getSubElementSeparator();
+        char terminator = delimiters.getSegmentTerminator();
+        if ( element > 0xff || subElement > 0xff || terminator > 0xff
+                || element == subElement || element == terminator
+                || subElement == terminator ) {
+            throw new IllegalArgumentException("Unusable delimiters: "
+                                               + delimiters);
+        }
+
+        this.channel = channel;
+        this.delimiters = delimiters;
+        this.elementSeparator = (byte) element;
+        this.subElementSeparator = (byte) subElement;
+        this.segmentTerminator = (byte) terminator;
+        this.buffer = borrow(bufferSize);
+        this.level = OUTSIDE;
+    }
+
+    /**
+     * Creates a new <code>SegmentWriter</code> that writes the interchanges
+     * into a file, replacing anything already in it.
+     *
+     * @param file       the file to write
+     * @param delimiters the delimiters to write the interchanges with
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     */
+    public static SegmentWriter open(File file, Delimiters delimiters)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new SegmentWriter(channel, delimiters);
+        } catch (RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Envelope Methods  ">
+    /**
+     * Begins an interchange by writing its Interchange Control Header (ISA).
+     * No authorization or security information is sent, and no interchange
+     * acknowledgment (TA1) is requested. The header is dated now, as are the
+     * functional groups in it.
+     *
+     * @param senderQualifier   the Interchange ID Qualifier of the sender
+     *                          (ISA05)
+     * @param senderId          the Interchange Sender ID (ISA06)
+     * @param receiverQualifier the Interchange ID Qualifier of the receiver
+     *                          (ISA07)
+     * @param receiverId        the Interchange Receiver ID (ISA08)
+     * @param standards         the Interchange Control Standards Identifier,
+     *                          or the Repetition Separator from version
+     *                          00501 on (ISA11)
+     * @param version           the Interchange Control Version Number, such
+     *                          as "00401" (ISA12)
+     * @param controlNumber     the Interchange Control Number (ISA13)
+     * @param usage             the Usage Indicator, "P" for production or
+     *                          "T" for test data (ISA15)
+     * @throws IOException if the header cannot be written
+     */
+    public void beginInterchange(CharSequence senderQualifier,
+                                 CharSequence senderId,
+                                 CharSequence receiverQualifier,
+                                 CharSequence receiverId,
+                                 CharSequence standards, CharSequence version,
+                                 int controlNumber, char usage)
+            throws IOException {
+        this.expect(OUTSIDE);
+        if ( controlNumber < 1 || controlNumber > ControlNumbers.MAX ) {
+            throw new IllegalArgumentException("Interchange Control Number "
+                                               + "out of range: " 
+                                               + controlNumber);
+        }
+        this.calendar.setTimeInMillis(System.currentTimeMillis());
+
+        // Every element of the ISA is written, padded out to its fixed
+        //+ width, so that the header is always the same length.
+        this.start("ISA");
+        this.fixed("00", 2);
+        this.fixed("", 10);
+        this.fixed("00", 2);
+        this.fixed("", 10);
+        this.fixed(senderQualifier, 2);
+        this.fixed(senderId, 15);
+        this.fixed(receiverQualifier, 2);
+        this.fixed(receiverId, 15);
+        this.separator();
+        this.number(this.calendar.get(Calendar.YEAR) % 100, 2);
+        this.date();
+        this.separator();
+        this.time();
+        this.fixed(standards, 1);
+        this.fixed(version, 5);
+        this.separator();
+        this.number(controlNumber, 9);
+        this.fixed("0", 1);
+        this.separator();
+        this.put(usage);
+        this.separator();
+        this.put(this.subElementSeparator);
+        this.terminate();
+
+        this.level = INTERCHANGE;
+        this.interchangeNumber = controlNumber;
+        this.groups = 0;
+    }
+
+    /**
+     * Begins a functional group by writing its Functional Group Header (GS).
+     *
+     * @param functionalId  the Functional Identifier Code, such as "IN" for
+     *                      invoices (GS01)
+     * @param sender        the Application Sender's Code (GS02)
+     * @param receiver      the Application Receiver's Code (GS03)
+     * @param controlNumber the Group Control Number (GS06)
+     * @param version       the Version / Release / Industry Identifier Code,
+     *                      such as "004010" (GS08)
+     * @throws IOException if the header cannot be written
+     */
+    public void beginGroup(CharSequence functionalId, CharSequence sender,
+                           CharSequence receiver, int controlNumber,
+                           CharSequence version) throws IOException {
+        this.expect(INTERCHANGE);
+        if ( controlNumber < 1 || controlNumber > ControlNumbers.MAX ) {
+            throw new IllegalArgumentException("Group Control Number out of "
+                                               + "range: " + controlNumber);
+        }
+
+        this.start("GS");
+        this.element(functionalId);
+        this.element(sender);
+        this.element(receiver);
+        this.separator();
+        this.number(this.calendar.get(Calendar.YEAR), 4);
+        this.date();
+        this.separator();
+        this.time();
+        this.element(controlNumber);
+        this.element('X');
+        this.element(version);
+        this.end();
+
+        this.level = GROUP;
+        this.groupNumber = controlNumber;
+        this.groups++;
+        this.transactions = 0;
+    }
+
+    /**
+     * Begins a transaction set by writing its Transaction Set Header (ST).
+     *
+     * @param transactionSet the Transaction Set Identifier Code, such as
+     *                       "810" (ST01)
+     * @return the Transaction Set Control Number given to the set (ST02)
+     * @throws IOException if the header cannot be written
+     */
+    public int beginTransaction(CharSequence transactionSet) 
+            throws IOException {
+        return this.beginTransaction(transactionSet, "");
+    }
+
+    /**
+     * Begins a transaction set by writing its Transaction Set Header (ST),
+     * naming the implementation guide it follows.
+     *
+     * @param transactionSet the Transaction Set Identifier Code, such as
+     *                       "999" (ST01)
+     * @param reference      the Implementation Convention Reference, such as
+     *                       "005010X231A1" (ST03), or an empty value for none
+     * @return the Transaction Set Control Number given to the set (ST02)
+     * @throws IOException if the header cannot be written
+     */
+    public int beginTransaction(CharSequence transactionSet,
+                                CharSequence reference) throws IOException {
+        this.expect(GROUP);
+        this.transactionNumber = this.transactions + 1;
+
+        this.start("ST");
+        this.element(transactionSet);
+        this.separator();
+        this.number(this.transactionNumber, 4);
+        this.element(reference);
+        this.end();
+
+        this.level = TRANSACTION;
+        this.transactions++;
+        this.segments = 1;
+        return this.transactionNumber;
+    }
+
+    /**
+     * Ends the open transaction set by writing its Transaction Set Trailer
+     * (SE), with the number of segments in the set.
+     *
+     * @throws IOException if the trailer cannot be written
+     */
+    public void endTransaction() throws IOException {
+        this.expect(TRANSACTION);
+
+        this.start("SE");
+        this.element(this.segments + 1);
+        this.separator();
+        this.number(this.transactionNumber, 4);
+        this.terminate();
+
+        this.level = GROUP;
+    }
+
+    /**
+     * Ends the open functional group by writing its Functional Group Trailer
+     * (GE), with the number of transaction sets in the group.
+     *
+     * @throws IOException if the trailer cannot be written
+     */
+    public void endGroup() throws IOException {
+        this.expect(GROUP);
+
+        this.start("GE");
+        this.element(this.transactions);
+        this.element(this.groupNumber);
+        this.terminate();
+
+        this.level = INTERCHANGE;
+    }
+
+    /**
+     * Ends the open interchange by writing its Interchange Control Trailer
+     * (IEA), with the number of functional groups in the interchange.
+     *
+     * @throws IOException if the trailer cannot be written
+     */
+    public void endInterchange() throws IOException {
+        this.expect(INTERCHANGE);
+
+        this.start("IEA");
+        this.element(this.groups);
+        this.separator();
+        this.number(this.interchangeNumber, 9);
+        this.terminate();
+
+        this.level = OUTSIDE;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Segment Methods  ">
+    /**
+     * Starts a segment of the open transaction set. Its elements are then
+     * added in order, and the segment is finished with {@link #end()}.
+     *
+     * @param id the segment identifier, such as "BIG"
+     * @return this writer
+     * @throws IOException if the buffer cannot be written out
+     */
+    public SegmentWriter segment(CharSequence id) throws IOException {
+        this.expect(TRANSACTION);
+        int key = Segment.idKey(id);
+        for ( int envelope : ENVELOPE ) {
+            if ( key == envelope ) {
+                throw new IllegalArgumentException(id + " segments are "
+                        + "written by the envelope methods");
+            }
+        }
+
+        this.start(id);
+        this.segments++;
+        return this;
+    }
+
+    /**
+     * Adds an element to the current segment.
+     *
+     * @param value the value of the element, which may be empty
+     * @return this writer
+     * @throws IOException if the buffer cannot be written out
+     */
+    public SegmentWriter element(CharSequence value) throws IOException {
+        this.checkSegment();
+        this.pendingElements++;
+        this.pendingComponents = 0;
+
+        if ( value.length() > 0 ) {
+            this.flushPending();
+            this.value(value);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a single character element to the current segment.
+     *
+     * @param value the value of the element
+     * @return this writer
+     * @throws IOException if the buffer cannot be written out
+     */
+    public SegmentWriter element(char value) throws IOException {
+        this.checkSegment();
+        this.pendingElements++;
+        this.pendingComponents = 0;
+        this.flushPending();
+        this.put(value);
+        return this;
+    }
+
+    /**
+     * Adds a whole number element to the current segment, written in as few
+     * digits as it takes.
+     *
+     * @param value the value of the element
+     * @return this writer
+     * @throws IOException if the buffer cannot be written out
+     */
+    public SegmentWriter element(long value) throws IOException {
+        this.checkSegment();
+        this.pendingElements++;
+        this.pendingComponents = 0;
+        this.flushPending();
+        this.number(value, 1);
+        return this;
+    }
+
+    /**
+     * Adds another component to the element last added to the current
+     * segment, making it a composite element. Empty components at the end of
+     * the element are left off.
+     *
+     * @param value the value of the component, which may be empty
+     * @return this writer
+     * @throws IOException if the buffer cannot be written out
+     */
+    public SegmentWriter component(CharSequence value) throws IOException {
+        this.checkSegment();
+        this.pendingComponents++;
+
+        if ( value.length() > 0 ) {
+            this.flushPending();
+            this.value(value);
+        }
+        return this;
+    }
+
+    /**
+     * Finishes the current segment.
+     *
+     * @throws IOException if the buffer cannot be written out
+     */
+    public void end() throws IOException {
+        this.checkSegment();
+        this.terminate();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Retrieves the delimiters the interchanges are written with.
+     *
+     * @return the delimiters
+     */
+    public Delimiters getDelimiters() {
+        return this.delimiters;
+    }
+
+    /**
+     * Writes out anything still held in the buffer to the channel.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    public void flush() throws IOException {
+        if ( this.buffer == null ) {
+            throw new ClosedChannelException();
+        }
+        this.buffer.flip();
+        while ( this.buffer.hasRemaining() ) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes out anything still held in the buffer, closes the channel and
+     * gives the buffer back to the pool. Any envelope still open is left
+     * open, as the output is incomplete. Closing a writer that is already
+     * closed does nothing.
+     *
+     * @throws IOException if the channel cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if ( this.buffer == null ) {
+            return;
+        }
+        
+        try {
+            this.flush();
+        } finally {
+            ByteBuffer used = this.buffer;
+            this.buffer = null;
+            giveBack(used);
+            this.channel.close();
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Checks that the given level of envelope is the one open, and that no
+     * segment is left unfinished.
+     *
+     * @param expected the level of envelope that must be open
+     */
+    private void expect(int expected) {
+        if ( this.inSegment ) {
+            throw new IllegalStateException("The current segment has not "
+                                            + "been ended");
+        }
+        if ( this.level != expected ) {
+            throw new IllegalStateException(this.describe(expected)
+                    + " is expected, but " + this.describe(this.level)
+                    + " is open");
+        }
+    }
+
+    /**
+     * Describes a level of envelope for an error message.
+     *
+     * @param level the level of envelope
+     * @return the description
+     */
+    private String describe(int level) {
+        switch ( level ) {
+            case INTERCHANGE:
+                return "an interchange";
+            case GROUP:
+                return "a functional group";
+            case TRANSACTION:
+                return "a transaction set";
+            default:
+                return "no envelope";
+        }
+    }
+
+    /**
+     * Checks that a segment has been started.
+     */
+    private void checkSegment() {
+        if ( !this.inSegment ) {
+            throw new IllegalStateException("No segment has been started");
+        }
+    }
+
+    /**
+     * Starts a segment by writing its identifier.
+     *
+     * @param id the segment identifier
+     */
+    private void start(CharSequence id) throws IOException {
+        if ( id.length() == 0 ) {
+            throw new IllegalArgumentException("Segment identifier cannot be "
+                                               + "empty");
+        }
+        this.value(id);
+        this.inSegment = true;
+        this.pendingElements = 0;
+        this.pendingComponents = 0;
+    }
+
+    /**
+     * Finishes a segment by writing its terminator. Any empty elements left
+     * pending are dropped.
+     */
+    private void terminate() throws IOException {
+        this.put(this.segmentTerminator);
+        this.inSegment = false;
+        this.pendingElements = 0;
+        this.pendingComponents = 0;
+    }
+
+    /**
+     * Writes the separators of the empty elements and components that come
+     * before a value.
+     */
+    private void flushPending() throws IOException {
+        for ( ; this.pendingElements > 0; this.pendingElements-- ) {
+            this.put(this.elementSeparator);
+        }
+        for ( ; this.pendingComponents > 0; this.pendingComponents-- ) {
+            this.put(this.subElementSeparator);
+        }
+    }
+
+    /**
+     * Writes an element separator for an element that follows straight away.
+     */
+    private void separator() throws IOException {
+        this.pendingElements++;
+        this.pendingComponents = 0;
+        this.flushPending();
+    }
+
+    /**
+     * Writes a fixed-width element of the ISA, padded out with spaces.
+     *
+     * @param value the value of the element
+     * @param width the width of the element
+     */
+    private void fixed(CharSequence value, int width) throws IOException {
+        if ( value.length() > width ) {
+            throw new IllegalArgumentException("\"" + value + "\" is longer "
+                    + "than " + width + " character(s)");
+        }
+
+        this.separator();
+        this.value(value);
+        for ( int x = value.length(); x < width; x++ ) {
+            this.put((byte) ' ');
+        }
+    }
+
+    /**
+     * Writes the month and day of the envelopes' date, after its year.
+     */
+    private void date() throws IOException {
+        this.number(this.calendar.get(Calendar.MONTH) + 1, 2);
+        this.number(this.calendar.get(Calendar.DAY_OF_MONTH), 2);
+    }
+
+    /**
+     * Writes the envelopes' time, as hours and minutes.
+     */
+    private void time() throws IOException {
+        this.number(this.calendar.get(Calendar.HOUR_OF_DAY), 2);
+        this.number(this.calendar.get(Calendar.MINUTE), 2);
+    }
+
+    /**
+     * Writes a value, checking that it holds no delimiters and can be
+     * written in ISO-8859-1.
+     *
+     * @param value the value
+     */
+    private void value(CharSequence value) throws IOException {
+        for ( int x = 0; x < value.length(); x++ ) {
+            char c = value.charAt(x);
+            if ( c > 0xff || c == (this.elementSeparator & 0xff)
+                    || c == (this.subElementSeparator & 0xff)
+                    || c == (this.segmentTerminator & 0xff) ) {
+                throw new IllegalArgumentException("\"" + value + "\" cannot "
+                        + "be written: character " + (x + 1) + " is a "
+                        + "delimiter or is not in ISO-8859-1");
+            }
+            this.put((byte) c);
+        }
+    }
+
+    /**
+     * Writes a whole number, padded out with leading zeros to the given
+     * number of digits.
+     *
+     * @param value the number
+     * @param width the least number of digits to write
+     */
+    private void number(long value, int width) throws IOException {
+        if ( value < 0 ) {
+            this.put((byte) '-');
+        }
+
+        // Fill the scratch space from the right, one digit at a time. The
+        //+ digits are taken off the negative value, so that even the
+        //+ smallest long can be written.
+        int x = this.digits.length;
+        long rest = ( value < 0 ) ? value : -value;
+        do {
+            this.digits[--x] = (byte) ('0' - (rest % 10));
+            rest /= 10;
+        } while ( rest != 0 );
+        while ( this.digits.length - x < width ) {
+            this.digits[--x] = (byte) '0';
+        }
+
+        for ( ; x < this.digits.length; x++ ) {
+            this.put(this.digits[x]);
+        }
+    }
+
+    /**
+     * Writes a single character value.
+     *
+     * @param value the value
+     */
+    private void put(char value) throws IOException {
+        if ( value > 0xff || value == (this.elementSeparator & 0xff)
+                || value == (this.subElementSeparator & 0xff)
+                || value == (this.segmentTerminator & 0xff) ) {
+            throw new IllegalArgumentException("'" + value + "' cannot be "
+                    + "written: it is a delimiter or is not in ISO-8859-1");
+        }
+        this.put((byte) value);
+    }
+
+    /**
+     * Takes a write buffer from the pool, if it is of the default size and
+     * the pool has one, or allocates a new one.
+     *
+     * @param size the size, in bytes, of the buffer
+     * @return the buffer, cleared
+     */
+    private static ByteBuffer borrow(int size) {
+        if ( size == DEFAULT_BUFFER_SIZE ) {
+            synchronized (POOL) {
+                ByteBuffer pooled = POOL.poll();
+                if ( pooled != null ) {
+                    return pooled;
+                }
+            }
+        }
+        return ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Gives a write buffer back to the pool, unless it is not of the default
+     * size or the pool is full.
+     *
+     * @param used the buffer, which its writer no longer refers to
+     */
+    private static void giveBack(ByteBuffer used) {
+        if ( used.capacity() != DEFAULT_BUFFER_SIZE ) {
+            return;
+        }
+        used.clear();
+        synchronized (POOL) {
+            if ( POOL.size() < POOL_SIZE ) {
+                POOL.push(used);
+            }
+        }
+    }
+
+    /**
+     * Puts a byte into the buffer, writing the buffer out first if it is
+     * full.
+     *
+     * @param value the byte
+     */
+    private void put(byte value) throws IOException {
+        if ( !this.buffer.hasRemaining() ) {
+            this.flush();
+        }
+        this.buffer.put(value);
+    }
+    //</editor-fold>
+}
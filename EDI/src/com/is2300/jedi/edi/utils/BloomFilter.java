@@ -0,0 +1,135 @@
+/* {BloomFilter.java}
+ *
+ * A compact, probabilistic set of 64-bit keys, which can tell for certain that
+ * a key has never been added.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.utils;
+
+/**
+ * A <code>BloomFilter</code> answers whether a key <em>might</em> have been
+ * added to it, in a fixed number of bit probes and without keeping the keys
+ * themselves. A "no" is always right; a "yes" is wrong for about one (1) key
+ * in a hundred, as long as no more keys are added than the filter was sized
+ * for, and so needs to be confirmed elsewhere.
+ * <p>
+ * The keys are 64-bit hashes, which the caller computes once. The filter
+ * derives its {@link #HASHES} bit positions from the two halves of the hash,
+ * so a well-mixed hash is all that it needs.
+ * <p>
+ * A <code>BloomFilter</code> is not thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class BloomFilter {
+    /**
+     * The number of bits kept per key the filter is sized for.
+     */
+    public static final int BITS_PER_KEY = 10;
+    /**
+     * The number of bits set, and probed, per key. With {@link #BITS_PER_KEY}
+     * bits per key, this gives the lowest false positive rate.
+     */
+    public static final int HASHES = 7;
+
+    /**
+     * The bits, sixty-four (64) to a word.
+     */
+    private final long[] bits;
+    /**
+     * The number of bits in the filter.
+     */
+    private final long bitCount;
+    /**
+     * The number of keys the filter was sized for.
+     */
+    private final int capacity;
+
+    /**
+     * Creates a new, empty filter sized for the supplied number of keys.
+     *
+     * @param capacity the number of keys to size the filter for
+     */
+    public BloomFilter(int capacity) {
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.bits = new long[(int) (((long) capacity * BITS_PER_KEY + 63)
+                                                                      / 64)];
+        this.bitCount = (long) this.bits.length * 64;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param hash the 64-bit hash of the key
+     */
+    public void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for ( int x = 1; x <= HASHES; x++ ) {
+            long bit = this.position(h1 + x * h2);
+            this.bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Determines whether a key might have been added to the filter.
+     *
+     * @param hash the 64-bit hash of the key
+     * @return <code>false</code> if the key has certainly never been added;
+     *         <code>true</code> if it might have been
+     */
+    public boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for ( int x = 1; x <= HASHES; x++ ) {
+            long bit = this.position(h1 + x * h2);
+            if ( (this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0 ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieves the number of keys the filter was sized for.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Maps one of the combined hashes onto a bit of the filter.
+     *
+     * @param combined the combined hash
+     * @return the bit's position
+     */
+    private long position(int combined) {
+        return (combined & 0xFFFFFFFFL) % this.bitCount;
+    }
+}
@@ -0,0 +1,122 @@
+/* {CodeLists.java}
+ *
+ * The registry of the X12 code lists that element definitions may name, built
+ * * once and shared by every validator thread.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.CodeIndex;
+import com.is2300.jedi.edi.enums.CommQualifierCodes;
+import com.is2300.jedi.edi.enums.CurrencyCodes;
+import com.is2300.jedi.edi.enums.EntityIdentifierCodes;
+import com.is2300.jedi.edi.enums.FunctionalIdentifierCodes;
+import com.is2300.jedi.edi.enums.ISOCountryCodes;
+import com.is2300.jedi.edi.enums.IdentificationCodeQualifiers;
+import com.is2300.jedi.edi.enums.ReferenceIDQualifiers;
+import com.is2300.jedi.edi.enums.StateOrProvinceCodes;
+import com.is2300.jedi.edi.enums.TSPurposeCodes;
+import com.is2300.jedi.edi.enums.TransactionTypeCodes;
+import com.is2300.jedi.edi.enums.UsageCodes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <code>CodeLists</code> is the registry of the code lists that an element
+ * definition in a dictionary file may name, such as <tt>CurrencyCodes</tt>
+ * for CUR02, so that the element's value is checked against the list. The
+ * code lists are registered under the simple names of their enumerations.
+ * <p>
+ * A list should only be named for an element when it holds the element's
+ * whole code list. A valid value that a partial list happens to leave out
+ * would be reported as an invalid code, and the transaction set rejected in
+ * its acknowledgment. Several of the enumerations, such as <tt>
+ * EntityIdentifierCodes</tt>, only hold the codes met so far.
+ * <p>
+ * The registry is built once, when the class is loaded, and is never changed
+ * after that, so any number of validator threads may read it at the same
+ * time without locking. The code lists themselves are the immutable {@link
+ * CodeIndex indexes} of the enumerations.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class CodeLists {
+    /**
+     * The code lists, by name.
+     */
+    private static final Map<String, CodeIndex<?>> LISTS;
+
+    static {
+        Map<String, CodeIndex<?>> lists = new HashMap<>();
+        register(lists, CommQualifierCodes.codes());
+        register(lists, CurrencyCodes.codes());
+        register(lists, EntityIdentifierCodes.codes());
+        register(lists, FunctionalIdentifierCodes.codes());
+        register(lists, ISOCountryCodes.codes());
+        register(lists, IdentificationCodeQualifiers.codes());
+        register(lists, ReferenceIDQualifiers.codes());
+        register(lists, StateOrProvinceCodes.codes());
+        register(lists, TSPurposeCodes.codes());
+        register(lists, TransactionTypeCodes.codes());
+        register(lists, UsageCodes.codes());
+        LISTS = Collections.unmodifiableMap(lists);
+    }
+
+    /**
+     * <code>CodeLists</code> only has static methods.
+     */
+    private CodeLists() {
+    }
+
+    /**
+     * Retrieves a code list by name.
+     *
+     * @param name the simple name of the code list's enumeration, such as
+     *             "CurrencyCodes"
+     * @return the code list, or <code>null</code> if there is none by that
+     *         name
+     */
+    public static CodeIndex<?> get(String name) {
+        return LISTS.get(name);
+    }
+
+    /**
+     * Retrieves the names of the registered code lists.
+     *
+     * @return the names, in alphabetical order
+     */
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(new TreeSet<>(LISTS.keySet()));
+    }
+
+    /**
+     * Adds a code list to the registry being built.
+     *
+     * @param lists the registry
+     * @param codes the code list
+     */
+    private static void register(Map<String, CodeIndex<?>> lists,
+                                 CodeIndex<?> codes) {
+        lists.put(codes.getType().getSimpleName(), codes);
+    }
+}
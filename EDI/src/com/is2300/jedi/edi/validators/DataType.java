@@ -0,0 +1,265 @@
+/* {DataType.java}
+ *
+ * The X12 data types that an element may be defined as.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.DESyntaxErrorCodes;
+
+/**
+ * The data types of the X12 standard, as they appear in the element
+ * definitions of the implementation guides:
+ * <ul>
+ *  <li><strong>AN</strong>: String, alpha-numeric</li>
+ *  <li><strong>ID</strong>: Identifier, a value from a code list</li>
+ *  <li><strong>N</strong>: Numeric, with an implied number of decimal places,
+ *      written N0 through N9</li>
+ *  <li><strong>R</strong>: Decimal number, with an explicit decimal point
+ *      </li>
+ *  <li><strong>DT</strong>: Date, as YYMMDD or CCYYMMDD</li>
+ *  <li><strong>TM</strong>: Time, as HHMM, HHMMSS or HHMMSSd..d</li>
+ * </ul>
+ * <p>
+ * Each data type can check a value for its format with {@link 
+ * #isValid(CharSequence)}. The checks scan the characters of the value in
+ * place: nothing is parsed into an object, no exception is thrown for a bad
+ * value, and nothing is allocated, so a file full of garbage is rejected as
+ * quickly as a good one is accepted. The length of the value is not checked
+ * here, as it is given by the element definition.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public enum DataType {
+    AN,
+    ID,
+    N,
+    R,
+    DT,
+    TM;
+
+    /**
+     * The number of days in each month of a leap year, January first.
+     */
+    private static final int[] DAYS_IN_MONTH = {
+        31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31
+    };
+
+    /**
+     * Retrieves the data type for the code used in an element definition,
+     * such as "AN", "N2" or "DT".
+     *
+     * @param code the data type code
+     * @return the data type
+     * @throws IllegalArgumentException if the code is not a known data type
+     */
+    public static DataType of(String code) {
+        if ( code.length() == 2 && code.charAt(0) == 'N'
+                && code.charAt(1) >= '0' && code.charAt(1) <= '9' ) {
+            return N;
+        }
+
+        return valueOf(code);
+    }
+
+    /**
+     * Retrieves the number of implied decimal places in the data type code
+     * used in an element definition.
+     *
+     * @param code the data type code
+     * @return the number of implied decimal places for an N data type; zero
+     *         (0) for any other
+     */
+    public static int decimals(String code) {
+        return ( of(code) == N ) ? code.charAt(1) - '0' : 0;
+    }
+
+    /**
+     * Determines whether a value is in the format of this data type. An
+     * empty value is left to the element's mandatory and length checks, and
+     * so is not valid for any data type.
+     *
+     * @param value the value to check
+     * @return <code>true</code> if the value is in the format of this data
+     *         type
+     */
+    public boolean isValid(CharSequence value) {
+        switch ( this ) {
+            case N:
+                // The decimal point of an N value is implied, but senders
+                //+ often write it anyway, and it has always been accepted.
+            case R:
+                return isDecimal(value);
+            case DT:
+                return isDate(value);
+            case TM:
+                return isTime(value);
+            case AN:
+                return isString(value);
+            default:
+                return isIdentifier(value);
+        }
+    }
+
+    /**
+     * Retrieves the error code to report for a value that is not in the
+     * format of this data type.
+     *
+     * @return the data element syntax error code
+     */
+    public DESyntaxErrorCodes getErrorCode() {
+        switch ( this ) {
+            case DT:
+                return DESyntaxErrorCodes.INVALID_DATE;
+            case TM:
+                return DESyntaxErrorCodes.INVALID_TIME;
+            default:
+                return DESyntaxErrorCodes.INVALID_CHARACTER;
+        }
+    }
+
+    /**
+     * Checks an R or N value: an optional minus sign, then digits with at
+     * most one decimal point among them, and at least one digit.
+     */
+    private static boolean isDecimal(CharSequence value) {
+        int length = value.length();
+        int x = ( length > 0 && value.charAt(0) == '-' ) ? 1 : 0;
+        boolean point = false;
+        boolean digit = false;
+
+        for ( ; x < length; x++ ) {
+            char c = value.charAt(x);
+            if ( isDigit(c) ) {
+                digit = true;
+            } else if ( c == '.' && !point ) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+        return digit;
+    }
+
+    /**
+     * Checks a DT value: YYMMDD or CCYYMMDD, a real calendar date.
+     */
+    private static boolean isDate(CharSequence value) {
+        int length = value.length();
+        if ( length != 6 && length != 8 ) {
+            return false;
+        }
+
+        for ( int x = 0; x < length; x++ ) {
+            if ( !isDigit(value.charAt(x)) ) {
+                return false;
+            }
+        }
+
+        int year = twoDigits(value, 0);
+        if ( length == 8 ) {
+            year = year * 100 + twoDigits(value, 2);
+        }
+        int month = twoDigits(value, length - 4);
+        int day = twoDigits(value, length - 2);
+
+        if ( month < 1 || month > 12 || day < 1
+                || day > DAYS_IN_MONTH[month - 1] ) {
+            return false;
+        }
+
+        // The 29th of February is only valid in a leap year. Without the
+        //+ century, the year is taken to be in the twenty-first.
+        if ( month == 2 && day == 29 ) {
+            return year % 4 == 0 && ( length == 6 || year % 100 != 0
+                                      || year % 400 == 0 );
+        }
+        return true;
+    }
+
+    /**
+     * Checks a TM value: HHMM, HHMMSS, or HHMMSS followed by one or two
+     * digits of decimal seconds, on a 24-hour clock.
+     */
+    private static boolean isTime(CharSequence value) {
+        int length = value.length();
+        if ( length != 4 && ( length < 6 || length > 8 ) ) {
+            return false;
+        }
+
+        for ( int x = 0; x < length; x++ ) {
+            if ( !isDigit(value.charAt(x)) ) {
+                return false;
+            }
+        }
+
+        return twoDigits(value, 0) < 24 && twoDigits(value, 2) < 60
+                && ( length == 4 || twoDigits(value, 4) < 60 );
+    }
+
+    /**
+     * Checks an AN value: printable characters, at least one of which is
+     * not a space.
+     */
+    private static boolean isString(CharSequence value) {
+        boolean text = false;
+
+        for ( int x = 0; x < value.length(); x++ ) {
+            char c = value.charAt(x);
+            if ( c < ' ' || c == 0x7F ) {
+                return false;
+            }
+            text |= ( c != ' ' );
+        }
+        return text;
+    }
+
+    /**
+     * Checks an ID value: printable characters, without leading spaces. The
+     * value itself is checked against the element's code list, if it has one.
+     */
+    private static boolean isIdentifier(CharSequence value) {
+        if ( value.length() == 0 || value.charAt(0) == ' ' ) {
+            return false;
+        }
+
+        for ( int x = 0; x < value.length(); x++ ) {
+            char c = value.charAt(x);
+            if ( c < ' ' || c == 0x7F ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a character is an ASCII digit.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Reads two digits, already checked, as a number.
+     */
+    private static int twoDigits(CharSequence value, int at) {
+        return ( value.charAt(at) - '0' ) * 10 + ( value.charAt(at + 1) - '0' );
+    }
+}
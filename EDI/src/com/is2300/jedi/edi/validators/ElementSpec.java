@@ -0,0 +1,165 @@
+/* {ElementSpec.java}
+ *
+ * The compiled definition of a single element of a segment.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.CodeIndex;
+
+/**
+ * An <code>ElementSpec</code> holds the definition of one element of a
+ * segment, as given by the implementation guide: its data type, its minimum
+ * and maximum length and whether it is mandatory. Everything is held as
+ * primitives and constants, so a validator can check an element against its
+ * definition without unboxing or casting anything. An element whose values
+ * come from a code list also holds the list's {@link CodeIndex}, so that its
+ * value can be looked up in place.
+ * <p>
+ * <code>ElementSpec</code> objects are immutable, so they are built once and
+ * shared by every thread that validates segments.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class ElementSpec {
+    /**
+     * The data type of the element.
+     */
+    private final DataType type;
+    /**
+     * The number of implied decimal places, for an N data type.
+     */
+    private final int decimals;
+    /**
+     * The minimum number of characters in the element.
+     */
+    private final int minLength;
+    /**
+     * The maximum number of characters in the element.
+     */
+    private final int maxLength;
+    /**
+     * Whether the element is mandatory.
+     */
+    private final boolean required;
+    /**
+     * The code list the element's values come from, if any.
+     */
+    private final CodeIndex<?> codeList;
+
+    /**
+     * Creates a new element definition.
+     *
+     * @param type      the data type code, such as "AN", "N0" or "DT"
+     * @param minLength the minimum number of characters in the element
+     * @param maxLength the maximum number of characters in the element
+     * @param required  <code>true</code> if the element is mandatory
+     * @throws IllegalArgumentException if the data type code is not known
+     */
+    public ElementSpec(String type, int minLength, int maxLength,
+                       boolean required) {
+        this(type, minLength, maxLength, required, null);
+    }
+
+    /**
+     * Creates a new definition of an element whose values come from a code
+     * list.
+     *
+     * @param type      the data type code, such as "ID"
+     * @param minLength the minimum number of characters in the element
+     * @param maxLength the maximum number of characters in the element
+     * @param required  <code>true</code> if the element is mandatory
+     * @param codeList  the code list, or <code>null</code> for none
+     * @throws IllegalArgumentException if the data type code is not known
+     */
+    public ElementSpec(String type, int minLength, int maxLength,
+                       boolean required, CodeIndex<?> codeList) {
+        this.type = DataType.of(type);
+        this.decimals = DataType.decimals(type);
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.required = required;
+        this.codeList = codeList;
+    }
+
+    /**
+     * Retrieves the data type of the element.
+     *
+     * @return the data type
+     */
+    public DataType getType() {
+        return this.type;
+    }
+
+    /**
+     * Retrieves the number of implied decimal places, for an N data type.
+     *
+     * @return the number of implied decimal places
+     */
+    public int getDecimals() {
+        return this.decimals;
+    }
+
+    /**
+     * Retrieves the minimum number of characters in the element.
+     *
+     * @return the minimum length
+     */
+    public int getMinLength() {
+        return this.minLength;
+    }
+
+    /**
+     * Retrieves the maximum number of characters in the element.
+     *
+     * @return the maximum length
+     */
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+    /**
+     * Determines whether the element is mandatory.
+     *
+     * @return <code>true</code> if the element is mandatory
+     */
+    public boolean isRequired() {
+        return this.required;
+    }
+
+    /**
+     * Retrieves the code list the element's values come from.
+     *
+     * @return the code list, or <code>null</code> if the element has none
+     */
+    public CodeIndex<?> getCodeList() {
+        return this.codeList;
+    }
+
+    @Override
+    public String toString() {
+        return ( this.type == DataType.N ? "N" + this.decimals
+                                         : this.type.name() )
+                + " " + this.minLength + "/" + this.maxLength
+                + ( this.required ? " M" : " O" )
+                + ( this.codeList == null 
+                    ? "" : " " + this.codeList.getType().getSimpleName() );
+    }
+}
@@ -0,0 +1,84 @@
+/* {ErrorSink.java}
+ *
+ * Receives the errors found by the validators, as codes and positions.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.DESyntaxErrorCodes;
+import com.is2300.jedi.edi.enums.SegmentSyntaxErrorCodes;
+
+/**
+ * An <code>ErrorSink</code> is handed the errors found while validating the
+ * segments of a transaction set. Each error is given as its Functional
+ * Acknowledgment code, the position of the segment within the transaction set
+ * and, for element errors, the position of the element within the segment.
+ * Nothing else is passed, and in particular no message, so reporting an error
+ * costs the validator nothing beyond the call. A sink that needs message text
+ * produces it itself, when it is asked for.
+ * <p>
+ * The segment identifier is passed packed into an <code>int</code>, as by
+ * {@link com.is2300.jedi.edi.io.Segment#getIdKey()}.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public interface ErrorSink {
+    /**
+     * A sink that ignores every error, for callers that only need the error
+     * count the validators return.
+     */
+    ErrorSink IGNORE = new ErrorSink() {
+        @Override
+        public void segmentError(int position, int segmentId,
+                                 SegmentSyntaxErrorCodes code) {
+        }
+
+        @Override
+        public void elementError(int position, int segmentId, int element,
+                                 DESyntaxErrorCodes code) {
+        }
+    };
+
+    /**
+     * Receives an error in a segment as a whole.
+     *
+     * @param position  the position of the segment within the transaction
+     *                  set, the ST segment being one (1); or zero (0) if it
+     *                  is not known
+     * @param segmentId the packed segment identifier
+     * @param code      the segment syntax error code
+     */
+    void segmentError(int position, int segmentId,
+                      SegmentSyntaxErrorCodes code);
+
+    /**
+     * Receives an error in an element of a segment.
+     *
+     * @param position  the position of the segment within the transaction
+     *                  set, the ST segment being one (1); or zero (0) if it
+     *                  is not known
+     * @param segmentId the packed segment identifier
+     * @param element   the position of the element within the segment, the
+     *                  first after the segment identifier being one (1)
+     * @param code      the data element syntax error code
+     */
+    void elementError(int position, int segmentId, int element,
+                      DESyntaxErrorCodes code);
+}
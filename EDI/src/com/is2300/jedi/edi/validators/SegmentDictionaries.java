@@ -0,0 +1,249 @@
+/* {SegmentDictionaries.java}
+ *
+ * Finds, loads and caches the segment dictionaries for the transaction sets
+ * being validated.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import org.openide.util.Exceptions;
+
+/**
+ * <code>SegmentDictionaries</code> hands out the {@link SegmentDictionary} for
+ * a transaction set in a version of the X12 standard. Each dictionary is read
+ * from its file the first time it is asked for, then kept for as long as the
+ * module is loaded, so that processor runs share the compiled dictionaries
+ * rather than reading them again.
+ * <p>
+ * The dictionary for transaction set <em>ttt</em> in version <em>vvvvvv</em>
+ * is the file <tt>vvvvvv/ttt.dict</tt>, looked for first in the dictionary
+ * directory, if one has been {@link #setDirectory set}, and then among the
+ * dictionaries that ship with the module. If there is no dictionary for the
+ * version, that of the {@link #DEFAULT_VERSION} is used instead.
+ * <p>
+ * As the version and transaction set come from the files received, they are
+ * checked before any file name is built from them: a version must be six (6)
+ * to twelve (12) digits or capital letters, and a transaction set three (3)
+ * digits. A version is only known if the dictionary directory has a
+ * subdirectory of its name, or the module ships a list of its {@link 
+ * TransactionSets transaction sets}; any other version, well formed or not,
+ * is taken for the default version, and is not kept in the cache, so that
+ * the files received cannot fill it.
+ * <p>
+ * All of the methods are thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class SegmentDictionaries {
+    /**
+     * The version whose dictionaries are used when a transaction set has no
+     * dictionary for its own version.
+     */
+    public static final String DEFAULT_VERSION = "004010";
+    /**
+     * The extension of the dictionary files.
+     */
+    public static final String EXTENSION = ".dict";
+
+    /**
+     * The location of the dictionaries that ship with the module.
+     */
+    private static final String RESOURCES = "dictionaries/";
+    /**
+     * The form of a version of the X12 standard (GS08).
+     */
+    private static final Pattern VERSION = Pattern.compile("[0-9A-Z]{6,12}");
+    /**
+     * The form of a Transaction Set Identifier Code (ST01).
+     */
+    private static final Pattern TRANSACTION_SET = Pattern.compile("\\d{3}");
+    /**
+     * Stands in the cache for a dictionary that does not exist, so that it
+     * is only looked for once.
+     */
+    private static final Object MISSING = new Object();
+
+    /**
+     * The dictionaries loaded so far, keyed by version, then by transaction
+     * set, so that looking one up does not need to build a key.
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<String, Object>>
+            CACHE = new ConcurrentHashMap<>();
+    /**
+     * The directory of the trading partners' dictionary files, if any.
+     */
+    private static volatile File directory;
+
+    /**
+     * <code>SegmentDictionaries</code> only has static methods.
+     */
+    private SegmentDictionaries() {
+    }
+
+    /**
+     * Sets the directory in which to look for dictionary files before those
+     * that ship with the module, and forgets the dictionaries and lists of
+     * {@link TransactionSets transaction sets} loaded so far.
+     *
+     * @param dir the dictionary directory, or <code>null</code> for none
+     */
+    public static void setDirectory(File dir) {
+        directory = dir;
+        CACHE.clear();
+        TransactionSets.clear();
+    }
+
+    /**
+     * Retrieves the dictionary for a transaction set.
+     *
+     * @param version        the version of the X12 standard, from the
+     *                       Functional Group Header (GS08); or <code>null
+     *                       </code> for the {@link #DEFAULT_VERSION}
+     * @param transactionSet the Transaction Set Identifier Code (ST01)
+     * @return the dictionary, or <code>null</code> if there is none for the
+     *         transaction set, or its code is not three (3) digits
+     */
+    public static SegmentDictionary get(String version,
+                                        String transactionSet) {
+        if ( transactionSet == null 
+                || !TRANSACTION_SET.matcher(transactionSet).matches() ) {
+            return null;
+        }
+        version = version(version);
+
+        ConcurrentMap<String, Object> sets = CACHE.get(version);
+        if ( sets == null ) {
+            sets = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Object> raced = CACHE.putIfAbsent(version,
+                                                                    sets);
+            if ( raced != null ) {
+                sets = raced;
+            }
+        }
+
+        Object found = sets.get(transactionSet);
+        if ( found == null ) {
+            SegmentDictionary loaded = load(version, transactionSet);
+            found = ( loaded == null ) ? MISSING : loaded;
+
+            Object raced = sets.putIfAbsent(transactionSet, found);
+            if ( raced != null ) {
+                found = raced;
+            }
+        }
+
+        if ( found != MISSING ) {
+            return (SegmentDictionary) found;
+        } else if ( !DEFAULT_VERSION.equals(version) ) {
+            return get(DEFAULT_VERSION, transactionSet);
+        }
+
+        return null;
+    }
+
+    /**
+     * Determines the version whose files are used for a version received:
+     * the version itself if it is known, and the {@link #DEFAULT_VERSION}
+     * otherwise.
+     *
+     * @param version the version, from the Functional Group Header (GS08);
+     *                or <code>null</code>
+     * @return the version to use
+     */
+    static String version(String version) {
+        if ( version == null || !VERSION.matcher(version).matches() ) {
+            return DEFAULT_VERSION;
+        }
+        if ( CACHE.containsKey(version) ) {
+            return version;
+        }
+
+        File dir = directory;
+        if ( ( dir != null && new File(dir, version).isDirectory() )
+                || SegmentDictionaries.class.getResource(RESOURCES + version 
+                        + "/" + TransactionSets.FILE_NAME) != null ) {
+            return version;
+        }
+        return DEFAULT_VERSION;
+    }
+
+    /**
+     * Opens a file from the dictionary directory or, failing that, from the
+     * dictionaries that ship with the module.
+     *
+     * @param name the name of the file, relative to the dictionary directory
+     * @return a reader of the file, or <code>null</code> if there is no such
+     *         file
+     * @throws IOException if the file cannot be opened
+     */
+    static BufferedReader open(String name) throws IOException {
+        File dir = directory;
+        if ( dir != null ) {
+            File file = new File(dir, name);
+            if ( file.isFile() ) {
+                return Files.newBufferedReader(file.toPath(), 
+                                               StandardCharsets.UTF_8);
+            }
+        }
+
+        InputStream stream = SegmentDictionaries.class.getResourceAsStream(
+                                                         RESOURCES + name);
+        if ( stream == null ) {
+            return null;
+        }
+        return new BufferedReader(new InputStreamReader(stream, 
+                                                        StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a dictionary from the dictionary directory or, failing that, from
+     * the module.
+     *
+     * @param version        the version of the X12 standard
+     * @param transactionSet the Transaction Set Identifier Code
+     * @return the dictionary, or <code>null</code> if there is none, or it
+     *         cannot be read
+     */
+    private static SegmentDictionary load(String version,
+                                          String transactionSet) {
+        try ( BufferedReader in = open(version + "/" + transactionSet 
+                                       + EXTENSION) ) {
+            if ( in == null ) {
+                return null;
+            }
+            return SegmentDictionary.parse(version, transactionSet, in);
+        } catch (IOException ex) {
+            // A broken dictionary is treated as a missing one, so that the
+            //+ transaction sets are still processed.
+            Exceptions.printStackTrace(ex);
+            return null;
+        }
+    }
+}
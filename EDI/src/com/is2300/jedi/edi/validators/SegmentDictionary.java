@@ -0,0 +1,513 @@
+/* {SegmentDictionary.java}
+ *
+ * The compiled segment and element definitions of one transaction set, in one
+ * version of the X12 standard, as loaded from a dictionary file.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.CodeIndex;
+import com.is2300.jedi.edi.enums.SegmentSyntaxErrorCodes;
+import com.is2300.jedi.edi.io.Segment;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A <code>SegmentDictionary</code> holds the segments allowed in one
+ * transaction set, such as the 810 Invoice, in one version of the X12
+ * standard, along with the definitions of their elements. It is compiled from
+ * a dictionary file, taken from the trading partners' implementation guides,
+ * so that a new document type only needs a new file rather than a new
+ * validator class.
+ * <p>
+ * A dictionary file is plain text. Blank lines, and anything following a
+ * <code>#</code>, are ignored. Each segment is given on a line of its own,
+ * starting in the first column, with its identifier, optionally followed by
+ * the number of elements it contains and the number of those that are
+ * required. The elements to check follow on indented lines, each with its
+ * reference designator, which names the element checked, data type, minimum
+ * and maximum length, and <code>M</code> if it is mandatory or <code>O</code>
+ * if it is optional, then, if its values come from a code list that holds
+ * every code of the element, the name of the list in {@link CodeLists}:
+ * <pre>
+ * # 824 Application Advice
+ * !strict
+ * BGN 9 3
+ *     BGN01  ID  2  2  M
+ *     BGN02  AN  1 30  M
+ *     BGN03  DT  8  8  M
+ *     BGN04  TM  4  8  O
+ * N1 6 1
+ *     N101   ID  2  3  M
+ *     N103   ID  1  2  O
+ *     N104   AN  2 80  O
+ * </pre>
+ * Elements that are left out are not checked, but a segment may not have
+ * more elements than it contains. Without the counts, a segment contains up
+ * to the last element checked. A segment with no element lines is allowed,
+ * but its elements are not checked. The <code>!strict</code> directive counts any segment that is not
+ * in the dictionary as an error; otherwise such segments are let through.
+ * <p>
+ * The dictionary may end with a <code>!structure</code> directive, followed
+ * by the order of the segments in the transaction set, one to a line, each
+ * with <code>M</code> or <code>O</code> and the number of times it may be
+ * used in a row, <code>&gt;1</code> meaning any number. A loop is given by a
+ * <code>LOOP</code> line, with its identifier, <code>M</code> or <code>O
+ * </code> and the number of times it may repeat, followed by its segments,
+ * the first of which must be the one it is named after, and an <code>END
+ * </code> line:
+ * <pre>
+ * !structure
+ * ST     M  1
+ * BIG    M  1
+ * LOOP N1 O 200
+ *     N1 O  1
+ *     N4 O  1
+ * END
+ * </pre>
+ * The structure is compiled into a {@link SegmentStructure}, which checks the
+ * order, loops and repeat counts of the segments as they are read.
+ * <p>
+ * The segments are kept sorted by their packed identifiers, so looking one up
+ * is a binary search on {@link Segment#getIdKey()}, and validating it is a
+ * single pass over its element definitions. A <code>SegmentDictionary</code>
+ * is immutable, and so may be shared by any number of validator threads.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class SegmentDictionary {
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The version of the X12 standard, such as "004010".
+     */
+    private final String version;
+    /**
+     * The Transaction Set Identifier Code, such as "810".
+     */
+    private final String transactionSet;
+    /**
+     * Whether segments that are not in the dictionary are errors.
+     */
+    private final boolean strict;
+    /**
+     * The packed identifiers of the {@link #segments}, in the same order.
+     */
+    private final int[] keys;
+    /**
+     * The segment definitions, sorted by their packed identifiers.
+     */
+    private final SegmentSpec[] segments;
+    /**
+     * The structure of the transaction set, if the dictionary gives one.
+     */
+    private final SegmentStructure structure;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new dictionary from the supplied segment definitions.
+     *
+     * @param version        the version of the X12 standard
+     * @param transactionSet the Transaction Set Identifier Code
+     * @param strict         <code>true</code> if segments that are not in the
+     *                       dictionary are errors
+     * @param segments       the segment definitions
+     */
+    public SegmentDictionary(String version, String transactionSet,
+                             boolean strict, List<SegmentSpec> segments) {
+        this(version, transactionSet, strict, segments, null);
+    }
+
+    /**
+     * Creates a new dictionary from the supplied segment definitions and
+     * structure.
+     *
+     * @param version        the version of the X12 standard
+     * @param transactionSet the Transaction Set Identifier Code
+     * @param strict         <code>true</code> if segments that are not in the
+     *                       dictionary are errors
+     * @param segments       the segment definitions
+     * @param structure      the structure of the transaction set, or <code>
+     *                       null</code> if it is not checked
+     */
+    public SegmentDictionary(String version, String transactionSet,
+                             boolean strict, List<SegmentSpec> segments,
+                             SegmentStructure structure) {
+        this.version = version;
+        this.transactionSet = transactionSet;
+        this.strict = strict;
+        this.structure = structure;
+
+        List<SegmentSpec> sorted = new ArrayList<>(segments);
+        Collections.sort(sorted, new Comparator<SegmentSpec>() {
+            @Override
+            public int compare(SegmentSpec a, SegmentSpec b) {
+                return Integer.compare(a.getIdKey(), b.getIdKey());
+            }
+        });
+
+        this.segments = sorted.toArray(new SegmentSpec[sorted.size()]);
+        this.keys = new int[this.segments.length];
+        for ( int x = 0; x < this.segments.length; x++ ) {
+            this.keys[x] = this.segments[x].getIdKey();
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Static Methods  ">
+    /**
+     * Reads and compiles a dictionary file.
+     *
+     * @param version        the version of the X12 standard
+     * @param transactionSet the Transaction Set Identifier Code
+     * @param in             the reader on the dictionary file
+     * @return the compiled dictionary
+     * @throws IOException if the file cannot be read, or is not a valid
+     *                     dictionary file
+     */
+    public static SegmentDictionary parse(String version,
+                                          String transactionSet,
+                                          BufferedReader in)
+            throws IOException {
+        List<SegmentSpec> segments = new ArrayList<>();
+        List<ElementSpec> elements = new ArrayList<>();
+        boolean strict = false;
+        SegmentStructure.Builder structure = null;
+        String segment = null;
+        int fieldCount = -1;
+        int requiredCount = 0;
+        String line;
+        int lineNumber = 0;
+
+        while ( (line = in.readLine()) != null ) {
+            lineNumber++;
+
+            int comment = line.indexOf('#');
+            if ( comment >= 0 ) {
+                line = line.substring(0, comment);
+            }
+
+            String trimmed = line.trim();
+            if ( trimmed.isEmpty() ) {
+                continue;
+            }
+
+            String[] fields = trimmed.split("\\s+");
+
+            try {
+                if ( "!strict".equals(trimmed) ) {
+                    strict = true;
+                } else if ( "!structure".equals(trimmed) ) {
+                    structure = new SegmentStructure.Builder();
+                } else if ( structure != null ) {
+                    structureLine(structure, fields);
+                } else if ( !Character.isWhitespace(line.charAt(0)) ) {
+                    // A new segment, so finish the one before it.
+                    if ( segment != null ) {
+                        segments.add(toSpec(segment, fieldCount, 
+                                            requiredCount, elements));
+                    }
+                    if ( fields.length != 1 && fields.length != 3 ) {
+                        throw new IllegalArgumentException("Expected a segment "
+                                + "identifier, optionally followed by its "
+                                + "element and required element counts.");
+                    }
+                    segment = fields[0];
+                    fieldCount = ( fields.length == 3 ) 
+                               ? Integer.parseInt(fields[1]) : -1;
+                    requiredCount = ( fields.length == 3 ) 
+                                  ? Integer.parseInt(fields[2]) : 0;
+                    elements.clear();
+                } else {
+                    if ( segment == null ) {
+                        throw new IllegalArgumentException("Element given "
+                                + "before any segment.");
+                    }
+                    if ( fields.length != 5 && fields.length != 6 ) {
+                        throw new IllegalArgumentException("Expected the "
+                                + "reference, data type, minimum and maximum "
+                                + "length, M or O, and optionally a code "
+                                + "list.");
+                    }
+                    CodeIndex<?> codeList = null;
+                    if ( fields.length == 6 ) {
+                        codeList = CodeLists.get(fields[5]);
+                        if ( codeList == null ) {
+                            throw new IllegalArgumentException("Unknown code "
+                                    + "list: " + fields[5]);
+                        }
+                    }
+                    int number = elementNumber(segment, fields[0]);
+                    if ( fieldCount >= 0 && number > fieldCount ) {
+                        throw new IllegalArgumentException(fields[0] 
+                                + " is past the " + fieldCount 
+                                + " elements of " + segment + ".");
+                    }
+                    while ( elements.size() < number ) {
+                        elements.add(null);
+                    }
+                    if ( elements.get(number - 1) != null ) {
+                        throw new IllegalArgumentException(fields[0] 
+                                + " is given twice.");
+                    }
+                    elements.set(number - 1, new ElementSpec(fields[1],
+                            Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]),
+                            "M".equals(fields[4]), codeList));
+                }
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Dictionary " + version + "/"
+                        + transactionSet + ", line " + lineNumber + ": "
+                        + ex.getMessage(), ex);
+            }
+        }
+
+        if ( segment != null ) {
+            segments.add(toSpec(segment, fieldCount, requiredCount, 
+                                elements));
+        }
+
+        SegmentStructure compiled = null;
+        if ( structure != null ) {
+            try {
+                compiled = structure.build();
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Dictionary " + version + "/"
+                        + transactionSet + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        return new SegmentDictionary(version, transactionSet, strict,
+                                     segments, compiled);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Validates a single segment of the transaction set.
+     *
+     * @param segment a view of the segment to validate
+     * @return the number of errors found in the segment
+     */
+    public int validate(Segment segment) {
+        return this.validate(segment, 0, ErrorSink.IGNORE);
+    }
+
+    /**
+     * Validates a single segment of the transaction set, handing each error
+     * found to the supplied sink.
+     *
+     * @param segment  a view of the segment to validate
+     * @param position the position of the segment within the transaction
+     *                 set, the ST segment being one (1); or zero (0) if it is
+     *                 not known
+     * @param errors   the sink to hand the errors to
+     * @return the number of errors found in the segment
+     */
+    public int validate(Segment segment, int position, ErrorSink errors) {
+        SegmentSpec spec = this.getSegment(segment);
+
+        if ( spec == null ) {
+            if ( this.strict ) {
+                errors.segmentError(position, segment.getIdKey(),
+                        SegmentSyntaxErrorCodes.SEGMENT_NOT_DEFINED);
+                return 1;
+            }
+            return 0;
+        } else if ( spec.size() == 0 ) {
+            return 0;
+        }
+
+        return SegmentValidator.validate(segment, spec, position, errors);
+    }
+
+    /**
+     * Looks up the definition of a segment.
+     *
+     * @param segment a view of the segment
+     * @return the segment's definition, or <code>null</code> if it is not in
+     *         the dictionary
+     */
+    public SegmentSpec getSegment(Segment segment) {
+        int x = Arrays.binarySearch(this.keys, segment.getIdKey());
+        return ( x < 0 ) ? null : this.segments[x];
+    }
+
+    /**
+     * Retrieves the structure of the transaction set.
+     *
+     * @return the structure, or <code>null</code> if the dictionary does not
+     *         give one
+     */
+    public SegmentStructure getStructure() {
+        return this.structure;
+    }
+
+    /**
+     * Retrieves the version of the X12 standard.
+     *
+     * @return the version, such as "004010"
+     */
+    public String getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Retrieves the Transaction Set Identifier Code.
+     *
+     * @return the transaction set, such as "810"
+     */
+    public String getTransactionSet() {
+        return this.transactionSet;
+    }
+
+    /**
+     * Determines whether segments that are not in the dictionary are errors.
+     *
+     * @return <code>true</code> if the dictionary is strict
+     */
+    public boolean isStrict() {
+        return this.strict;
+    }
+
+    /**
+     * Retrieves the number of segments in the dictionary.
+     *
+     * @return the segment count
+     */
+    public int size() {
+        return this.segments.length;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentDictionary[" + this.version + "/"
+                + this.transactionSet + ", " + this.segments.length
+                + " segments" + ( this.strict ? ", strict" : "" )
+                + ( this.structure != null ? ", structured]" : "]" );
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Static Methods  ">
+    /**
+     * Adds a line of the <code>!structure</code> section to the structure.
+     *
+     * @param structure the structure being built
+     * @param fields    the fields of the line
+     * @throws IllegalArgumentException if the line is not a segment, loop or
+     *                                  end of loop
+     */
+    private static void structureLine(SegmentStructure.Builder structure,
+                                      String[] fields) {
+        if ( "END".equals(fields[0]) && fields.length == 1 ) {
+            structure.endLoop();
+        } else if ( "LOOP".equals(fields[0]) && fields.length == 4 ) {
+            structure.startLoop(fields[1], isMandatory(fields[2]),
+                                maxUse(fields[3]));
+        } else if ( fields.length == 3 ) {
+            structure.segment(fields[0], isMandatory(fields[1]),
+                              maxUse(fields[2]));
+        } else {
+            throw new IllegalArgumentException("Expected a segment identifier,"
+                    + " M or O, and its maximum use; LOOP with the same; or "
+                    + "END.");
+        }
+    }
+
+    /**
+     * Reads the requirement designator of a segment or loop.
+     *
+     * @param field <code>M</code> or <code>O</code>
+     * @return <code>true</code> if it is mandatory
+     * @throws IllegalArgumentException if it is neither
+     */
+    private static boolean isMandatory(String field) {
+        if ( !"M".equals(field) && !"O".equals(field) ) {
+            throw new IllegalArgumentException("Expected M or O, not " 
+                    + field + ".");
+        }
+        return "M".equals(field);
+    }
+
+    /**
+     * Reads the maximum use of a segment or loop.
+     *
+     * @param field the number of times, or <code>&gt;1</code> for any number
+     * @return the number of times
+     * @throws NumberFormatException if it is not a number
+     */
+    private static int maxUse(String field) {
+        return ( ">1".equals(field) ) ? Integer.MAX_VALUE 
+                                      : Integer.parseInt(field);
+    }
+
+    /**
+     * Reads the element number from a reference designator, such as 3 from
+     * "N103".
+     *
+     * @param segment    the identifier of the segment being defined
+     * @param designator the reference designator
+     * @return the element number, one (1) being the first element
+     * @throws IllegalArgumentException if the designator is not that of an
+     *                                  element of the segment
+     */
+    private static int elementNumber(String segment, String designator) {
+        int number = -1;
+        int at = segment.length();
+        if ( designator.length() == at + 2 && designator.startsWith(segment)
+                && Character.isDigit(designator.charAt(at))
+                && Character.isDigit(designator.charAt(at + 1)) ) {
+            number = (designator.charAt(at) - '0') * 10
+                   + (designator.charAt(at + 1) - '0');
+        }
+        if ( number < 1 ) {
+            throw new IllegalArgumentException(designator + " is not an "
+                    + "element of " + segment + ".");
+        }
+        return number;
+    }
+
+    /**
+     * Builds the definition of a segment from its line and its elements.
+     *
+     * @param id            the segment identifier
+     * @param fieldCount    the number of elements the segment contains, or
+     *                      -1 to take the number of element definitions
+     * @param requiredCount the number of elements the segment is required to
+     *                      contain
+     * @param elements      the element definitions by element number, with
+     *                      <code>null</code> for those not checked
+     * @return the segment definition
+     */
+    private static SegmentSpec toSpec(String id, int fieldCount,
+                                      int requiredCount,
+                                      List<ElementSpec> elements) {
+        return new SegmentSpec(id, 
+                ( fieldCount < 0 ) ? elements.size() : fieldCount,
+                requiredCount,
+                elements.toArray(new ElementSpec[elements.size()]));
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,161 @@
+/* {SegmentSpec.java}
+ *
+ * The compiled definition of a segment: its identifier and the definitions of
+ * its elements.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.io.Segment;
+import java.util.Arrays;
+
+/**
+ * A <code>SegmentSpec</code> holds the definition of a segment, as given by
+ * the implementation guide: the number of elements it contains, how many of
+ * them are required, and an {@link ElementSpec} for each element that is
+ * checked. The element definitions are kept by element number, with <code>
+ * null</code> in place of any element that is not checked, so an element is
+ * always checked against its own definition.
+ * <p>
+ * <code>SegmentSpec</code> objects are immutable, so they are built once, when
+ * the validator that uses them is loaded, and shared by every thread that
+ * validates segments.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class SegmentSpec {
+    /**
+     * The segment identifier.
+     */
+    private final String id;
+    /**
+     * The segment identifier, packed as by {@link Segment#idKey}.
+     */
+    private final int idKey;
+    /**
+     * The number of elements the segment contains.
+     */
+    private final int fieldCount;
+    /**
+     * The number of elements the segment is required to contain.
+     */
+    private final int requiredCount;
+    /**
+     * The definitions of the elements by element number, less one (1), with
+     * <code>null</code> for the elements that are not checked.
+     */
+    private final ElementSpec[] elements;
+
+    /**
+     * Creates a new segment definition.
+     *
+     * @param id            the segment identifier, such as "ST" or "BGN"
+     * @param fieldCount    the number of elements the segment contains
+     * @param requiredCount the number of elements the segment is required to
+     *                      contain
+     * @param elements      the definitions of the elements by element
+     *                      number, starting with the first, or <code>null
+     *                      </code> for an element that is not checked
+     * @throws IllegalArgumentException if more elements are required, or
+     *                                  defined, than the segment contains
+     */
+    public SegmentSpec(String id, int fieldCount, int requiredCount,
+                       ElementSpec... elements) {
+        if ( requiredCount > fieldCount ) {
+            throw new IllegalArgumentException("Segment " + id + " cannot "
+                    + "require " + requiredCount + " of its " + fieldCount
+                    + " elements.");
+        }
+        if ( elements.length > fieldCount ) {
+            throw new IllegalArgumentException("Segment " + id + " cannot "
+                    + "define " + elements.length + " of its " + fieldCount
+                    + " elements.");
+        }
+
+        this.id = id;
+        this.idKey = Segment.idKey(id);
+        this.fieldCount = fieldCount;
+        this.requiredCount = requiredCount;
+        this.elements = elements.clone();
+    }
+
+    /**
+     * Retrieves the segment identifier.
+     *
+     * @return the segment identifier
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Retrieves the segment identifier, packed as by {@link Segment#idKey}.
+     *
+     * @return the packed segment identifier
+     */
+    public int getIdKey() {
+        return this.idKey;
+    }
+
+    /**
+     * Retrieves the number of elements the segment contains.
+     *
+     * @return the field count
+     */
+    public int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * Retrieves the number of elements the segment is required to contain.
+     *
+     * @return the required count
+     */
+    public int getRequiredCount() {
+        return this.requiredCount;
+    }
+
+    /**
+     * Retrieves the number of elements, from the first, that the definitions
+     * cover. Zero (0) means that no element is checked.
+     *
+     * @return the number of elements covered by the definitions
+     */
+    public int size() {
+        return this.elements.length;
+    }
+
+    /**
+     * Retrieves an element definition.
+     *
+     * @param index the position of the definition, zero (0) being that of
+     *              the first element after the segment identifier
+     * @return the element definition, or <code>null</code> if the element
+     *         is not checked
+     */
+    public ElementSpec getElement(int index) {
+        return this.elements[index];
+    }
+
+    @Override
+    public String toString() {
+        return this.id + Arrays.toString(this.elements);
+    }
+}
@@ -0,0 +1,608 @@
+/* {SegmentStructure.java}
+ *
+ * The sequence, loops and repeat counts of the segments of a transaction set,
+ * * compiled into a state machine that checks them in a single pass.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.SegmentSyntaxErrorCodes;
+import com.is2300.jedi.edi.io.Segment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A <code>SegmentStructure</code> holds the structure of a transaction set, as
+ * laid out in the implementation guide: the order of its segments through the
+ * heading, detail and summary areas, which of them are mandatory, how many
+ * times each may be used, and the loops they are grouped into, along with
+ * how many times each loop may repeat.
+ * <p>
+ * The structure is compiled into a finite-state machine. There is a state for
+ * the start of the transaction set and one after each segment of the
+ * structure, and each state has a table of the segment identifiers that may
+ * come next, sorted by their {@link Segment#getIdKey() packed identifiers}.
+ * Each entry of the table already knows which state it leads to, whether it
+ * repeats a segment, enters a loop or starts the next iteration of one, and
+ * which mandatory segments are missing if it is taken. Checking a segment is
+ * then a binary search of one small table, and a transaction set is checked
+ * in a single pass, as its segments are read, without being kept.
+ * <p>
+ * A loop is entered through its first segment, as in the X12 standard, so
+ * none of the segments inside a loop are expected unless its first segment
+ * has been seen. Segments that are not in the structure at all are left to
+ * the {@link SegmentDictionary}.
+ * <p>
+ * A <code>SegmentStructure</code> is immutable, and so may be shared by any
+ * number of validator threads. The progress through one transaction set is
+ * kept by a {@link Cursor}, one for each thread.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class SegmentStructure {
+    //<editor-fold desc="  Transition Kinds  ">
+    /**
+     * The same segment is used again.
+     */
+    private static final int REPEAT = 0;
+    /**
+     * A later segment, in the same loop or an enclosing one.
+     */
+    private static final int MOVE = 1;
+    /**
+     * The first segment of a loop, entering it.
+     */
+    private static final int ENTER = 2;
+    /**
+     * The first segment of a loop, starting its next iteration.
+     */
+    private static final int ITERATE = 3;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The packed identifiers of the segments, in the order of the structure.
+     */
+    private final int[] keys;
+    /**
+     * The maximum number of times each segment may be used in a row.
+     */
+    private final int[] maxUse;
+    /**
+     * The maximum number of times each loop may repeat.
+     */
+    private final int[] loopMax;
+    /**
+     * The packed identifiers of all of the segments in the structure, sorted.
+     */
+    private final int[] defined;
+    /**
+     * The packed identifiers that may come next, sorted, for each state. State
+     * zero (0) is the start of the transaction set, and state <em>n</em> + 1
+     * is the one after segment <em>n</em>.
+     */
+    private final int[][] nextKeys;
+    /**
+     * The transitions, in the same order as the {@link #nextKeys}.
+     */
+    private final Transition[][] next;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Compiles a structure from its builder.
+     *
+     * @param builder the builder
+     */
+    private SegmentStructure(Builder builder) {
+        int count = builder.keys.size();
+        this.keys = toArray(builder.keys);
+        this.maxUse = toArray(builder.maxUse);
+        this.loopMax = toArray(builder.loopMax);
+
+        int[] sorted = this.keys.clone();
+        Arrays.sort(sorted);
+        int unique = 0;
+        for ( int x = 0; x < sorted.length; x++ ) {
+            if ( x == 0 || sorted[x] != sorted[x - 1] ) {
+                sorted[unique++] = sorted[x];
+            }
+        }
+        this.defined = Arrays.copyOf(sorted, unique);
+
+        this.nextKeys = new int[count + 1][];
+        this.next = new Transition[count + 1][];
+        for ( int state = 0; state <= count; state++ ) {
+            this.compile(builder, state);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    /**
+     * Creates a new cursor, at the start of a transaction set.
+     *
+     * @return the new cursor
+     */
+    public Cursor newCursor() {
+        return new Cursor(this);
+    }
+
+    /**
+     * Retrieves the number of segments in the structure, counting those that
+     * appear in more than one place once for each.
+     *
+     * @return the segment count
+     */
+    public int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * Retrieves the number of loops in the structure.
+     *
+     * @return the loop count
+     */
+    public int getLoopCount() {
+        return this.loopMax.length;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentStructure[" + this.keys.length + " segments, "
+                + this.loopMax.length + " loops]";
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Works out the transitions out of a state, by walking the structure
+     * forward from it as far as the end of the transaction set. The first
+     * place that a segment identifier is found is the one it leads to, and
+     * the mandatory segments and loops passed over on the way are the ones
+     * it leaves missing.
+     *
+     * @param b     the builder, which holds the layout of the loops
+     * @param state the state
+     */
+    private void compile(Builder b, int state) {
+        Map<Integer, Transition> found = new TreeMap<>();
+        List<Integer> skipped = new ArrayList<>();
+        int count = this.keys.length;
+        int loop;
+        int x;
+
+        if ( state == 0 ) {
+            loop = -1;
+            x = 0;
+        } else {
+            int at = state - 1;
+            loop = b.loopOf.get(at);
+            x = at + 1;
+
+            // A loop's first segment is only ever used once in each
+            //+ iteration; seeing it again starts the next one, which is
+            //+ found at the end of the loop below.
+            if ( b.loopStart.indexOf(at) < 0 ) {
+                found.put(this.keys[at], new Transition(REPEAT, at, loop,
+                                                        skipped));
+            }
+        }
+
+        while ( true ) {
+            if ( loop >= 0 && x == b.loopEnd.get(loop) ) {
+                // The end of an iteration of the loop: it may start again,
+                //+ or be left for what follows it.
+                int start = b.loopStart.get(loop);
+                put(found, this.keys[start], new Transition(ITERATE, start,
+                        loop, skipped));
+                loop = b.loopParent.get(loop);
+                continue;
+            }
+            if ( x == count ) {
+                break;
+            }
+
+            int inner = b.loopStart.indexOf(x);
+            if ( inner >= 0 ) {
+                // A loop can only be entered through its first segment.
+                put(found, this.keys[x], new Transition(ENTER, x, inner,
+                                                        skipped));
+                if ( b.loopRequired.get(inner) ) {
+                    skipped.add(x);
+                }
+                x = b.loopEnd.get(inner);
+            } else {
+                put(found, this.keys[x], new Transition(MOVE, x, loop,
+                                                        skipped));
+                if ( b.required.get(x) ) {
+                    skipped.add(x);
+                }
+                x++;
+            }
+        }
+
+        int[] stateKeys = new int[found.size()];
+        Transition[] transitions = new Transition[found.size()];
+        int y = 0;
+        for ( Map.Entry<Integer, Transition> entry : found.entrySet() ) {
+            stateKeys[y] = entry.getKey();
+            transitions[y++] = entry.getValue();
+        }
+        this.nextKeys[state] = stateKeys;
+        this.next[state] = transitions;
+    }
+
+    /**
+     * Reports a segment that may not come next, as out of sequence if it is
+     * expected earlier on, or as unexpected if it is only expected inside a
+     * loop that has not been entered.
+     *
+     * @param state    the current state
+     * @param key      the packed identifier of the segment
+     * @param position the position of the segment
+     * @param errors   the sink to hand the error to
+     */
+    private void misplaced(int state, int key, int position, 
+                           ErrorSink errors) {
+        for ( int x = 0; x < state; x++ ) {
+            if ( this.keys[x] == key ) {
+                errors.segmentError(position, key,
+                        SegmentSyntaxErrorCodes.SEGMENT_NOT_IN_SEQUENCE);
+                return;
+            }
+        }
+
+        errors.segmentError(position, key, 
+                            SegmentSyntaxErrorCodes.UNEXPECTED_SEGMENT);
+    }
+
+    /**
+     * Adds a transition, unless the segment identifier already leads
+     * somewhere nearer.
+     *
+     * @param found      the transitions found so far
+     * @param key        the packed segment identifier
+     * @param transition the transition
+     */
+    private static void put(Map<Integer, Transition> found, int key,
+                            Transition transition) {
+        if ( !found.containsKey(key) ) {
+            found.put(key, transition);
+        }
+    }
+
+    /**
+     * Copies a list of numbers into an array.
+     *
+     * @param list the list
+     * @return the array
+     */
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for ( int x = 0; x < array.length; x++ ) {
+            array[x] = list.get(x);
+        }
+        return array;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Nested Classes  ">
+    /**
+     * Builds a structure, one segment or loop at a time, in the order of the
+     * implementation guide.
+     */
+    public static final class Builder {
+        /**
+         * The packed identifiers of the segments.
+         */
+        private final List<Integer> keys = new ArrayList<>();
+        /**
+         * Whether each segment is mandatory.
+         */
+        private final List<Boolean> required = new ArrayList<>();
+        /**
+         * The number of times each segment may be used in a row.
+         */
+        private final List<Integer> maxUse = new ArrayList<>();
+        /**
+         * The innermost loop that each segment is in, or -1.
+         */
+        private final List<Integer> loopOf = new ArrayList<>();
+        /**
+         * The first segment of each loop.
+         */
+        private final List<Integer> loopStart = new ArrayList<>();
+        /**
+         * The segment following the last one of each loop.
+         */
+        private final List<Integer> loopEnd = new ArrayList<>();
+        /**
+         * The loop enclosing each loop, or -1.
+         */
+        private final List<Integer> loopParent = new ArrayList<>();
+        /**
+         * Whether each loop is mandatory.
+         */
+        private final List<Boolean> loopRequired = new ArrayList<>();
+        /**
+         * The number of times each loop may repeat.
+         */
+        private final List<Integer> loopMax = new ArrayList<>();
+        /**
+         * The identifiers of the loops still open, for their first segment.
+         */
+        private final List<String> open = new ArrayList<>();
+        /**
+         * The innermost open loop, or -1.
+         */
+        private int current = -1;
+
+        /**
+         * Adds a segment.
+         *
+         * @param id       the segment identifier
+         * @param required <code>true</code> if the segment is mandatory
+         * @param maxUse   the number of times it may be used in a row
+         * @return this builder
+         * @throws IllegalArgumentException if the segment is not the first of
+         *                                  a loop that has just been started
+         *                                  with another identifier, or it is
+         *                                  never allowed to be used
+         */
+        public Builder segment(String id, boolean required, int maxUse) {
+            if ( maxUse < 1 ) {
+                throw new IllegalArgumentException("Segment " + id 
+                        + " must be allowed at least once.");
+            }
+
+            int at = this.keys.size();
+            if ( this.current >= 0 && this.loopStart.get(this.current) == at ) {
+                String loop = this.open.get(this.open.size() - 1);
+                if ( !loop.equals(id) ) {
+                    throw new IllegalArgumentException("Loop " + loop 
+                            + " must begin with its " + loop + " segment.");
+                }
+                // The loop's own repeat count governs its first segment.
+                maxUse = 1;
+            }
+
+            this.keys.add(Segment.idKey(id));
+            this.required.add(required);
+            this.maxUse.add(maxUse);
+            this.loopOf.add(this.current);
+            return this;
+        }
+
+        /**
+         * Starts a loop. The next segment added must be its first segment,
+         * which has the same identifier as the loop.
+         *
+         * @param id       the loop identifier
+         * @param required <code>true</code> if the loop is mandatory
+         * @param maxUse   the number of times the loop may repeat
+         * @return this builder
+         * @throws IllegalArgumentException if the loop is never allowed to be
+         *                                  used
+         */
+        public Builder startLoop(String id, boolean required, int maxUse) {
+            if ( maxUse < 1 ) {
+                throw new IllegalArgumentException("Loop " + id 
+                        + " must be allowed at least once.");
+            }
+
+            this.loopStart.add(this.keys.size());
+            this.loopEnd.add(-1);
+            this.loopParent.add(this.current);
+            this.loopRequired.add(required);
+            this.loopMax.add(maxUse);
+            this.open.add(id);
+            this.current = this.loopStart.size() - 1;
+            return this;
+        }
+
+        /**
+         * Ends the innermost loop.
+         *
+         * @return this builder
+         * @throws IllegalArgumentException if no loop is open, or it is empty
+         */
+        public Builder endLoop() {
+            if ( this.current < 0 ) {
+                throw new IllegalArgumentException("No loop to end.");
+            }
+            if ( this.loopStart.get(this.current) == this.keys.size() ) {
+                throw new IllegalArgumentException("Loop " 
+                        + this.open.get(this.open.size() - 1) 
+                        + " has no segments.");
+            }
+
+            this.loopEnd.set(this.current, this.keys.size());
+            this.open.remove(this.open.size() - 1);
+            this.current = this.loopParent.get(this.current);
+            return this;
+        }
+
+        /**
+         * Compiles the structure.
+         *
+         * @return the compiled structure
+         * @throws IllegalArgumentException if a loop has not been ended
+         */
+        public SegmentStructure build() {
+            if ( this.current >= 0 ) {
+                throw new IllegalArgumentException("Loop " 
+                        + this.open.get(this.open.size() - 1) 
+                        + " is not ended.");
+            }
+
+            return new SegmentStructure(this);
+        }
+    }
+
+    /**
+     * A transition out of a state.
+     */
+    private static final class Transition {
+        /**
+         * The kind of transition.
+         */
+        final int kind;
+        /**
+         * The segment it leads to.
+         */
+        final int target;
+        /**
+         * The loop that the segment is in, entered or iterated.
+         */
+        final int loop;
+        /**
+         * The mandatory segments, or first segments of mandatory loops, that
+         * are passed over.
+         */
+        final int[] missing;
+
+        Transition(int kind, int target, int loop, List<Integer> missing) {
+            this.kind = kind;
+            this.target = target;
+            this.loop = loop;
+            this.missing = toArray(missing);
+        }
+    }
+
+    /**
+     * A <code>Cursor</code> follows one transaction set through the structure,
+     * one segment at a time, counting the uses of the current segment and the
+     * iterations of the loops it is in. A cursor is not thread-safe, but may
+     * be {@link #reset()} and used for one transaction set after another.
+     */
+    public static final class Cursor {
+        /**
+         * The structure followed.
+         */
+        private final SegmentStructure structure;
+        /**
+         * The iterations of each loop, since it was last entered.
+         */
+        private final int[] iterations;
+        /**
+         * The current state.
+         */
+        private int state;
+        /**
+         * The number of times the current segment has been used in a row.
+         */
+        private int uses;
+
+        /**
+         * Creates a new cursor, at the start of a transaction set.
+         *
+         * @param structure the structure to follow
+         */
+        private Cursor(SegmentStructure structure) {
+            this.structure = structure;
+            this.iterations = new int[structure.loopMax.length];
+        }
+
+        /**
+         * Goes back to the start of a transaction set.
+         */
+        public void reset() {
+            this.state = 0;
+            this.uses = 0;
+        }
+
+        /**
+         * Retrieves the structure this cursor follows.
+         *
+         * @return the structure
+         */
+        public SegmentStructure getStructure() {
+            return this.structure;
+        }
+
+        /**
+         * Moves on to the next segment of the transaction set, handing any
+         * errors in its placement to the supplied sink. A segment that may
+         * not come next is reported, and leaves the cursor where it was.
+         *
+         * @param segment  a view of the segment
+         * @param position the position of the segment within the transaction
+         *                 set, the ST segment being one (1)
+         * @param errors   the sink to hand the errors to
+         * @return the number of errors found
+         */
+        public int accept(Segment segment, int position, ErrorSink errors) {
+            SegmentStructure s = this.structure;
+            int key = segment.getIdKey();
+            int x = Arrays.binarySearch(s.nextKeys[this.state], key);
+
+            if ( x < 0 ) {
+                if ( Arrays.binarySearch(s.defined, key) < 0 ) {
+                    // Not part of the structure, so it is up to the
+                    //+ dictionary whether it is allowed at all.
+                    return 0;
+                }
+                s.misplaced(this.state, key, position, errors);
+                return 1;
+            }
+
+            Transition t = s.next[this.state][x];
+            int errCnt = t.missing.length;
+            for ( int missing : t.missing ) {
+                errors.segmentError(position, s.keys[missing],
+                        SegmentSyntaxErrorCodes.MANDATORY_SEGMENT_MISSING);
+            }
+
+            switch ( t.kind ) {
+                case REPEAT:
+                    if ( ++this.uses > s.maxUse[t.target] ) {
+                        errors.segmentError(position, key, 
+                                SegmentSyntaxErrorCodes.SEGMENT_EXCEEDS_MAX_USE);
+                        errCnt++;
+                    }
+                    break;
+                case ENTER:
+                    this.iterations[t.loop] = 1;
+                    this.uses = 1;
+                    break;
+                case ITERATE:
+                    if ( ++this.iterations[t.loop] > s.loopMax[t.loop] ) {
+                        errors.segmentError(position, key,
+                                SegmentSyntaxErrorCodes
+                                        .LOOP_OCCURS_OVER_MAX_TIMES);
+                        errCnt++;
+                    }
+                    this.uses = 1;
+                    break;
+                default:
+                    this.uses = 1;
+                    break;
+            }
+
+            this.state = t.target + 1;
+            return errCnt;
+        }
+    }
+    //</editor-fold>
+}
@@ -21,9 +21,9 @@
 
 package com.is2300.jedi.edi.validators;
 
-import com.is2300.jedi.edi.utils.Utils;
+import com.is2300.jedi.edi.enums.DESyntaxErrorCodes;
+import com.is2300.jedi.edi.io.Segment;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -82,229 +82,180 @@ public class SegmentValidator {
      *                                  (true) or not (false)</li>
      *                              <li><code>java.lang.String</code> that holds
      *                                  the description of the error.</li></ol>
+     * @deprecated Use {@link #validate(Segment, SegmentSpec, int, ErrorSink)}
+     *             instead.
      */
+    @Deprecated
     public static List<Object[]> validate(String[] segment, int fieldCount,
                                           int requiredCount, 
                                           List<Object[]> fieldInfo) {
-        // First off, declare a return variable to hold our list of Objects.
-        List<Object[]> retVal = new ArrayList();
+        // Wrap the split segment in a view and validate that.
+        return validate(Segment.of(segment, '*'), fieldCount, requiredCount,
+                        fieldInfo);
+    }
+
+    /**
+     * This is a generic function for validating EDI segments and their data,
+     * reading the segment through a {@link Segment} view.
+     * <p>
+     * The field information is compiled into a {@link SegmentSpec}, and the
+     * segment is validated against it, so this performs exactly the checks of
+     * {@link #validate(Segment, SegmentSpec, int, ErrorSink)}. Each error 
+     * found is returned in an <code>Object</code> array of its own.
+     * 
+     * @param segment           A <code>Segment</code> view of the EDI segment.
+     * 
+     * @param fieldCount        The number of fields this segment contains.
+     * 
+     * @param requiredCount     The number of fields this segment is required
+     *                          to contain.
+     * 
+     * @param fieldInfo         An list of <code>java.lang.Object</code> 
+     *                          object arrays, as described for {@link 
+     *                          #validate(String[], int, int, List)}.
+     * 
+     * @return                  A list of <code>java.lang.Object</code> object
+     *                          arrays, as described for {@link 
+     *                          #validate(String[], int, int, List)}.
+     * @deprecated This builds the segment definition, and a list of errors 
+     *             with their messages, for every segment validated. Use a 
+     *             <code>SegmentSpec</code> built once and an {@link 
+     *             ErrorSink}, or a reused {@link ValidationErrors}, instead.
+     */
+    @Deprecated
+    public static List<Object[]> validate(Segment segment, int fieldCount,
+                                          int requiredCount, 
+                                          List<Object[]> fieldInfo) {
+        // Declare a return variable to hold our list of Objects.
+        List<Object[]> retVal = new ArrayList<>();
+        
+        // Compile the field information into a segment definition.
+        SegmentSpec spec;
+        try {
+            ElementSpec[] elements = new ElementSpec[fieldInfo.size()];
+            for ( int x = 0; x < elements.length; x++ ) {
+                Object[] field = fieldInfo.get(x);
+                elements[x] = new ElementSpec(
+                        ((String) field[0]).toUpperCase(), (Integer) field[1],
+                        (Integer) field[2], (Boolean) field[3]);
+            }
+            spec = new SegmentSpec(segment.getString(0), fieldCount, 
+                                   requiredCount, elements);
+        } catch (IllegalArgumentException ex) {
+            // We were not given the right information for validating the
+            //+ fields of the segment.
+            retVal.add(new Object[] {segment.getString(0), true, 
+                                     ex.getMessage()});
+            return retVal;
+        }
         
-        // Second of all, we need to create an error Object array for reporting
-        //+ any and all errors that we discover.
-        Object[] errors = new Object[3];
+        ValidationErrors errors = new ValidationErrors();
+        validate(segment, spec, 0, errors);
         
-        // The first validation to do is to verify that the String array has
-        //+ exactly one more element than the List of Objects.
-        int segCnt = segment.length;
-        int infCnt = fieldInfo.size();
+        for ( int x = 0; x < errors.size(); x++ ) {
+            retVal.add(new Object[] {segment.getString(0), true,
+                                     errors.getMessage(x)});
+        }
         
-        if ( (segCnt - infCnt) == 1 && 
-             (fieldCount >= requiredCount)) {
-            // We're golden! This means that our segment has exactly one more
-            //+ element than our fieldInfo List, which is as it should be.
-            //+ Therefore, we can continue with our validation.
-            //
-            // We need to create some variables to hold the information for
-            //+ validating the segment fields. This is just to make everything
-            //+ easier to understand later.
-            String dataType;    // The data type, i.e., AN, ID, N0, etc.
-            Integer minChars;   // The minimum number of characters in the data
-            Integer maxChars;   // The maximum number of characters in the data
-            Boolean isRequired; // Whether or not data is required.
+        // Lastly, return our findings.
+        return retVal;
+    }
+    
+    /**
+     * Validates a segment against its compiled definition, and counts the
+     * errors found.
+     * 
+     * @param segment a view of the segment to validate
+     * @param spec    the definition of the segment
+     * @return the number of errors found
+     */
+    public static int validate(Segment segment, SegmentSpec spec) {
+        return validate(segment, spec, 0, ErrorSink.IGNORE);
+    }
+    
+    /**
+     * Validates a segment against its compiled definition, handing each 
+     * error found to the supplied sink.
+     * <p>
+     * The element definitions are read straight from the {@link 
+     * SegmentSpec}, so nothing needs to be built up, unboxed or cast for each
+     * segment. The errors are passed on as their codes and positions only;
+     * no message is created for them, so with an {@link ErrorSink} such as a
+     * reused {@link ValidationErrors}, validating a segment allocates nothing
+     * for the errors it finds.
+     * 
+     * @param segment  a view of the segment to validate
+     * @param spec     the definition of the segment
+     * @param position the position of the segment within its transaction 
+     *                 set, the ST segment being one (1); or zero (0) if it is
+     *                 not known
+     * @param errors   the sink to hand the errors to
+     * @return the number of errors found
+     */
+    public static int validate(Segment segment, SegmentSpec spec, 
+                               int position, ErrorSink errors) {
+        int id = segment.getIdKey();
+        
+        int errCnt = 0;
+        
+        // The segment may leave off its trailing optional elements, but may
+        //+ not have more elements than it contains. Whether the ones left off
+        //+ were required is checked element by element below.
+        if ( segment.size() - 1 > spec.getFieldCount() ) {
+            errors.elementError(position, id, spec.getFieldCount() + 1, 
+                                DESyntaxErrorCodes.TOO_MANY_ELEMENTS);
+            errCnt++;
+        }
+        
+        for ( int x = 0; x < spec.size(); x++ ) {
+            ElementSpec field = spec.getElement(x);
+            int element = x + 1;    // Zeroeth element is the segment ID.
+            if ( field == null ) {
+                continue;           // This element is not checked.
+            }
             
-            // Also, we should create a marker to maintain our location in the
-            //+ array of String objects contained in `segment`.
-            int currentElement = 1; // Zeroeth element is the segment ID. No
-                                    //+ validation required for it.
+            // An element that is absent, or present but empty, has no data
+            //+ to check. That is only an error if the element is mandatory.
+            int length = segment.length(element);
+            if ( length == 0 ) {
+                if ( field.isRequired() ) {
+                    errors.elementError(position, id, element,
+                            DESyntaxErrorCodes.MANDATORY_ELEMENT_MISSING);
+                    errCnt++;
+                }
+                continue;
+            }
             
-            // Now, we need to loop through each of the Object arrays in the
-            //+ fieldInfo List in order to validate the fields of the segment.
-            for (Object[] field : fieldInfo ) {
-                // First thing here is to get our data metrics out of our 
-                //+ current list item.
-                dataType = (String) field[0];
-                minChars = (Integer) field[1];
-                maxChars = (Integer) field[2];
-                isRequired = (Boolean) field[3];
-                
-                // Next, we need to check that the data in the field complies
-                //+ with the required data type. The only data types we really
-                //+ need to verify are numeric and date/time. All other EDI data
-                //+ types can be alpha-numeric, so anything goes with them.
-                if ( dataType.toLowerCase().equals("n0") ) {
-                    // We can verify that the data in this field is numeric by
-                    //+ simply attempting to cast it to an Integer, Float or
-                    //+ Double data type. If it fails, then we know that it is
-                    //+ not valid data. In order to attempt casting it to the
-                    //+ correct data type, we need to determine whether or not
-                    //+ there is a decimal in the number. Since the data is
-                    //+ currently in String form, we can simply use the methods
-                    //+ of the String class to determine this.
-                    if ( segment[currentElement].contains(".") ) {
-                        // This is some form of decimal, non-integer, number.
-                        //+ Therefore, we need to attempt casting to a float or
-                        //+ a double. In order to accomplish attempting both a
-                        //+ float and a double, we are going to attempt the 
-                        //+ double first. If it throws an exception, we will
-                        //+ attempt a float in the catch block. If that also
-                        //+ does not work, we will add to our error List.
-                        try {
-                            Double d = Double.parseDouble(
-                                                       segment[currentElement]);
-                        } catch (NumberFormatException ex) {
-                            // Since parsing into a double failed, let's now try
-                            //+ parsing into a float.
-                            try {
-                                Float f = Float.parseFloat(
-                                                       segment[currentElement]);
-                            } catch (NumberFormatException e) {
-                                // Since neither of those worked, we can assume
-                                //+ that the data is not valid. Therefore, we
-                                //+ are going to add this field to our errors
-                                //+ list.
-                                errors[0] = segment[0]; // Segment Identifier
-                                errors[1] = true;       // Ther IS an error
-                                errors[2] = "Number value required, but non-" +
-                                            "numerical string supplied.";
-                                
-                                // Add the Object array to our list.
-                                retVal.add(errors);
-                            } // End inner try...catch block.
-                        } // End outer try...catch block.
-                    } else {
-                        // We can now assume that this is a whole number, an
-                        //+ integer. Therefore, we can attempt to parse the data
-                        //+ to an integer to validate the value.
-                        try {
-                            Integer i = Integer.parseInt(
-                                                       segment[currentElement]);
-                        } catch (NumberFormatException ex) {
-                            // Since parsing the string to an integer did not
-                            //+ work, we can assume that the data is invalid and
-                            //+ add this field to our errors list.
-                            errors[0] = segment[0]; // Segment Identifier
-                            errors[1] = true;       // Ther IS an error
-                            errors[2] = "Number value required, but non-" +
-                                        "numerical string supplied.";
-                            
-                            // Add the Object array to our list.
-                            retVal.add(errors);
-                        } // End try...catch block.
-                    } // End inner if...else block.
-                } else if ( dataType.toLowerCase().equals("dt") ) {
-                    // This data type is supposed to contain a Date. EDI Date
-                    //+ fields can be formatted as either YYMMDD or YYYYMMDD.
-                    //+ We will use our Utils class to determine if this data
-                    //+ is valid or not.
-                    Date dt = Utils.string2Date(segment[currentElement]);
-                    
-                    // Create a date to represent the current date so that we 
-                    //+ at least validate that the date in this field is not in
-                    //+ the future.
-                    Date d2 = new Date();
-                    
-                    if (dt.compareTo(d2) > 0) {
-                        // Cannot be valid becuase it is in the future, so add
-                        //+ this field to our errors list.
-                        errors[0] = segment[0];  // Segment identifier
-                        errors[1] = true;       // There IS an error
-                        errors[2] = "The date in this field is not a valid " +
-                                    "date.";
-                        
-                        // Add the error array to our list.
-                        retVal.add(errors);
-                    } // End of date validation if block.
-                } else if ( dataType.toLowerCase().equals("tm") ) {
-                    // This data type is supposed to contain a Time value. EDI
-                    //+ time fields can be formatted as either HHMM or HHMMSS.
-                    //+ We will use our Utils class to determine if this data
-                    //+ is valid or not.
-                    Date dt = Utils.string2Time(segment[currentElement]);
-                    
-                    // Now, we need to be sure that the time is valid and not
-                    //+ null.
-                    if ( dt == null ) {
-                        // This is not valid, so add this field to our errors
-                        //+ list.
-                        errors[0] = segment[0]; // Segment identifier
-                        errors[1] = true;       // There IS an error
-                        errors[2] = "The time in this field is not a valid " +
-                                    "time.";
-                        
-                        // Add the error to our list
-                        retVal.add(errors);
-                    }
-                } // End of data type validation block.
-                
-                // Now that we've validated the data type, we need to validate
-                //+ the data length. Each field in an EDI segment has a minimum
-                //+ and a maximum length. These limits are provided in our local
-                //+ variables minChars and maxChars. We simply need to grab the
-                //+ length of the current field and verify that it falls between
-                //+ the minimum and maximum length for the field.
-                Integer fieldLength = segment[currentElement].length();
-                
-                if ( fieldLength < minChars ) {
-                    // The field length is too short, so this is an error.
-                    errors[0] = segment[0]; // Segment identifier
-                    errors[1] = true;       // There IS an error
-                    errors[2] = "The data is too short for this field.";
-                    
-                    // Add the error to our list.
-                    retVal.add(errors);
-                } else if ( fieldLength > maxChars ) {
-                    // The field length is too long, so this is an error.
-                    errors[0] = segment[0]; // Segment identifier
-                    errors[1] = true;       // There IS an error
-                    errors[2] = "The data is too long for this field.";
-                    
-                    // Add the error to our list.
-                    retVal.add(errors);
-                } // End of length check.
-                
-                // The last thing to check is whether or not the data is 
-                //+ mandatory for this field.
-                if ( isRequired ) {
-                    // Since the data is mandatory, we need to verify that data
-                    //+ is present. To do this, we just make sure that the field
-                    //+ is not null.
-                    if ( segment[currentElement] == null ) {
-                        // This is an error.
-                        errors[0] = segment[0]; // Segment identifier
-                        errors[1] = true;       // There IS an error
-                        errors[2] = "This is a MANDATORY field, but it is " +
-                                    "blank.";
-                        
-                        // Add the error to our list.
-                        retVal.add(errors);
-                    } // End of null check.
-                } // End of mandatory data check.
-                
-                // Increment our element marker
-                currentElement++;
-            } // End for each loop.
-        } else {
-            // Houston, we have a problem! We were not given enough information,
-            //+ or we were given too much information, for validating the fields
-            //+ of the segment. Therefore, we need to set up our error object to
-            //+ advise the calling class as to what went wrong.
-            errors[0] = segment[0]; // The segment identifier.
-            errors[1] = true;       // There IS an error.
-            errors[2] = "There was either not enough, or too much, information"
-                        + " provided to validate the segment field data.\n\t" +
-                        "Number of fields in segment: " + segCnt + "\n\t" +
-                        "Number of items in fieldInfo: " + infCnt + "\n\n" +
-                        "The number of items in the fieldInfo list should be " +
-                        "exactly one (1) less than the number of elements in " +
-                        "the segment array.\n" +
-                        "Please correct these errors and try again.";
+            // Check that the data is in the format of its data type and, if
+            //+ it comes from a code list, that it is one of the codes.
+            CharSequence value = segment.element(element);
+            if ( !field.getType().isValid(value) ) {
+                errors.elementError(position, id, element, 
+                                    field.getType().getErrorCode());
+                errCnt++;
+            } else if ( field.getCodeList() != null 
+                    && !field.getCodeList().contains(value) ) {
+                // Not being one of the codes says all there is to say about
+                //+ the value, so its length is not checked as well.
+                errors.elementError(position, id, element, 
+                                    DESyntaxErrorCodes.INVALID_CODE);
+                errCnt++;
+                continue;
+            }
             
-            // Add this object to our return list.
-            retVal.add(errors);
-        } // End of all data validation.
+            // Then the length.
+            if ( length < field.getMinLength() ) {
+                errors.elementError(position, id, element, 
+                                    DESyntaxErrorCodes.ELEMENT_TOO_SHORT);
+                errCnt++;
+            } else if ( length > field.getMaxLength() ) {
+                errors.elementError(position, id, element, 
+                                    DESyntaxErrorCodes.ELEMENT_TOO_LONG);
+                errCnt++;
+            }
+        }
         
-        // Lastly, return our findings.
-        return retVal;
+        return errCnt;
     }
     
 }
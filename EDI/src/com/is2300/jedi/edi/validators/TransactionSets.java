@@ -0,0 +1,235 @@
+/* {TransactionSets.java}
+ *
+ * The Transaction Set Identifier Codes that are valid in a version of the X12
+ * standard, as a table that answers whether a code is valid with one probe.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.openide.util.Exceptions;
+
+/**
+ * <code>TransactionSets</code> holds the Transaction Set Identifier Codes
+ * (ST01) that are valid in a version of the X12 standard. The codes are all
+ * three (3) digits, so they are kept as a table of one thousand (1,000)
+ * flags, indexed by the code itself: checking a code is a single probe of the
+ * table, without converting it to a number object first.
+ * <p>
+ * The codes of version <em>vvvvvv</em> are read from the file <tt>vvvvvv/
+ * sets.list</tt>, which is looked for in the same places as the {@link 
+ * SegmentDictionaries segment dictionaries}, so that a trading partner's
+ * version can be given its own list. Each line of the file holds a code, or
+ * an inclusive range of codes such as <tt>810-816</tt>; blank lines, and
+ * lines beginning with a hash (<tt>#</tt>), are ignored. If there is no list
+ * for the version, that of the {@link SegmentDictionaries#DEFAULT_VERSION} is
+ * used instead, as it is for a version that is not well formed or not known
+ * to the {@link SegmentDictionaries}.
+ * <p>
+ * <code>TransactionSets</code> objects are immutable once read, and all of
+ * the methods are thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class TransactionSets {
+    /**
+     * The name of the file listing the codes of a version.
+     */
+    public static final String FILE_NAME = "sets.list";
+
+    /**
+     * The number of possible codes.
+     */
+    private static final int CODES = 1000;
+    /**
+     * Stands in the cache for a list that does not exist, so that it is only
+     * looked for once.
+     */
+    private static final Object MISSING = new Object();
+    /**
+     * The lists loaded so far, keyed by version.
+     */
+    private static final ConcurrentMap<String, Object> CACHE
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The version of the X12 standard.
+     */
+    private final String version;
+    /**
+     * Whether each code is valid, indexed by the code.
+     */
+    private final boolean[] valid = new boolean[CODES];
+
+    /**
+     * Creates a new, empty, list of codes.
+     *
+     * @param version the version of the X12 standard
+     */
+    private TransactionSets(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Retrieves the valid codes of a version of the X12 standard.
+     *
+     * @param version the version, from the Functional Group Header (GS08); or
+     *                <code>null</code> for the {@link 
+     *                SegmentDictionaries#DEFAULT_VERSION}
+     * @return the valid codes, or <code>null</code> if there is no list for
+     *         the version, nor for the default version
+     */
+    public static TransactionSets get(String version) {
+        version = SegmentDictionaries.version(version);
+
+        Object found = CACHE.get(version);
+        if ( found == null ) {
+            TransactionSets loaded = load(version);
+            found = ( loaded == null ) ? MISSING : loaded;
+
+            Object raced = CACHE.putIfAbsent(version, found);
+            if ( raced != null ) {
+                found = raced;
+            }
+        }
+
+        if ( found != MISSING ) {
+            return (TransactionSets) found;
+        } else if ( !SegmentDictionaries.DEFAULT_VERSION.equals(version) ) {
+            return get(SegmentDictionaries.DEFAULT_VERSION);
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads a list of codes.
+     *
+     * @param version the version of the X12 standard
+     * @param in      the reader of the list
+     * @return the list of codes
+     * @throws IOException if the list cannot be read, or a line of it is not
+     *                     a code or range of codes
+     */
+    public static TransactionSets parse(String version, BufferedReader in)
+            throws IOException {
+        TransactionSets sets = new TransactionSets(version);
+
+        String line;
+        int lineNo = 0;
+        while ( (line = in.readLine()) != null ) {
+            lineNo++;
+            line = line.trim();
+            if ( line.isEmpty() || line.charAt(0) == '#' ) {
+                continue;
+            }
+
+            int dash = line.indexOf('-');
+            String first = ( dash < 0 ) ? line : line.substring(0, dash).trim();
+            String last = ( dash < 0 ) ? line : line.substring(dash + 1).trim();
+            int from = indexOf(first);
+            int to = indexOf(last);
+            if ( from < 0 || to < from ) {
+                throw new IOException(version + "/" + FILE_NAME + ", line " 
+                        + lineNo + ": not a code or range of codes: " + line);
+            }
+
+            for ( int code = from; code <= to; code++ ) {
+                sets.valid[code] = true;
+            }
+        }
+
+        return sets;
+    }
+
+    /**
+     * Determines whether a Transaction Set Identifier Code is valid.
+     *
+     * @param code the code, from ST01
+     * @return <code>true</code> if the code is valid in this version
+     */
+    public boolean contains(CharSequence code) {
+        int index = indexOf(code);
+        return index >= 0 && this.valid[index];
+    }
+
+    /**
+     * Retrieves the version of the X12 standard of these codes.
+     *
+     * @return the version
+     */
+    public String getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Forgets the lists loaded so far, so that they are read again from the
+     * dictionary directory.
+     */
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Reads a list from the dictionary directory or, failing that, from the
+     * module.
+     *
+     * @param version the version of the X12 standard
+     * @return the list, or <code>null</code> if there is none, or it cannot
+     *         be read
+     */
+    private static TransactionSets load(String version) {
+        try ( BufferedReader in = SegmentDictionaries.open(version + "/"
+                                                           + FILE_NAME) ) {
+            if ( in == null ) {
+                return null;
+            }
+            return parse(version, in);
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+            return null;
+        }
+    }
+
+    /**
+     * Converts a code of three (3) digits to its index in the table.
+     *
+     * @param code the code
+     * @return the index, or -1 if the code is not three digits
+     */
+    private static int indexOf(CharSequence code) {
+        if ( code == null || code.length() != 3 ) {
+            return -1;
+        }
+
+        int index = 0;
+        for ( int x = 0; x < 3; x++ ) {
+            char c = code.charAt(x);
+            if ( c < '0' || c > '9' ) {
+                return -1;
+            }
+            index = index * 10 + ( c - '0' );
+        }
+        return index;
+    }
+}
@@ -21,6 +21,7 @@
 
 package com.is2300.jedi.edi.validators;
 
+import com.is2300.jedi.edi.io.Segment;
 import java.util.List;
 
 /**
@@ -38,7 +39,8 @@ import java.util.List;
  * transmission, the data is entered into the database and work items are 
  * created for the accounting department to handle the invoice payment(s).
  * <p>
- * The following are the valid segments for an 810 Invoice:
+ * The valid segments are given by the 810 {@link SegmentDictionary}, which is
+ * loaded from its dictionary file. They are as follows:
  * <ul>
  * <li><strong>ISA</strong>: Interchange Control Header</li>
  * <li><strong>GS</strong>: Function Group Header</li>
@@ -79,64 +81,54 @@ import java.util.List;
  * @since 0.5.0
  */
 public class Validate810Segments {
+    /**
+     * The Transaction Set Identifier Code of the 810 Invoice, under which its
+     * segments are found in the {@link SegmentDictionaries}.
+     */
+    private static final String TRANSACTION_SET = "810";
 
+    /**
+     * Validates every segment of an 810 Invoice transaction set, up to, but
+     * not including, the Transaction Set Trailer (SE).
+     * 
+     * @param toValidate the split segments of the transaction set
+     * @return the number of invalid segments found
+     */
     public static Integer validate(List<String[]> toValidate) {
         // Create a return value.
         Integer errCnt = 0;
         
-        // Create a validity flag.
-        Boolean isValid = false;    // Default it to invalid segment.
-        
         // Loop through all of the items in the list.
         for ( int x = 0; x < toValidate.size() - 1; x++ ) {
-            // We need to check the supplied segment to see if it is valid.
-            switch ( toValidate.get(x)[0] ) {
-                // Since each case that is valid will set the `isValid` return 
-                //+ variable to `true`, we're just going to use the "fall-through"
-                //+ of the `case` functionality and only use the `break` statement
-                //+ when we set the return variable to `true`.
-    //            case "ISA":
-    //            case "GS":
-                case "ST":
-                case "BIG":
-                case "CUR":
-                case "REF":
-                case "N1":
-                case "N2":
-                case "N3":
-                case "N4":
-                case "PER":
-                case "ITD":
-                case "DTM":
-                case "N9":
-                case "MSG":
-                case "IT1":
-                case "PID":
-                case "SAC":
-                case "TX1":
-                case "TDS":
-                case "AMT":
-                case "CTT":
-                case "SE":
-    //            case "GE":
-    //            case "IEA":
-                    isValid = true;
-                    break;
-            } // End switch...case block.
-            
-            // If we ever have an invalid segment, we need to count the error
-            //+ because if we only have one error, we may still be able to use
-            //+ the transaction set, but more than one error and we may need to
-            //+ fail the whole transaction set.
-            if ( !isValid ) {
-                errCnt++;
-            }
+            errCnt += validate(Segment.of(toValidate.get(x), '*'));
         } // End for loop.
         
         // Return our error count.
         return errCnt;
     }
 
+    /**
+     * Validates a single segment of an 810 Invoice transaction set as it is
+     * read, against the 810 dictionary of the {@link 
+     * SegmentDictionaries#DEFAULT_VERSION default version}. The segment 
+     * identifier is checked in place, so no <code>java.lang.String</code> is
+     * created for it.
+     * 
+     * @param segment a view of the segment to validate
+     * @return one (1) if the segment is not valid within an 810 Invoice; zero
+     *         (0) otherwise
+     */
+    public static int validate(Segment segment) {
+        // If we ever have an invalid segment, we need to count the error
+        //+ because if we only have one error, we may still be able to use
+        //+ the transaction set, but more than one error and we may need to
+        //+ fail the whole transaction set.
+        SegmentDictionary dictionary = SegmentDictionaries.get(
+                SegmentDictionaries.DEFAULT_VERSION, TRANSACTION_SET);
+        
+        return ( dictionary == null ) ? 0 : dictionary.validate(segment);
+    }
+
     public static Boolean validate(String toValidate, String toCompare) {
         // Check whether the two provided strings are the same.
         return toValidate.equals(toCompare);
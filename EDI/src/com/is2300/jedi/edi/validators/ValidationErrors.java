@@ -0,0 +1,295 @@
+/* {ValidationErrors.java}
+ *
+ * A reusable collector of the errors found by the validators, which only
+ * produces their messages when asked to.
+ *
+ * Copyright (C) 2017 Integrity Solutions
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.is2300.jedi.edi.validators;
+
+import com.is2300.jedi.edi.enums.DESyntaxErrorCodes;
+import com.is2300.jedi.edi.enums.SegmentSyntaxErrorCodes;
+import java.util.Arrays;
+
+/**
+ * <code>ValidationErrors</code> records the errors handed to it as an {@link
+ * ErrorSink} in parallel arrays of primitives and enumeration constants. Once
+ * the arrays have grown to fit the errors of a transaction set, recording an
+ * error allocates nothing, so one collector can be {@link #clear() cleared}
+ * and reused for each transaction set in turn.
+ * <p>
+ * The message text of an error is only put together when {@link
+ * #getMessage(int)} or {@link #toString()} is called, which is when a report
+ * is rendered; callers that only need to know how many errors there were
+ * never pay for it.
+ * <p>
+ * <code>ValidationErrors</code> is not thread-safe.
+ *
+ * @author Integrity Solutions
+ * @version 0.5.0
+ * @since 0.5.0
+ */
+public final class ValidationErrors implements ErrorSink {
+    //<editor-fold desc="  Private Constant Declarations  ">
+    /**
+     * The number of errors room is made for at first.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Member Fields  ">
+    /**
+     * The positions of the segments in error within the transaction set.
+     */
+    private int[] positions;
+    /**
+     * The packed identifiers of the segments in error.
+     */
+    private int[] segmentIds;
+    /**
+     * The positions of the elements in error, or zero (0) for segment
+     * errors.
+     */
+    private int[] elements;
+    /**
+     * The error codes: <code>SegmentSyntaxErrorCodes</code> for segment
+     * errors and <code>DESyntaxErrorCodes</code> for element errors.
+     */
+    private Enum<?>[] codes;
+    /**
+     * The number of errors recorded.
+     */
+    private int size;
+    //</editor-fold>
+
+    //<editor-fold desc="  Constructors  ">
+    /**
+     * Creates a new, empty collector.
+     */
+    public ValidationErrors() {
+        this.positions = new int[INITIAL_CAPACITY];
+        this.segmentIds = new int[INITIAL_CAPACITY];
+        this.elements = new int[INITIAL_CAPACITY];
+        this.codes = new Enum<?>[INITIAL_CAPACITY];
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Public Methods  ">
+    @Override
+    public void segmentError(int position, int segmentId,
+                             SegmentSyntaxErrorCodes code) {
+        this.add(position, segmentId, 0, code);
+    }
+
+    @Override
+    public void elementError(int position, int segmentId, int element,
+                             DESyntaxErrorCodes code) {
+        this.add(position, segmentId, element, code);
+    }
+
+    /**
+     * Forgets the errors recorded so far, keeping the room made for them.
+     */
+    public void clear() {
+        // Let go of nothing but the count; the codes are constants.
+        this.size = 0;
+    }
+
+    /**
+     * Retrieves the number of errors recorded.
+     *
+     * @return the error count
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Determines whether no errors have been recorded.
+     *
+     * @return <code>true</code> if there are no errors
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Retrieves the position of the segment of an error within its
+     * transaction set.
+     *
+     * @param index the index of the error
+     * @return the segment position, or zero (0) if it was not known
+     */
+    public int getPosition(int index) {
+        this.checkIndex(index);
+        return this.positions[index];
+    }
+
+    /**
+     * Retrieves the packed identifier of the segment of an error.
+     *
+     * @param index the index of the error
+     * @return the packed segment identifier
+     */
+    public int getSegmentId(int index) {
+        this.checkIndex(index);
+        return this.segmentIds[index];
+    }
+
+    /**
+     * Retrieves the position of the element of an error within its segment.
+     *
+     * @param index the index of the error
+     * @return the element position, or zero (0) for a segment error
+     */
+    public int getElement(int index) {
+        this.checkIndex(index);
+        return this.elements[index];
+    }
+
+    /**
+     * Retrieves the code of a segment error.
+     *
+     * @param index the index of the error
+     * @return the segment syntax error code, or <code>null</code> if the
+     *         error is an element error
+     */
+    public SegmentSyntaxErrorCodes getSegmentCode(int index) {
+        this.checkIndex(index);
+        return ( this.codes[index] instanceof SegmentSyntaxErrorCodes )
+                ? (SegmentSyntaxErrorCodes) this.codes[index] : null;
+    }
+
+    /**
+     * Retrieves the code of an element error.
+     *
+     * @param index the index of the error
+     * @return the data element syntax error code, or <code>null</code> if the
+     *         error is a segment error
+     */
+    public DESyntaxErrorCodes getElementCode(int index) {
+        this.checkIndex(index);
+        return ( this.codes[index] instanceof DESyntaxErrorCodes )
+                ? (DESyntaxErrorCodes) this.codes[index] : null;
+    }
+
+    /**
+     * Hands an error on to another sink, just as it was reported here.
+     *
+     * @param index the index of the error
+     * @param sink  the sink to hand the error to
+     */
+    public void copyTo(int index, ErrorSink sink) {
+        this.checkIndex(index);
+        if ( this.codes[index] instanceof SegmentSyntaxErrorCodes ) {
+            sink.segmentError(this.positions[index], this.segmentIds[index],
+                              (SegmentSyntaxErrorCodes) this.codes[index]);
+        } else {
+            sink.elementError(this.positions[index], this.segmentIds[index],
+                              this.elements[index],
+                              (DESyntaxErrorCodes) this.codes[index]);
+        }
+    }
+
+    /**
+     * Puts together the message for an error, such as <tt>"Segment 3 (BGN),
+     * element 3: Invalid Date"</tt>.
+     *
+     * @param index the index of the error
+     * @return the message
+     */
+    public String getMessage(int index) {
+        this.checkIndex(index);
+
+        StringBuilder msg = new StringBuilder("Segment ");
+        if ( this.positions[index] > 0 ) {
+            msg.append(this.positions[index]).append(" (");
+            appendId(msg, this.segmentIds[index]);
+            msg.append(')');
+        } else {
+            appendId(msg, this.segmentIds[index]);
+        }
+
+        if ( this.elements[index] > 0 ) {
+            msg.append(", element ").append(this.elements[index]);
+        }
+
+        return msg.append(": ").append(this.codes[index]).toString();
+    }
+
+    /**
+     * Puts together the messages for all of the errors, one to a line.
+     *
+     * @return the messages
+     */
+    @Override
+    public String toString() {
+        StringBuilder msgs = new StringBuilder();
+
+        for ( int x = 0; x < this.size; x++ ) {
+            if ( x > 0 ) {
+                msgs.append('\n');
+            }
+            msgs.append(this.getMessage(x));
+        }
+
+        return msgs.toString();
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="  Private Methods  ">
+    /**
+     * Records an error, making room for it if need be.
+     */
+    private void add(int position, int segmentId, int element, Enum<?> code) {
+        if ( this.size == this.codes.length ) {
+            int capacity = this.size * 2;
+            this.positions = Arrays.copyOf(this.positions, capacity);
+            this.segmentIds = Arrays.copyOf(this.segmentIds, capacity);
+            this.elements = Arrays.copyOf(this.elements, capacity);
+            this.codes = Arrays.copyOf(this.codes, capacity);
+        }
+
+        this.positions[this.size] = position;
+        this.segmentIds[this.size] = segmentId;
+        this.elements[this.size] = element;
+        this.codes[this.size] = code;
+        this.size++;
+    }
+
+    /**
+     * Makes sure that an error index is in range.
+     */
+    private void checkIndex(int index) {
+        if ( index < 0 || index >= this.size ) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+    }
+
+    /**
+     * Unpacks a segment identifier packed as by <code>Segment.idKey()</code>.
+     */
+    private static void appendId(StringBuilder msg, int segmentId) {
+        for ( int shift = 16; shift >= 0; shift -= 8 ) {
+            int c = (segmentId >>> shift) & 0xff;
+            if ( c != 0 ) {
+                msg.append((char) c);
+            }
+        }
+    }
+    //</editor-fold>
+}